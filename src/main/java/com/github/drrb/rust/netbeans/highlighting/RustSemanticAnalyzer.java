@@ -16,21 +16,12 @@
  */
 package com.github.drrb.rust.netbeans.highlighting;
 
-import com.github.drrb.rust.netbeans.parsing.CollectingVisitor;
 import com.github.drrb.rust.netbeans.parsing.NetbeansRustParser.NetbeansRustParserResult;
-import com.github.drrb.rust.netbeans.parsing.RustParser;
-import java.util.Collection;
 import java.util.Collections;
-import java.util.EnumSet;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
-import org.antlr.v4.runtime.ParserRuleContext;
 import org.netbeans.modules.csl.api.ColoringAttributes;
-import static org.netbeans.modules.csl.api.ColoringAttributes.*;
 import org.netbeans.modules.csl.api.OffsetRange;
 import org.netbeans.modules.csl.api.SemanticAnalyzer;
 import org.netbeans.modules.parsing.spi.Scheduler;
@@ -42,22 +33,20 @@ import org.netbeans.modules.parsing.spi.SchedulerEvent;
 public class RustSemanticAnalyzer extends SemanticAnalyzer<NetbeansRustParserResult> {
 
     private final AtomicBoolean cancelled = new AtomicBoolean();
-    private final Collection<Highlight> highlights = new LinkedList<>();
+    private Map<OffsetRange, Set<ColoringAttributes>> highlights = Collections.emptyMap();
 
     @Override
     public void run(NetbeansRustParserResult result, SchedulerEvent event) {
         //TODO: Are these needed? Is this class disposable?
-        highlights.clear();
         cancelled.set(false);
 
-        RustParser.ProgContext prog = result.getAst();
-        List<Highlight> collectedHighlights = prog.accept(new HighlightCollectingVisitor());
-        highlights.addAll(collectedHighlights);
+        //The highlights are found along with the index, in the result's analysis
+        highlights = result.getAnalysis().getHighlights();
     }
 
     @Override
     public Map<OffsetRange, Set<ColoringAttributes>> getHighlights() {
-        return mapHighlights(highlights);
+        return highlights;
     }
 
     @Override
@@ -74,113 +63,4 @@ public class RustSemanticAnalyzer extends SemanticAnalyzer<NetbeansRustParserRes
     public void cancel() {
         cancelled.set(true);
     }
-
-    private Map<OffsetRange, Set<ColoringAttributes>> mapHighlights(Collection<Highlight> highlights) {
-        Map<OffsetRange, Set<ColoringAttributes>> highlightsMap = new HashMap<>(highlights.size());
-        for (Highlight highlight : highlights) {
-            highlightsMap.put(highlight.offsetRange, highlight.coloringAttributes);
-        }
-        return highlightsMap;
-    }
-
-    private static class Highlight {
-
-        final ParserRuleContext context;
-        final Set<ColoringAttributes> coloringAttributes;
-        final OffsetRange offsetRange;
-
-        Highlight(ParserRuleContext context, Set<ColoringAttributes> coloringAttributes) {
-            this.coloringAttributes = coloringAttributes;
-            this.context = context;
-            int start = context.getStart().getStartIndex();
-            int stop = context.getStop().getStopIndex();
-            this.offsetRange = new OffsetRange(start, stop + 1);
-        }
-    }
-
-    private class HighlightCollectingVisitor extends CollectingVisitor<Highlight> {
-
-        private List<Highlight> highlight(ParserRuleContext identifier, ColoringAttributes firstColoringAttribute, ColoringAttributes... otherColoringAttributes) {
-            LinkedList<Highlight> highlightList = new LinkedList<>();
-            if (identifier != null) {
-                return new LinkedList<>(Collections.singletonList(new Highlight(identifier, EnumSet.of(firstColoringAttribute, otherColoringAttributes))));
-            }
-            return highlightList;
-        }
-
-        @Override
-        public List<Highlight> visitItem_fn_decl(RustParser.Item_fn_declContext ctx) {
-            return highlight(ctx.ident(), METHOD);
-        }
-
-        @Override
-        public List<Highlight> visitEnum_decl(RustParser.Enum_declContext ctx) {
-            return aggregateResult(highlight(ctx.ident(), CLASS), visitChildren(ctx));
-        }
-
-        @Override
-        public List<Highlight> visitEnum_variant_decl(RustParser.Enum_variant_declContext ctx) {
-            return highlight(ctx.ident(), ENUM);
-        }
-
-        @Override
-        public List<Highlight> visitStruct_decl(RustParser.Struct_declContext ctx) {
-            return aggregateResult(highlight(ctx.ident(), CLASS), visitChildren(ctx));
-        }
-
-        @Override
-        public List<Highlight> visitStruct_field(RustParser.Struct_fieldContext ctx) {
-            return highlight(ctx.ident(), FIELD);
-        }
-
-        @Override
-        public List<Highlight> visitTrait_decl(RustParser.Trait_declContext ctx) {
-            return aggregateResult(highlight(ctx.ident(), CLASS), visitChildren(ctx));
-        }
-
-        @Override
-        public List<Highlight> visitTrait_method(RustParser.Trait_methodContext ctx) {
-            return highlight(ctx.ident(), METHOD);
-        }
-
-        @Override
-        public List<Highlight> visitImpl(RustParser.ImplContext ctx) {
-            List<Highlight> implNameHighlight = ctx.ty().accept(new CollectingVisitor<Highlight>() {
-                @Override
-                public List<Highlight> visitNon_global_path(RustParser.Non_global_pathContext ctx) {
-                    List<Highlight> highlights = new LinkedList<>();
-                    for (RustParser.IdentContext identifier : ctx.ident()) {
-                        highlights.add(new Highlight(identifier, CLASS_SET));
-                    }
-                    return highlights;
-                }
-            });
-            return aggregateResult(implNameHighlight, visitChildren(ctx));
-        }
-
-        @Override
-        public List<Highlight> visitImpl_trait_for_type(RustParser.Impl_trait_for_typeContext ctx) {
-            List<Highlight> implNameHighlight = ctx.accept(new CollectingVisitor<Highlight>() {
-                @Override
-                public List<Highlight> visitTrait(RustParser.TraitContext ctx) {
-                    return ctx.accept(new CollectingVisitor<Highlight>() {
-                        @Override
-                        public List<Highlight> visitNon_global_path(RustParser.Non_global_pathContext ctx) {
-                            List<Highlight> highlights = new LinkedList<>();
-                            for (RustParser.IdentContext identifier : ctx.ident()) {
-                                highlights.add(new Highlight(identifier, CLASS_SET));
-                            }
-                            return highlights;
-                        }
-                    });
-                }
-            });
-            return aggregateResult(implNameHighlight, visitChildren(ctx));
-        }
-
-        @Override
-        public List<Highlight> visitImpl_method(RustParser.Impl_methodContext ctx) {
-            return aggregateResult(highlight(ctx.ident(), METHOD), visitChildren(ctx));
-        }
-    }
 }
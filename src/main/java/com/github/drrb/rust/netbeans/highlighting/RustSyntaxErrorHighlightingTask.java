@@ -19,9 +19,9 @@ package com.github.drrb.rust.netbeans.highlighting;
 import com.github.drrb.rust.netbeans.RustLanguage;
 import com.github.drrb.rust.netbeans.parsing.NetbeansRustParser.NetbeansRustParserResult;
 import com.github.drrb.rust.netbeans.parsing.NetbeansRustParser.SyntaxError;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 import javax.swing.text.Document;
 import org.netbeans.api.editor.mimelookup.MimeRegistration;
@@ -47,7 +47,25 @@ public class RustSyntaxErrorHighlightingTask extends ParserResultTask<NetbeansRu
 
         @Override
         public Collection<? extends SchedulerTask> create(Snapshot snapshot) {
-            return Collections.singleton(new RustSyntaxErrorHighlightingTask());
+            return Arrays.asList(new RustSyntaxErrorHighlightingTask(), new AllBodiesTask());
+        }
+    }
+
+    /**
+     * Highlights the syntax errors in all the function bodies, including the
+     * ones that haven't been parsed yet, once the more important tasks have
+     * run. It uses the same layer, so it replaces what the main task set.
+     */
+    public static class AllBodiesTask extends RustSyntaxErrorHighlightingTask {
+
+        @Override
+        public int getPriority() {
+            return 1000;
+        }
+
+        @Override
+        protected List<SyntaxError> syntaxErrorsIn(NetbeansRustParserResult parseResult) {
+            return parseResult.getSyntaxErrors();
         }
     }
 
@@ -77,9 +95,17 @@ public class RustSyntaxErrorHighlightingTask extends ParserResultTask<NetbeansRu
     public void cancel() {
     }
 
+    /**
+     * Get the syntax errors to highlight. This only parses the function bodies
+     * that were edited, so that highlighting stays quick in big files.
+     */
+    protected List<SyntaxError> syntaxErrorsIn(NetbeansRustParserResult parseResult) {
+        return parseResult.getKnownSyntaxErrors();
+    }
+
     protected List<ErrorDescription> getErrors(NetbeansRustParserResult parseResult, Document document) {
-        List<SyntaxError> syntaxErrors = parseResult.getSyntaxErrors();
-        List<ErrorDescription> errors = new LinkedList<>();
+        List<SyntaxError> syntaxErrors = syntaxErrorsIn(parseResult);
+        List<ErrorDescription> errors = new ArrayList<>(syntaxErrors.size());
         for (SyntaxError syntaxError : syntaxErrors) {
             String message = syntaxError.getMessage();
 
@@ -0,0 +1,233 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.indexing;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.netbeans.modules.parsing.spi.indexing.support.IndexDocument;
+import org.netbeans.modules.parsing.spi.indexing.support.IndexResult;
+import org.openide.filesystems.FileObject;
+
+/**
+ * Reads and writes the annotated fields of one indexed type. The fields are
+ * found by reflection once, when the codec is created, and turned into method
+ * handles that do the conversion to and from strings. After that, reading and
+ * writing items doesn't use reflection.
+ */
+class IndexItemCodec<T> {
+
+    private static final Logger LOGGER = Logger.getLogger(IndexItemCodec.class.getName());
+    private static final MethodHandle TO_STRING;
+    private static final MethodHandle PARSE_INT;
+    private static final MethodHandle INTEGER_VALUE_OF;
+    private static final MethodHandle ENUM_VALUE_OF;
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        try {
+            TO_STRING = lookup.findVirtual(Object.class, "toString", MethodType.methodType(String.class));
+            PARSE_INT = lookup.findStatic(Integer.class, "parseInt", MethodType.methodType(int.class, String.class));
+            INTEGER_VALUE_OF = lookup.findStatic(Integer.class, "valueOf", MethodType.methodType(Integer.class, String.class));
+            ENUM_VALUE_OF = lookup.findStatic(Enum.class, "valueOf", MethodType.methodType(Enum.class, Class.class, String.class));
+        } catch (NoSuchMethodException | IllegalAccessException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    private static final ClassValue<IndexItemCodec<?>> CODECS = new ClassValue<IndexItemCodec<?>>() {
+        @Override
+        protected IndexItemCodec<?> computeValue(Class<?> type) {
+            return create(type);
+        }
+    };
+    private final Class<T> type;
+    private final MethodHandle constructor;
+    private final String[] keys;
+    private final String[] fieldNames;
+    private final MethodHandle[] getters;
+    private final MethodHandle[] setters;
+    private final MethodHandle[] fileSetters;
+
+    private IndexItemCodec(Class<T> type, MethodHandle constructor, String[] keys, String[] fieldNames, MethodHandle[] getters, MethodHandle[] setters, MethodHandle[] fileSetters) {
+        this.type = type;
+        this.constructor = constructor;
+        this.keys = keys;
+        this.fieldNames = fieldNames;
+        this.getters = getters;
+        this.setters = setters;
+        this.fileSetters = fileSetters;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> IndexItemCodec<T> forType(Class<T> type) {
+        return (IndexItemCodec<T>) CODECS.get(type);
+    }
+
+    private static <T> IndexItemCodec<T> create(Class<T> type) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        List<String> keys = new ArrayList<>();
+        List<String> fieldNames = new ArrayList<>();
+        List<MethodHandle> getters = new ArrayList<>();
+        List<MethodHandle> setters = new ArrayList<>();
+        List<MethodHandle> fileSetters = new ArrayList<>();
+        try {
+            for (Field field : type.getDeclaredFields()) {
+                if (field.isAnnotationPresent(IndexedString.class)) {
+                    field.setAccessible(true);
+                    keys.add(field.getAnnotation(IndexedString.class).value());
+                    fieldNames.add(field.getName());
+                    getters.add(MethodHandles.filterReturnValue(
+                            lookup.unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class)),
+                            TO_STRING));
+                    setters.add(MethodHandles.filterArguments(lookup.unreflectSetter(field), 1, parserFor(field))
+                            .asType(MethodType.methodType(void.class, Object.class, String.class)));
+                } else if (field.isAnnotationPresent(IndexedFile.class)) {
+                    field.setAccessible(true);
+                    fileSetters.add(lookup.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, FileObject.class)));
+                }
+            }
+            Constructor<T> noArgConstructor = type.getDeclaredConstructor();
+            noArgConstructor.setAccessible(true);
+            MethodHandle constructor = lookup.unreflectConstructor(noArgConstructor).asType(MethodType.methodType(Object.class));
+            return new IndexItemCodec<>(type, constructor,
+                    keys.toArray(new String[keys.size()]),
+                    fieldNames.toArray(new String[fieldNames.size()]),
+                    getters.toArray(new MethodHandle[getters.size()]),
+                    setters.toArray(new MethodHandle[setters.size()]),
+                    fileSetters.toArray(new MethodHandle[fileSetters.size()]));
+        } catch (NoSuchMethodException | IllegalAccessException ex) {
+            throw new IllegalArgumentException(String.format("Couldn't make an index codec for class '%s'", type.getName()), ex);
+        }
+    }
+
+    /**
+     * @return a handle that converts an index string to the field's type
+     */
+    private static MethodHandle parserFor(Field field) throws NoSuchMethodException, IllegalAccessException {
+        Class<?> fieldType = field.getType();
+        if (fieldType == String.class) {
+            return MethodHandles.identity(String.class);
+        } else if (fieldType == int.class) {
+            return PARSE_INT;
+        } else if (fieldType == Integer.class) {
+            return INTEGER_VALUE_OF;
+        } else if (fieldType.isEnum()) {
+            return ENUM_VALUE_OF.bindTo(fieldType).asType(MethodType.methodType(fieldType, String.class));
+        } else {
+            throw new IllegalArgumentException(String.format("Couldn't coerce strings to a '%s' (for field '%s')", fieldType.getName(), field.getName()));
+        }
+    }
+
+    String[] getKeys() {
+        return keys.clone();
+    }
+
+    T deserialize(IndexResult indexResult) {
+        String[] values = new String[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = indexResult.getValue(keys[i]);
+        }
+        return read(values, indexResult.getFile());
+    }
+
+    /**
+     * Read all the objects from a document that multiple objects were
+     * written to. The nth value of each field belongs to the nth object.
+     */
+    List<T> deserializeAll(IndexResult indexResult) {
+        String[][] valuesByKey = new String[keys.length][];
+        int objectCount = keys.length == 0 ? 1 : Integer.MAX_VALUE;
+        for (int i = 0; i < keys.length; i++) {
+            String[] values = indexResult.getValues(keys[i]);
+            valuesByKey[i] = values == null ? new String[0] : values;
+            objectCount = Math.min(objectCount, valuesByKey[i].length);
+        }
+        FileObject file = indexResult.getFile();
+        List<T> objects = new ArrayList<>(objectCount);
+        String[] values = new String[keys.length];
+        for (int i = 0; i < objectCount; i++) {
+            for (int k = 0; k < keys.length; k++) {
+                values[k] = valuesByKey[k][i];
+            }
+            objects.add(read(values, file));
+        }
+        return objects;
+    }
+
+    /**
+     * @param values the string values of the object's fields, in the order of
+     * the keys
+     */
+    T read(String[] values, FileObject file) {
+        Object object = instantiate();
+        for (int i = 0; i < setters.length; i++) {
+            try {
+                setters[i].invokeExact(object, values[i]);
+            } catch (Throwable ex) {
+                throw failure(String.format("Couldn't deserialize class '%s' from index. (Couldn't set value of field '%s' to '%s')", type.getName(), fieldNames[i], values[i]), ex);
+            }
+        }
+        for (MethodHandle fileSetter : fileSetters) {
+            try {
+                fileSetter.invokeExact(object, file);
+            } catch (Throwable ex) {
+                throw failure(String.format("Couldn't deserialize class '%s' from index. (Couldn't set file to '%s')", type.getName(), file), ex);
+            }
+        }
+        return type.cast(object);
+    }
+
+    void serialize(IndexDocument document, T object) {
+        for (int i = 0; i < getters.length; i++) {
+            String value = write(object, i);
+            if (LOGGER.isLoggable(Level.FINEST)) {
+                LOGGER.log(Level.FINEST, "Adding ''{0}'' = ''{1}'' to index", new Object[]{keys[i], value});
+            }
+            document.addPair(keys[i], value, true, true);
+        }
+    }
+
+    private String write(Object object, int field) {
+        try {
+            return (String) getters[field].invokeExact(object);
+        } catch (Throwable ex) {
+            throw failure(String.format("Couldn't serialize class '%s' to index. (Couldn't get value of field '%s')", type.getName(), fieldNames[field]), ex);
+        }
+    }
+
+    private Object instantiate() {
+        try {
+            return (Object) constructor.invokeExact();
+        } catch (Throwable ex) {
+            throw failure(String.format("Couldn't deserialize class '%s'. (Couldn't instantiate class)", type.getName()), ex);
+        }
+    }
+
+    private static RuntimeException failure(String message, Throwable cause) {
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new RuntimeException(message, cause);
+    }
+}
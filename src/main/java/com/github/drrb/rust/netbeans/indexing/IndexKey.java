@@ -21,8 +21,8 @@ package com.github.drrb.rust.netbeans.indexing;
  */
 public enum IndexKey {
 
-    STRUCT_NAME(IndexedRustStruct.INDEX_KEY_STRUCT_NAME),
-    STRUCT_NAME_LOWERCASE(IndexedRustStruct.INDEX_KEY_STRUCT_NAME_LOWERCASE);
+    SYMBOL_NAME(IndexedRustSymbol.INDEX_KEY_SYMBOL_NAME),
+    SYMBOL_NAME_LOWERCASE(IndexedRustSymbol.INDEX_KEY_SYMBOL_NAME_LOWERCASE);
     private final String key;
 
     private IndexKey(String key) {
@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.indexing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+import org.openide.filesystems.FileLock;
+import org.openide.filesystems.FileObject;
+
+/**
+ * Digests of the contents of an index's files, as they were when they were
+ * last indexed. They're kept in a properties file in the index's folder, so
+ * that files whose timestamps changed but whose contents didn't (e.g. after
+ * switching branches) aren't analyzed again: their stored documents are put
+ * back in the index instead.
+ */
+class IndexedFileDigests {
+
+    private static final String NAME = "digests";
+    private static final String EXTENSION = "properties";
+    static final String FILE_NAME = NAME + "." + EXTENSION;
+    private static final String TEMP_FILE_NAME = FILE_NAME + ".tmp";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private final FileObject folder;
+    private final Properties digests = new Properties();
+    private volatile boolean modified;
+
+    private IndexedFileDigests(FileObject folder) {
+        this.folder = folder;
+    }
+
+    /**
+     * @return digests with nothing in them, that will replace any saved in the
+     * folder (or never be saved, if the folder is null)
+     */
+    static IndexedFileDigests empty(FileObject folder) {
+        IndexedFileDigests fileDigests = new IndexedFileDigests(folder);
+        fileDigests.modified = true;
+        return fileDigests;
+    }
+
+    /**
+     * @return the digests saved in the folder, or no digests if there aren't
+     * any saved there
+     */
+    static IndexedFileDigests load(FileObject folder) throws IOException {
+        IndexedFileDigests fileDigests = new IndexedFileDigests(folder);
+        FileObject file = folder == null ? null : folder.getFileObject(FILE_NAME);
+        if (file != null) {
+            try (InputStream in = file.getInputStream()) {
+                fileDigests.digests.load(in);
+            }
+        }
+        return fileDigests;
+    }
+
+    boolean matches(String path, String digest) {
+        return digest.equals(digests.getProperty(path));
+    }
+
+    void put(String path, String digest) {
+        Object oldDigest = digests.setProperty(path, digest);
+        if (!digest.equals(oldDigest)) {
+            modified = true;
+        }
+    }
+
+    void remove(String path) {
+        if (digests.remove(path) != null) {
+            modified = true;
+        }
+    }
+
+    /**
+     * Write the digests to the folder, if they've changed. They're written to
+     * a temporary file first, which is renamed once it's complete, so a crash
+     * while saving leaves either the old digests or none (which means that
+     * every file is indexed again), never half of them.
+     */
+    void save() throws IOException {
+        if (!modified || folder == null) {
+            return;
+        }
+        FileObject tempFile = folder.getFileObject(TEMP_FILE_NAME);
+        if (tempFile == null) {
+            tempFile = folder.createData(TEMP_FILE_NAME);
+        }
+        try (OutputStream out = tempFile.getOutputStream()) {
+            digests.store(out, null);
+        }
+        FileObject oldFile = folder.getFileObject(FILE_NAME);
+        if (oldFile != null) {
+            oldFile.delete();
+        }
+        FileLock lock = tempFile.lock();
+        try {
+            tempFile.rename(lock, NAME, EXTENSION);
+        } finally {
+            lock.releaseLock();
+        }
+        modified = false;
+    }
+
+    /**
+     * Delete the saved digests, so that every file is indexed again next time.
+     */
+    void delete() throws IOException {
+        FileObject file = folder == null ? null : folder.getFileObject(FILE_NAME);
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    static String digestOf(CharSequence text) {
+        MessageDigest sha1 = sha1();
+        byte[] buffer = new byte[Math.min(text.length(), BUFFER_SIZE) * 2];
+        for (int start = 0; start < text.length(); start += BUFFER_SIZE) {
+            int end = Math.min(start + BUFFER_SIZE, text.length());
+            int length = 0;
+            for (int i = start; i < end; i++) {
+                char character = text.charAt(i);
+                buffer[length++] = (byte) (character >> 8);
+                buffer[length++] = (byte) character;
+            }
+            sha1.update(buffer, 0, length);
+        }
+        return toHex(sha1.digest());
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-1 should always be available", ex);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xf];
+        }
+        return new String(hex);
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.indexing;
+
+import com.github.drrb.rust.netbeans.parsing.index.RustEnum;
+import com.github.drrb.rust.netbeans.parsing.index.RustFunction;
+import com.github.drrb.rust.netbeans.parsing.index.RustImpl;
+import com.github.drrb.rust.netbeans.parsing.index.RustImplMethod;
+import com.github.drrb.rust.netbeans.parsing.index.RustSourceIndex;
+import com.github.drrb.rust.netbeans.parsing.index.RustStruct;
+import com.github.drrb.rust.netbeans.parsing.index.RustStructField;
+import com.github.drrb.rust.netbeans.parsing.index.RustTrait;
+import com.github.drrb.rust.netbeans.parsing.index.RustTraitImpl;
+import java.util.ArrayList;
+import java.util.List;
+import org.netbeans.modules.csl.api.OffsetRange;
+import org.openide.filesystems.FileObject;
+
+/**
+ * A named item in the project-wide index, tagged with what kind of item it
+ * is.
+ */
+public class IndexedRustSymbol {
+
+    protected static final String INDEX_KEY_SYMBOL_NAME = "symbol-name";
+    protected static final String INDEX_KEY_SYMBOL_NAME_LOWERCASE = "symbol-name-lowercase";
+    @IndexedString(INDEX_KEY_SYMBOL_NAME)
+    protected String name;
+    @IndexedString(INDEX_KEY_SYMBOL_NAME_LOWERCASE)
+    protected String lowercaseName;
+    @IndexedString("symbol-kind")
+    protected RustSymbolKind kind;
+    @IndexedString("symbol-container")
+    protected String container;
+    @IndexedString("symbol-offset-start")
+    protected int offsetStart;
+    @IndexedString("symbol-offset-end")
+    protected int offsetEnd;
+    @IndexedFile
+    protected FileObject file;
+
+    public IndexedRustSymbol() {
+    }
+
+    /**
+     * @param container the name of the item that the symbol's in (e.g. the
+     * struct that a field is in), or an empty string for top-level items
+     */
+    IndexedRustSymbol(String name, RustSymbolKind kind, String container, OffsetRange offsetRange) {
+        this(name, kind, container, offsetRange.getStart(), offsetRange.getEnd(), null);
+    }
+
+    IndexedRustSymbol(String name, RustSymbolKind kind, String container, int offsetStart, int offsetEnd, FileObject file) {
+        this.name = name;
+        this.lowercaseName = name.toLowerCase();
+        this.kind = kind;
+        this.container = container;
+        this.offsetStart = offsetStart;
+        this.offsetEnd = offsetEnd;
+        this.file = file;
+    }
+
+    /**
+     * Get the symbols to index from a file's index. Items that don't have a
+     * name yet (because they're still being typed) are left out.
+     */
+    static List<IndexedRustSymbol> symbolsIn(RustSourceIndex index) {
+        List<IndexedRustSymbol> symbols = new ArrayList<>();
+        for (RustStruct struct : index.getStructs()) {
+            add(symbols, struct.getName(), RustSymbolKind.STRUCT, "", struct.getOffsetRange());
+            if (struct.getName() != null && struct.getBody() != null) {
+                for (RustStructField field : struct.getBody().getFields()) {
+                    add(symbols, field.getName(), RustSymbolKind.STRUCT_FIELD, struct.getName(), field.getOffsetRange());
+                }
+            }
+        }
+        for (RustEnum rustEnum : index.getEnums()) {
+            add(symbols, rustEnum.getName(), RustSymbolKind.ENUM, "", rustEnum.getOffsetRange());
+        }
+        for (RustTrait trait : index.getTraits()) {
+            add(symbols, trait.getName(), RustSymbolKind.TRAIT, "", trait.getOffsetRange());
+        }
+        for (RustFunction function : index.getFunctions()) {
+            add(symbols, function.getName(), RustSymbolKind.FUNCTION, "", function.getOffsetRange());
+        }
+        for (RustImpl impl : index.getImpls()) {
+            for (RustImplMethod method : impl.getBody().getMethods()) {
+                add(symbols, method.getName(), RustSymbolKind.IMPL_METHOD, impl.getName(), method.getOffsetRange());
+            }
+        }
+        for (RustTraitImpl traitImpl : index.getTraitImpls()) {
+            add(symbols, traitImpl.getName(), RustSymbolKind.TRAIT_IMPL, "", traitImpl.getOffsetRange());
+            for (RustImplMethod method : traitImpl.getBody().getMethods()) {
+                add(symbols, method.getName(), RustSymbolKind.IMPL_METHOD, traitImpl.getName(), method.getOffsetRange());
+            }
+        }
+        return symbols;
+    }
+
+    private static void add(List<IndexedRustSymbol> symbols, String name, RustSymbolKind kind, String container, OffsetRange offsetRange) {
+        if (name != null && offsetRange != null) {
+            symbols.add(new IndexedRustSymbol(name, kind, container, offsetRange));
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public RustSymbolKind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the name of the item that the symbol's in, or null if it's a
+     * top-level item
+     */
+    public String getContainer() {
+        return container == null || container.isEmpty() ? null : container;
+    }
+
+    public OffsetRange getOffsetRange() {
+        return new OffsetRange(offsetStart, offsetEnd);
+    }
+
+    public FileObject getFile() {
+        return file;
+    }
+}
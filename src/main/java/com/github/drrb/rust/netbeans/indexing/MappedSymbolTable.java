@@ -0,0 +1,304 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.indexing;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.netbeans.modules.parsing.spi.indexing.support.QuerySupport;
+import org.openide.filesystems.FileObject;
+
+/**
+ * The symbols in a source root, in a file written by
+ * {@link SymbolTableBuilder} and memory-mapped for searching. Symbols are
+ * sorted by name, ignoring case, so the symbols that a query could match can be
+ * found with a binary search, and names are compared in the mapped file, so
+ * the only objects made by a search are the symbols it finds.
+ *
+ * The file is laid out as:
+ * <ul>
+ * <li>a header: magic number, format version, symbol count, file count, and
+ * string pool size (in chars)</li>
+ * <li>a record for each symbol, in order: name (start and length in the
+ * string pool), container (same), file number, kind, offset start and offset
+ * end</li>
+ * <li>a record for each file: its path relative to the root (start and length
+ * in the string pool)</li>
+ * <li>the string pool, as UTF-16 chars</li>
+ * </ul>
+ */
+class MappedSymbolTable {
+
+    static final int MAGIC = 0x52535442;
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 5 * 4;
+    static final int SYMBOL_RECORD_SIZE = 8 * 4;
+    static final int FILE_RECORD_SIZE = 2 * 4;
+    private static final RustSymbolKind[] KINDS = RustSymbolKind.values();
+    private final File file;
+    private final ByteBuffer buffer;
+    private final int symbolCount;
+    private final int fileCount;
+    private final int filesPosition;
+    private final int stringsPosition;
+    private final long lastModified;
+    private final AtomicReferenceArray<FileObject> files;
+
+    private MappedSymbolTable(File file, ByteBuffer buffer, long lastModified) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        this.lastModified = lastModified;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Not a symbol table, or written by a different version");
+        }
+        this.symbolCount = buffer.getInt(8);
+        this.fileCount = buffer.getInt(12);
+        int stringsLength = buffer.getInt(16);
+        this.filesPosition = HEADER_SIZE + symbolCount * SYMBOL_RECORD_SIZE;
+        this.stringsPosition = filesPosition + fileCount * FILE_RECORD_SIZE;
+        if (symbolCount < 0 || fileCount < 0 || stringsLength < 0 || (long) stringsPosition + stringsLength * 2L != buffer.capacity()) {
+            throw new IOException("Symbol table is corrupt");
+        }
+        this.files = new AtomicReferenceArray<>(fileCount);
+    }
+
+    static MappedSymbolTable open(File file) throws IOException {
+        long lastModified = file.lastModified();
+        try (RandomAccessFile openFile = new RandomAccessFile(file, "r")) {
+            FileChannel channel = openFile.getChannel();
+            //The mapping stays valid after the channel's closed
+            return new MappedSymbolTable(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), lastModified);
+        }
+    }
+
+    /**
+     * Read a table into memory, without mapping it (e.g. to copy it into the
+     * next version of the table). On Windows, a mapped file can't be deleted
+     * until the mapping's been garbage collected.
+     */
+    static MappedSymbolTable read(File file) throws IOException {
+        long lastModified = file.lastModified();
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel channel = in.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Symbol table is too big: " + file);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Symbol table is truncated: " + file);
+                }
+            }
+            return new MappedSymbolTable(file, buffer, lastModified);
+        }
+    }
+
+    /**
+     * @return false if it's a different file, or the file has been replaced
+     * since it was opened
+     */
+    boolean isSameFileAs(File file) {
+        return file.equals(this.file) && file.lastModified() == lastModified && file.length() == buffer.capacity();
+    }
+
+    int size() {
+        return symbolCount;
+    }
+
+    /**
+     * Find the symbols with matching names.
+     *
+     * @param typesOnly only find structs, enums and traits
+     * @param root the source root that the table's files are in
+     * @param results where to put the symbols found
+     */
+    void find(String query, QuerySupport.Kind searchType, boolean typesOnly, FileObject root, Collection<? super IndexedRustSymbol> results) {
+        SymbolNameMatcher nameMatcher = SymbolNameMatcher.create(query, searchType);
+        String prefix = prefixOf(query, searchType);
+        int symbol = firstSymbolStartingWith(prefix);
+        if (symbol >= symbolCount || !nameStartsWith(symbol, prefix)) {
+            return;
+        }
+        Name name = new Name();
+        for (; symbol < symbolCount && nameStartsWith(symbol, prefix); symbol++) {
+            int record = recordPosition(symbol);
+            if (typesOnly && !KINDS[buffer.getInt(record + 20)].isType()) {
+                continue;
+            }
+            name.set(buffer.getInt(record), buffer.getInt(record + 4));
+            if (nameMatcher.matches(name)) {
+                FileObject file = getFile(root, buffer.getInt(record + 16));
+                if (file != null) {
+                    results.add(symbolAt(record, file));
+                }
+            }
+        }
+    }
+
+    /**
+     * Add the symbols to a builder, except the ones in some files (e.g. the
+     * ones being updated).
+     */
+    void copyTo(SymbolTableBuilder builder, Set<String> excludedFiles) {
+        String[] paths = new String[fileCount];
+        for (int fileNumber = 0; fileNumber < fileCount; fileNumber++) {
+            String path = getFilePath(fileNumber);
+            paths[fileNumber] = excludedFiles.contains(path) ? null : path;
+        }
+        for (int symbol = 0; symbol < symbolCount; symbol++) {
+            int record = recordPosition(symbol);
+            String path = paths[buffer.getInt(record + 16)];
+            if (path != null) {
+                builder.add(path, symbolAt(record, null));
+            }
+        }
+    }
+
+    /**
+     * Get the part of the query that all matching names must start with
+     * (ignoring case).
+     */
+    private static String prefixOf(String query, QuerySupport.Kind searchType) {
+        switch (searchType) {
+            case EXACT:
+            case PREFIX:
+            case CASE_INSENSITIVE_PREFIX:
+                return query;
+            case CAMEL_CASE:
+                return query.isEmpty() ? "" : query.substring(0, 1);
+            default:
+                return "";
+        }
+    }
+
+    private int firstSymbolStartingWith(String prefix) {
+        int low = 0;
+        int high = symbolCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareNameTo(middle, prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compare a symbol's name to a prefix, ignoring case, as if the name were
+     * cut off at the prefix's length.
+     */
+    private int compareNameTo(int symbol, String prefix) {
+        int record = recordPosition(symbol);
+        int nameStart = stringsPosition + buffer.getInt(record) * 2;
+        int nameLength = buffer.getInt(record + 4);
+        int length = Math.min(nameLength, prefix.length());
+        for (int i = 0; i < length; i++) {
+            char nameChar = Character.toLowerCase(buffer.getChar(nameStart + i * 2));
+            char prefixChar = Character.toLowerCase(prefix.charAt(i));
+            if (nameChar != prefixChar) {
+                return nameChar - prefixChar;
+            }
+        }
+        return nameLength < prefix.length() ? -1 : 0;
+    }
+
+    private boolean nameStartsWith(int symbol, String prefix) {
+        return compareNameTo(symbol, prefix) == 0;
+    }
+
+    private IndexedRustSymbol symbolAt(int record, FileObject file) {
+        String name = getString(buffer.getInt(record), buffer.getInt(record + 4));
+        String container = getString(buffer.getInt(record + 8), buffer.getInt(record + 12));
+        RustSymbolKind kind = KINDS[buffer.getInt(record + 20)];
+        return new IndexedRustSymbol(name, kind, container, buffer.getInt(record + 24), buffer.getInt(record + 28), file);
+    }
+
+    /**
+     * Get a file in the root, which is looked up the first time it's needed
+     * and remembered until it's deleted.
+     *
+     * @return the file, or null if it doesn't exist anymore
+     */
+    private FileObject getFile(FileObject root, int fileNumber) {
+        FileObject file = files.get(fileNumber);
+        if (file == null || !file.isValid()) {
+            file = root.getFileObject(getFilePath(fileNumber));
+            files.set(fileNumber, file);
+        }
+        return file;
+    }
+
+    private String getFilePath(int fileNumber) {
+        int record = filesPosition + fileNumber * FILE_RECORD_SIZE;
+        return getString(buffer.getInt(record), buffer.getInt(record + 4));
+    }
+
+    private String getString(int start, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = buffer.getChar(stringsPosition + (start + i) * 2);
+        }
+        return new String(chars);
+    }
+
+    private int recordPosition(int symbol) {
+        return HEADER_SIZE + symbol * SYMBOL_RECORD_SIZE;
+    }
+
+    /**
+     * A name in the string pool, read in place, so that it can be matched
+     * without copying it.
+     */
+    private class Name implements CharSequence {
+
+        private int start;
+        private int length;
+
+        void set(int start, int length) {
+            this.start = start;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return buffer.getChar(stringsPosition + (start + index) * 2);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return getString(start, length);
+        }
+    }
+}
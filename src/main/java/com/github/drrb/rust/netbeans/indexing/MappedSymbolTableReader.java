@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.indexing;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import org.netbeans.modules.parsing.spi.indexing.support.QuerySupport;
+import org.openide.filesystems.FileObject;
+
+/**
+ * Finds symbols in the roots' symbol tables, instead of querying the index.
+ */
+class MappedSymbolTableReader extends RustIndexReader {
+
+    private final Map<FileObject, MappedSymbolTable> tables;
+
+    MappedSymbolTableReader(QuerySupport querySupport, Map<FileObject, MappedSymbolTable> tables) {
+        super(querySupport);
+        this.tables = tables;
+    }
+
+    @Override
+    public Collection<IndexedRustSymbol> findSymbolsByName(String query, QuerySupport.Kind searchType) {
+        return find(query, searchType, false);
+    }
+
+    @Override
+    public Collection<IndexedRustSymbol> findTypesByName(String query, QuerySupport.Kind searchType) {
+        return find(query, searchType, true);
+    }
+
+    private Collection<IndexedRustSymbol> find(String query, QuerySupport.Kind searchType, boolean typesOnly) {
+        List<IndexedRustSymbol> symbols = new ArrayList<>();
+        for (Map.Entry<FileObject, MappedSymbolTable> rootTable : tables.entrySet()) {
+            rootTable.getValue().find(query, searchType, typesOnly, rootTable.getKey(), symbols);
+        }
+        return symbols;
+    }
+}
@@ -19,8 +19,14 @@ package com.github.drrb.rust.netbeans.indexing;
 import com.github.drrb.rust.netbeans.util.Lists;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 import org.netbeans.api.project.Project;
 import org.netbeans.modules.parsing.spi.indexing.Context;
+import org.netbeans.modules.parsing.spi.indexing.Indexable;
+import org.netbeans.modules.parsing.spi.indexing.support.IndexResult;
 import org.netbeans.modules.parsing.spi.indexing.support.IndexingSupport;
 import org.netbeans.modules.parsing.spi.indexing.support.QuerySupport;
 import org.openide.filesystems.FileObject;
@@ -31,7 +37,178 @@ import org.openide.util.Exceptions;
  */
 public class RustIndex {
 
-    public RustIndexWriter createIndexWriter(Context context) {
+    private final Map<Context, RustIndexWriter> indexWriters = new WeakHashMap<>();
+    private final Map<Context, IndexedFileDigests> fileDigests = new WeakHashMap<>();
+    private final Map<Context, SymbolTableUpdate> symbolTableUpdates = new WeakHashMap<>();
+    private final Map<Context, QuerySupport> querySupports = new WeakHashMap<>();
+    private final IndexItemSerializer serializer = new IndexItemSerializer();
+    private final SymbolTables symbolTables;
+
+    public RustIndex() {
+        this(SymbolTables.getDefault());
+    }
+
+    RustIndex(SymbolTables symbolTables) {
+        this.symbolTables = symbolTables;
+    }
+
+    /**
+     * Get the writer for an indexing context. The writer's created the first
+     * time it's asked for, and reused for every file indexed in the context,
+     * until {@link #scanFinished(Context)} is called.
+     */
+    public synchronized RustIndexWriter getIndexWriter(Context context) {
+        RustIndexWriter indexWriter = indexWriters.get(context);
+        if (indexWriter == null) {
+            indexWriter = createIndexWriter(context);
+            indexWriters.put(context, indexWriter);
+        }
+        return indexWriter;
+    }
+
+    /**
+     * @return true if the file was indexed with the same contents (i.e. with
+     * the same digest) last time, so it doesn't need to be indexed again
+     */
+    public boolean isUpToDate(Context context, Indexable file, String digest) {
+        return getFileDigests(context).matches(file.getRelativePath(), digest);
+    }
+
+    /**
+     * Get the symbols that were written to the index for a file the last time
+     * it was indexed.
+     *
+     * @return the file's symbols, or null if its document isn't in the index
+     */
+    public List<IndexedRustSymbol> getStoredSymbols(Context context, Indexable file) {
+        QuerySupport querySupport = getQuerySupport(context);
+        if (querySupport == null) {
+            return null;
+        }
+        try {
+            for (IndexResult result : querySupport.query(RustIndexWriter.INDEX_KEY_FILE_PATH, file.getRelativePath(), QuerySupport.Kind.EXACT, serializer.getKeys(IndexedRustSymbol.class))) {
+                return serializer.deserializeAll(result, IndexedRustSymbol.class);
+            }
+        } catch (IOException ex) {
+            Exceptions.printStackTrace(ex);
+        }
+        return null;
+    }
+
+    /**
+     * Remember the digest of a file's contents after it's been indexed, and
+     * put its symbols in the root's symbol table.
+     */
+    public void setIndexed(Context context, Indexable file, String digest, Collection<IndexedRustSymbol> symbols) {
+        getFileDigests(context).put(file.getRelativePath(), digest);
+        getSymbolTableUpdate(context).setSymbols(file.getRelativePath(), symbols);
+    }
+
+    public void removeFiles(Context context, Iterable<? extends Indexable> files) {
+        RustIndexWriter indexWriter = getIndexWriter(context);
+        IndexedFileDigests digests = getFileDigests(context);
+        SymbolTableUpdate symbolTableUpdate = getSymbolTableUpdate(context);
+        for (Indexable file : files) {
+            indexWriter.remove(file);
+            digests.remove(file.getRelativePath());
+            symbolTableUpdate.remove(file.getRelativePath());
+        }
+    }
+
+    public void markFilesDirty(Context context, Iterable<? extends Indexable> files) {
+        RustIndexWriter indexWriter = getIndexWriter(context);
+        IndexedFileDigests digests = getFileDigests(context);
+        for (Indexable file : files) {
+            indexWriter.markDirty(file);
+            digests.remove(file.getRelativePath());
+        }
+    }
+
+    /**
+     * Forget the context's writer, and save the digests of the files indexed
+     * in it and the root's symbol table. If the scan was cancelled, the saved
+     * digests and the symbol table are deleted instead, because we can't tell
+     * which of the files' documents were stored.
+     */
+    public synchronized void scanFinished(Context context) {
+        indexWriters.remove(context);
+        querySupports.remove(context);
+        IndexedFileDigests digests = fileDigests.remove(context);
+        SymbolTableUpdate symbolTableUpdate = symbolTableUpdates.remove(context);
+        if (digests != null) {
+            try {
+                if (context.isCancelled()) {
+                    digests.delete();
+                } else {
+                    digests.save();
+                }
+            } catch (IOException ex) {
+                Exceptions.printStackTrace(ex);
+            }
+        }
+        if (symbolTableUpdate != null) {
+            try {
+                symbolTables.finishUpdate(symbolTableUpdate, context.isCancelled());
+            } catch (IOException ex) {
+                Exceptions.printStackTrace(ex);
+            }
+        }
+    }
+
+    /**
+     * Get the digests of the files in a context's index. When every file's
+     * being indexed (e.g. the first time a root is indexed), the saved digests
+     * are ignored, because the index has probably been cleared. Files changed
+     * in the editor are always indexed, and their digests aren't saved,
+     * because their documents aren't kept.
+     */
+    private synchronized IndexedFileDigests getFileDigests(Context context) {
+        IndexedFileDigests digests = fileDigests.get(context);
+        if (digests == null) {
+            digests = loadFileDigests(context);
+            fileDigests.put(context, digests);
+        }
+        return digests;
+    }
+
+    private synchronized SymbolTableUpdate getSymbolTableUpdate(Context context) {
+        SymbolTableUpdate symbolTableUpdate = symbolTableUpdates.get(context);
+        if (symbolTableUpdate == null) {
+            symbolTableUpdate = symbolTables.startUpdate(context);
+            symbolTableUpdates.put(context, symbolTableUpdate);
+        }
+        return symbolTableUpdate;
+    }
+
+    private synchronized QuerySupport getQuerySupport(Context context) {
+        QuerySupport querySupport = querySupports.get(context);
+        if (querySupport == null && context.getRoot() != null) {
+            try {
+                querySupport = QuerySupport.forRoots(RustIndexer.NAME, RustIndexer.VERSION, context.getRoot());
+                querySupports.put(context, querySupport);
+            } catch (IOException ex) {
+                Exceptions.printStackTrace(ex);
+            }
+        }
+        return querySupport;
+    }
+
+    private IndexedFileDigests loadFileDigests(Context context) {
+        if (context.checkForEditorModifications()) {
+            return IndexedFileDigests.empty(null);
+        }
+        if (context.isAllFilesIndexing()) {
+            return IndexedFileDigests.empty(context.getIndexFolder());
+        }
+        try {
+            return IndexedFileDigests.load(context.getIndexFolder());
+        } catch (IOException ex) {
+            Exceptions.printStackTrace(ex);
+            return IndexedFileDigests.empty(context.getIndexFolder());
+        }
+    }
+
+    private RustIndexWriter createIndexWriter(Context context) {
         try {
             return new RustIndexWriter(IndexingSupport.getInstance(context));
         } catch (IOException ex) {
@@ -40,11 +217,24 @@ public class RustIndex {
         }
     }
 
+    /**
+     * Create a reader for a project's index. If every root in the project has
+     * a symbol table, the reader finds symbols in them, instead of querying
+     * the index.
+     */
     public RustIndexReader createIndexReader(Project project) {
         try {
             Collection<FileObject> roots = QuerySupport.findRoots(project, null, null, null);
             QuerySupport querySupport = QuerySupport.forRoots(RustIndexer.NAME, RustIndexer.VERSION, Lists.toArray(roots, FileObject.class));
-            return new RustIndexReader(querySupport);
+            Map<FileObject, MappedSymbolTable> tables = new LinkedHashMap<>();
+            for (FileObject root : roots) {
+                MappedSymbolTable table = symbolTables.open(root);
+                if (table == null) {
+                    return new RustIndexReader(querySupport);
+                }
+                tables.put(root, table);
+            }
+            return new MappedSymbolTableReader(querySupport, tables);
         } catch (IOException ex) {
             Exceptions.printStackTrace(ex);
             return RustIndexReader.EMPTY;
@@ -17,9 +17,9 @@
 package com.github.drrb.rust.netbeans.indexing;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -47,14 +47,38 @@ public class RustIndexReader {
         this.serializer = new IndexItemSerializer();
     }
 
-    public Collection<IndexedRustStruct> findStructsByName(String query, QuerySupport.Kind searchType) {
-        IndexKey indexKey = searchType == QuerySupport.Kind.CASE_INSENSITIVE_PREFIX ? IndexKey.STRUCT_NAME_LOWERCASE : IndexKey.STRUCT_NAME;
-        List<IndexedRustStruct> structs = new LinkedList<>();
-        Collection<? extends IndexResult> queryResults = performQuery(indexKey, query, searchType, serializer.getKeys(IndexedRustStruct.class));
+    /**
+     * Find the symbols with matching names. Each file's symbols are in one
+     * document, so the query finds the files that have a matching symbol, and
+     * then the symbols in them that don't match are left out.
+     */
+    public Collection<IndexedRustSymbol> findSymbolsByName(String query, QuerySupport.Kind searchType) {
+        IndexKey indexKey = searchType == QuerySupport.Kind.CASE_INSENSITIVE_PREFIX ? IndexKey.SYMBOL_NAME_LOWERCASE : IndexKey.SYMBOL_NAME;
+        Collection<? extends IndexResult> queryResults = performQuery(indexKey, query, searchType, serializer.getKeys(IndexedRustSymbol.class));
+        SymbolNameMatcher nameMatcher = SymbolNameMatcher.create(query, searchType);
+        List<IndexedRustSymbol> symbols = new ArrayList<>(queryResults.size());
         for (IndexResult result : queryResults) {
-            structs.add(serializer.deserialize(result, IndexedRustStruct.class));
+            for (IndexedRustSymbol symbol : serializer.deserializeAll(result, IndexedRustSymbol.class)) {
+                if (nameMatcher.matches(symbol.getName())) {
+                    symbols.add(symbol);
+                }
+            }
         }
-        return structs;
+        return symbols;
+    }
+
+    /**
+     * Find the structs, enums and traits with matching names.
+     */
+    public Collection<IndexedRustSymbol> findTypesByName(String query, QuerySupport.Kind searchType) {
+        Collection<IndexedRustSymbol> symbols = findSymbolsByName(query, searchType);
+        List<IndexedRustSymbol> types = new ArrayList<>(symbols.size());
+        for (IndexedRustSymbol symbol : symbols) {
+            if (symbol.getKind().isType()) {
+                types.add(symbol);
+            }
+        }
+        return types;
     }
 
     public Collection<? extends IndexResult> performQuery(IndexKey indexKey, String textForQuery, QuerySupport.Kind searchType, String... fieldsToLoad) {
@@ -17,13 +17,9 @@
 package com.github.drrb.rust.netbeans.indexing;
 
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 import org.netbeans.api.project.Project;
-import org.netbeans.modules.csl.api.ElementKind;
 import org.netbeans.modules.csl.api.IndexSearcher;
 import org.netbeans.modules.parsing.spi.indexing.support.QuerySupport;
 
@@ -32,7 +28,6 @@ import org.netbeans.modules.parsing.spi.indexing.support.QuerySupport;
  */
 public class RustIndexSearcher implements IndexSearcher {
 
-    private static final Logger LOGGER = Logger.getLogger(RustIndexSearcher.class.getName());
     private final RustIndex index;
 
     public RustIndexSearcher(RustIndex index) {
@@ -42,17 +37,20 @@ public class RustIndexSearcher implements IndexSearcher {
     @Override
     public Set<? extends IndexSearcher.Descriptor> getTypes(Project project, String textForQuery, QuerySupport.Kind searchType, IndexSearcher.Helper helper) {
         RustIndexReader indexReader = index.createIndexReader(project);
-        Collection<IndexedRustStruct> structs = indexReader.findStructsByName(textForQuery, searchType);
-        Set<RustIndexSearchResult> results = new HashSet<>(structs.size());
-        for (IndexedRustStruct struct : structs) {
-            results.add(new RustIndexSearchResult(struct.getName(), struct.getModule(), ElementKind.CLASS, struct.getOffsetRange(), struct.getFile(), project));
-        }
-        return results;
+        return searchResults(indexReader.findTypesByName(textForQuery, searchType), project);
     }
 
     @Override
     public Set<? extends IndexSearcher.Descriptor> getSymbols(Project project, String textForQuery, QuerySupport.Kind searchType, IndexSearcher.Helper helper) {
-        LOGGER.log(Level.WARNING, "RustIndexSearcher.getSymbols()");
-        return Collections.emptySet();
+        RustIndexReader indexReader = index.createIndexReader(project);
+        return searchResults(indexReader.findSymbolsByName(textForQuery, searchType), project);
+    }
+
+    private Set<RustIndexSearchResult> searchResults(Collection<IndexedRustSymbol> symbols, Project project) {
+        Set<RustIndexSearchResult> results = new HashSet<>(symbols.size());
+        for (IndexedRustSymbol symbol : symbols) {
+            results.add(new RustIndexSearchResult(symbol.getName(), symbol.getContainer(), symbol.getKind().getElementKind(), symbol.getOffsetRange(), symbol.getFile(), project));
+        }
+        return results;
     }
 }
@@ -16,8 +16,8 @@
  */
 package com.github.drrb.rust.netbeans.indexing;
 
-import com.github.drrb.rust.netbeans.parsing.index.RustStruct;
 import java.io.IOException;
+import java.util.Collection;
 import org.netbeans.modules.parsing.spi.indexing.Indexable;
 import org.netbeans.modules.parsing.spi.indexing.support.IndexDocument;
 import org.netbeans.modules.parsing.spi.indexing.support.IndexingSupport;
@@ -27,9 +27,22 @@ import org.netbeans.modules.parsing.spi.indexing.support.IndexingSupport;
  */
 public class RustIndexWriter {
 
+    /**
+     * The key of the file's path in its document, so that the document can be
+     * found again.
+     */
+    static final String INDEX_KEY_FILE_PATH = "file-path";
     public static final RustIndexWriter NO_OP = new RustIndexWriter(null) {
         @Override
-        public void write(Indexable file, RustStruct struct) throws IOException {
+        public void write(Indexable file, Collection<IndexedRustSymbol> symbols) throws IOException {
+        }
+
+        @Override
+        public void remove(Indexable file) {
+        }
+
+        @Override
+        public void markDirty(Indexable file) {
         }
     };
     private final IndexingSupport indexingSupport;
@@ -40,10 +53,31 @@ public class RustIndexWriter {
         this.serializer = new IndexItemSerializer();
     }
 
-    public void write(Indexable file, RustStruct struct) throws IOException {
+    /**
+     * Write a file's symbols to the index, as one document. Each of the
+     * document's fields has a value for each symbol, in the same order.
+     */
+    public void write(Indexable file, Collection<IndexedRustSymbol> symbols) throws IOException {
         IndexDocument document = indexingSupport.createDocument(file);
-        IndexedRustStruct indexedStruct = new IndexedRustStruct(struct);
-        serializer.serialize(document, indexedStruct);
+        document.addPair(INDEX_KEY_FILE_PATH, file.getRelativePath(), true, false);
+        for (IndexedRustSymbol symbol : symbols) {
+            serializer.serialize(document, symbol);
+        }
         indexingSupport.addDocument(document);
     }
+
+    /**
+     * Remove a file's symbols from the index (e.g. because it's been deleted).
+     */
+    public void remove(Indexable file) {
+        indexingSupport.removeDocuments(file);
+    }
+
+    /**
+     * Mark a file's symbols as out of date (e.g. because it's been changed in
+     * the editor), so that it gets indexed again before the index is queried.
+     */
+    public void markDirty(Indexable file) {
+        indexingSupport.markDirtyDocuments(file);
+    }
 }
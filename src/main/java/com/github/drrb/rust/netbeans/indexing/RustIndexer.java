@@ -18,7 +18,6 @@ package com.github.drrb.rust.netbeans.indexing;
 
 import com.github.drrb.rust.netbeans.parsing.NetbeansRustParser.NetbeansRustParserResult;
 import com.github.drrb.rust.netbeans.parsing.index.RustSourceIndex;
-import com.github.drrb.rust.netbeans.parsing.index.RustStruct;
 import java.io.IOException;
 import java.util.List;
 import java.util.logging.Level;
@@ -37,7 +36,12 @@ import org.openide.util.Exceptions;
 public class RustIndexer extends EmbeddingIndexer {
 
     public static final String NAME = "rust";
-    public static final int VERSION = 0;
+    /**
+     * The version of what's written to the index. Bump this whenever it
+     * changes, so that existing indexes (and the digests saved with them) are
+     * thrown away and rebuilt.
+     */
+    public static final int VERSION = 3;
     private final RustIndex index;
 
     public RustIndexer(RustIndex index) {
@@ -47,15 +51,25 @@ public class RustIndexer extends EmbeddingIndexer {
 
     @Override
     protected void index(Indexable indexable, Parser.Result parserResult, Context context) {
-        LOGGER.log(Level.INFO, "RustIndexer.index({0})", indexable.getRelativePath());
+        LOGGER.log(Level.FINE, "RustIndexer.index({0})", indexable.getRelativePath());
         try {
-            RustIndexWriter indexWriter = index.createIndexWriter(context);
-            NetbeansRustParserResult parseResult = (NetbeansRustParserResult) parserResult;
-            RustSourceIndex index = parseResult.getIndex();
-            List<RustStruct> structs = index.getStructs();
-            for (RustStruct struct : structs) {
-                indexWriter.write(indexable, struct);
+            String digest = IndexedFileDigests.digestOf(parserResult.getSnapshot().getText());
+            RustIndexWriter indexWriter = index.getIndexWriter(context);
+            if (index.isUpToDate(context, indexable, digest)) {
+                //The infrastructure removes the documents of every file that
+                //it gives us to index, so put the stored one back
+                List<IndexedRustSymbol> storedSymbols = index.getStoredSymbols(context, indexable);
+                if (storedSymbols != null) {
+                    LOGGER.log(Level.FINE, "{0} hasn''t changed since it was indexed", indexable.getRelativePath());
+                    indexWriter.write(indexable, storedSymbols);
+                    return;
+                }
             }
+            NetbeansRustParserResult parseResult = (NetbeansRustParserResult) parserResult;
+            RustSourceIndex sourceIndex = parseResult.getIndex();
+            List<IndexedRustSymbol> symbols = IndexedRustSymbol.symbolsIn(sourceIndex);
+            indexWriter.write(indexable, symbols);
+            index.setIndexed(context, indexable, digest, symbols);
         } catch (IOException ex) {
             Exceptions.printStackTrace(ex);
         }
@@ -64,20 +78,29 @@ public class RustIndexer extends EmbeddingIndexer {
     public static class Factory extends EmbeddingIndexerFactory {
 
         private static final Logger LOGGER = Logger.getLogger(Factory.class.getName());
+        private final RustIndex index = new RustIndex();
 
         @Override
         public EmbeddingIndexer createIndexer(Indexable indexable, Snapshot snapshot) {
-            return new RustIndexer(new RustIndex());
+            return new RustIndexer(index);
+        }
+
+        @Override
+        public void scanFinished(Context context) {
+            index.scanFinished(context);
+            super.scanFinished(context);
         }
 
         @Override
         public void filesDeleted(Iterable<? extends Indexable> deletedIndexables, Context context) {
-            LOGGER.log(Level.WARNING, "filesDeleted({0})", deletedIndexables);
+            LOGGER.log(Level.FINE, "filesDeleted({0})", deletedIndexables);
+            index.removeFiles(context, deletedIndexables);
         }
 
         @Override
         public void filesDirty(Iterable<? extends Indexable> dirty, Context context) {
-            LOGGER.log(Level.WARNING, "filesDirty({0})", dirty);
+            LOGGER.log(Level.FINE, "filesDirty({0})", dirty);
+            index.markFilesDirty(context, dirty);
         }
 
         @Override
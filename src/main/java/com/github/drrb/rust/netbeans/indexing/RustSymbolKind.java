@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.indexing;
+
+import org.netbeans.modules.csl.api.ElementKind;
+
+/**
+ * The kinds of item that are indexed for the whole project.
+ */
+public enum RustSymbolKind {
+
+    STRUCT(ElementKind.CLASS, true),
+    ENUM(ElementKind.CLASS, true),
+    TRAIT(ElementKind.INTERFACE, true),
+    FUNCTION(ElementKind.METHOD, false),
+    TRAIT_IMPL(ElementKind.CLASS, false),
+    IMPL_METHOD(ElementKind.METHOD, false),
+    STRUCT_FIELD(ElementKind.FIELD, false);
+    private final ElementKind elementKind;
+    private final boolean type;
+
+    private RustSymbolKind(ElementKind elementKind, boolean type) {
+        this.elementKind = elementKind;
+        this.type = type;
+    }
+
+    public ElementKind getElementKind() {
+        return elementKind;
+    }
+
+    /**
+     * @return whether symbols of this kind should be found by "Go to Type"
+     */
+    public boolean isType() {
+        return type;
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.indexing;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.netbeans.modules.parsing.spi.indexing.support.QuerySupport;
+
+/**
+ * Matches names the way an index query would, to pick out the symbols that a
+ * query matched from the other symbols in the same document. A matcher reuses
+ * its regex matcher for every name, so it shouldn't be shared between threads.
+ */
+class SymbolNameMatcher {
+
+    private final Matcher matcher;
+
+    private SymbolNameMatcher(Pattern pattern) {
+        this.matcher = pattern.matcher("");
+    }
+
+    static SymbolNameMatcher create(String query, QuerySupport.Kind searchType) {
+        switch (searchType) {
+            case EXACT:
+                return new SymbolNameMatcher(Pattern.compile(Pattern.quote(query)));
+            case PREFIX:
+                return new SymbolNameMatcher(Pattern.compile(Pattern.quote(query) + ".*", Pattern.DOTALL));
+            case CASE_INSENSITIVE_PREFIX:
+                return new SymbolNameMatcher(Pattern.compile(Pattern.quote(query) + ".*", Pattern.DOTALL | Pattern.CASE_INSENSITIVE));
+            case CAMEL_CASE:
+                return new SymbolNameMatcher(Pattern.compile(camelCaseRegex(query), Pattern.DOTALL));
+            case REGEXP:
+                return new SymbolNameMatcher(Pattern.compile(query));
+            case CASE_INSENSITIVE_REGEXP:
+                return new SymbolNameMatcher(Pattern.compile(query, Pattern.CASE_INSENSITIVE));
+            default:
+                //Trust the index to have matched the document's symbols
+                return new SymbolNameMatcher(Pattern.compile(".*", Pattern.DOTALL));
+        }
+    }
+
+    /**
+     * Make a regex that matches names with the query's humps, e.g. "PoSt"
+     * matches "PointStruct".
+     */
+    private static String camelCaseRegex(String query) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < query.length(); i++) {
+            char character = query.charAt(i);
+            if (i > 0 && Character.isUpperCase(character)) {
+                regex.append("[^\\p{Upper}]*");
+            }
+            regex.append(Pattern.quote(String.valueOf(character)));
+        }
+        return regex.append(".*").toString();
+    }
+
+    boolean matches(CharSequence name) {
+        return name != null && matcher.reset(name).matches();
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.indexing;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the symbols in a source root and writes them to a file, to be read
+ * by {@link MappedSymbolTable}.
+ */
+class SymbolTableBuilder {
+
+    private static final Comparator<Entry> BY_NAME = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry entry, Entry otherEntry) {
+            int comparison = compareIgnoringCase(entry.symbol.getName(), otherEntry.symbol.getName());
+            return comparison == 0 ? entry.symbol.getName().compareTo(otherEntry.symbol.getName()) : comparison;
+        }
+    };
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<String, Integer> fileNumbers = new HashMap<>();
+    private final List<String> files = new ArrayList<>();
+
+    void add(String path, Collection<IndexedRustSymbol> symbols) {
+        for (IndexedRustSymbol symbol : symbols) {
+            add(path, symbol);
+        }
+    }
+
+    void add(String path, IndexedRustSymbol symbol) {
+        Integer fileNumber = fileNumbers.get(path);
+        if (fileNumber == null) {
+            fileNumber = files.size();
+            fileNumbers.put(path, fileNumber);
+            files.add(path);
+        }
+        entries.add(new Entry(symbol, fileNumber));
+    }
+
+    /**
+     * Write the symbols to a file. They're written to a temporary file first,
+     * which is flushed to disk and then moved over the old file, so a crash
+     * while writing leaves the old file as it was.
+     */
+    void write(File file) throws IOException {
+        Collections.sort(entries, BY_NAME);
+        StringPool strings = new StringPool();
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(tempFile)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            int[] filePositions = new int[files.size()];
+            for (int i = 0; i < files.size(); i++) {
+                filePositions[i] = strings.add(files.get(i));
+            }
+            int[] symbolPositions = new int[entries.size() * 2];
+            for (int i = 0; i < entries.size(); i++) {
+                IndexedRustSymbol symbol = entries.get(i).symbol;
+                symbolPositions[i * 2] = strings.add(symbol.getName());
+                symbolPositions[i * 2 + 1] = strings.add(symbol.container == null ? "" : symbol.container);
+            }
+            out.writeInt(MappedSymbolTable.MAGIC);
+            out.writeInt(MappedSymbolTable.FORMAT_VERSION);
+            out.writeInt(entries.size());
+            out.writeInt(files.size());
+            out.writeInt(strings.length());
+            for (int i = 0; i < entries.size(); i++) {
+                Entry entry = entries.get(i);
+                out.writeInt(symbolPositions[i * 2]);
+                out.writeInt(entry.symbol.getName().length());
+                out.writeInt(symbolPositions[i * 2 + 1]);
+                out.writeInt(entry.symbol.container == null ? 0 : entry.symbol.container.length());
+                out.writeInt(entry.fileNumber);
+                out.writeInt(entry.symbol.getKind().ordinal());
+                out.writeInt(entry.symbol.offsetStart);
+                out.writeInt(entry.symbol.offsetEnd);
+            }
+            for (int i = 0; i < files.size(); i++) {
+                out.writeInt(filePositions[i]);
+                out.writeInt(files.get(i).length());
+            }
+            out.writeChars(strings.toString());
+            out.flush();
+            fileOut.getFD().sync();
+        } catch (IOException ex) {
+            tempFile.delete();
+            throw ex;
+        }
+        try {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Compare names char by char, ignoring case, the way
+     * {@link MappedSymbolTable} compares them when it's searching.
+     */
+    static int compareIgnoringCase(String name, String otherName) {
+        int length = Math.min(name.length(), otherName.length());
+        for (int i = 0; i < length; i++) {
+            char nameChar = Character.toLowerCase(name.charAt(i));
+            char otherNameChar = Character.toLowerCase(otherName.charAt(i));
+            if (nameChar != otherNameChar) {
+                return nameChar - otherNameChar;
+            }
+        }
+        return name.length() - otherName.length();
+    }
+
+    private static class Entry {
+
+        final IndexedRustSymbol symbol;
+        final int fileNumber;
+
+        Entry(IndexedRustSymbol symbol, int fileNumber) {
+            this.symbol = symbol;
+            this.fileNumber = fileNumber;
+        }
+    }
+
+    /**
+     * The strings in the table, each stored once.
+     */
+    private static class StringPool {
+
+        private final StringBuilder chars = new StringBuilder();
+        private final Map<String, Integer> positions = new HashMap<>();
+
+        int add(String string) {
+            Integer position = positions.get(string);
+            if (position == null) {
+                position = chars.length();
+                chars.append(string);
+                positions.put(string, position);
+            }
+            return position;
+        }
+
+        int length() {
+            return chars.length();
+        }
+
+        @Override
+        public String toString() {
+            return chars.toString();
+        }
+    }
+}
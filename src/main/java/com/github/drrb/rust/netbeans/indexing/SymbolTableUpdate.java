@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.indexing;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The changes to a source root's symbol table made while its files are being
+ * indexed, which are written to the table when the scan's finished.
+ *
+ * A table is only updated if it already has every file's symbols: the
+ * indexer's only given the files that have changed, so if there's no table
+ * when it starts, it waits until every file in the root is indexed to write
+ * one. Until then, searches use the index instead.
+ *
+ * The updated table is written to a new file (the next version of the table),
+ * rather than over the old one, because the old one might be mapped by a
+ * search, and a mapped file can't be replaced on Windows.
+ */
+class SymbolTableUpdate {
+
+    static final SymbolTableUpdate NONE = new SymbolTableUpdate(null, null, false) {
+        @Override
+        void setSymbols(String path, Collection<IndexedRustSymbol> symbols) {
+        }
+
+        @Override
+        void remove(String path) {
+        }
+
+        @Override
+        void apply() {
+        }
+
+        @Override
+        void discard() {
+        }
+    };
+    private final File tableFile;
+    private final File newTableFile;
+    private final boolean rebuild;
+    private final Map<String, Collection<IndexedRustSymbol>> updatedFiles = new HashMap<>();
+    private final Set<String> changedFiles = new HashSet<>();
+
+    /**
+     * @param tableFile the current version of the table, or null if there
+     * isn't one
+     * @param newTableFile where to write the next version of the table
+     * @param rebuild whether every file is being indexed, so the table can be
+     * written from scratch
+     */
+    SymbolTableUpdate(File tableFile, File newTableFile, boolean rebuild) {
+        this.tableFile = tableFile;
+        this.newTableFile = newTableFile;
+        this.rebuild = rebuild;
+    }
+
+    File getNewTableFile() {
+        return newTableFile;
+    }
+
+    synchronized void setSymbols(String path, Collection<IndexedRustSymbol> symbols) {
+        updatedFiles.put(path, symbols);
+        changedFiles.add(path);
+    }
+
+    synchronized void remove(String path) {
+        updatedFiles.remove(path);
+        changedFiles.add(path);
+    }
+
+    synchronized void apply() throws IOException {
+        if (!rebuild && (changedFiles.isEmpty() || !hasTable())) {
+            return;
+        }
+        SymbolTableBuilder builder = new SymbolTableBuilder();
+        if (!rebuild) {
+            MappedSymbolTable.read(tableFile).copyTo(builder, changedFiles);
+        }
+        for (Map.Entry<String, Collection<IndexedRustSymbol>> updatedFile : updatedFiles.entrySet()) {
+            builder.add(updatedFile.getKey(), updatedFile.getValue());
+        }
+        builder.write(newTableFile);
+    }
+
+    /**
+     * Get rid of the table, e.g. because the scan was cancelled and it can't
+     * be brought up to date. The next version is an empty file, which means
+     * that there's no table. Searches use the index until it's rebuilt.
+     */
+    void discard() throws IOException {
+        if (hasTable() && !newTableFile.createNewFile()) {
+            throw new IOException("Couldn't replace symbol table " + tableFile);
+        }
+    }
+
+    private boolean hasTable() {
+        return tableFile != null && tableFile.length() > 0;
+    }
+}
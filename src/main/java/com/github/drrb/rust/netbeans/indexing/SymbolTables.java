@@ -0,0 +1,217 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.indexing;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.netbeans.modules.parsing.spi.indexing.Context;
+import org.openide.filesystems.FileObject;
+import org.openide.modules.Places;
+
+/**
+ * The symbol tables of the indexed source roots. Each root's table is in its
+ * own file in the IDE's cache folder, and is mapped the first time it's
+ * searched, then again only if it's been replaced.
+ *
+ * The files are named after a digest of the root's URL and a version number.
+ * An update writes the next version instead of replacing the file, because a
+ * mapped file can't be replaced or deleted on Windows until the mapping's
+ * been garbage collected. Older versions are deleted later, once they can be.
+ * An empty file means that the root has no table.
+ */
+class SymbolTables {
+
+    private static final Logger LOGGER = Logger.getLogger(SymbolTables.class.getName());
+    private static final String CACHE_FOLDER = "rust/symbols/" + RustIndexer.VERSION;
+    private static final String EXTENSION = ".symbols";
+    private static final SymbolTables DEFAULT = new SymbolTables(null);
+    private final Map<String, MappedSymbolTable> openTables = new HashMap<>();
+    private File folder;
+
+    /**
+     * @param folder where to keep the tables, or null to keep them in the
+     * IDE's cache folder
+     */
+    SymbolTables(File folder) {
+        this.folder = folder;
+    }
+
+    static SymbolTables getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Start updating a root's table while it's being indexed. Changes made in
+     * the editor aren't put in the table, so it has the files as they're
+     * saved, like the index does once the changes are dropped.
+     */
+    synchronized SymbolTableUpdate startUpdate(Context context) {
+        if (context.checkForEditorModifications()) {
+            return SymbolTableUpdate.NONE;
+        }
+        String tableName = tableNameFor(context.getRootURI());
+        List<File> versions = versionsOf(tableName);
+        File tableFile = versions.isEmpty() ? null : versions.get(versions.size() - 1);
+        long nextVersion = tableFile == null ? 1 : versionOf(tableName, tableFile) + 1;
+        return new SymbolTableUpdate(tableFile, tableFile(tableName, nextVersion), context.isAllFilesIndexing());
+    }
+
+    /**
+     * Write a root's updated table when its scan's finished, or get rid of it
+     * if the scan was cancelled.
+     */
+    void finishUpdate(SymbolTableUpdate update, boolean cancelled) throws IOException {
+        try {
+            if (cancelled) {
+                update.discard();
+            } else {
+                update.apply();
+            }
+        } finally {
+            File newTableFile = update.getNewTableFile();
+            if (newTableFile != null) {
+                synchronized (this) {
+                    String tableName = tableNameOf(newTableFile);
+                    openTables.remove(tableName);
+                    deleteOldVersions(tableName);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the root's table, or null if it hasn't got one (yet)
+     */
+    synchronized MappedSymbolTable open(FileObject root) {
+        String tableName = tableNameFor(root.toURL());
+        List<File> versions = versionsOf(tableName);
+        File tableFile = versions.isEmpty() ? null : versions.get(versions.size() - 1);
+        if (tableFile == null || tableFile.length() == 0) {
+            openTables.remove(tableName);
+            if (tableFile != null) {
+                deleteOldVersions(tableName);
+            }
+            return null;
+        }
+        MappedSymbolTable table = openTables.get(tableName);
+        if (table == null || !table.isSameFileAs(tableFile)) {
+            try {
+                table = MappedSymbolTable.open(tableFile);
+                openTables.put(tableName, table);
+            } catch (IOException ex) {
+                LOGGER.log(Level.INFO, "Couldn't open symbol table for " + root, ex);
+                openTables.remove(tableName);
+                return null;
+            }
+        }
+        if (versions.size() > 1) {
+            deleteOldVersions(tableName);
+        }
+        return table;
+    }
+
+    /**
+     * Delete the versions of a table that have been replaced. The ones that
+     * are still mapped somewhere might not be deletable yet (on Windows), so
+     * they're left for next time.
+     */
+    private void deleteOldVersions(String tableName) {
+        List<File> versions = versionsOf(tableName);
+        if (versions.isEmpty()) {
+            return;
+        }
+        boolean deletedAll = true;
+        for (File oldVersion : versions.subList(0, versions.size() - 1)) {
+            if (!oldVersion.delete()) {
+                LOGGER.log(Level.FINE, "Couldn''t delete old symbol table {0} yet", oldVersion);
+                deletedAll = false;
+            }
+        }
+        //An empty table is only there to hide the older ones
+        File newestVersion = versions.get(versions.size() - 1);
+        if (deletedAll && newestVersion.length() == 0) {
+            newestVersion.delete();
+        }
+    }
+
+    /**
+     * @return the files of a table's versions, oldest first
+     */
+    private List<File> versionsOf(final String tableName) {
+        File[] files = getFolder().listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File folder, String name) {
+                return name.startsWith(tableName + ".") && name.endsWith(EXTENSION) && versionOf(tableName, name) > 0;
+            }
+        });
+        List<File> versions = files == null ? new ArrayList<File>() : new ArrayList<>(Arrays.asList(files));
+        Collections.sort(versions, new Comparator<File>() {
+            @Override
+            public int compare(File file, File otherFile) {
+                return Long.compare(versionOf(tableName, file), versionOf(tableName, otherFile));
+            }
+        });
+        return versions;
+    }
+
+    private static long versionOf(String tableName, File tableFile) {
+        return versionOf(tableName, tableFile.getName());
+    }
+
+    /**
+     * @return the version in a table's file name, or -1 if it isn't one of
+     * the table's files
+     */
+    private static long versionOf(String tableName, String fileName) {
+        try {
+            return Long.parseLong(fileName.substring(tableName.length() + 1, fileName.length() - EXTENSION.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException ex) {
+            return -1;
+        }
+    }
+
+    private static String tableNameOf(File tableFile) {
+        String fileName = tableFile.getName();
+        return fileName.substring(0, fileName.indexOf('.'));
+    }
+
+    private File tableFile(String tableName, long version) {
+        return new File(getFolder(), tableName + "." + version + EXTENSION);
+    }
+
+    private static String tableNameFor(URL root) {
+        return IndexedFileDigests.digestOf(root.toExternalForm());
+    }
+
+    private synchronized File getFolder() {
+        if (folder == null) {
+            folder = Places.getCacheSubdirectory(CACHE_FOLDER);
+        }
+        return folder;
+    }
+}
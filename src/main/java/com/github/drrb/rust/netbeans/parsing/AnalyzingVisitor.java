@@ -0,0 +1,211 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing;
+
+import com.github.drrb.rust.netbeans.parsing.ast.RustAst;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstDocComment;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstEnum;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstFunction;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstIdent;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstImpl;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstImplMethod;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstPath;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstStruct;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstTrait;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstTraitImpl;
+import com.github.drrb.rust.netbeans.parsing.index.IndexingVisitor;
+import com.github.drrb.rust.netbeans.parsing.index.RustSourceIndex;
+import com.github.drrb.rust.netbeans.parsing.index.SymbolTable;
+import com.github.drrb.rust.netbeans.structure.RustStructureItem;
+import com.github.drrb.rust.netbeans.util.Lists;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.netbeans.api.editor.fold.FoldType;
+import org.netbeans.modules.csl.api.ColoringAttributes;
+import static org.netbeans.modules.csl.api.ColoringAttributes.CLASS_SET;
+import static org.netbeans.modules.csl.api.ElementKind.CLASS;
+import static org.netbeans.modules.csl.api.ElementKind.FIELD;
+import static org.netbeans.modules.csl.api.ElementKind.INTERFACE;
+import static org.netbeans.modules.csl.api.ElementKind.METHOD;
+import static org.netbeans.modules.csl.api.Modifier.STATIC;
+import org.netbeans.modules.csl.api.OffsetRange;
+import org.netbeans.modules.csl.api.StructureItem;
+
+/**
+ * Indexes the AST, and collects the semantic highlights, folds and structure
+ * items on the way, so that the editor features don't each need their own
+ * walk over it.
+ */
+class AnalyzingVisitor extends IndexingVisitor {
+
+    private static final String CODEBLOCKS_FOLD_TYPE = FoldType.CODE_BLOCK.code();
+    private static final String DOC_COMMENTS_FOLD_TYPE = FoldType.DOCUMENTATION.code();
+    private final Map<OffsetRange, Set<ColoringAttributes>> highlights = new HashMap<>();
+    private final Map<String, List<OffsetRange>> folds = new HashMap<>();
+    private final List<StructureItem> structureItems = new ArrayList<>();
+    private int functionDepth;
+
+    AnalyzingVisitor(SymbolTable symbols) {
+        super(symbols);
+    }
+
+    RustAnalysis getAnalysis(RustSourceIndex index) {
+        for (Map.Entry<String, List<OffsetRange>> foldsOfType : folds.entrySet()) {
+            foldsOfType.setValue(Lists.freeze(foldsOfType.getValue()));
+        }
+        return new RustAnalysis(index, highlights, folds, Lists.freeze(structureItems));
+    }
+
+    @Override
+    public RustSourceIndex visitAst(RustAst ast) {
+        for (RustAstDocComment docComment : ast.getDocComments()) {
+            if (docComment.getText().contains("\n")) { //Don't fold single line comments
+                fold(DOC_COMMENTS_FOLD_TYPE, docComment.getOffsetRange());
+            }
+        }
+        return super.visitAst(ast);
+    }
+
+    @Override
+    public RustSourceIndex visitFunction(RustAstFunction function) {
+        //Items inside functions aren't highlighted
+        if (functionDepth == 0) {
+            highlight(function.getName(), ColoringAttributes.METHOD);
+        }
+        fold(CODEBLOCKS_FOLD_TYPE, function.getBodyOffsetRange());
+        structureItems.add(new RustStructureItem(nameOf(function.getName()), function.getOffsetRange(), METHOD, EnumSet.of(STATIC)));
+        functionDepth++;
+        try {
+            return super.visitFunction(function);
+        } finally {
+            functionDepth--;
+        }
+    }
+
+    @Override
+    public RustSourceIndex visitStruct(RustAstStruct struct) {
+        if (functionDepth == 0) {
+            highlight(struct.getName(), ColoringAttributes.CLASS);
+            highlight(struct.getFieldNames(), ColoringAttributes.FIELD);
+        }
+        fold(CODEBLOCKS_FOLD_TYPE, struct.getBodyOffsetRange());
+        RustStructureItem structItem = new RustStructureItem(nameOf(struct.getName()), struct.getOffsetRange(), CLASS);
+        for (RustAstIdent fieldName : struct.getFieldNames()) {
+            structItem.addNestedItem(new RustStructureItem(fieldName.getName(), fieldName.getOffsetRange(), FIELD));
+        }
+        structureItems.add(structItem);
+        return super.visitStruct(struct);
+    }
+
+    @Override
+    public RustSourceIndex visitEnum(RustAstEnum enumItem) {
+        if (functionDepth == 0) {
+            highlight(enumItem.getName(), ColoringAttributes.CLASS);
+            highlight(enumItem.getVariantNames(), ColoringAttributes.ENUM);
+        }
+        fold(CODEBLOCKS_FOLD_TYPE, enumItem.getBodyOffsetRange());
+        return super.visitEnum(enumItem);
+    }
+
+    @Override
+    public RustSourceIndex visitTrait(RustAstTrait trait) {
+        if (functionDepth == 0) {
+            highlight(trait.getName(), ColoringAttributes.CLASS);
+            highlight(trait.getMethodNames(), ColoringAttributes.METHOD);
+        }
+        fold(CODEBLOCKS_FOLD_TYPE, trait.getBodyOffsetRange());
+        structureItems.add(new RustStructureItem(nameOf(trait.getName()), trait.getOffsetRange(), INTERFACE));
+        return super.visitTrait(trait);
+    }
+
+    @Override
+    public RustSourceIndex visitImpl(RustAstImpl impl) {
+        if (functionDepth == 0) {
+            highlightPaths(impl.getTypePaths());
+        }
+        //Impls without a type aren't indexed, so their bodies aren't folded
+        if (!impl.getTypePaths().isEmpty()) {
+            fold(CODEBLOCKS_FOLD_TYPE, impl.getBodyOffsetRange());
+            for (RustAstImplMethod method : impl.getMethods()) {
+                fold(CODEBLOCKS_FOLD_TYPE, method.getBodyOffsetRange());
+            }
+        }
+        return super.visitImpl(impl);
+    }
+
+    @Override
+    public RustSourceIndex visitTraitImpl(RustAstTraitImpl traitImpl) {
+        if (functionDepth == 0) {
+            highlightPaths(traitImpl.getTraitPaths());
+        }
+        if (!traitImpl.getTraitPaths().isEmpty()) {
+            fold(CODEBLOCKS_FOLD_TYPE, traitImpl.getBodyOffsetRange());
+            for (RustAstImplMethod method : traitImpl.getMethods()) {
+                fold(CODEBLOCKS_FOLD_TYPE, method.getBodyOffsetRange());
+            }
+        }
+        return super.visitTraitImpl(traitImpl);
+    }
+
+    @Override
+    public RustSourceIndex visitImplMethod(RustAstImplMethod method) {
+        if (functionDepth == 0) {
+            highlight(method.getName(), ColoringAttributes.METHOD);
+        }
+        return super.visitImplMethod(method);
+    }
+
+    private void highlight(RustAstIdent identifier, ColoringAttributes coloringAttribute) {
+        if (identifier != null) {
+            highlights.put(identifier.getOffsetRange(), EnumSet.of(coloringAttribute));
+        }
+    }
+
+    private void highlight(List<RustAstIdent> identifiers, ColoringAttributes coloringAttribute) {
+        for (RustAstIdent identifier : identifiers) {
+            highlight(identifier, coloringAttribute);
+        }
+    }
+
+    private void highlightPaths(List<RustAstPath> paths) {
+        for (RustAstPath path : paths) {
+            for (RustAstIdent identifier : path.getIdents()) {
+                highlights.put(identifier.getOffsetRange(), CLASS_SET);
+            }
+        }
+    }
+
+    private void fold(String foldType, OffsetRange offsetRange) {
+        //Items that are still being typed might not have a body yet
+        if (offsetRange == null) {
+            return;
+        }
+        List<OffsetRange> foldsOfType = folds.get(foldType);
+        if (foldsOfType == null) {
+            folds.put(foldType, foldsOfType = new ArrayList<>());
+        }
+        foldsOfType.add(offsetRange);
+    }
+
+    private static String nameOf(RustAstIdent ident) {
+        return ident == null ? null : ident.getName();
+    }
+}
@@ -20,28 +20,75 @@ import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.misc.Interval;
 import org.netbeans.spi.lexer.LexerInput;
 
+/**
+ * Adapts NetBeans' LexerInput to ANTLR's CharStream. Characters are read from
+ * the LexerInput once, into a window that keeps everything since the start of
+ * the current token (or the last mark, or the last
+ * {@link #INITIAL_WINDOW_SIZE} characters), so lookahead, lookbehind, seeking
+ * and getting the token's text don't go back to the LexerInput.
+ */
 public class AntlrCharStream implements CharStream {
 
+    private static final int INITIAL_WINDOW_SIZE = 256;
     private final LexerInput input;
     private final String name;
-    private int index = 0;
+    private int[] window = new int[INITIAL_WINDOW_SIZE];
+    /** Index of the oldest character we've still got */
+    private int windowStart;
+    /** Index just after the last character we've read from the input */
+    private int readEnd;
+    /** Index of EOF, or -1 if we haven't read that far */
+    private int eofIndex = -1;
+    private int index;
+    /** Index of the first character of the token being lexed */
+    private int tokenStart;
     private int markDepth = 0;
+    private int markedIndex;
 
     public AntlrCharStream(LexerInput input, String name) {
+        this(input, name, 0);
+    }
+
+    /**
+     * @param startIndex the index to report for the first character of the
+     * input. When NetBeans restarts the lexer in the middle of a document, this
+     * should be non-zero so that predicates that check for the start of the
+     * file (e.g. for shebang lines) don't match.
+     */
+    public AntlrCharStream(LexerInput input, String name, int startIndex) {
         this.input = input;
         this.name = name;
+        this.index = startIndex;
+        this.tokenStart = startIndex;
+        this.windowStart = startIndex;
+        this.readEnd = startIndex;
     }
 
+    /**
+     * Get the text in an interval. Text from the start of the current token on
+     * is always available. Earlier tokens have already been handed to
+     * NetBeans, and if their text has been dropped from the window, asking for
+     * it is an error rather than getting part of it.
+     */
     @Override
     public String getText(Interval interval) {
-        throw new UnsupportedOperationException("Not supported yet.");
+        int start = interval.a;
+        if (start < windowStart) {
+            throw new IllegalArgumentException(String.format("Invalid interval (%s < %s, the start of the buffered input)", start, windowStart));
+        }
+        int stop = interval.b;
+        fillTo(stop);
+        stop = Math.min(stop, readEnd - 1);
+        StringBuilder text = new StringBuilder(Math.max(0, stop - start + 1));
+        for (int i = start; i <= stop; i++) {
+            text.append((char) charAt(i));
+        }
+        return text.toString();
     }
 
     @Override
     public void consume() {
-        int character = read();
-        if (character == EOF) {
-            backup(1);
+        if (LA(1) == EOF) {
             throw new IllegalStateException("Attempting to consume EOF");
         }
         index++;
@@ -50,34 +97,19 @@ public class AntlrCharStream implements CharStream {
     @Override
     public int LA(int lookaheadAmount) {
         if (lookaheadAmount < 0) {
-            return lookBack(-lookaheadAmount);
+            return characterAt(index + lookaheadAmount);
         } else if (lookaheadAmount > 0) {
-            return lookAhead(lookaheadAmount);
+            return characterAt(index + lookaheadAmount - 1);
         } else {
             return 0; //Behaviour is undefined when lookaheadAmount == 0
         }
     }
 
-    private int lookBack(int amount) {
-        backup(amount); //TODO: should this be backup(amount + 1)?
-        int character = read();
-        for (int i = 1; i < amount; i++) {
-            read();
-        }
-        return character;
-    }
-
-    private int lookAhead(int amount) {
-        int character = 0;
-        for (int i = 0; i < amount; i++) {
-            character = read();
-        }
-        backup(amount);
-        return character;
-    }
-
     @Override
     public int mark() {
+        if (markDepth == 0) {
+            markedIndex = index;
+        }
         return ++markDepth;
     }
 
@@ -91,21 +123,11 @@ public class AntlrCharStream implements CharStream {
 
     @Override
     public void seek(int index) {
-        if (index < 0) {
-            throw new IllegalArgumentException(String.format("Invalid index (%s < 0)", index));
-        }
-
-        if (index < this.index) {
-            backup(this.index - index);
-            this.index = index;
-            return;
-        }
-
-        // seek forward, consume until p hits index
-        //TODO: is this actually necessary?
-        while (this.index < index) {
-            consume();
+        if (index < windowStart) {
+            throw new IllegalArgumentException(String.format("Invalid index (%s < %s, the start of the buffered input)", index, windowStart));
         }
+        fillTo(index - 1);
+        this.index = eofIndex == -1 ? index : Math.min(index, eofIndex);
     }
 
     @Override
@@ -113,9 +135,16 @@ public class AntlrCharStream implements CharStream {
         return index;
     }
 
+    /**
+     * Get the size of the input. This reads the rest of the input, which is
+     * put back by {@link #backupLookahead()}.
+     */
     @Override
     public int size() {
-        throw new UnsupportedOperationException("Stream size unknown");
+        while (eofIndex == -1) {
+            fillTo(readEnd);
+        }
+        return eofIndex;
     }
 
     @Override
@@ -123,16 +152,72 @@ public class AntlrCharStream implements CharStream {
         return name;
     }
 
-    private int read() {
-        int result = input.read();
-        if (result == LexerInput.EOF) {
+    /**
+     * Put back any characters that ANTLR looked at beyond the current index,
+     * so that NetBeans' idea of the current token ends where ANTLR's does.
+     * Call this after ANTLR has produced a token, before creating the NetBeans
+     * token.
+     */
+    public void backupLookahead() {
+        int lookahead = readEnd - index;
+        if (lookahead > 0) {
+            input.backup(lookahead);
+            readEnd = index;
+        }
+        if (eofIndex > index) {
+            eofIndex = -1;
+        }
+        tokenStart = index;
+    }
+
+    private int characterAt(int position) {
+        if (position < windowStart) {
+            return EOF;
+        }
+        fillTo(position);
+        if (position >= readEnd) {
             return EOF;
-        } else {
-            return result;
         }
+        return charAt(position);
     }
 
-    private void backup(int count) {
-        input.backup(count);
+    private int charAt(int position) {
+        return window[position & (window.length - 1)];
+    }
+
+    private void fillTo(int position) {
+        while (readEnd <= position && eofIndex == -1) {
+            int character = input.read();
+            if (character == LexerInput.EOF) {
+                input.backup(1);
+                eofIndex = readEnd;
+            } else {
+                append(character);
+            }
+        }
+    }
+
+    private void append(int character) {
+        if (readEnd - windowStart == window.length) {
+            int oldestNeeded = Math.min(tokenStart, index);
+            if (markDepth > 0) {
+                oldestNeeded = Math.min(markedIndex, oldestNeeded);
+            }
+            if (windowStart < oldestNeeded) {
+                windowStart++;
+            } else {
+                growWindow();
+            }
+        }
+        window[readEnd & (window.length - 1)] = character;
+        readEnd++;
+    }
+
+    private void growWindow() {
+        int[] newWindow = new int[window.length * 2];
+        for (int i = windowStart; i < readEnd; i++) {
+            newWindow[i & (newWindow.length - 1)] = charAt(i);
+        }
+        window = newWindow;
     }
 }
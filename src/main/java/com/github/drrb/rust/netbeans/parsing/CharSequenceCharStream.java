@@ -0,0 +1,115 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+/**
+ * A CharStream that reads directly from a CharSequence (e.g. the text of a
+ * Snapshot), rather than copying it into a char array like ANTLRInputStream
+ * does.
+ */
+public class CharSequenceCharStream implements CharStream {
+
+    private final CharSequence text;
+    private final String name;
+    private final int size;
+    private int index = 0;
+
+    public CharSequenceCharStream(CharSequence text, String name) {
+        this.text = text;
+        this.name = name;
+        this.size = text.length();
+    }
+
+    @Override
+    public void consume() {
+        if (index >= size) {
+            throw new IllegalStateException("Attempting to consume EOF");
+        }
+        index++;
+    }
+
+    @Override
+    public int LA(int lookaheadAmount) {
+        if (lookaheadAmount == 0) {
+            return 0; //Behaviour is undefined when lookaheadAmount == 0
+        }
+        int position;
+        if (lookaheadAmount < 0) {
+            position = index + lookaheadAmount;
+        } else {
+            position = index + lookaheadAmount - 1;
+        }
+        if (position < 0 || position >= size) {
+            return EOF;
+        }
+        return text.charAt(position);
+    }
+
+    @Override
+    public int mark() {
+        // The whole text is always available, so there's nothing to hold on to
+        return -1;
+    }
+
+    @Override
+    public void release(int marker) {
+    }
+
+    @Override
+    public int index() {
+        return index;
+    }
+
+    @Override
+    public void seek(int index) {
+        if (index < 0) {
+            throw new IllegalArgumentException(String.format("Invalid index (%s < 0)", index));
+        }
+        this.index = Math.min(index, size);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the text this stream reads, so that parts of it can be kept
+     * without copying them
+     */
+    public CharSequence getSourceText() {
+        return text;
+    }
+
+    @Override
+    public String getSourceName() {
+        return name;
+    }
+
+    @Override
+    public String getText(Interval interval) {
+        int start = interval.a;
+        int stop = Math.min(interval.b, size - 1);
+        if (start >= size || stop < start) {
+            return "";
+        }
+        return text.subSequence(start, stop + 1).toString();
+    }
+}
@@ -0,0 +1,339 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing;
+
+import com.github.drrb.rust.netbeans.parsing.NetbeansRustParser.SyntaxError;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstBlock;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstBodyParser;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstBuilder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTree;
+
+/**
+ * Parses the function bodies that a signature-only parse skipped, when they're
+ * needed (e.g. to find the occurrences of a local variable, or to report
+ * syntax errors). Each body is parsed at most once.
+ *
+ * A body is parsed on its own, up to its closing brace, so what parsing it
+ * finds only depends on its text. That means that the syntax errors in the
+ * bodies that an edit didn't touch can be kept for the next version of the
+ * text (see {@link #forNewText(CharSequence, TextChange)}).
+ */
+class FunctionBodyParser implements RustAstBodyParser {
+
+    private final CharSequence text;
+    private final ConcurrentMap<Integer, ParsedBody> parsedBodies = new ConcurrentHashMap<>();
+    //The syntax errors in bodies that were parsed in an earlier version of
+    //the text, and haven't changed since, by where they are in this text
+    private final Map<Integer, BodySyntax> unchangedBodies;
+    //The part of the text that's different from the earlier version, or -1
+    //if there wasn't one or it's the same
+    private final int changeStart;
+    private final int changeEnd;
+    private volatile int[] lineStarts;
+
+    FunctionBodyParser(CharSequence text) {
+        this(text, Collections.<Integer, BodySyntax>emptyMap(), -1, -1);
+    }
+
+    private FunctionBodyParser(CharSequence text, Map<Integer, BodySyntax> unchangedBodies, int changeStart, int changeEnd) {
+        this.text = text;
+        this.unchangedBodies = unchangedBodies;
+        this.changeStart = changeStart;
+        this.changeEnd = changeEnd;
+    }
+
+    /**
+     * Get a body parser for a new version of this parser's text, which
+     * already knows the syntax errors in the bodies that this one parsed (or
+     * knew about), if they're outside the part of the text that changed.
+     *
+     * @param change where the new text is different from this parser's
+     */
+    FunctionBodyParser forNewText(CharSequence newText, TextChange change) {
+        Map<Integer, BodySyntax> bodies = new HashMap<>();
+        keepUnchanged(unchangedBodies, change.getStart(), change.getOldEnd(), change.getDelta(), bodies);
+        Map<Integer, BodySyntax> parsedHere = new HashMap<>();
+        for (Map.Entry<Integer, ParsedBody> parsedBody : parsedBodies.entrySet()) {
+            parsedHere.put(parsedBody.getKey(), parsedBody.getValue().getSyntax());
+        }
+        keepUnchanged(parsedHere, change.getStart(), change.getOldEnd(), change.getDelta(), bodies);
+        if (change.isEmpty()) {
+            return new FunctionBodyParser(newText, bodies, -1, -1);
+        }
+        return new FunctionBodyParser(newText, bodies, change.getStart(), change.getNewEnd());
+    }
+
+    /**
+     * @return the text that this parser parses bodies in
+     */
+    CharSequence getText() {
+        return text;
+    }
+
+    private static void keepUnchanged(Map<Integer, BodySyntax> bodies, int changeStart, int oldChangeEnd, int delta, Map<Integer, BodySyntax> unchangedBodies) {
+        for (Map.Entry<Integer, BodySyntax> body : bodies.entrySet()) {
+            int start = body.getKey();
+            if (start + body.getValue().getLength() <= changeStart) {
+                unchangedBodies.put(start, body.getValue());
+            } else if (start >= oldChangeEnd) {
+                unchangedBodies.put(start + delta, body.getValue());
+            }
+        }
+    }
+
+    /**
+     * Find the skipped bodies in a signature-only parse tree.
+     *
+     * @return the offsets of the bodies' opening braces, in order
+     */
+    static int[] bodyStartsIn(ParseTree parseTree) {
+        return bodyStartsIn(Collections.singletonList(parseTree));
+    }
+
+    /**
+     * Find the skipped bodies in some consecutive signature-only parse trees.
+     *
+     * @return the offsets of the bodies' opening braces, in order
+     */
+    static int[] bodyStartsIn(List<? extends ParseTree> parseTrees) {
+        List<Integer> bodyStarts = new ArrayList<>();
+        for (ParseTree parseTree : parseTrees) {
+            collectBodyStarts(parseTree, bodyStarts);
+        }
+        int[] result = new int[bodyStarts.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bodyStarts.get(i);
+        }
+        return result;
+    }
+
+    private static void collectBodyStarts(ParseTree tree, List<Integer> bodyStarts) {
+        if (tree instanceof RustParser.Fun_bodyContext && isSkipped((RustParser.Fun_bodyContext) tree)) {
+            bodyStarts.add(((RustParser.Fun_bodyContext) tree).getStart().getStartIndex());
+        } else {
+            //A body that wasn't skipped (because it has items in it) has
+            //already been parsed, but the bodies of the functions in it haven't
+            for (int i = 0; i < tree.getChildCount(); i++) {
+                collectBodyStarts(tree.getChild(i), bodyStarts);
+            }
+        }
+    }
+
+    private static boolean isSkipped(RustParser.Fun_bodyContext body) {
+        Token stop = body.getStop();
+        return stop != null && stop.getTokenIndex() == body.getStart().getTokenIndex() + 1;
+    }
+
+    /**
+     * @return where the text starts being different from the earlier version
+     * that this parser's was made from (see {@link #forNewText(CharSequence, TextChange)}),
+     * or -1 if there wasn't one or it's the same
+     */
+    int getChangeStart() {
+        return changeStart;
+    }
+
+    /**
+     * @return where the text stops being different from the earlier version,
+     * or -1 if there wasn't one or it's the same
+     */
+    int getChangeEnd() {
+        return changeEnd;
+    }
+
+    @Override
+    public RustAstBlock parseBody(int start) {
+        return parse(start).getBlock();
+    }
+
+    /**
+     * Parse the body at the specified offset, or get it if it's already been
+     * parsed.
+     */
+    ParsedBody parse(int start) {
+        ParsedBody parsedBody = parsedBodies.get(start);
+        if (parsedBody == null) {
+            parsedBody = parseUncached(start);
+            ParsedBody parsedAtTheSameTime = parsedBodies.putIfAbsent(start, parsedBody);
+            if (parsedAtTheSameTime != null) {
+                parsedBody = parsedAtTheSameTime;
+            }
+        }
+        return parsedBody;
+    }
+
+    /**
+     * Get what parsing the body at the specified offset found, parsing it if
+     * it hasn't been parsed in this text or an earlier one.
+     */
+    BodySyntax syntaxOf(int start) {
+        BodySyntax syntax = knownSyntaxOf(start);
+        return syntax == null ? parse(start).getSyntax() : syntax;
+    }
+
+    /**
+     * @return what parsing the body at the specified offset found, or null
+     * if it hasn't been parsed in this text or an earlier one
+     */
+    BodySyntax knownSyntaxOf(int start) {
+        ParsedBody parsedBody = parsedBodies.get(start);
+        return parsedBody == null ? unchangedBodies.get(start) : parsedBody.getSyntax();
+    }
+
+    /**
+     * @return the syntax errors that parsing a body found, where they are in
+     * the file
+     */
+    List<SyntaxError> syntaxErrorsIn(int start, BodySyntax syntax) {
+        List<SyntaxError> relativeErrors = syntax.getSyntaxErrors();
+        if (relativeErrors.isEmpty()) {
+            return relativeErrors;
+        }
+        int[] starts = lineStarts();
+        int line = lineAt(starts, start);
+        int charPositionInLine = start - starts[line - 1];
+        List<SyntaxError> syntaxErrors = new ArrayList<>(relativeErrors.size());
+        for (SyntaxError error : relativeErrors) {
+            int errorCharPositionInLine = error.getLine() == 1 ? charPositionInLine + error.getCharPositionInLine() : error.getCharPositionInLine();
+            syntaxErrors.add(new SyntaxError(line + error.getLine() - 1, errorCharPositionInLine, error.getMessage()));
+        }
+        return syntaxErrors;
+    }
+
+    /**
+     * Like a whole file, parse with SLL prediction first, and reparse with LL
+     * prediction to report the syntax errors if that fails.
+     */
+    private ParsedBody parseUncached(int start) {
+        RustParser parser = RustParserPool.acquireForBody(new CharSequenceCharStream(text, "RustParser"), start);
+        try {
+            parser.setErrorHandler(new BailErrorStrategy());
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            try {
+                RustAstBlock block = RustAstBuilder.buildBlock(parser.fun_body());
+                return new ParsedBody(block, new BodySyntax(block.getEnd() - start, Collections.<SyntaxError>emptyList(), PredictionMode.SLL));
+            } catch (ParseCancellationException ex) {
+                final List<SyntaxError> syntaxErrors = new ArrayList<>();
+                parser.reset();
+                parser.addErrorListener(new BaseErrorListener() {
+                    @Override
+                    public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String message, RecognitionException e) {
+                        syntaxErrors.add(new SyntaxError(line, charPositionInLine, message));
+                    }
+                });
+                parser.setErrorHandler(new DefaultErrorStrategy());
+                parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+                RustAstBlock block = RustAstBuilder.buildBlock(parser.fun_body());
+                return new ParsedBody(block, new BodySyntax(block.getEnd() - start, syntaxErrors, PredictionMode.LL));
+            }
+        } finally {
+            RustParserPool.release(parser);
+        }
+    }
+
+    /**
+     * @return the (1-based) line that the offset is on
+     */
+    private static int lineAt(int[] lineStarts, int offset) {
+        int index = Arrays.binarySearch(lineStarts, offset);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    private int[] lineStarts() {
+        int[] result = lineStarts;
+        if (result == null) {
+            List<Integer> starts = new ArrayList<>();
+            starts.add(0);
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) == '\n') {
+                    starts.add(i + 1);
+                }
+            }
+            result = new int[starts.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = starts.get(i);
+            }
+            lineStarts = result;
+        }
+        return result;
+    }
+
+    static class ParsedBody {
+
+        private final RustAstBlock block;
+        private final BodySyntax syntax;
+
+        ParsedBody(RustAstBlock block, BodySyntax syntax) {
+            this.block = block;
+            this.syntax = syntax;
+        }
+
+        RustAstBlock getBlock() {
+            return block;
+        }
+
+        BodySyntax getSyntax() {
+            return syntax;
+        }
+    }
+
+    /**
+     * What parsing a body found, which doesn't depend on where the body is in
+     * the file. The syntax errors' lines and positions in line are relative
+     * to the body's opening brace, which is at line 1, position 0.
+     */
+    static class BodySyntax {
+
+        private final int length;
+        private final List<SyntaxError> syntaxErrors;
+        private final PredictionMode predictionMode;
+
+        BodySyntax(int length, List<SyntaxError> syntaxErrors, PredictionMode predictionMode) {
+            this.length = length;
+            this.syntaxErrors = syntaxErrors;
+            this.predictionMode = predictionMode;
+        }
+
+        int getLength() {
+            return length;
+        }
+
+        List<SyntaxError> getSyntaxErrors() {
+            return syntaxErrors;
+        }
+
+        PredictionMode getPredictionMode() {
+            return predictionMode;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+
+/**
+ * A token source that leaves out what's inside function bodies, for parsing
+ * just the signatures of items. A function body comes out as just its braces,
+ * which the parser sees as an empty body. The braces keep their positions, so
+ * the body still has the right offsets, and can be parsed later on its own.
+ *
+ * A body is the first opening brace after "fn" and the function's name, at the
+ * same depth of brackets. Function types (e.g. {@code fn(int) -> int}) don't
+ * have names, so they aren't mistaken for functions.
+ *
+ * A body with items in it (e.g. a nested function or struct) isn't skipped,
+ * so that the items end up in the AST like the top-level ones. The bodies of
+ * the functions in it are skipped, though.
+ */
+class FunctionBodySkippingTokenSource implements TokenSource {
+
+    private final TokenSource source;
+    //Tokens that have been read from the source, but not handed out yet
+    private final Deque<Token> pending = new ArrayDeque<>();
+    private Token previous;
+    private int depth;
+    //The depth of brackets that the signature of the current function is at,
+    //or -1 if we're not in a function's signature
+    private int signatureDepth = -1;
+
+    FunctionBodySkippingTokenSource(TokenSource source) {
+        this.source = source;
+    }
+
+    TokenSource getSource() {
+        return source;
+    }
+
+    @Override
+    public Token nextToken() {
+        Token token = read();
+        if (token.getChannel() != Token.DEFAULT_CHANNEL) {
+            return token;
+        }
+        switch (token.getType()) {
+            case RustLexer.IDENT:
+                if (signatureDepth == -1 && previous != null && previous.getType() == RustLexer.FN) {
+                    signatureDepth = depth;
+                }
+                break;
+            case RustLexer.LBRACE:
+                if (depth == signatureDepth) {
+                    signatureDepth = -1;
+                    skipBody();
+                }
+                depth++;
+                break;
+            case RustLexer.LPAREN:
+            case RustLexer.LBRACKET:
+                depth++;
+                break;
+            case RustLexer.RPAREN:
+            case RustLexer.RBRACKET:
+            case RustLexer.RBRACE:
+                //Ignore unmatched closing brackets (e.g. when we start
+                //reading just after an opening one)
+                depth = Math.max(0, depth - 1);
+                if (depth < signatureDepth) {
+                    signatureDepth = -1;
+                }
+                break;
+            case RustLexer.SEMI:
+                if (depth == signatureDepth) {
+                    signatureDepth = -1;
+                }
+                break;
+            default:
+        }
+        previous = token;
+        return token;
+    }
+
+    private Token read() {
+        return pending.isEmpty() ? source.nextToken() : pending.removeFirst();
+    }
+
+    /**
+     * Read up to the end of a function body, and leave out what's inside it,
+     * unless there are items in it. Either way, the next token handed out is
+     * the next one that's left in.
+     */
+    private void skipBody() {
+        List<Token> body = new ArrayList<>();
+        boolean hasItems = false;
+        Token previousInBody = null;
+        int bodyDepth = 1;
+        while (true) {
+            Token token = read();
+            body.add(token);
+            if (token.getType() == Token.EOF) {
+                break;
+            }
+            if (token.getChannel() != Token.DEFAULT_CHANNEL) {
+                continue;
+            }
+            hasItems |= startsItem(previousInBody, token);
+            previousInBody = token;
+            if (token.getType() == RustLexer.LBRACE) {
+                bodyDepth++;
+            } else if (token.getType() == RustLexer.RBRACE) {
+                bodyDepth--;
+                if (bodyDepth == 0) {
+                    break;
+                }
+            }
+        }
+        if (hasItems) {
+            for (int i = body.size() - 1; i >= 0; i--) {
+                pending.addFirst(body.get(i));
+            }
+        } else {
+            //Just the closing brace (or EOF, if the body isn't closed)
+            pending.addFirst(body.get(body.size() - 1));
+        }
+    }
+
+    /**
+     * @return whether the token is the start of an item that the AST keeps
+     * (a named function, a struct, an enum, a trait, or an impl)
+     */
+    private static boolean startsItem(Token previous, Token token) {
+        switch (token.getType()) {
+            case RustLexer.IDENT:
+                return previous != null && previous.getType() == RustLexer.FN;
+            case RustLexer.STRUCT:
+            case RustLexer.ENUM:
+            case RustLexer.TRAIT:
+            case RustLexer.IMPL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public int getLine() {
+        return source.getLine();
+    }
+
+    @Override
+    public int getCharPositionInLine() {
+        return source.getCharPositionInLine();
+    }
+
+    @Override
+    public CharStream getInputStream() {
+        return source.getInputStream();
+    }
+
+    @Override
+    public String getSourceName() {
+        return source.getSourceName();
+    }
+
+    @Override
+    public void setTokenFactory(TokenFactory<?> factory) {
+        source.setTokenFactory(factory);
+    }
+
+    @Override
+    public TokenFactory<?> getTokenFactory() {
+        return source.getTokenFactory();
+    }
+}
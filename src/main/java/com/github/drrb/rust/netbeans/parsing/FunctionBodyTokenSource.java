@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.misc.Pair;
+
+/**
+ * A token source that reads one function body, starting at its opening brace,
+ * and ends after the matching closing brace. Parsing a body on its own then
+ * only depends on the body's text, even if it has syntax errors, because the
+ * parser can't read past the end of it while recovering.
+ */
+class FunctionBodyTokenSource implements TokenSource {
+
+    private final TokenSource source;
+    private int depth;
+    private Token eof;
+
+    FunctionBodyTokenSource(TokenSource source) {
+        this.source = source;
+    }
+
+    TokenSource getSource() {
+        return source;
+    }
+
+    @Override
+    public Token nextToken() {
+        if (eof != null) {
+            return eof;
+        }
+        Token token = source.nextToken();
+        if (token.getChannel() != Token.DEFAULT_CHANNEL) {
+            return token;
+        }
+        switch (token.getType()) {
+            case Token.EOF:
+                eof = token;
+                break;
+            case RustLexer.LBRACE:
+                depth++;
+                break;
+            case RustLexer.RBRACE:
+                depth--;
+                if (depth <= 0) {
+                    eof = endOfBodyAfter(token);
+                }
+                break;
+            default:
+        }
+        return token;
+    }
+
+    private Token endOfBodyAfter(Token closingBrace) {
+        int index = closingBrace.getStopIndex() + 1;
+        CommonToken endOfBody = new CommonToken(new Pair<TokenSource, CharStream>(this, getInputStream()), Token.EOF, Token.DEFAULT_CHANNEL, index, index - 1);
+        endOfBody.setLine(closingBrace.getLine());
+        endOfBody.setCharPositionInLine(closingBrace.getCharPositionInLine() + 1);
+        return endOfBody;
+    }
+
+    @Override
+    public int getLine() {
+        return source.getLine();
+    }
+
+    @Override
+    public int getCharPositionInLine() {
+        return source.getCharPositionInLine();
+    }
+
+    @Override
+    public CharStream getInputStream() {
+        return source.getInputStream();
+    }
+
+    @Override
+    public String getSourceName() {
+        return source.getSourceName();
+    }
+
+    @Override
+    public void setTokenFactory(TokenFactory<?> factory) {
+        source.setTokenFactory(factory);
+    }
+
+    @Override
+    public TokenFactory<?> getTokenFactory() {
+        return source.getTokenFactory();
+    }
+}
@@ -0,0 +1,233 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing;
+
+import com.github.drrb.rust.netbeans.parsing.ast.RustAst;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstBodyParser;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+/**
+ * Reparses only the top-level items that an edit touched, and splices them
+ * into the previous parse in place of the old ones.
+ *
+ * The other items are reused from the previous compact AST as they are. The
+ * ones after the edit are moved to where they are in the new text lazily,
+ * each one by the same delta, when they're first asked for (see
+ * {@link RustAst#splice}). Nothing in the previous parse is changed, so the
+ * results that use it stay valid.
+ */
+class ItemReparser {
+
+    private final SignatureParse previous;
+    private final CharSequence text;
+    private final int firstItem;
+    private final int lastItem;
+    private final int regionStart;
+    private final int lexingStart;
+    private final int oldRegionEnd;
+    private final int newRegionEnd;
+    private final int startLine;
+    private final int startCharPositionInLine;
+    private final int offsetDelta;
+
+    private ItemReparser(SignatureParse previous, CharSequence text, int firstItem, int lastItem, int regionStart, int oldRegionEnd) {
+        this.previous = previous;
+        this.text = text;
+        this.firstItem = firstItem;
+        this.lastItem = lastItem;
+        this.regionStart = regionStart;
+        this.lexingStart = lexingStartFor(previous, firstItem, regionStart);
+        this.oldRegionEnd = oldRegionEnd;
+        this.offsetDelta = text.length() - previous.getText().length();
+        this.newRegionEnd = oldRegionEnd + offsetDelta;
+        this.startLine = lineAt(text, lexingStart);
+        this.startCharPositionInLine = charPositionInLineAt(text, lexingStart);
+    }
+
+    /**
+     * Work out which top-level items of the previous parse an edit touched.
+     *
+     * @param change where the text is different from the previous parse's
+     *
+     * @return a reparser for the edit, or null if the edit can't be reparsed
+     * item by item (e.g. because it's not in a top-level item)
+     */
+    static ItemReparser forEdit(SignatureParse previous, CharSequence text, TextChange change) {
+        int itemCount = previous.getItemCount();
+        if (itemCount == 0 || change.isEmpty()) {
+            return null;
+        }
+        int changeStart = change.getStart();
+        int changeOldEnd = change.getOldEnd();
+
+        int firstItem = -1;
+        int lastItem = -1;
+        for (int i = 0; i < itemCount; i++) {
+            if (previous.getItemStart(i) <= changeOldEnd && previous.getItemEnd(i) >= changeStart) {
+                if (firstItem == -1) {
+                    firstItem = i;
+                }
+                lastItem = i;
+            }
+        }
+        if (firstItem == -1) {
+            //The edit is between items: reparse it along with the item before it
+            for (int i = 0; i < itemCount; i++) {
+                if (previous.getItemEnd(i) <= changeStart) {
+                    firstItem = lastItem = i;
+                }
+            }
+            if (firstItem == -1) {
+                return null;
+            }
+        }
+        for (int i = firstItem; i <= lastItem; i++) {
+            if (!previous.isModItem(i)) {
+                return null;
+            }
+        }
+
+        //Start and end the region where we know the lexer is between tokens
+        int regionStart;
+        if (changeStart >= previous.getItemStart(firstItem)) {
+            regionStart = previous.getItemStart(firstItem);
+        } else if (firstItem > 0) {
+            regionStart = previous.getItemEnd(firstItem - 1);
+        } else {
+            return null;
+        }
+        int oldRegionEnd;
+        if (changeOldEnd <= previous.getItemEnd(lastItem)) {
+            oldRegionEnd = previous.getItemEnd(lastItem);
+        } else if (lastItem + 1 < itemCount) {
+            oldRegionEnd = previous.getItemStart(lastItem + 1);
+        } else if (previous.getEofStart() != -1) {
+            oldRegionEnd = previous.getEofStart();
+        } else {
+            return null;
+        }
+        //Let a full parse deal with anything at the very start (e.g. shebang lines)
+        if (regionStart <= 0) {
+            return null;
+        }
+        return new ItemReparser(previous, text, firstItem, lastItem, regionStart, oldRegionEnd);
+    }
+
+    /**
+     * Lexing starts at the last token before the edited items, so that any
+     * empty rules at the start of the first item get the same stop token that
+     * a full parse would give them.
+     */
+    private static int lexingStartFor(SignatureParse previous, int firstItem, int regionStart) {
+        if (firstItem > 0) {
+            int lastTokenBefore = previous.getItemLastTokenStart(firstItem - 1);
+            if (lastTokenBefore != -1 && previous.getItemEnd(firstItem - 1) <= regionStart) {
+                return lastTokenBefore;
+            }
+        }
+        return regionStart;
+    }
+
+    int getStartIndex() {
+        return lexingStart;
+    }
+
+    int getStartLine() {
+        return startLine;
+    }
+
+    int getStartCharPositionInLine() {
+        return startCharPositionInLine;
+    }
+
+    /**
+     * Parse the edited items and splice them into the previous parse.
+     *
+     * @param parser a parser that's about to read the new text from
+     * {@link #getStartIndex()}, skipping function bodies
+     * @param bodyParser parses the skipped bodies in the new text
+     * @return the spliced parse, or null if the edited items didn't parse
+     * cleanly or didn't line up with the items around them
+     */
+    SignatureParse reparse(RustParser parser, RustAstBodyParser bodyParser) {
+        parser.removeErrorListeners();
+        parser.setErrorHandler(new BailErrorStrategy());
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        TokenStream tokens = parser.getInputStream();
+        if (lexingStart < regionStart) {
+            if (tokens.LT(1).getStartIndex() != lexingStart) {
+                return null;
+            }
+            tokens.consume();
+        }
+        List<RustParser.Mod_itemContext> items = new ArrayList<>();
+        try {
+            while (tokens.LA(1) != Token.EOF && tokens.LT(1).getStartIndex() < newRegionEnd) {
+                int itemStart = tokens.index();
+                items.add(parser.mod_item());
+                if (tokens.index() == itemStart) {
+                    return null;
+                }
+            }
+        } catch (ParseCancellationException ex) {
+            return null;
+        }
+        if (!isWhereNextItemStarts(tokens.LT(1))) {
+            return null;
+        }
+        RustAst region = items.isEmpty() ? null : RustAstBuilder.build(items, bodyParser);
+        RustAst splicedAst = RustAst.splice(previous.getAst(), region, regionStart, oldRegionEnd, text, bodyParser);
+        return previous.splice(firstItem, lastItem, items, splicedAst);
+    }
+
+    private boolean isWhereNextItemStarts(Token next) {
+        if (lastItem + 1 < previous.getItemCount()) {
+            return next.getType() != Token.EOF && next.getStartIndex() == previous.getItemStart(lastItem + 1) + offsetDelta;
+        } else {
+            return next.getType() == Token.EOF;
+        }
+    }
+
+    private static int lineAt(CharSequence text, int offset) {
+        return 1 + countLines(text, 0, offset);
+    }
+
+    private static int countLines(CharSequence text, int start, int end) {
+        int lines = 0;
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    private static int charPositionInLineAt(CharSequence text, int offset) {
+        int lineStart = offset;
+        while (lineStart > 0 && text.charAt(lineStart - 1) != '\n') {
+            lineStart--;
+        }
+        return offset - lineStart;
+    }
+}
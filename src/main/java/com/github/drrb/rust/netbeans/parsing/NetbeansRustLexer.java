@@ -16,23 +16,30 @@
  */
 package com.github.drrb.rust.netbeans.parsing;
 
+import java.util.Arrays;
 import org.netbeans.api.lexer.Token;
 import org.netbeans.spi.lexer.Lexer;
 import org.netbeans.spi.lexer.LexerRestartInfo;
 
 public class NetbeansRustLexer implements Lexer<RustTokenId> {
+    private final AntlrCharStream charStream;
     private final RustLexer lexer;
     private final LexerRestartInfo<RustTokenId> info;
 
     public NetbeansRustLexer(LexerRestartInfo<RustTokenId> info) {
-        AntlrCharStream charStream = new AntlrCharStream(info.input(), "RustEditor");
+        State state = (State) info.state();
+        this.charStream = new AntlrCharStream(info.input(), "RustEditor", state == null ? 0 : 1);
         this.lexer = new RustLexer(charStream);
         this.info = info;
+        if (state != null) {
+            state.restore(lexer);
+        }
     }
 
     @Override
     public Token<RustTokenId> nextToken() {
         org.antlr.v4.runtime.Token token = lexer.nextToken();
+        charStream.backupLookahead();
         if (token.getType() != RustLexer.EOF) {
             RustTokenId tokenId = RustLanguageHierarchy.tokenForAntlrTokenType(token.getType());
             return info.tokenFactory().createToken(tokenId);
@@ -42,13 +49,69 @@ public class NetbeansRustLexer implements Lexer<RustTokenId> {
 
     @Override
     public Object state() {
-        //Tutorial returned null
-        return null;
+        return State.of(lexer);
     }
 
     @Override
     public void release() {
-        //Tutorial left this blank
     }
 
+    /**
+     * The state of the ANTLR lexer between two tokens. NetBeans stores this
+     * with each token, and gives it back to us when it restarts lexing after
+     * that token. A null state means the start of the file.
+     */
+    static final class State {
+
+        /**
+         * The state between almost every pair of tokens, so we share it
+         * rather than storing a copy with each token.
+         */
+        static final State DEFAULT = new State(RustLexer.DEFAULT_MODE, new int[0]);
+        private final int mode;
+        private final int[] modeStack;
+
+        private State(int mode, int[] modeStack) {
+            this.mode = mode;
+            this.modeStack = modeStack;
+        }
+
+        static State of(RustLexer lexer) {
+            if (lexer._mode == RustLexer.DEFAULT_MODE && lexer._modeStack.isEmpty()) {
+                return DEFAULT;
+            } else {
+                return new State(lexer._mode, lexer._modeStack.toArray());
+            }
+        }
+
+        void restore(RustLexer lexer) {
+            lexer._modeStack.clear();
+            for (int pushedMode : modeStack) {
+                lexer._modeStack.push(pushedMode);
+            }
+            lexer._mode = mode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof State)) {
+                return false;
+            }
+            State other = (State) obj;
+            return mode == other.mode && Arrays.equals(modeStack, other.modeStack);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * mode + Arrays.hashCode(modeStack);
+        }
+
+        @Override
+        public String toString() {
+            return "State{mode=" + mode + ", modeStack=" + Arrays.toString(modeStack) + "}";
+        }
+    }
 }
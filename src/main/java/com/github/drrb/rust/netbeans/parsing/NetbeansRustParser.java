@@ -16,21 +16,30 @@
  */
 package com.github.drrb.rust.netbeans.parsing;
 
-import com.github.drrb.rust.netbeans.parsing.index.IndexingVisitor;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAst;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstBuilder;
 import com.github.drrb.rust.netbeans.parsing.index.RustSourceIndex;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.swing.event.ChangeListener;
-import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.BaseErrorListener;
 import org.antlr.v4.runtime.CharStream;
-import org.antlr.v4.runtime.CommonTokenStream;
-import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.RecognitionException;
 import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.TerminalNode;
 import org.netbeans.modules.csl.api.Error;
 import org.netbeans.modules.csl.spi.ParserResult;
 import org.netbeans.modules.parsing.api.Snapshot;
@@ -45,32 +54,198 @@ import org.openide.util.Exceptions;
  */
 public class NetbeansRustParser extends Parser {
 
+    private static final Logger LOGGER = Logger.getLogger(NetbeansRustParser.class.getName());
+    private static final AtomicLong SLL_PARSES = new AtomicLong();
+    private static final AtomicLong LL_PARSES = new AtomicLong();
     private Snapshot snapshot;
     private RustParser parser;
     private List<SyntaxError> syntaxErrors;
-    private RustParser.ProgContext ast;
+    private PredictionMode predictionMode;
+    private ParsedSource parsedSource;
+    private volatile boolean cancelled;
+    private SignatureParse previousParse;
+    private FunctionBodyParser previousBodyParser;
+    //Whether the last call to parse() finished, so that the next event's
+    //offsets cover all the edits since previousBodyParser's text
+    private boolean previousParseFinished;
 
+    /**
+     * Parse the signatures of the items in the snapshot. Function bodies are
+     * skipped, and only parsed when something needs them (see
+     * {@link FunctionBodyParser}), so that e.g. the indexer doesn't parse them
+     * at all.
+     */
     @Override
     public void parse(final Snapshot snapshot, Task task, SourceModificationEvent event) {
+        this.cancelled = false;
+        this.parsedSource = null;
         this.snapshot = snapshot;
-        this.parser = createParser(snapshot);
-        this.syntaxErrors = new LinkedList<>();
-        this.parser.addErrorListener(new BaseErrorListener() {
-            @Override
-            public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String message, RecognitionException e) {
-                syntaxErrors.add(new SyntaxError(line, charPositionInLine, message));
-            }
-        });
+        this.parser = null;
+        this.syntaxErrors = new ArrayList<>();
+        this.predictionMode = null;
+        SignatureParse signatures = null;
+        RustParser.ProgContext parseTree = null;
+        RustAst ast = null;
+        RustAnalysis analysis = null;
+        CharSequence text = snapshot.getText();
+        //Work out what changed since the last parse once, for both the item
+        //reparser and the body parser
+        TextChange change = null;
+        FunctionBodyParser bodyParser;
+        if (previousBodyParser == null) {
+            bodyParser = new FunctionBodyParser(text);
+        } else {
+            change = TextChange.between(previousBodyParser.getText(), text, previousParseFinished ? event : null);
+            //Keep the syntax errors in the bodies that haven't changed
+            bodyParser = previousBodyParser.forNewText(text, change);
+        }
+        previousParseFinished = false;
+        long start = System.nanoTime();
         try {
-            ast = parser.prog();
+            signatures = reparseEditedItems(text, event, change, bodyParser);
+            if (signatures == null && ParallelParser.getDefault().shouldParse(text)) {
+                ParallelParser.Parse parallelParse = ParallelParser.getDefault().parse(text, new CancellationCheckingListener(), bodyParser);
+                if (parallelParse != null) {
+                    parseTree = parallelParse.getParseTree();
+                    ast = parallelParse.getAst();
+                    analysis = parallelParse.getAnalysis();
+                    recordPredictionMode(PredictionMode.SLL);
+                }
+            }
+            if (signatures == null && parseTree == null) {
+                parser = acquireParser(new CharSequenceCharStream(text, "RustParser"), 0, 1, 0);
+                parseTree = parseProg();
+            }
+            if (signatures == null && parseTree != null) {
+                if (ast == null) {
+                    ast = RustAstBuilder.build(parseTree, bodyParser);
+                }
+                signatures = SignatureParse.of(parseTree, ast);
+            }
+        } catch (ParsingCancelledException ex) {
+            LOGGER.log(Level.FINE, "Cancelled parsing {0} after {1}ms", new Object[]{snapshot.getSource().getFileObject(), (System.nanoTime() - start) / 1000000});
+            return;
         } catch (Exception ex) {
             Exceptions.printStackTrace(ex);
+        } finally {
+            //The result only needs the AST, so the parser can go straight back to the pool
+            if (parser != null) {
+                RustParserPool.release(parser);
+                parser = null;
+            }
+        }
+        LOGGER.log(Level.FINE, "Parsed {0} in {1}ms", new Object[]{snapshot.getSource().getFileObject(), (System.nanoTime() - start) / 1000000});
+        //Keep the AST and where the items are for the next edit. The parse tree
+        //(and its tokens) can go as soon as the AST is built.
+        previousParse = signatures != null && syntaxErrors.isEmpty() ? signatures : null;
+        previousBodyParser = bodyParser;
+        previousParseFinished = true;
+        if (signatures == null) {
+            this.parsedSource = new ParsedSource(null, syntaxErrors, predictionMode, analysis, bodyParser, new int[0]);
+        } else {
+            this.parsedSource = new ParsedSource(signatures.getAst(), syntaxErrors, predictionMode, analysis, bodyParser, signatures.getBodyStarts());
+        }
+    }
+
+    /**
+     * If the last parse was clean, try to reparse just the top-level items
+     * that were edited since then.
+     *
+     * @return the last parse with the reparsed items spliced in, or null if
+     * we need to do a full parse
+     */
+    private SignatureParse reparseEditedItems(CharSequence text, SourceModificationEvent event, TextChange change, FunctionBodyParser bodyParser) {
+        if (event == null || !event.sourceChanged() || previousParse == null) {
+            return null;
+        }
+        ItemReparser reparser = ItemReparser.forEdit(previousParse, text, change);
+        if (reparser == null) {
+            return null;
+        }
+        parser = acquireParser(new CharSequenceCharStream(text, "RustParser"), reparser.getStartIndex(), reparser.getStartLine(), reparser.getStartCharPositionInLine());
+        SignatureParse splicedParse = reparser.reparse(parser, bodyParser);
+        if (splicedParse == null) {
+            LOGGER.log(Level.FINE, "Couldn''t reparse edited items in {0}, doing a full parse", snapshot.getSource().getFileObject());
+            RustParserPool.release(parser);
+            parser = null;
+            return null;
         }
+        recordPredictionMode(PredictionMode.SLL);
+        return splicedParse;
+    }
+
+    private RustParser acquireParser(CharStream input, int index, int line, int charPositionInLine) {
+        RustParser newParser = RustParserPool.acquireForSignatures(input, index, line, charPositionInLine);
+        newParser.addParseListener(new CancellationCheckingListener());
+        return newParser;
     }
 
+    /**
+     * Stop the current parse. The parse stops at the next rule it enters, and
+     * doesn't produce a result. A cancel() when no parse is running has no
+     * effect: the next parse clears it when it starts, so that its result
+     * isn't dropped.
+     */
+    @Override
+    public void cancel() {
+        cancelled = true;
+    }
+
+    void checkNotCancelled() {
+        if (cancelled || Thread.currentThread().isInterrupted()) {
+            throw new ParsingCancelledException();
+        }
+    }
+
+    /**
+     * Parse with SLL prediction first, which is much faster but can fail on
+     * input that's actually valid. If it fails (on a real syntax error or
+     * otherwise), reparse with full LL prediction and the usual error
+     * reporting, so that the syntax errors are exactly what full LL parsing
+     * would report.
+     */
+    private RustParser.ProgContext parseProg() {
+        parser.removeErrorListeners();
+        parser.setErrorHandler(new BailErrorStrategy());
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        try {
+            RustParser.ProgContext prog = parser.prog();
+            recordPredictionMode(PredictionMode.SLL);
+            return prog;
+        } catch (ParseCancellationException ex) {
+            parser.reset();
+            parser.addErrorListener(new BaseErrorListener() {
+                @Override
+                public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String message, RecognitionException e) {
+                    syntaxErrors.add(new SyntaxError(line, charPositionInLine, message));
+                }
+            });
+            parser.setErrorHandler(new DefaultErrorStrategy());
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            RustParser.ProgContext prog = parser.prog();
+            recordPredictionMode(PredictionMode.LL);
+            return prog;
+        }
+    }
+
+    private void recordPredictionMode(PredictionMode predictionMode) {
+        this.predictionMode = predictionMode;
+        long sllParses = predictionMode == PredictionMode.SLL ? SLL_PARSES.incrementAndGet() : SLL_PARSES.get();
+        long llParses = predictionMode == PredictionMode.LL ? LL_PARSES.incrementAndGet() : LL_PARSES.get();
+        LOGGER.log(Level.FINE, "Parsed with {0} prediction (SLL parses: {1}, LL parses: {2})", new Object[]{predictionMode, sllParses, llParses});
+    }
+
+    /**
+     * Get a new result for the task. Every result of the same parse shares
+     * its AST, analysis and parsed function bodies, so the work is only done
+     * once however many tasks there are, but each task can have its own
+     * result invalidated without affecting the others.
+     *
+     * @return a result of the last parse, or null if it was cancelled
+     */
     @Override
     public NetbeansRustParserResult getResult(Task task) throws ParseException {
-        return new NetbeansRustParserResult(snapshot, parser, ast, syntaxErrors);
+        return parsedSource == null ? null : new NetbeansRustParserResult(snapshot, parsedSource);
     }
 
     @Override
@@ -81,11 +256,32 @@ public class NetbeansRustParser extends Parser {
     public void removeChangeListener(ChangeListener changeListener) {
     }
 
-    private static RustParser createParser(Snapshot snapshot) {
-        CharStream input = new ANTLRInputStream(snapshot.getText().toString());
-        Lexer lexer = new RustLexer(input);
-        CommonTokenStream tokens = new CommonTokenStream(lexer);
-        return new RustParser(tokens);
+    private class CancellationCheckingListener implements ParseTreeListener {
+
+        @Override
+        public void enterEveryRule(ParserRuleContext ctx) {
+            checkNotCancelled();
+        }
+
+        @Override
+        public void exitEveryRule(ParserRuleContext ctx) {
+        }
+
+        @Override
+        public void visitTerminal(TerminalNode node) {
+        }
+
+        @Override
+        public void visitErrorNode(ErrorNode node) {
+        }
+    }
+
+    /**
+     * Thrown out of the ANTLR parser to stop a cancelled parse. This is
+     * deliberately not a {@link ParseCancellationException}, because that
+     * means the SLL pass failed.
+     */
+    private static class ParsingCancelledException extends RuntimeException {
     }
 
     public static class SyntaxError {
@@ -113,38 +309,174 @@ public class NetbeansRustParser extends Parser {
         }
     }
 
-    public static class NetbeansRustParserResult extends ParserResult {
+    /**
+     * What one parse of a snapshot found. This is shared by all the results
+     * of the parse, and only changes to fill in what's worked out lazily.
+     */
+    static class ParsedSource {
 
-        private final RustParser parser;
-        private final List<SyntaxError> syntaxErrors;
-        private final AtomicBoolean valid = new AtomicBoolean(true);
-        private final RustParser.ProgContext ast;
+        private static final Comparator<SyntaxError> IN_ORDER = new Comparator<SyntaxError>() {
+            @Override
+            public int compare(SyntaxError a, SyntaxError b) {
+                if (a.getLine() != b.getLine()) {
+                    return Integer.compare(a.getLine(), b.getLine());
+                }
+                return Integer.compare(a.getCharPositionInLine(), b.getCharPositionInLine());
+            }
+        };
+        private final RustAst ast;
+        private final List<SyntaxError> signatureSyntaxErrors;
+        private final PredictionMode signaturePredictionMode;
+        private final FunctionBodyParser bodyParser;
+        private final int[] bodyStarts;
+        private final Object analysisLock = new Object();
+        private volatile RustAnalysis analysis;
+        private volatile List<SyntaxError> allSyntaxErrors;
+        private volatile boolean bodyNeededLlPrediction;
 
-        public NetbeansRustParserResult(Snapshot snapshot, RustParser parser, RustParser.ProgContext ast, List<SyntaxError> syntaxErrors) {
-            super(snapshot);
-            this.parser = parser;
+        /**
+         * @param syntaxErrors the syntax errors in the item signatures
+         * @param predictionMode the prediction mode that parsing the item
+         * signatures used
+         * @param analysis the analysis of the AST, if it was done along with
+         * the AST, or null to do it when it's first asked for
+         * @param bodyParser parses the function bodies that were skipped
+         * @param bodyStarts where the skipped bodies are
+         */
+        ParsedSource(RustAst ast, List<SyntaxError> syntaxErrors, PredictionMode predictionMode, RustAnalysis analysis, FunctionBodyParser bodyParser, int[] bodyStarts) {
             this.ast = ast;
-            this.syntaxErrors = new ArrayList<>(syntaxErrors);
+            this.analysis = analysis;
+            this.bodyParser = bodyParser;
+            this.bodyStarts = bodyStarts;
+            this.signatureSyntaxErrors = new ArrayList<>(syntaxErrors);
+            this.signaturePredictionMode = predictionMode;
+        }
+
+        RustAnalysis getAnalysis(NetbeansRustParserResult result) {
+            RustAnalysis analysis = this.analysis;
+            if (analysis == null) {
+                synchronized (analysisLock) {
+                    analysis = this.analysis;
+                    if (analysis == null) {
+                        this.analysis = analysis = result.analyze();
+                    }
+                }
+            }
+            return analysis;
+        }
+
+        PredictionMode getPredictionMode() {
+            return bodyNeededLlPrediction ? PredictionMode.LL : signaturePredictionMode;
+        }
+
+        List<SyntaxError> allSyntaxErrors() {
+            List<SyntaxError> result = allSyntaxErrors;
+            if (result == null) {
+                List<SyntaxError> syntaxErrors = new ArrayList<>(signatureSyntaxErrors);
+                for (int bodyStart : bodyStarts) {
+                    addSyntaxErrors(bodyStart, bodyParser.syntaxOf(bodyStart), syntaxErrors);
+                }
+                Collections.sort(syntaxErrors, IN_ORDER);
+                allSyntaxErrors = result = syntaxErrors;
+            }
+            return result;
+        }
+
+        /**
+         * Get the syntax errors in the signatures, the bodies that were
+         * edited, and the bodies that have already been parsed (in this
+         * version of the text or, if they haven't changed since, an earlier
+         * one). Only the edited bodies get parsed.
+         */
+        List<SyntaxError> knownSyntaxErrors() {
+            List<SyntaxError> result = allSyntaxErrors;
+            if (result != null) {
+                return result;
+            }
+            List<SyntaxError> syntaxErrors = new ArrayList<>(signatureSyntaxErrors);
+            int firstEdited = bodyStarts.length;
+            int lastEdited = -1;
+            if (bodyParser != null && bodyParser.getChangeStart() != -1) {
+                //The last body that starts before the change might have it in it
+                firstEdited = Math.max(0, bodiesStartingBefore(bodyParser.getChangeStart() + 1) - 1);
+                lastEdited = bodiesStartingBefore(bodyParser.getChangeEnd() + 1) - 1;
+            }
+            for (int i = 0; i < bodyStarts.length; i++) {
+                boolean edited = i >= firstEdited && i <= lastEdited;
+                FunctionBodyParser.BodySyntax syntax = edited ? bodyParser.syntaxOf(bodyStarts[i]) : bodyParser.knownSyntaxOf(bodyStarts[i]);
+                if (syntax != null) {
+                    addSyntaxErrors(bodyStarts[i], syntax, syntaxErrors);
+                }
+            }
+            Collections.sort(syntaxErrors, IN_ORDER);
+            return syntaxErrors;
         }
 
-        public RustParser getRustParser() throws ParseException {
-            if (!valid.get()) {
-                throw new ParseException();
+        private int bodiesStartingBefore(int offset) {
+            int index = Arrays.binarySearch(bodyStarts, offset);
+            return index >= 0 ? index : -index - 1;
+        }
+
+        private void addSyntaxErrors(int bodyStart, FunctionBodyParser.BodySyntax syntax, List<SyntaxError> syntaxErrors) {
+            if (syntax.getPredictionMode() == PredictionMode.LL) {
+                bodyNeededLlPrediction = true;
             }
-            return parser;
+            syntaxErrors.addAll(bodyParser.syntaxErrorsIn(bodyStart, syntax));
+        }
+    }
+
+    public static class NetbeansRustParserResult extends ParserResult {
+
+        private final ParsedSource parsedSource;
+
+        public NetbeansRustParserResult(Snapshot snapshot, RustAst ast, List<SyntaxError> syntaxErrors, PredictionMode predictionMode) {
+            this(snapshot, new ParsedSource(ast, syntaxErrors, predictionMode, null, null, new int[0]));
         }
 
+        NetbeansRustParserResult(Snapshot snapshot, ParsedSource parsedSource) {
+            super(snapshot);
+            this.parsedSource = parsedSource;
+        }
+
+        /**
+         * Get the syntax errors in the file, including the ones in function
+         * bodies. Any bodies that haven't been parsed yet are parsed first.
+         *
+         * @see #getKnownSyntaxErrors()
+         */
         public List<SyntaxError> getSyntaxErrors() {
-            return Collections.unmodifiableList(syntaxErrors);
+            return Collections.unmodifiableList(parsedSource.allSyntaxErrors());
+        }
+
+        /**
+         * Get the syntax errors in the item signatures, in the function
+         * bodies that were edited since the last parse, and in any other
+         * bodies that have already been parsed. Only the edited bodies are
+         * parsed, so this is cheap enough to do after every edit.
+         *
+         * @see #getSyntaxErrors()
+         */
+        public List<SyntaxError> getKnownSyntaxErrors() {
+            return Collections.unmodifiableList(parsedSource.knownSyntaxErrors());
+        }
+
+        public RustAst getAst() {
+            return parsedSource.ast;
         }
 
-        public RustParser.ProgContext getAst() {
-            return ast;
+        /**
+         * Get the prediction mode that the successful parse used: SLL if the
+         * fast first pass worked, or LL if we had to reparse the signatures or
+         * any function body whose syntax errors have been asked for. No
+         * bodies are parsed to find out.
+         */
+        public PredictionMode getPredictionMode() {
+            return parsedSource.getPredictionMode();
         }
 
         @Override
         protected void invalidate() {
-            valid.set(false);
+            //Nothing to release: the parser went back to the pool after parsing
         }
 
         @Override
@@ -153,8 +485,27 @@ public class NetbeansRustParser extends Parser {
             return Collections.emptyList();
         }
 
+        /**
+         * Get the index of this result's AST.
+         *
+         * @see #getAnalysis()
+         */
         public RustSourceIndex getIndex() {
-            return getAst().accept(new IndexingVisitor());
+            return getAnalysis().getIndex();
+        }
+
+        /**
+         * Get the analysis of this result's AST: its index, highlights, folds
+         * and structure. The AST is analyzed the first time any of them is
+         * asked for, and then the analysis is shared by every result of the
+         * same parse.
+         */
+        public RustAnalysis getAnalysis() {
+            return parsedSource.getAnalysis(this);
+        }
+
+        protected RustAnalysis analyze() {
+            return RustAnalysis.analyze(getAst());
         }
     }
 }
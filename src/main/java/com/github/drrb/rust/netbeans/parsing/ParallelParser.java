@@ -0,0 +1,344 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing;
+
+import com.github.drrb.rust.netbeans.parsing.ast.RustAst;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstBodyParser;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstBuilder;
+import com.github.drrb.rust.netbeans.parsing.index.RustSourceIndex;
+import com.github.drrb.rust.netbeans.parsing.index.SymbolTable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.Pair;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.antlr.v4.runtime.tree.TerminalNodeImpl;
+
+/**
+ * Parses the signatures in big files in chunks on a ForkJoin pool. The file is
+ * lexed once (skipping function bodies), and the tokens are split between
+ * top-level items, which are found by looking for a closing brace or semicolon
+ * outside any brackets (and after a semicolon or comma that follows the
+ * brace). Each chunk's tokens are parsed with SLL prediction,
+ * and the chunks' items are put back together into one parse tree, one compact
+ * AST and one analysis.
+ *
+ * It's used for files of a million characters or more, when there's more than
+ * one core. Below that, splitting the file costs about as much as it saves.
+ * Start the IDE with -J-Drust.netbeans.parser.parallelThreshold=N to change
+ * the size. ParallelParseBenchmark (in the tests) shows how much faster it is
+ * for different file sizes and numbers of cores.
+ */
+class ParallelParser {
+
+    private static final String THRESHOLD_PROPERTY = "rust.netbeans.parser.parallelThreshold";
+    private static final int DEFAULT_THRESHOLD = 1024 * 1024;
+    private static final int MIN_CHUNK_SIZE = 16 * 1024;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final ParallelParser DEFAULT = new ParallelParser(new ForkJoinPool(), Integer.getInteger(THRESHOLD_PROPERTY, DEFAULT_THRESHOLD));
+    private final ForkJoinPool pool;
+    private final int threshold;
+
+    ParallelParser(ForkJoinPool pool, int threshold) {
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    static ParallelParser getDefault() {
+        return DEFAULT;
+    }
+
+    boolean shouldParse(CharSequence text) {
+        return pool.getParallelism() > 1 && text.length() >= threshold;
+    }
+
+    /**
+     * Parse the text in parallel.
+     *
+     * @param cancellationListener a listener to add to each chunk's parser,
+     * which can stop the parse by throwing from its callbacks
+     * @param bodyParser parses the skipped function bodies, for the AST
+     * @return the parse tree, AST and analysis of the text, or null if any chunk didn't parse
+     * cleanly (so a normal parse is needed to report errors), or the text
+     * couldn't be split
+     */
+    Parse parse(CharSequence text, ParseTreeListener cancellationListener, RustAstBodyParser bodyParser) {
+        List<Chunk> chunks = split(text, chunkCountFor(text));
+        if (chunks.size() < 2) {
+            return null;
+        }
+        AtomicBoolean abandoned = new AtomicBoolean(false);
+        //The chunks' indexes share a symbol table, so they can be merged
+        SymbolTable symbols = new SymbolTable();
+        List<Future<Parse>> chunkParses = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            chunkParses.add(pool.submit(new ChunkParse(chunks.get(i), i > 0, i == chunks.size() - 1, abandoned, cancellationListener, bodyParser, symbols)));
+        }
+        try {
+            List<Parse> parses = new ArrayList<>(chunks.size());
+            for (Future<Parse> chunkParse : chunkParses) {
+                Parse parse = chunkParse.get();
+                if (parse == null) {
+                    return null;
+                }
+                parses.add(parse);
+            }
+            return merge(parses);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        } finally {
+            abandoned.set(true);
+        }
+    }
+
+    private int chunkCountFor(CharSequence text) {
+        return Math.max(1, Math.min(pool.getParallelism() * CHUNKS_PER_THREAD, text.length() / MIN_CHUNK_SIZE));
+    }
+
+    /**
+     * Lex the text and split the tokens after top-level items, into roughly
+     * equal-sized chunks. Each chunk after the first also starts with the last
+     * token of the chunk before it, so that empty rules at the start of the
+     * chunk end at that token, as they would in a full parse. That token is
+     * copied, because each chunk's token stream sets its tokens' indexes.
+     */
+    static List<Chunk> split(CharSequence text, int chunkCount) {
+        FunctionBodySkippingTokenSource lexer = new FunctionBodySkippingTokenSource(new RustLexer(new CharSequenceCharStream(text, "RustParser")));
+        List<Token> tokens = new ArrayList<>();
+        List<Integer> chunkStarts = new ArrayList<>(chunkCount);
+        chunkStarts.add(0);
+        int targetChunkSize = text.length() / chunkCount;
+        int depth = 0;
+        boolean atBoundary = false;
+        Token token;
+        for (token = lexer.nextToken(); token.getType() != Token.EOF; token = lexer.nextToken()) {
+            if (token.getChannel() != Token.DEFAULT_CHANNEL) {
+                continue;
+            }
+            char character = token.getStartIndex() == token.getStopIndex() ? text.charAt(token.getStartIndex()) : 0;
+            //A brace can end an expression (e.g. "static X: Point = Point { x: 1 };"), so a separator after it goes in the same chunk
+            if (atBoundary && character != ';' && character != ',') {
+                chunkStarts.add(tokens.size());
+                atBoundary = false;
+            }
+            tokens.add(token);
+            if (character == '(' || character == '[' || character == '{') {
+                depth++;
+            } else if (character == ')' || character == ']' || character == '}') {
+                depth--;
+                if (depth < 0) {
+                    return new ArrayList<>();
+                }
+            }
+            boolean endOfItem = depth == 0 && (character == '}' || character == ';');
+            if (endOfItem && chunkStarts.size() < chunkCount && token.getStopIndex() >= targetChunkSize * chunkStarts.size()) {
+                atBoundary = true;
+            }
+        }
+        Token eof = token;
+
+        List<Chunk> chunks = new ArrayList<>(chunkStarts.size());
+        for (int i = 0; i < chunkStarts.size(); i++) {
+            int start = chunkStarts.get(i);
+            int end = i + 1 < chunkStarts.size() ? chunkStarts.get(i + 1) : tokens.size();
+            List<Token> chunkTokens = new ArrayList<>(end - start + 1);
+            if (i > 0) {
+                chunkTokens.add(new CommonToken(tokens.get(start - 1)));
+            }
+            chunkTokens.addAll(tokens.subList(start, end));
+            chunks.add(new Chunk(chunkTokens, end < tokens.size() ? endOfChunkBefore(tokens.get(end), eof) : eof));
+        }
+        return chunks;
+    }
+
+    /**
+     * @return an EOF token where the next chunk starts
+     */
+    private static Token endOfChunkBefore(Token nextChunkStart, Token eof) {
+        CommonToken endOfChunk = new CommonToken(new Pair<>(eof.getTokenSource(), eof.getInputStream()), Token.EOF, Token.DEFAULT_CHANNEL, nextChunkStart.getStartIndex(), nextChunkStart.getStartIndex() - 1);
+        endOfChunk.setLine(nextChunkStart.getLine());
+        endOfChunk.setCharPositionInLine(nextChunkStart.getCharPositionInLine());
+        return endOfChunk;
+    }
+
+    private static Parse merge(List<Parse> parses) {
+        RustParser.ProgContext parseTree = new RustParser.ProgContext(null, -1);
+        parseTree.children = new ArrayList<>();
+        List<RustAst> asts = new ArrayList<>(parses.size());
+        List<RustAnalysis> analyses = new ArrayList<>(parses.size());
+        for (Parse parse : parses) {
+            for (ParseTree child : parse.parseTree.children) {
+                if (child instanceof ParserRuleContext) {
+                    ((ParserRuleContext) child).parent = parseTree;
+                } else {
+                    ((TerminalNodeImpl) child).parent = parseTree;
+                }
+                parseTree.children.add(child);
+            }
+            asts.add(parse.ast);
+            analyses.add(parse.analysis);
+        }
+        parseTree.start = parses.get(0).parseTree.start;
+        parseTree.stop = parses.get(parses.size() - 1).parseTree.stop;
+        return new Parse(parseTree, RustAst.merge(asts), RustAnalysis.merge(analyses));
+    }
+
+    static class Chunk {
+
+        private final List<Token> tokens;
+        private final Token eof;
+
+        Chunk(List<Token> tokens, Token eof) {
+            this.tokens = tokens;
+            this.eof = eof;
+        }
+
+        List<Token> getTokens() {
+            return tokens;
+        }
+    }
+
+    static class Parse {
+
+        private final RustParser.ProgContext parseTree;
+        private final RustAst ast;
+        private final RustAnalysis analysis;
+
+        Parse(RustParser.ProgContext parseTree, RustAst ast, RustAnalysis analysis) {
+            this.parseTree = parseTree;
+            this.ast = ast;
+            this.analysis = analysis;
+        }
+
+        RustParser.ProgContext getParseTree() {
+            return parseTree;
+        }
+
+        RustAst getAst() {
+            return ast;
+        }
+
+        RustSourceIndex getIndex() {
+            return analysis.getIndex();
+        }
+
+        RustAnalysis getAnalysis() {
+            return analysis;
+        }
+    }
+
+    private static class ChunkParse implements Callable<Parse> {
+
+        private final Chunk chunk;
+        private final boolean startsWithTokenBefore;
+        private final boolean lastChunk;
+        private final AtomicBoolean abandoned;
+        private final ParseTreeListener cancellationListener;
+        private final RustAstBodyParser bodyParser;
+        private final SymbolTable symbols;
+
+        ChunkParse(Chunk chunk, boolean startsWithTokenBefore, boolean lastChunk, AtomicBoolean abandoned, ParseTreeListener cancellationListener, RustAstBodyParser bodyParser, SymbolTable symbols) {
+            this.chunk = chunk;
+            this.startsWithTokenBefore = startsWithTokenBefore;
+            this.lastChunk = lastChunk;
+            this.abandoned = abandoned;
+            this.cancellationListener = cancellationListener;
+            this.bodyParser = bodyParser;
+            this.symbols = symbols;
+        }
+
+        @Override
+        public Parse call() {
+            RustParser parser = RustParserPool.acquire(new TokenListSource(chunk.tokens, chunk.eof));
+            try {
+                parser.addParseListener(cancellationListener);
+                parser.addParseListener(new AbandonmentCheckingListener(abandoned));
+                parser.setErrorHandler(new BailErrorStrategy());
+                parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+                if (startsWithTokenBefore) {
+                    //Skip the last token of the chunk before this one
+                    parser.getInputStream().consume();
+                }
+                RustParser.ProgContext parseTree = parser.prog();
+                if (!lastChunk) {
+                    dropEof(parseTree);
+                }
+                RustAst ast = RustAstBuilder.build(parseTree, bodyParser);
+                return new Parse(parseTree, ast, RustAnalysis.analyze(ast, symbols));
+            } catch (ParseCancellationException ex) {
+                abandoned.set(true);
+                return null;
+            } finally {
+                RustParserPool.release(parser);
+            }
+        }
+
+        private static void dropEof(RustParser.ProgContext parseTree) {
+            ParseTree lastChild = parseTree.children.get(parseTree.children.size() - 1);
+            if (lastChild instanceof TerminalNode && ((TerminalNode) lastChild).getSymbol().getType() == Token.EOF) {
+                parseTree.removeLastChild();
+            }
+        }
+    }
+
+    private static class AbandonmentCheckingListener implements ParseTreeListener {
+
+        private final AtomicBoolean abandoned;
+
+        AbandonmentCheckingListener(AtomicBoolean abandoned) {
+            this.abandoned = abandoned;
+        }
+
+        @Override
+        public void enterEveryRule(ParserRuleContext ctx) {
+            if (abandoned.get()) {
+                throw new ParseCancellationException("Another chunk failed to parse");
+            }
+        }
+
+        @Override
+        public void exitEveryRule(ParserRuleContext ctx) {
+        }
+
+        @Override
+        public void visitTerminal(TerminalNode node) {
+        }
+
+        @Override
+        public void visitErrorNode(ErrorNode node) {
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing;
+
+import com.github.drrb.rust.netbeans.parsing.ast.RustAst;
+import com.github.drrb.rust.netbeans.parsing.index.RustSourceIndex;
+import com.github.drrb.rust.netbeans.parsing.index.SymbolTable;
+import com.github.drrb.rust.netbeans.util.Lists;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.netbeans.modules.csl.api.ColoringAttributes;
+import org.netbeans.modules.csl.api.OffsetRange;
+import org.netbeans.modules.csl.api.StructureItem;
+
+/**
+ * Everything the editor features need from an AST: the index, the semantic
+ * highlights, the folds and the navigator's structure items. They're all
+ * produced in one walk over the AST (see {@link AnalyzingVisitor}), and don't
+ * change once they're built.
+ */
+public class RustAnalysis {
+
+    private final RustSourceIndex index;
+    private final Map<OffsetRange, Set<ColoringAttributes>> highlights;
+    private final Map<String, List<OffsetRange>> folds;
+    private final List<StructureItem> structureItems;
+
+    RustAnalysis(RustSourceIndex index, Map<OffsetRange, Set<ColoringAttributes>> highlights, Map<String, List<OffsetRange>> folds, List<StructureItem> structureItems) {
+        this.index = index;
+        this.highlights = Collections.unmodifiableMap(highlights);
+        this.folds = Collections.unmodifiableMap(folds);
+        this.structureItems = structureItems;
+    }
+
+    public static RustAnalysis analyze(RustAst ast) {
+        return analyze(ast, new SymbolTable());
+    }
+
+    /**
+     * @param symbols the table to keep the index's names in, which can be
+     * shared with other indexes
+     */
+    public static RustAnalysis analyze(RustAst ast, SymbolTable symbols) {
+        AnalyzingVisitor visitor = new AnalyzingVisitor(symbols);
+        RustSourceIndex index = ast.accept(visitor);
+        return visitor.getAnalysis(index);
+    }
+
+    /**
+     * Combine the analyses of consecutive parts of a file into one analysis
+     * of the whole file. The parts' indexes should share a symbol table.
+     */
+    static RustAnalysis merge(List<RustAnalysis> analyses) {
+        List<RustSourceIndex> indexes = new ArrayList<>(analyses.size());
+        Map<OffsetRange, Set<ColoringAttributes>> highlights = new HashMap<>();
+        Map<String, List<OffsetRange>> folds = new HashMap<>();
+        List<StructureItem> structureItems = new ArrayList<>();
+        for (RustAnalysis analysis : analyses) {
+            indexes.add(analysis.index);
+            highlights.putAll(analysis.highlights);
+            for (Map.Entry<String, List<OffsetRange>> foldsOfType : analysis.folds.entrySet()) {
+                List<OffsetRange> mergedFoldsOfType = folds.get(foldsOfType.getKey());
+                if (mergedFoldsOfType == null) {
+                    folds.put(foldsOfType.getKey(), mergedFoldsOfType = new ArrayList<>());
+                }
+                mergedFoldsOfType.addAll(foldsOfType.getValue());
+            }
+            structureItems.addAll(analysis.structureItems);
+        }
+        for (Map.Entry<String, List<OffsetRange>> foldsOfType : folds.entrySet()) {
+            foldsOfType.setValue(Lists.freeze(foldsOfType.getValue()));
+        }
+        return new RustAnalysis(RustSourceIndex.merge(indexes), highlights, folds, Lists.freeze(structureItems));
+    }
+
+    public RustSourceIndex getIndex() {
+        return index;
+    }
+
+    public Map<OffsetRange, Set<ColoringAttributes>> getHighlights() {
+        return highlights;
+    }
+
+    /**
+     * @return the ranges that can be folded, by fold type
+     */
+    public Map<String, List<OffsetRange>> getFolds() {
+        return folds;
+    }
+
+    public List<StructureItem> getStructureItems() {
+        return structureItems;
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing;
+
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.atn.PredictionMode;
+
+/**
+ * Pools of idle lexers and parsers, so that we don't build a new lexer and
+ * parser (and their simulators) for every file we parse.
+ */
+class RustParserPool {
+
+    private static final int MAX_IDLE_PARSERS = 4;
+    private static final Deque<RustLexer> IDLE_LEXERS = new ConcurrentLinkedDeque<>();
+    private static final Deque<RustParser> IDLE_PARSERS = new ConcurrentLinkedDeque<>();
+
+    /**
+     * Get a parser reading from the specified input. The parser has no error
+     * listeners, the default error strategy, and LL prediction.
+     */
+    static RustParser acquire(CharStream input) {
+        return acquire(input, 0, 1, 0);
+    }
+
+    /**
+     * Get a parser reading from the specified position in the input. The line
+     * and position in line are where the index is in the input, so that the
+     * tokens have the right positions.
+     */
+    static RustParser acquire(CharStream input, int index, int line, int charPositionInLine) {
+        return acquire(acquireLexer(input, index, line, charPositionInLine));
+    }
+
+    /**
+     * Get a parser reading from the specified position in the input, that
+     * skips function bodies (see {@link FunctionBodySkippingTokenSource}).
+     */
+    static RustParser acquireForSignatures(CharStream input, int index, int line, int charPositionInLine) {
+        return acquire(new FunctionBodySkippingTokenSource(acquireLexer(input, index, line, charPositionInLine)));
+    }
+
+    /**
+     * Get a parser reading one function body, from its opening brace at the
+     * specified index in the input to its closing brace (see
+     * {@link FunctionBodyTokenSource}). The tokens' lines and positions in
+     * line are relative to the opening brace, which is at line 1, position 0.
+     */
+    static RustParser acquireForBody(CharStream input, int index) {
+        return acquire(new FunctionBodyTokenSource(acquireLexer(input, index, 1, 0)));
+    }
+
+    private static RustLexer acquireLexer(CharStream input, int index, int line, int charPositionInLine) {
+        RustLexer lexer = IDLE_LEXERS.pollFirst();
+        if (lexer == null) {
+            lexer = new RustLexer(input);
+        }
+        lexer.setInputStream(input);
+        input.seek(index);
+        lexer.setLine(line);
+        lexer.setCharPositionInLine(charPositionInLine);
+        return lexer;
+    }
+
+    /**
+     * Get a parser reading tokens from the specified source.
+     */
+    static RustParser acquire(TokenSource tokenSource) {
+        //The token stream isn't reused: in ANTLR 4.0, once it has fetched EOF it
+        //won't fetch any more tokens, even from a new token source
+        CommonTokenStream tokens = new CommonTokenStream(tokenSource);
+        RustParser parser = IDLE_PARSERS.pollFirst();
+        if (parser == null) {
+            parser = new RustParser(tokens);
+            parser.removeErrorListeners();
+        } else {
+            parser.setTokenStream(tokens);
+        }
+        return parser;
+    }
+
+    /**
+     * Give a parser (and its lexer) back to the pool. The parser mustn't be
+     * used by the caller after this.
+     */
+    static void release(RustParser parser) {
+        TokenSource tokenSource = parser.getTokenStream().getTokenSource();
+        //Drop the tokens and the text, so that idle parsers don't hold onto them
+        parser.setTokenStream(null);
+        parser.removeErrorListeners();
+        parser.removeParseListeners();
+        parser.setErrorHandler(new DefaultErrorStrategy());
+        parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+        offer(IDLE_PARSERS, parser);
+        if (tokenSource instanceof FunctionBodySkippingTokenSource) {
+            tokenSource = ((FunctionBodySkippingTokenSource) tokenSource).getSource();
+        } else if (tokenSource instanceof FunctionBodyTokenSource) {
+            tokenSource = ((FunctionBodyTokenSource) tokenSource).getSource();
+        }
+        if (tokenSource instanceof RustLexer) {
+            RustLexer lexer = (RustLexer) tokenSource;
+            lexer.setInputStream(null);
+            offer(IDLE_LEXERS, lexer);
+        }
+    }
+
+    private static <T> void offer(Deque<T> idle, T item) {
+        if (idle.size() < MAX_IDLE_PARSERS) {
+            idle.offerFirst(item);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.openide.modules.OnStart;
+import org.openide.util.RequestProcessor;
+
+/**
+ * Parses some bundled Rust sources in the background when the IDE starts, so
+ * that the ATNs are deserialized and the shared DFA caches are warm by the time
+ * the user opens their first Rust file.
+ *
+ * Start the IDE with -J-Drust.netbeans.parser.warmup=false to turn it off.
+ */
+@OnStart
+public class RustParserWarmUp implements Runnable {
+
+    private static final Logger LOGGER = Logger.getLogger(RustParserWarmUp.class.getName());
+    private static final String ENABLED_PROPERTY = "rust.netbeans.parser.warmup";
+    private static final String[] CORPUS = {
+        "/com/github/drrb/rust/netbeans/RustPreviewExample.rs",
+        "/com/github/drrb/rust/netbeans/RustTemplate.rs"
+    };
+    private static final RequestProcessor WARM_UP_PROCESSOR = new RequestProcessor(RustParserWarmUp.class.getName(), 1);
+
+    @Override
+    public void run() {
+        if (!Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY, "true"))) {
+            return;
+        }
+        WARM_UP_PROCESSOR.post(new Runnable() {
+            @Override
+            public void run() {
+                warmUp();
+            }
+        }, 0, Thread.MIN_PRIORITY);
+    }
+
+    /**
+     * Lex and parse the bundled corpus, signatures and function bodies.
+     *
+     * @return the number of sources that were parsed
+     */
+    static int warmUp() {
+        long start = System.nanoTime();
+        int sourcesParsed = 0;
+        for (String resource : CORPUS) {
+            try {
+                parse(read(resource));
+                sourcesParsed++;
+            } catch (IOException ex) {
+                LOGGER.log(Level.FINE, "Couldn't read warm-up source " + resource, ex);
+            }
+        }
+        long millis = (System.nanoTime() - start) / 1000000;
+        LOGGER.log(Level.FINE, "Warmed up parser with {0} sources in {1}ms", new Object[]{sourcesParsed, millis});
+        return sourcesParsed;
+    }
+
+    /**
+     * Parse the signatures with SLL prediction, and then each skipped function
+     * body, like the editor does when it opens a file and highlights it. The
+     * signature pass and the body passes see different token streams, so they
+     * build different DFA states.
+     */
+    private static void parse(CharSequence source) {
+        RustParser.ProgContext signatures;
+        RustParser parser = RustParserPool.acquireForSignatures(new CharSequenceCharStream(source, "RustParserWarmUp"), 0, 1, 0);
+        try {
+            parser.setErrorHandler(new BailErrorStrategy());
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            signatures = parser.prog();
+        } catch (ParseCancellationException ex) {
+            //Nothing to warm up past the first syntax error
+            return;
+        } finally {
+            RustParserPool.release(parser);
+        }
+        FunctionBodyParser bodyParser = new FunctionBodyParser(source);
+        for (int bodyStart : FunctionBodyParser.bodyStartsIn(signatures)) {
+            bodyParser.parse(bodyStart);
+        }
+    }
+
+    private static CharSequence read(String resource) throws IOException {
+        InputStream stream = RustParserWarmUp.class.getResourceAsStream(resource);
+        if (stream == null) {
+            throw new IOException("No such resource: " + resource);
+        }
+        try (Reader reader = new InputStreamReader(stream, Charset.forName("UTF-8"))) {
+            StringBuilder source = new StringBuilder();
+            char[] buffer = new char[4096];
+            for (int read = reader.read(buffer); read != -1; read = reader.read(buffer)) {
+                source.append(buffer, 0, read);
+            }
+            return source;
+        }
+    }
+}
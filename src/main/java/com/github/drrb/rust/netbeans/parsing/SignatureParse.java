@@ -0,0 +1,210 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing;
+
+import com.github.drrb.rust.netbeans.parsing.ast.RustAst;
+import java.util.Arrays;
+import java.util.List;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+/**
+ * A signature-only parse of a file: its compact AST, and where its top-level
+ * items and skipped function bodies are. That's all an {@link ItemReparser}
+ * needs to reparse an edit, so the parse tree doesn't have to be kept.
+ */
+class SignatureParse {
+
+    private final RustAst ast;
+    private final int[] itemStarts;
+    private final int[] itemEnds;
+    private final int[] itemLastTokenStarts;
+    private final boolean[] modItems;
+    private final int eofStart;
+    private final int[] bodyStarts;
+
+    SignatureParse(RustAst ast, int[] itemStarts, int[] itemEnds, int[] itemLastTokenStarts, boolean[] modItems, int eofStart, int[] bodyStarts) {
+        this.ast = ast;
+        this.itemStarts = itemStarts;
+        this.itemEnds = itemEnds;
+        this.itemLastTokenStarts = itemLastTokenStarts;
+        this.modItems = modItems;
+        this.eofStart = eofStart;
+        this.bodyStarts = bodyStarts;
+    }
+
+    /**
+     * Record where the items and bodies are in a parse tree, and the AST that
+     * was built from it.
+     */
+    static SignatureParse of(RustParser.ProgContext parseTree, RustAst ast) {
+        List<ParseTree> children = parseTree.children;
+        int childCount = children == null ? 0 : children.size();
+        int eofStart = -1;
+        if (childCount > 0 && isEof(children.get(childCount - 1))) {
+            childCount--;
+            eofStart = ((TerminalNode) children.get(childCount)).getSymbol().getStartIndex();
+        }
+        int[] itemStarts = new int[childCount];
+        int[] itemEnds = new int[childCount];
+        int[] itemLastTokenStarts = new int[childCount];
+        boolean[] modItems = new boolean[childCount];
+        for (int i = 0; i < childCount; i++) {
+            ParseTree child = children.get(i);
+            itemStarts[i] = startOf(child);
+            itemEnds[i] = endOf(child);
+            Token lastToken = lastTokenOf(child);
+            itemLastTokenStarts[i] = lastToken == null ? -1 : lastToken.getStartIndex();
+            modItems[i] = child instanceof RustParser.Mod_itemContext;
+        }
+        return new SignatureParse(ast, itemStarts, itemEnds, itemLastTokenStarts, modItems, eofStart, FunctionBodyParser.bodyStartsIn(parseTree));
+    }
+
+    /**
+     * Replace some items with ones that were reparsed after an edit. The
+     * items after them are moved by how much the edit changed the text's
+     * length. This parse isn't changed.
+     *
+     * @param firstItem the first item that was reparsed
+     * @param lastItem the last item that was reparsed
+     * @param reparsedItems the new items
+     * @param splicedAst the AST after the edit
+     */
+    SignatureParse splice(int firstItem, int lastItem, List<RustParser.Mod_itemContext> reparsedItems, RustAst splicedAst) {
+        int delta = splicedAst.getSourceText().length() - ast.getSourceText().length();
+        int reusedAfter = itemStarts.length - lastItem - 1;
+        int itemCount = firstItem + reparsedItems.size() + reusedAfter;
+        int[] newItemStarts = Arrays.copyOf(itemStarts, itemCount);
+        int[] newItemEnds = Arrays.copyOf(itemEnds, itemCount);
+        int[] newItemLastTokenStarts = Arrays.copyOf(itemLastTokenStarts, itemCount);
+        boolean[] newModItems = Arrays.copyOf(modItems, itemCount);
+        int index = firstItem;
+        for (RustParser.Mod_itemContext item : reparsedItems) {
+            newItemStarts[index] = startOf(item);
+            newItemEnds[index] = endOf(item);
+            newItemLastTokenStarts[index] = item.stop == null ? -1 : item.stop.getStartIndex();
+            newModItems[index] = true;
+            index++;
+        }
+        for (int i = lastItem + 1; i < itemStarts.length; i++, index++) {
+            newItemStarts[index] = itemStarts[i] + delta;
+            newItemEnds[index] = itemEnds[i] + delta;
+            newItemLastTokenStarts[index] = itemLastTokenStarts[i] == -1 ? -1 : itemLastTokenStarts[i] + delta;
+            newModItems[index] = modItems[i];
+        }
+
+        int regionStart = firstItem > 0 ? itemEnds[firstItem - 1] : 0;
+        int oldRegionEnd = lastItem + 1 < itemStarts.length ? itemStarts[lastItem + 1] : ast.getSourceText().length();
+        int before = 0;
+        while (before < bodyStarts.length && bodyStarts[before] < regionStart) {
+            before++;
+        }
+        int after = before;
+        while (after < bodyStarts.length && bodyStarts[after] < oldRegionEnd) {
+            after++;
+        }
+        int[] reparsedBodyStarts = FunctionBodyParser.bodyStartsIn(reparsedItems);
+        int[] newBodyStarts = Arrays.copyOf(bodyStarts, before + reparsedBodyStarts.length + bodyStarts.length - after);
+        System.arraycopy(reparsedBodyStarts, 0, newBodyStarts, before, reparsedBodyStarts.length);
+        for (int i = after, j = before + reparsedBodyStarts.length; i < bodyStarts.length; i++, j++) {
+            newBodyStarts[j] = bodyStarts[i] + delta;
+        }
+        return new SignatureParse(splicedAst, newItemStarts, newItemEnds, newItemLastTokenStarts, newModItems, eofStart == -1 ? -1 : eofStart + delta, newBodyStarts);
+    }
+
+    RustAst getAst() {
+        return ast;
+    }
+
+    /**
+     * @return the text that was parsed
+     */
+    CharSequence getText() {
+        return ast.getSourceText();
+    }
+
+    /**
+     * @return the number of top-level items, not counting EOF
+     */
+    int getItemCount() {
+        return itemStarts.length;
+    }
+
+    int getItemStart(int item) {
+        return itemStarts[item];
+    }
+
+    int getItemEnd(int item) {
+        return itemEnds[item];
+    }
+
+    /**
+     * @return where the item's last token starts, or -1 if it doesn't have
+     * any tokens
+     */
+    int getItemLastTokenStart(int item) {
+        return itemLastTokenStarts[item];
+    }
+
+    /**
+     * @return whether the item was parsed by the mod_item rule (so it can be
+     * reparsed by it)
+     */
+    boolean isModItem(int item) {
+        return modItems[item];
+    }
+
+    /**
+     * @return where EOF is, or -1 if the parse didn't get there
+     */
+    int getEofStart() {
+        return eofStart;
+    }
+
+    /**
+     * @return the offsets of the skipped bodies' opening braces, in order
+     */
+    int[] getBodyStarts() {
+        return bodyStarts;
+    }
+
+    private static boolean isEof(ParseTree tree) {
+        return tree instanceof TerminalNode && ((TerminalNode) tree).getSymbol().getType() == Token.EOF;
+    }
+
+    private static Token firstTokenOf(ParseTree tree) {
+        return tree instanceof TerminalNode ? ((TerminalNode) tree).getSymbol() : ((ParserRuleContext) tree).start;
+    }
+
+    private static Token lastTokenOf(ParseTree tree) {
+        return tree instanceof TerminalNode ? ((TerminalNode) tree).getSymbol() : ((ParserRuleContext) tree).stop;
+    }
+
+    private static int startOf(ParseTree tree) {
+        return firstTokenOf(tree).getStartIndex();
+    }
+
+    private static int endOf(ParseTree tree) {
+        Token stop = lastTokenOf(tree);
+        if (stop == null) {
+            return startOf(tree);
+        }
+        return Math.max(startOf(tree), stop.getStopIndex() + 1);
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing;
+
+import org.netbeans.modules.parsing.spi.SourceModificationEvent;
+
+/**
+ * The part of the text that changed between two versions of it. The text
+ * before {@link #getStart()}, and the text after the end of the change, are the
+ * same in both versions.
+ */
+class TextChange {
+
+    private final int start;
+    private final int oldEnd;
+    private final int newEnd;
+
+    private TextChange(int start, int oldEnd, int newEnd) {
+        this.start = start;
+        this.oldEnd = oldEnd;
+        this.newEnd = newEnd;
+    }
+
+    /**
+     * Get the change between two versions of the text. If the event says
+     * where the edits since the last parse were, that's used instead of
+     * comparing the texts.
+     *
+     * @param event the event NetBeans parsed the new text for, or null if it
+     * doesn't cover every edit since the old text
+     */
+    static TextChange between(CharSequence oldText, CharSequence newText, SourceModificationEvent event) {
+        if (event != null && event.sourceChanged()) {
+            int start = event.getAffectedStartOffset();
+            int newEnd = event.getAffectedEndOffset();
+            int oldEnd = newEnd - (newText.length() - oldText.length());
+            if (start >= 0 && start <= newEnd && newEnd <= newText.length() && start <= oldEnd && oldEnd <= oldText.length()) {
+                return new TextChange(start, oldEnd, newEnd);
+            }
+        }
+        return between(oldText, newText);
+    }
+
+    /**
+     * Get the change between two versions of the text by comparing them.
+     */
+    static TextChange between(CharSequence oldText, CharSequence newText) {
+        int prefixLength = commonPrefixLength(oldText, newText);
+        int suffixLength = commonSuffixLength(oldText, newText, prefixLength);
+        return new TextChange(prefixLength, oldText.length() - suffixLength, newText.length() - suffixLength);
+    }
+
+    /**
+     * @return whether the two versions of the text are the same
+     */
+    boolean isEmpty() {
+        return start == oldEnd && start == newEnd;
+    }
+
+    int getStart() {
+        return start;
+    }
+
+    /**
+     * @return where the change ended in the old text
+     */
+    int getOldEnd() {
+        return oldEnd;
+    }
+
+    /**
+     * @return where the change ends in the new text
+     */
+    int getNewEnd() {
+        return newEnd;
+    }
+
+    /**
+     * @return how much the change moved the text after it
+     */
+    int getDelta() {
+        return newEnd - oldEnd;
+    }
+
+    private static int commonPrefixLength(CharSequence a, CharSequence b) {
+        int length = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < length && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int commonSuffixLength(CharSequence a, CharSequence b, int commonPrefixLength) {
+        int length = Math.min(a.length(), b.length()) - commonPrefixLength;
+        int i = 0;
+        while (i < length && a.charAt(a.length() - 1 - i) == b.charAt(b.length() - 1 - i)) {
+            i++;
+        }
+        return i;
+    }
+}
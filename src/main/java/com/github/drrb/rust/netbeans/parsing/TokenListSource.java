@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing;
+
+import java.util.List;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenFactory;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+
+/**
+ * A TokenSource that hands out tokens that have already been lexed, followed
+ * by an EOF token.
+ */
+class TokenListSource implements TokenSource {
+
+    private final List<Token> tokens;
+    private final Token eof;
+    private int index = 0;
+
+    TokenListSource(List<Token> tokens, Token eof) {
+        this.tokens = tokens;
+        this.eof = eof;
+    }
+
+    @Override
+    public Token nextToken() {
+        if (index < tokens.size()) {
+            return tokens.get(index++);
+        }
+        return eof;
+    }
+
+    @Override
+    public int getLine() {
+        return currentToken().getLine();
+    }
+
+    @Override
+    public int getCharPositionInLine() {
+        return currentToken().getCharPositionInLine();
+    }
+
+    @Override
+    public CharStream getInputStream() {
+        return eof.getInputStream();
+    }
+
+    @Override
+    public String getSourceName() {
+        CharStream input = getInputStream();
+        return input == null ? "" : input.getSourceName();
+    }
+
+    @Override
+    public void setTokenFactory(TokenFactory<?> factory) {
+        //The tokens are already made
+    }
+
+    @Override
+    public TokenFactory<?> getTokenFactory() {
+        return CommonTokenFactory.DEFAULT;
+    }
+
+    private Token currentToken() {
+        return index < tokens.size() ? tokens.get(index) : eof;
+    }
+}
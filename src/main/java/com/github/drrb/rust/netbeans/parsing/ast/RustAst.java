@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing.ast;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The compact AST of a source file: the items we analyze, and all the doc
+ * comments in the file.
+ */
+public class RustAst extends RustAstNode {
+
+    private final CharSequence sourceText;
+    private final List<RustAstItem> items;
+    private final List<RustAstDocComment> docComments;
+
+    RustAst(int start, int end, CharSequence sourceText, List<RustAstItem> items, List<RustAstDocComment> docComments) {
+        super(start, end);
+        this.sourceText = sourceText;
+        this.items = items;
+        this.docComments = docComments;
+    }
+
+    /**
+     * Put the ASTs of consecutive parts of a file back together.
+     */
+    public static RustAst merge(List<RustAst> parts) {
+        List<RustAstItem> items = new ArrayList<>();
+        List<RustAstDocComment> docComments = new ArrayList<>();
+        for (RustAst part : parts) {
+            items.addAll(part.items);
+            docComments.addAll(part.docComments);
+        }
+        int start = parts.isEmpty() ? 0 : parts.get(0).getStart();
+        int end = parts.isEmpty() ? 0 : parts.get(parts.size() - 1).getEnd();
+        CharSequence sourceText = parts.isEmpty() ? "" : parts.get(0).sourceText;
+        return new RustAst(start, end, sourceText, Collections.unmodifiableList(items), Collections.unmodifiableList(docComments));
+    }
+
+    /**
+     * Put together the AST of an edited file from the AST before the edit and
+     * the AST of the items that were reparsed. The items and doc comments
+     * outside the reparsed region are reused, and the ones after it are moved
+     * by how much the edit changed the text's length. They're only moved into
+     * the new text when they're first asked for, and the previous AST isn't
+     * changed, so results that still use it aren't affected.
+     *
+     * @param region the AST of the reparsed region, or null if there aren't
+     * any items in it any more
+     * @param regionStart where the reparsed region starts (the same before
+     * and after the edit)
+     * @param oldRegionEnd where the reparsed region ended before the edit
+     * @param sourceText the text after the edit
+     * @param bodyParser parses the skipped function bodies in the text after
+     * the edit
+     */
+    public static RustAst splice(RustAst previous, RustAst region, int regionStart, int oldRegionEnd, CharSequence sourceText, RustAstBodyParser bodyParser) {
+        int delta = sourceText.length() - previous.sourceText.length();
+        List<RustAstItem> reparsedItems = region == null ? Collections.<RustAstItem>emptyList() : region.items;
+        List<RustAstDocComment> reparsedDocComments = region == null ? Collections.<RustAstDocComment>emptyList() : region.docComments;
+        //The spliced lists are read-only, and aren't wrapped so that the next
+        //splice can see which of their nodes haven't been moved yet
+        List<RustAstItem> items = new SplicedNodeList<>(previous.items, reparsedItems, regionStart, oldRegionEnd, delta, sourceText, bodyParser);
+        List<RustAstDocComment> docComments = new SplicedNodeList<>(previous.docComments, reparsedDocComments, regionStart, oldRegionEnd, delta, sourceText, bodyParser);
+        int start = region == null || previous.getStart() < regionStart ? previous.getStart() : region.getStart();
+        int end = region == null || previous.getEnd() > oldRegionEnd ? previous.getEnd() + delta : region.getEnd();
+        return new RustAst(start, end, sourceText, items, docComments);
+    }
+
+    /**
+     * @return the whole text of the file, so that parts of it can be used
+     * without copying them out while the AST is built
+     */
+    public CharSequence getSourceText() {
+        return sourceText;
+    }
+
+    public List<RustAstItem> getItems() {
+        return items;
+    }
+
+    public List<RustAstDocComment> getDocComments() {
+        return docComments;
+    }
+
+    @Override
+    public <R> R accept(RustAstVisitor<R> visitor) {
+        return visitor.visitAst(this);
+    }
+
+    @Override
+    RustAst shiftedBy(RustAstShift shift) {
+        return new RustAst(shift.offset(getStart()), shift.offset(getEnd()), shift.getSourceText(), shift.all(items), shift.all(docComments));
+    }
+
+    @Override
+    public String toString() {
+        return "ast" + items;
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing.ast;
+
+import java.util.List;
+
+/**
+ * A function body.
+ */
+public class RustAstBlock extends RustAstNode {
+
+    private final CharSequence sourceText;
+    private final List<RustAstIdent> idents;
+
+    RustAstBlock(int start, int end, CharSequence sourceText, List<RustAstIdent> idents) {
+        super(start, end);
+        this.sourceText = sourceText;
+        this.idents = idents;
+    }
+
+    /**
+     * @return the block's text, which is only taken out of the source text
+     * when it's asked for
+     */
+    public CharSequence getText() {
+        return sourceText.subSequence(getStart(), getEnd());
+    }
+
+    /**
+     * @return every identifier in the block, including ones in items nested
+     * in it
+     */
+    public List<RustAstIdent> getIdents() {
+        return idents;
+    }
+
+    @Override
+    RustAstBlock shiftedBy(RustAstShift shift) {
+        return new RustAstBlock(shift.offset(getStart()), shift.offset(getEnd()), shift.getSourceText(), shift.all(idents));
+    }
+
+    @Override
+    public <R> R accept(RustAstVisitor<R> visitor) {
+        return visitor.visitBlock(this);
+    }
+}
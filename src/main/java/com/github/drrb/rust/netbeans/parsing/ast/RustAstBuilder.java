@@ -0,0 +1,311 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing.ast;
+
+import com.github.drrb.rust.netbeans.parsing.CharSequenceCharStream;
+import com.github.drrb.rust.netbeans.parsing.RustParser;
+import com.github.drrb.rust.netbeans.util.Lists;
+import java.util.ArrayList;
+import java.util.List;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+/**
+ * Builds the compact AST from an ANTLR parse tree, so that the parse tree
+ * doesn't need to be kept.
+ */
+public class RustAstBuilder {
+
+    private final List<RustAstDocComment> docComments = new ArrayList<>();
+    private final RustAstBodyParser bodyParser;
+    private final CharSequence sourceText;
+
+    private RustAstBuilder(RustAstBodyParser bodyParser, CharSequence sourceText) {
+        this.bodyParser = bodyParser;
+        this.sourceText = sourceText;
+    }
+
+    public static RustAst build(RustParser.ProgContext prog) {
+        return new RustAstBuilder(null, sourceTextOf(prog)).ast(prog);
+    }
+
+    /**
+     * Build the AST of a signature-only parse, where function bodies were
+     * skipped.
+     *
+     * @param bodyParser parses the skipped bodies when they're needed
+     */
+    public static RustAst build(RustParser.ProgContext prog, RustAstBodyParser bodyParser) {
+        return new RustAstBuilder(bodyParser, sourceTextOf(prog)).ast(prog);
+    }
+
+    /**
+     * Build the AST of some top-level items that were parsed on their own,
+     * without their function bodies.
+     *
+     * @param items the items, in order (there must be at least one)
+     * @param bodyParser parses the skipped bodies when they're needed
+     */
+    public static RustAst build(List<RustParser.Mod_itemContext> items, RustAstBodyParser bodyParser) {
+        RustParser.Mod_itemContext firstItem = items.get(0);
+        RustParser.Mod_itemContext lastItem = items.get(items.size() - 1);
+        RustAstBuilder builder = new RustAstBuilder(bodyParser, sourceTextOf(firstItem));
+        List<RustAstItem> astItems = new ArrayList<>();
+        for (RustParser.Mod_itemContext item : items) {
+            builder.collectItems(item, astItems);
+        }
+        return new RustAst(startOf(firstItem), endOf(lastItem), builder.sourceText, Lists.freeze(astItems), Lists.freeze(builder.docComments));
+    }
+
+    /**
+     * Build a function body that was parsed on its own.
+     */
+    public static RustAstBlock buildBlock(RustParser.Fun_bodyContext context) {
+        return block(context, sourceTextOf(context));
+    }
+
+    private RustAst ast(RustParser.ProgContext prog) {
+        List<RustAstItem> items = itemsIn(prog);
+        return new RustAst(startOf(prog), endOf(prog), sourceText, items, Lists.freeze(docComments));
+    }
+
+    /**
+     * Find the items in a context (not counting items nested in those items),
+     * and collect the doc comments on the way.
+     */
+    private List<RustAstItem> itemsIn(ParserRuleContext context) {
+        List<RustAstItem> items = new ArrayList<>();
+        for (int i = 0; i < context.getChildCount(); i++) {
+            collectItems(context.getChild(i), items);
+        }
+        return Lists.freeze(items);
+    }
+
+    private void collectItems(ParseTree tree, List<RustAstItem> items) {
+        if (tree instanceof TerminalNode) {
+            Token symbol = ((TerminalNode) tree).getSymbol();
+            if (symbol.getType() == RustParser.OUTER_DOC_COMMENT) {
+                docComments.add(docComment(symbol));
+            }
+        } else if (tree instanceof RustParser.Item_fn_declContext) {
+            items.add(function((RustParser.Item_fn_declContext) tree));
+        } else if (tree instanceof RustParser.Struct_declContext) {
+            items.add(struct((RustParser.Struct_declContext) tree));
+        } else if (tree instanceof RustParser.Enum_declContext) {
+            items.add(enumItem((RustParser.Enum_declContext) tree));
+        } else if (tree instanceof RustParser.Trait_declContext) {
+            items.add(trait((RustParser.Trait_declContext) tree));
+        } else if (tree instanceof RustParser.ImplContext) {
+            items.add(impl((RustParser.ImplContext) tree));
+        } else if (tree instanceof RustParser.Impl_trait_for_typeContext) {
+            items.add(traitImpl((RustParser.Impl_trait_for_typeContext) tree));
+        } else if (tree instanceof RustParser.Impl_methodContext) {
+            //Collected by the impl, as one of its methods
+        } else {
+            for (int i = 0; i < tree.getChildCount(); i++) {
+                collectItems(tree.getChild(i), items);
+            }
+        }
+    }
+
+    private RustAstFunction function(RustParser.Item_fn_declContext context) {
+        List<RustAstIdent> parameterNames = new ArrayList<>();
+        for (RustParser.ArgContext arg : findOutermost(context, RustParser.ArgContext.class, RustParser.Fun_bodyContext.class)) {
+            for (RustParser.Non_global_pathContext path : findOutermost(arg.pat(), RustParser.Non_global_pathContext.class, null)) {
+                List<RustParser.IdentContext> pathIdents = path.ident();
+                parameterNames.add(ident(pathIdents.get(pathIdents.size() - 1)));
+            }
+        }
+        List<RustParser.Fun_bodyContext> bodies = findOutermost(context, RustParser.Fun_bodyContext.class, RustParser.ArgContext.class);
+        RustParser.Fun_bodyContext body = bodies.isEmpty() ? null : bodies.get(bodies.size() - 1);
+        if (body != null && bodyParser != null && isSkipped(body)) {
+            return new RustAstFunction(startOf(context), endOf(context), docCommentOf(context), itemsIn(context), ident(context.ident()), Lists.freeze(parameterNames), offsetsOf(body), bodyParser);
+        }
+        return new RustAstFunction(startOf(context), endOf(context), docCommentOf(context), itemsIn(context), ident(context.ident()), Lists.freeze(parameterNames), body == null ? null : block(body, sourceText));
+    }
+
+    /**
+     * @return whether the body is just its braces, which is how a
+     * signature-only parse leaves it
+     */
+    private static boolean isSkipped(RustParser.Fun_bodyContext body) {
+        Token start = body.getStart();
+        Token stop = body.getStop();
+        return stop != null && stop.getTokenIndex() == start.getTokenIndex() + 1;
+    }
+
+    private static RustAstBlock block(RustParser.Fun_bodyContext context, CharSequence sourceText) {
+        List<RustAstIdent> idents = new ArrayList<>();
+        for (RustParser.IdentContext ident : findOutermost(context, RustParser.IdentContext.class, null)) {
+            idents.add(ident(ident));
+        }
+        return new RustAstBlock(startOf(context), endOf(context), sourceText, Lists.freeze(idents));
+    }
+
+    private RustAstStruct struct(RustParser.Struct_declContext context) {
+        List<RustAstIdent> fieldNames = new ArrayList<>();
+        for (RustParser.Struct_fieldContext field : findOutermost(context, RustParser.Struct_fieldContext.class, null)) {
+            addIfPresent(ident(field.ident()), fieldNames);
+        }
+        return new RustAstStruct(startOf(context), endOf(context), docCommentOf(context), itemsIn(context), ident(context.ident()), offsetsBetween(context.LBRACE(), context.RBRACE(), context), Lists.freeze(fieldNames));
+    }
+
+    private RustAstEnum enumItem(RustParser.Enum_declContext context) {
+        List<RustAstIdent> variantNames = new ArrayList<>();
+        for (RustParser.Enum_variant_declContext variant : findOutermost(context, RustParser.Enum_variant_declContext.class, null)) {
+            addIfPresent(ident(variant.ident()), variantNames);
+        }
+        return new RustAstEnum(startOf(context), endOf(context), docCommentOf(context), itemsIn(context), ident(context.ident()), offsetsBetween(context.LBRACE(), context.RBRACE(), context), Lists.freeze(variantNames));
+    }
+
+    private RustAstTrait trait(RustParser.Trait_declContext context) {
+        List<RustAstIdent> methodNames = new ArrayList<>();
+        for (RustParser.Trait_methodContext method : findOutermost(context, RustParser.Trait_methodContext.class, null)) {
+            addIfPresent(ident(method.ident()), methodNames);
+        }
+        return new RustAstTrait(startOf(context), endOf(context), docCommentOf(context), itemsIn(context), ident(context.ident()), offsetsBetween(context.LBRACE(), context.RBRACE(), context), Lists.freeze(methodNames));
+    }
+
+    private RustAstImpl impl(RustParser.ImplContext context) {
+        RustParser.Impl_bodyContext body = context.impl_body();
+        return new RustAstImpl(startOf(context), endOf(context), docCommentOf(context), itemsIn(context), pathsIn(context.ty()), offsetsOf(body == null ? context : body), implMethodsIn(body));
+    }
+
+    private RustAstTraitImpl traitImpl(RustParser.Impl_trait_for_typeContext context) {
+        RustParser.Impl_bodyContext body = context.impl_body();
+        return new RustAstTraitImpl(startOf(context), endOf(context), docCommentOf(context), itemsIn(context), pathsIn(context.trait()), offsetsOf(body == null ? context : body), implMethodsIn(body));
+    }
+
+    private List<RustAstImplMethod> implMethodsIn(RustParser.Impl_bodyContext body) {
+        List<RustAstImplMethod> methods = new ArrayList<>();
+        for (RustParser.Impl_methodContext method : findOutermost(body, RustParser.Impl_methodContext.class, null)) {
+            RustParser.Fun_bodyContext methodBody = method.fun_body();
+            methods.add(new RustAstImplMethod(startOf(method), endOf(method), ident(method.ident()), offsetsOf(methodBody == null ? method : methodBody), itemsIn(method)));
+        }
+        return Lists.freeze(methods);
+    }
+
+    private List<RustAstPath> pathsIn(ParserRuleContext context) {
+        List<RustAstPath> paths = new ArrayList<>();
+        for (RustParser.Non_global_pathContext path : findOutermost(context, RustParser.Non_global_pathContext.class, null)) {
+            List<RustAstIdent> idents = new ArrayList<>();
+            for (RustParser.IdentContext ident : path.ident()) {
+                idents.add(ident(ident));
+            }
+            paths.add(new RustAstPath(startOf(path), endOf(path), sourceText, Lists.freeze(idents)));
+        }
+        return Lists.freeze(paths);
+    }
+
+    /**
+     * @return the first doc comment in the attributes before the item, or
+     * null if there isn't one
+     */
+    private static RustAstDocComment docCommentOf(ParserRuleContext item) {
+        if (item.getParent() instanceof RustParser.Mod_itemContext) {
+            RustParser.Attrs_and_visContext attributes = ((RustParser.Mod_itemContext) item.getParent()).attrs_and_vis();
+            for (TerminalNode terminal : findOutermost(attributes, TerminalNode.class, null)) {
+                if (terminal.getSymbol().getType() == RustParser.OUTER_DOC_COMMENT) {
+                    return docComment(terminal.getSymbol());
+                }
+            }
+        }
+        return null;
+    }
+
+    private static RustAstDocComment docComment(Token token) {
+        return new RustAstDocComment(token.getStartIndex(), token.getStopIndex() + 1, token.getText());
+    }
+
+    private static RustAstIdent ident(RustParser.IdentContext context) {
+        if (context == null) {
+            return null;
+        }
+        //An ident is one token, so take its text rather than building it up
+        //from the context's children
+        Token start = context.getStart();
+        Token stop = context.getStop();
+        String name = stop != null && stop.getTokenIndex() == start.getTokenIndex() ? start.getText() : context.getText();
+        return new RustAstIdent(startOf(context), endOf(context), name);
+    }
+
+    /**
+     * @return the whole text that was parsed, without copying it if it can be
+     * helped
+     */
+    private static CharSequence sourceTextOf(ParserRuleContext context) {
+        CharStream input = context.getStart().getInputStream();
+        if (input instanceof CharSequenceCharStream) {
+            return ((CharSequenceCharStream) input).getSourceText();
+        }
+        return input.getText(Interval.of(0, input.size() - 1));
+    }
+
+    /**
+     * Find the subtrees of the specified type, but not the ones inside other
+     * ones, or inside subtrees of the excluded type.
+     */
+    private static <T extends ParseTree> List<T> findOutermost(ParseTree tree, Class<T> type, Class<? extends ParseTree> excludedType) {
+        List<T> found = new ArrayList<>();
+        if (tree != null) {
+            for (int i = 0; i < tree.getChildCount(); i++) {
+                findOutermost(tree.getChild(i), type, excludedType, found);
+            }
+        }
+        return found;
+    }
+
+    private static <T extends ParseTree> void findOutermost(ParseTree tree, Class<T> type, Class<? extends ParseTree> excludedType, List<T> found) {
+        if (type.isInstance(tree)) {
+            found.add(type.cast(tree));
+        } else if (excludedType == null || !excludedType.isInstance(tree)) {
+            for (int i = 0; i < tree.getChildCount(); i++) {
+                findOutermost(tree.getChild(i), type, excludedType, found);
+            }
+        }
+    }
+
+    private static <T> void addIfPresent(T item, List<T> items) {
+        if (item != null) {
+            items.add(item);
+        }
+    }
+
+    private static long offsetsOf(ParserRuleContext context) {
+        return RustAstNode.pack(startOf(context), endOf(context));
+    }
+
+    private static long offsetsBetween(TerminalNode start, TerminalNode end, ParserRuleContext fallback) {
+        if (start == null || end == null) {
+            return offsetsOf(fallback);
+        }
+        return RustAstNode.pack(start.getSymbol().getStartIndex(), end.getSymbol().getStopIndex() + 1);
+    }
+
+    private static int startOf(ParserRuleContext context) {
+        return context.getStart().getStartIndex();
+    }
+
+    private static int endOf(ParserRuleContext context) {
+        Token stop = context.getStop();
+        return stop == null ? startOf(context) : stop.getStopIndex() + 1;
+    }
+}
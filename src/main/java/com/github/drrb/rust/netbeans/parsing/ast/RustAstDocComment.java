@@ -0,0 +1,44 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing.ast;
+
+/**
+ *
+ */
+public class RustAstDocComment extends RustAstNode {
+
+    private final String text;
+
+    RustAstDocComment(int start, int end, String text) {
+        super(start, end);
+        this.text = text;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    RustAstDocComment shiftedBy(RustAstShift shift) {
+        return new RustAstDocComment(shift.offset(getStart()), shift.offset(getEnd()), text);
+    }
+
+    @Override
+    public <R> R accept(RustAstVisitor<R> visitor) {
+        return visitor.visitDocComment(this);
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing.ast;
+
+import java.util.List;
+import org.netbeans.modules.csl.api.OffsetRange;
+
+/**
+ *
+ */
+public class RustAstFunction extends RustAstItem {
+
+    private final RustAstIdent name;
+    private final List<RustAstIdent> parameterNames;
+    private final long bodyOffsets;
+    private final RustAstBodyParser bodyParser;
+    private volatile RustAstBlock body;
+
+    RustAstFunction(int start, int end, RustAstDocComment docComment, List<RustAstItem> nestedItems, RustAstIdent name, List<RustAstIdent> parameterNames, RustAstBlock body) {
+        super(start, end, docComment, nestedItems);
+        this.name = name;
+        this.parameterNames = parameterNames;
+        this.bodyOffsets = body == null ? -1 : pack(body.getStart(), body.getEnd());
+        this.bodyParser = null;
+        this.body = body;
+    }
+
+    /**
+     * Make a function whose body was skipped, and will be parsed when it's
+     * first asked for.
+     */
+    RustAstFunction(int start, int end, RustAstDocComment docComment, List<RustAstItem> nestedItems, RustAstIdent name, List<RustAstIdent> parameterNames, long bodyOffsets, RustAstBodyParser bodyParser) {
+        this(start, end, docComment, nestedItems, name, parameterNames, bodyOffsets, bodyParser, null);
+    }
+
+    private RustAstFunction(int start, int end, RustAstDocComment docComment, List<RustAstItem> nestedItems, RustAstIdent name, List<RustAstIdent> parameterNames, long bodyOffsets, RustAstBodyParser bodyParser, RustAstBlock body) {
+        super(start, end, docComment, nestedItems);
+        this.name = name;
+        this.parameterNames = parameterNames;
+        this.bodyOffsets = bodyOffsets;
+        this.bodyParser = bodyParser;
+        this.body = body;
+    }
+
+    public RustAstIdent getName() {
+        return name;
+    }
+
+    public List<RustAstIdent> getParameterNames() {
+        return parameterNames;
+    }
+
+    /**
+     * Get the function's body, parsing it if it was skipped. Use
+     * {@link #getBodyOffsetRange()} if you only need to know where it is.
+     *
+     * @return the function's body, or null if it doesn't have one
+     */
+    public RustAstBlock getBody() {
+        RustAstBlock result = body;
+        if (result == null && bodyParser != null) {
+            //Parsing the same body twice at once is harmless, so there's no lock
+            body = result = bodyParser.parseBody(start(bodyOffsets));
+        }
+        return result;
+    }
+
+    /**
+     * @return where the function's body is, or null if it doesn't have one
+     */
+    public OffsetRange getBodyOffsetRange() {
+        return bodyOffsets == -1 ? null : offsetRange(bodyOffsets);
+    }
+
+    /**
+     * @return whether the body has been parsed yet
+     */
+    public boolean isBodyParsed() {
+        return body != null || bodyOffsets == -1;
+    }
+
+    @Override
+    RustAstFunction shiftedBy(RustAstShift shift) {
+        if (bodyParser == null) {
+            return new RustAstFunction(shift.offset(getStart()), shift.offset(getEnd()), shift.node(getDocComment()), shift.all(getNestedItems()), shift.node(name), shift.all(parameterNames), shift.node(body));
+        }
+        //A skipped body stays where the signature parse found it, even if parsing it
+        //on its own found a different end. If it hasn't been parsed yet, the new
+        //text's body parser will parse it when it's needed. If it has, it only
+        //depends on its own text (see FunctionBodyTokenSource), so it can move.
+        return new RustAstFunction(shift.offset(getStart()), shift.offset(getEnd()), shift.node(getDocComment()), shift.all(getNestedItems()), shift.node(name), shift.all(parameterNames), shift.offsets(bodyOffsets), shift.getBodyParser(), shift.node(body));
+    }
+
+    @Override
+    public <R> R accept(RustAstVisitor<R> visitor) {
+        return visitor.visitFunction(this);
+    }
+
+    @Override
+    public String toString() {
+        return "fn " + name + parameterNames + getNestedItems();
+    }
+}
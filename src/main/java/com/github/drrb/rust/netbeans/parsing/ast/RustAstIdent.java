@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing.ast;
+
+/**
+ *
+ */
+public class RustAstIdent extends RustAstNode {
+
+    private final String name;
+
+    RustAstIdent(int start, int end, String name) {
+        super(start, end);
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    RustAstIdent shiftedBy(RustAstShift shift) {
+        return new RustAstIdent(shift.offset(getStart()), shift.offset(getEnd()), name);
+    }
+
+    @Override
+    public <R> R accept(RustAstVisitor<R> visitor) {
+        return visitor.visitIdent(this);
+    }
+
+    @Override
+    public String toString() {
+        return name + "@" + getStart();
+    }
+}
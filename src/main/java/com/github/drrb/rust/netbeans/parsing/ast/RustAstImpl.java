@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing.ast;
+
+import java.util.List;
+import org.netbeans.modules.csl.api.OffsetRange;
+
+/**
+ * An impl of a type, like {@code impl Point { ... }}.
+ */
+public class RustAstImpl extends RustAstItem {
+
+    private final List<RustAstPath> typePaths;
+    private final long bodyOffsets;
+    private final List<RustAstImplMethod> methods;
+
+    RustAstImpl(int start, int end, RustAstDocComment docComment, List<RustAstItem> nestedItems, List<RustAstPath> typePaths, long bodyOffsets, List<RustAstImplMethod> methods) {
+        super(start, end, docComment, nestedItems);
+        this.typePaths = typePaths;
+        this.bodyOffsets = bodyOffsets;
+        this.methods = methods;
+    }
+
+    /**
+     * @return the paths in the implemented type (usually just one, but more
+     * for e.g. generic types)
+     */
+    public List<RustAstPath> getTypePaths() {
+        return typePaths;
+    }
+
+    public OffsetRange getBodyOffsetRange() {
+        return offsetRange(bodyOffsets);
+    }
+
+    public List<RustAstImplMethod> getMethods() {
+        return methods;
+    }
+
+    @Override
+    RustAstImpl shiftedBy(RustAstShift shift) {
+        return new RustAstImpl(shift.offset(getStart()), shift.offset(getEnd()), shift.node(getDocComment()), shift.all(getNestedItems()), shift.all(typePaths), shift.offsets(bodyOffsets), shift.all(methods));
+    }
+
+    @Override
+    public <R> R accept(RustAstVisitor<R> visitor) {
+        return visitor.visitImpl(this);
+    }
+
+    @Override
+    public String toString() {
+        return "impl " + typePaths + methods + getNestedItems();
+    }
+}
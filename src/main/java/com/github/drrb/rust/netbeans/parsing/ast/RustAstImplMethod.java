@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing.ast;
+
+import java.util.List;
+import org.netbeans.modules.csl.api.OffsetRange;
+
+/**
+ * A method in an impl or a trait impl.
+ */
+public class RustAstImplMethod extends RustAstNode {
+
+    private final RustAstIdent name;
+    private final long bodyOffsets;
+    private final List<RustAstItem> nestedItems;
+
+    RustAstImplMethod(int start, int end, RustAstIdent name, long bodyOffsets, List<RustAstItem> nestedItems) {
+        super(start, end);
+        this.name = name;
+        this.bodyOffsets = bodyOffsets;
+        this.nestedItems = nestedItems;
+    }
+
+    public RustAstIdent getName() {
+        return name;
+    }
+
+    public OffsetRange getBodyOffsetRange() {
+        return offsetRange(bodyOffsets);
+    }
+
+    public List<RustAstItem> getNestedItems() {
+        return nestedItems;
+    }
+
+    @Override
+    RustAstImplMethod shiftedBy(RustAstShift shift) {
+        return new RustAstImplMethod(shift.offset(getStart()), shift.offset(getEnd()), shift.node(name), shift.offsets(bodyOffsets), shift.all(nestedItems));
+    }
+
+    @Override
+    public <R> R accept(RustAstVisitor<R> visitor) {
+        return visitor.visitImplMethod(this);
+    }
+
+    @Override
+    public String toString() {
+        return "fn " + name + nestedItems;
+    }
+}
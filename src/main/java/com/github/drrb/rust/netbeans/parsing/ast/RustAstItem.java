@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing.ast;
+
+import java.util.List;
+
+/**
+ * A function, struct, enum, trait, impl or trait impl.
+ */
+public abstract class RustAstItem extends RustAstNode {
+
+    private final RustAstDocComment docComment;
+    private final List<RustAstItem> nestedItems;
+
+    RustAstItem(int start, int end, RustAstDocComment docComment, List<RustAstItem> nestedItems) {
+        super(start, end);
+        this.docComment = docComment;
+        this.nestedItems = nestedItems;
+    }
+
+    /**
+     * @return the first doc comment before the item, or null if there isn't
+     * one
+     */
+    public RustAstDocComment getDocComment() {
+        return docComment;
+    }
+
+    /**
+     * @return the items inside this one (e.g. functions declared in a
+     * function body)
+     */
+    public List<RustAstItem> getNestedItems() {
+        return nestedItems;
+    }
+}
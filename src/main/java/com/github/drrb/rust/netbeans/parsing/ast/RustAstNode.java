@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing.ast;
+
+import org.netbeans.modules.csl.api.OffsetRange;
+
+/**
+ * A node in the compact AST. Nodes are immutable, and keep their start and end
+ * offsets packed into one long.
+ */
+public abstract class RustAstNode {
+
+    private final long offsets;
+
+    RustAstNode(int start, int end) {
+        this.offsets = pack(start, end);
+    }
+
+    public int getStart() {
+        return start(offsets);
+    }
+
+    public int getEnd() {
+        return end(offsets);
+    }
+
+    public OffsetRange getOffsetRange() {
+        return new OffsetRange(getStart(), getEnd());
+    }
+
+    public abstract <R> R accept(RustAstVisitor<R> visitor);
+
+    /**
+     * @return a copy of this node (and the nodes in it) moved into a new
+     * version of the source text
+     */
+    abstract RustAstNode shiftedBy(RustAstShift shift);
+
+    static long pack(int start, int end) {
+        return ((long) start << 32) | (end & 0xFFFFFFFFL);
+    }
+
+    static int start(long offsets) {
+        return (int) (offsets >>> 32);
+    }
+
+    static int end(long offsets) {
+        return (int) offsets;
+    }
+
+    static OffsetRange offsetRange(long offsets) {
+        return new OffsetRange(start(offsets), end(offsets));
+    }
+}
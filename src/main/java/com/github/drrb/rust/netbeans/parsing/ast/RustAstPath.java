@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing.ast;
+
+import java.util.List;
+
+/**
+ * A path like {@code std::io::File}.
+ */
+public class RustAstPath extends RustAstNode {
+
+    private final CharSequence sourceText;
+    private final List<RustAstIdent> idents;
+
+    RustAstPath(int start, int end, CharSequence sourceText, List<RustAstIdent> idents) {
+        super(start, end);
+        this.sourceText = sourceText;
+        this.idents = idents;
+    }
+
+    public String getText() {
+        return sourceText.subSequence(getStart(), getEnd()).toString();
+    }
+
+    public List<RustAstIdent> getIdents() {
+        return idents;
+    }
+
+    @Override
+    RustAstPath shiftedBy(RustAstShift shift) {
+        return new RustAstPath(shift.offset(getStart()), shift.offset(getEnd()), shift.getSourceText(), shift.all(idents));
+    }
+
+    @Override
+    public <R> R accept(RustAstVisitor<R> visitor) {
+        return visitor.visitPath(this);
+    }
+
+    @Override
+    public String toString() {
+        return getText() + "@" + getStart();
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing.ast;
+
+import com.github.drrb.rust.netbeans.util.Lists;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves nodes of the compact AST into a new version of the source text, where
+ * they start the same distance away from where they were.
+ *
+ * @see RustAst#splice(RustAst, RustAst, int, int, CharSequence, RustAstBodyParser)
+ */
+class RustAstShift {
+
+    private final int delta;
+    private final CharSequence sourceText;
+    private final RustAstBodyParser bodyParser;
+
+    RustAstShift(int delta, CharSequence sourceText, RustAstBodyParser bodyParser) {
+        this.delta = delta;
+        this.sourceText = sourceText;
+        this.bodyParser = bodyParser;
+    }
+
+    CharSequence getSourceText() {
+        return sourceText;
+    }
+
+    /**
+     * @return the body parser for the new text, which parses skipped function
+     * bodies at their new offsets
+     */
+    RustAstBodyParser getBodyParser() {
+        return bodyParser;
+    }
+
+    int offset(int offset) {
+        return offset + delta;
+    }
+
+    long offsets(long offsets) {
+        return RustAstNode.pack(RustAstNode.start(offsets) + delta, RustAstNode.end(offsets) + delta);
+    }
+
+    @SuppressWarnings("unchecked")
+    <T extends RustAstNode> T node(T node) {
+        return node == null ? null : (T) node.shiftedBy(this);
+    }
+
+    <T extends RustAstNode> List<T> all(List<T> nodes) {
+        if (nodes.isEmpty()) {
+            return nodes;
+        }
+        List<T> shiftedNodes = new ArrayList<>(nodes.size());
+        for (T node : nodes) {
+            shiftedNodes.add(node(node));
+        }
+        return Lists.freeze(shiftedNodes);
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing.ast;
+
+import java.util.List;
+import org.netbeans.modules.csl.api.OffsetRange;
+
+/**
+ *
+ */
+public class RustAstTrait extends RustAstItem {
+
+    private final RustAstIdent name;
+    private final long bodyOffsets;
+    private final List<RustAstIdent> methodNames;
+
+    RustAstTrait(int start, int end, RustAstDocComment docComment, List<RustAstItem> nestedItems, RustAstIdent name, long bodyOffsets, List<RustAstIdent> methodNames) {
+        super(start, end, docComment, nestedItems);
+        this.name = name;
+        this.bodyOffsets = bodyOffsets;
+        this.methodNames = methodNames;
+    }
+
+    public RustAstIdent getName() {
+        return name;
+    }
+
+    /**
+     * @return the range from the opening brace to the closing brace
+     */
+    public OffsetRange getBodyOffsetRange() {
+        return offsetRange(bodyOffsets);
+    }
+
+    public List<RustAstIdent> getMethodNames() {
+        return methodNames;
+    }
+
+    @Override
+    RustAstTrait shiftedBy(RustAstShift shift) {
+        return new RustAstTrait(shift.offset(getStart()), shift.offset(getEnd()), shift.node(getDocComment()), shift.all(getNestedItems()), shift.node(name), shift.offsets(bodyOffsets), shift.all(methodNames));
+    }
+
+    @Override
+    public <R> R accept(RustAstVisitor<R> visitor) {
+        return visitor.visitTrait(this);
+    }
+
+    @Override
+    public String toString() {
+        return "trait " + name + methodNames + getNestedItems();
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing.ast;
+
+import java.util.List;
+
+/**
+ * Visits the compact AST. Like ANTLR's visitors, the default implementations
+ * visit the node's children and aggregate their results.
+ */
+public abstract class RustAstVisitor<R> {
+
+    public R visitAst(RustAst ast) {
+        return visitAll(ast.getItems());
+    }
+
+    public R visitFunction(RustAstFunction function) {
+        return visitAll(function.getNestedItems());
+    }
+
+    public R visitStruct(RustAstStruct struct) {
+        return visitAll(struct.getNestedItems());
+    }
+
+    public R visitEnum(RustAstEnum enumItem) {
+        return visitAll(enumItem.getNestedItems());
+    }
+
+    public R visitTrait(RustAstTrait trait) {
+        return visitAll(trait.getNestedItems());
+    }
+
+    public R visitImpl(RustAstImpl impl) {
+        return aggregateResult(visitAll(impl.getMethods()), visitAll(impl.getNestedItems()));
+    }
+
+    public R visitTraitImpl(RustAstTraitImpl traitImpl) {
+        return aggregateResult(visitAll(traitImpl.getMethods()), visitAll(traitImpl.getNestedItems()));
+    }
+
+    public R visitImplMethod(RustAstImplMethod method) {
+        return visitAll(method.getNestedItems());
+    }
+
+    public R visitBlock(RustAstBlock block) {
+        return defaultResult();
+    }
+
+    public R visitPath(RustAstPath path) {
+        return defaultResult();
+    }
+
+    public R visitIdent(RustAstIdent ident) {
+        return defaultResult();
+    }
+
+    public R visitDocComment(RustAstDocComment docComment) {
+        return defaultResult();
+    }
+
+    protected R visitAll(List<? extends RustAstNode> nodes) {
+        R result = defaultResult();
+        for (RustAstNode node : nodes) {
+            result = aggregateResult(result, node.accept(this));
+        }
+        return result;
+    }
+
+    protected R defaultResult() {
+        return null;
+    }
+
+    protected R aggregateResult(R aggregate, R nextResult) {
+        return nextResult;
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing.ast;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The nodes of an edited file: the ones that were reparsed, and the ones from
+ * before the edit that are reused. A reused node is only moved into the new
+ * text (see {@link RustAstShift}) when it's first asked for, and the list
+ * that it came from isn't changed.
+ *
+ * Splicing a spliced list again doesn't wrap it: the nodes that haven't been
+ * moved yet are taken from where they originally came from, with the deltas
+ * of both edits added up. The nodes are moved at most once per list.
+ */
+class SplicedNodeList<T extends RustAstNode> extends AbstractList<T> implements RandomAccess {
+
+    private final int reusedBefore;
+    private final List<T> reparsed;
+    private final int[] deltas;
+    private final AtomicReferenceArray<T> originals;
+    private final AtomicReferenceArray<T> moved;
+    private final CharSequence sourceText;
+    private final RustAstBodyParser bodyParser;
+
+    /**
+     * @param previous the nodes before the edit, in order
+     * @param reparsed the nodes in the reparsed region, in order
+     * @param regionStart where the reparsed region starts (the same in the
+     * previous text as in the new text)
+     * @param oldRegionEnd where the reparsed region ended in the previous text
+     * @param delta how far the nodes after the region move
+     */
+    SplicedNodeList(List<T> previous, List<T> reparsed, int regionStart, int oldRegionEnd, int delta, CharSequence sourceText, RustAstBodyParser bodyParser) {
+        //Take each previous node as it is now, or as it was before the last
+        //edit if it hasn't been moved yet
+        List<T> previousNodes = new ArrayList<>(previous.size());
+        int[] previousDeltas = new int[previous.size()];
+        for (int i = 0; i < previous.size(); i++) {
+            previousNodes.add(originalOf(previous, i, previousDeltas));
+        }
+        int before = 0;
+        while (before < previousNodes.size() && previousNodes.get(before).getEnd() + previousDeltas[before] <= regionStart) {
+            before++;
+        }
+        int after = previousNodes.size();
+        while (after > before && previousNodes.get(after - 1).getStart() + previousDeltas[after - 1] >= oldRegionEnd) {
+            after--;
+        }
+        int reusedAfter = previousNodes.size() - after;
+        this.reusedBefore = before;
+        this.reparsed = reparsed;
+        this.deltas = new int[before + reusedAfter];
+        this.originals = new AtomicReferenceArray<>(deltas.length);
+        this.moved = new AtomicReferenceArray<>(deltas.length);
+        this.sourceText = sourceText;
+        this.bodyParser = bodyParser;
+        for (int i = 0; i < before; i++) {
+            originals.set(i, previousNodes.get(i));
+            deltas[i] = previousDeltas[i];
+        }
+        for (int i = 0; i < reusedAfter; i++) {
+            originals.set(before + i, previousNodes.get(after + i));
+            deltas[before + i] = previousDeltas[after + i] + delta;
+        }
+    }
+
+    @Override
+    public T get(int index) {
+        if (index < reusedBefore) {
+            return reused(index);
+        } else if (index < reusedBefore + reparsed.size()) {
+            return reparsed.get(index - reusedBefore);
+        } else {
+            return reused(index - reparsed.size());
+        }
+    }
+
+    @Override
+    public int size() {
+        return deltas.length + reparsed.size();
+    }
+
+    private T reused(int index) {
+        T node = moved.get(index);
+        if (node == null) {
+            T original = originals.get(index);
+            if (original == null) {
+                //Another thread moved it, and then dropped the original
+                return moved.get(index);
+            }
+            node = new RustAstShift(deltas[index], sourceText, bodyParser).node(original);
+            if (!moved.compareAndSet(index, null, node)) {
+                node = moved.get(index);
+            }
+            //The original refers to the previous text, which we don't need now
+            originals.set(index, null);
+        }
+        return node;
+    }
+
+    /**
+     * Get the node at the index, or the node that it will be moved from if it
+     * hasn't been moved yet.
+     *
+     * @param pendingDeltas where to put how far the node still has to move
+     */
+    private static <T extends RustAstNode> T originalOf(List<T> nodes, int index, int[] pendingDeltas) {
+        if (nodes instanceof SplicedNodeList) {
+            SplicedNodeList<T> spliced = (SplicedNodeList<T>) nodes;
+            int reusedIndex = spliced.reusedIndexOf(index);
+            if (reusedIndex != -1) {
+                //The original is only dropped after the moved node is set
+                T node = spliced.moved.get(reusedIndex);
+                if (node == null) {
+                    node = spliced.originals.get(reusedIndex);
+                    if (node != null) {
+                        pendingDeltas[index] = spliced.deltas[reusedIndex];
+                        return node;
+                    }
+                    node = spliced.moved.get(reusedIndex);
+                }
+                return node;
+            }
+        }
+        return nodes.get(index);
+    }
+
+    private int reusedIndexOf(int index) {
+        if (index < reusedBefore) {
+            return index;
+        } else if (index < reusedBefore + reparsed.size()) {
+            return -1;
+        } else {
+            return index - reparsed.size();
+        }
+    }
+}
@@ -16,18 +16,42 @@
  */
 package com.github.drrb.rust.netbeans.parsing.index;
 
-import com.github.drrb.rust.netbeans.parsing.RustBaseVisitor;
-import static com.github.drrb.rust.netbeans.parsing.RustLexUtils.*;
-import com.github.drrb.rust.netbeans.parsing.RustParser;
-import org.antlr.v4.runtime.tree.RuleNode;
-import org.antlr.v4.runtime.tree.TerminalNode;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAst;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstDocComment;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstEnum;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstFunction;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstIdent;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstImpl;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstImplMethod;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstPath;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstStruct;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstTrait;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstTraitImpl;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstVisitor;
+import java.util.List;
+import org.netbeans.modules.csl.api.OffsetRange;
 
 /**
  *
  */
-public class IndexingVisitor extends RustBaseVisitor<RustSourceIndex> {
+public class IndexingVisitor extends RustAstVisitor<RustSourceIndex> {
 
-    private final RustSourceIndex index = new RustSourceIndex();
+    private final SymbolTable symbols;
+    private final RustSourceIndex index;
+    private CharSequence sourceText;
+
+    public IndexingVisitor() {
+        this(new SymbolTable());
+    }
+
+    /**
+     * @param symbols the table to keep names in, which can be shared with
+     * other indexes
+     */
+    public IndexingVisitor(SymbolTable symbols) {
+        this.symbols = symbols;
+        this.index = new RustSourceIndex(symbols);
+    }
 
     @Override
     protected RustSourceIndex defaultResult() {
@@ -40,204 +64,127 @@ public class IndexingVisitor extends RustBaseVisitor<RustSourceIndex> {
     }
 
     @Override
-    public RustSourceIndex visitItem_fn_decl(final RustParser.Item_fn_declContext functionContext) {
-        RustParser.Mod_itemContext outerContext = (RustParser.Mod_itemContext) functionContext.getParent();
-        RustDocComment docComment = outerContext.attrs_and_vis().accept(new RustDocCollectingVisitor());
-
-        final RustFunction.Builder functionBuilder = RustFunction.builder()
-                .setName(functionContext.accept(new FunctionNameFinder()))
-                .setOffsetRange(offsetRangeFor(functionContext))
-                .setDocComment(docComment);
-        functionContext.accept(new RustBaseVisitor<Void>() {
-            @Override
-            public Void visitArg(RustParser.ArgContext ctx) {
-                return ctx.pat().accept(new RustBaseVisitor<Void>() {
-                    @Override
-                    public Void visitNon_global_path(RustParser.Non_global_pathContext ctx) {
-                        RustParser.IdentContext argContext = ctx.ident(ctx.ident().size() - 1);
-                        functionBuilder.addParameterName(new RustFunctionParameterName(argContext.getText(), offsetRangeFor(argContext)));
-                        return null;
-                    }
-                });
-            }
-
-            @Override
-            public Void visitFun_body(RustParser.Fun_bodyContext functionBodyContext) {
-                final RustFunctionBody.Builder functionBodyBuilder = RustFunctionBody.builder().setText(functionBodyContext.getText()).setOffsetRange(offsetRangeFor(functionBodyContext));
-                functionBodyContext.accept(new RustBaseVisitor<Void>() {
-                    @Override
-                    public Void visitIdent(RustParser.IdentContext ctx) {
-                        functionBodyBuilder.addLocalVariableIdentifier(new RustLocalVariableIdentifier(ctx.getText(), offsetRangeFor(ctx)));
-                        return null;
-                    }
-                });
-                functionBuilder.setBody(functionBodyBuilder.build());
-                return null;
-            }
-        });
+    public RustSourceIndex visitAst(RustAst ast) {
+        sourceText = ast.getSourceText();
+        for (RustAstDocComment docComment : ast.getDocComments()) {
+            index.addDocComment(docComment(docComment));
+        }
+        super.visitAst(ast);
+        index.freeze();
+        return index;
+    }
+
+    @Override
+    public RustSourceIndex visitFunction(RustAstFunction function) {
+        RustFunction.Builder functionBuilder = RustFunction.builder(symbols)
+                .setName(nameOf(function.getName()))
+                .setOffsetRange(function.getOffsetRange())
+                .setDocComment(docComment(function.getDocComment()));
+        for (RustAstIdent parameterName : function.getParameterNames()) {
+            functionBuilder.addParameterName(parameterName.getName(), parameterName.getOffsetRange());
+        }
+        //Only index where the body is, so that a skipped body isn't parsed
+        //until something needs what's in it
+        OffsetRange bodyOffsetRange = function.getBodyOffsetRange();
+        if (bodyOffsetRange != null) {
+            functionBuilder.setBody(RustFunctionBody.builder(symbols)
+                    .setSourceText(sourceText)
+                    .setOffsetRange(bodyOffsetRange)
+                    .setFunction(function)
+                    .build());
+        }
         index.addFunction(functionBuilder.build());
-        return visitChildren(functionContext);
+        return super.visitFunction(function);
     }
 
     @Override
-    public RustSourceIndex visitStruct_decl(RustParser.Struct_declContext structContext) {
-        TerminalNode openBrace = structContext.LBRACE();
-        TerminalNode closeBrace = structContext.RBRACE();
-        final RustStructBody.Builder structBodyBuilder = RustStructBody.builder()
-                .setOffsetRange(offsetRangeBetween(openBrace, closeBrace));
-        structContext.accept(new RustBaseVisitor<Void>() {
-            @Override
-            public Void visitStruct_field(RustParser.Struct_fieldContext fieldContext) {
-                RustParser.IdentContext identifier = fieldContext.ident();
-                structBodyBuilder.addField(new RustStructField(identifier.getText(), offsetRangeFor(identifier)));
-                return null;
-            }
-        });
-
-        RustParser.Mod_itemContext outerContext = (RustParser.Mod_itemContext) structContext.getParent();
-        RustDocComment docComment = outerContext.attrs_and_vis().accept(new RustDocCollectingVisitor());
+    public RustSourceIndex visitStruct(RustAstStruct struct) {
+        RustStructBody.Builder structBodyBuilder = RustStructBody.builder()
+                .setOffsetRange(struct.getBodyOffsetRange());
+        for (RustAstIdent fieldName : struct.getFieldNames()) {
+            structBodyBuilder.addField(new RustStructField(symbols.internName(fieldName.getName()), fieldName.getOffsetRange()));
+        }
 
         RustStruct.Builder structBuilder = RustStruct.builder()
-                .setName(structContext.ident().getText())
-                .setOffsetRange(offsetRangeFor(structContext))
+                .setName(nameOf(struct.getName()))
+                .setOffsetRange(struct.getOffsetRange())
                 .setBody(structBodyBuilder.build())
-                .setDocComment(docComment);
+                .setDocComment(docComment(struct.getDocComment()));
         index.addStruct(structBuilder.build());
-        return visitChildren(structContext);
+        return super.visitStruct(struct);
     }
 
     @Override
-    public RustSourceIndex visitEnum_decl(RustParser.Enum_declContext enumContext) {
+    public RustSourceIndex visitEnum(RustAstEnum enumItem) {
         RustEnum.Builder enumBuilder = RustEnum.builder()
-                .setName(enumContext.ident().getText())
-                .setOffsetRange(offsetRangeFor(enumContext));
-        TerminalNode openBrace = enumContext.LBRACE();
-        TerminalNode closeBrace = enumContext.RBRACE();
-        enumBuilder.setBody(new RustEnumBody(offsetRangeBetween(openBrace, closeBrace)));
+                .setName(nameOf(enumItem.getName()))
+                .setOffsetRange(enumItem.getOffsetRange());
+        enumBuilder.setBody(new RustEnumBody(enumItem.getBodyOffsetRange()));
         index.addEnum(enumBuilder.build());
-        return visitChildren(enumContext);
+        return super.visitEnum(enumItem);
     }
 
     @Override
-    public RustSourceIndex visitImpl(RustParser.ImplContext implContext) {
-        //TODO: use a visitor. This will almost definitely have NPEs
-        RustParser.Non_global_pathContext path = implContext.ty().path().non_global_path();
+    public RustSourceIndex visitImpl(RustAstImpl impl) {
+        List<RustAstPath> typePaths = impl.getTypePaths();
+        if (typePaths.isEmpty()) {
+            return super.visitImpl(impl);
+        }
         RustImpl.Builder implBuilder = RustImpl.builder()
-                .setName(path.ident(0).getText())
-                .setOffsetRange(offsetRangeFor(implContext));
-        RustParser.Impl_bodyContext bodyContext = implContext.impl_body();
-        final RustImplBody.Builder implBodyBuilder = RustImplBody.builder()
-                .setOffsetRange(offsetRangeFor(bodyContext));
-        bodyContext.accept(new RustBaseVisitor<Void>() {
-            @Override
-            public Void visitImpl_method(RustParser.Impl_methodContext methodContext) {
-                visitChildren(methodContext);
-                RustParser.Fun_bodyContext methodBodyContext = methodContext.fun_body();
-                RustImplMethod.Builder methodBuilder = RustImplMethod.builder()
-                        .setName(methodContext.accept(new FunctionNameFinder()))
-                        .setOffsetRange(offsetRangeFor(methodContext))
-                        .setBody(new RustImplMethodBody(offsetRangeFor(methodBodyContext)));
-                implBodyBuilder.addMethod(methodBuilder.build());
-                return null;
-            }
-        });
+                .setName(symbols.internName(typePaths.get(0).getIdents().get(0).getName()))
+                .setOffsetRange(impl.getOffsetRange());
+        RustImplBody.Builder implBodyBuilder = RustImplBody.builder()
+                .setOffsetRange(impl.getBodyOffsetRange());
+        for (RustAstImplMethod method : impl.getMethods()) {
+            implBodyBuilder.addMethod(implMethod(method));
+        }
         implBuilder.setBody(implBodyBuilder.build());
         index.addImpl(implBuilder.build());
-        return visitChildren(implContext);
+        return super.visitImpl(impl);
     }
 
     @Override
-    public RustSourceIndex visitTrait_decl(RustParser.Trait_declContext traitContext) {
-        final RustTrait.Builder traitBuilder = RustTrait.builder()
-                .setName(traitContext.ident().getText())
-                .setOffsetRange(offsetRangeFor(traitContext));
-        TerminalNode openBrace = traitContext.LBRACE();
-        TerminalNode closeBrace = traitContext.RBRACE();
-        traitBuilder.setBody(new RustTraitBody(offsetRangeBetween(openBrace, closeBrace)));
+    public RustSourceIndex visitTrait(RustAstTrait trait) {
+        RustTrait.Builder traitBuilder = RustTrait.builder()
+                .setName(nameOf(trait.getName()))
+                .setOffsetRange(trait.getOffsetRange());
+        traitBuilder.setBody(new RustTraitBody(trait.getBodyOffsetRange()));
         index.addTrait(traitBuilder.build());
-        return visitChildren(traitContext);
+        return super.visitTrait(trait);
     }
 
     @Override
-    public RustSourceIndex visitImpl_trait_for_type(RustParser.Impl_trait_for_typeContext traitImplContext) {
-        //TODO: use a visitor. This will almost definitely have NPEs
-        RustParser.Non_global_pathContext traitNamePath = traitImplContext.trait().path().non_global_path();
+    public RustSourceIndex visitTraitImpl(RustAstTraitImpl traitImpl) {
+        List<RustAstPath> traitPaths = traitImpl.getTraitPaths();
+        if (traitPaths.isEmpty()) {
+            return super.visitTraitImpl(traitImpl);
+        }
         RustTraitImpl.Builder traitImplBuilder = RustTraitImpl.builder()
-                .setName(traitNamePath.getText()) //TODO: "name" doesn't really make sense here. For now, just doing it because the others have it
-                .setOffsetRange(offsetRangeFor(traitImplContext));
-        RustParser.Impl_bodyContext traitImplBodyContext = traitImplContext.impl_body();
-        final RustImplBody.Builder traitImplBodyBuilder = RustImplBody.builder()
-                .setOffsetRange(offsetRangeFor(traitImplBodyContext));
-        traitImplBodyContext.accept(new RustBaseVisitor<Void>() {
-            @Override
-            public Void visitImpl_method(RustParser.Impl_methodContext methodContext) {
-                visitChildren(methodContext);
-                RustParser.Fun_bodyContext methodBodyContext = methodContext.fun_body();
-                RustImplMethod.Builder methodBuilder = RustImplMethod.builder()
-                        .setName(methodContext.accept(new FunctionNameFinder()))
-                        .setOffsetRange(offsetRangeFor(methodContext))
-                        .setBody(new RustImplMethodBody(offsetRangeFor(methodBodyContext)));
-                traitImplBodyBuilder.addMethod(methodBuilder.build());
-                return null;
-            }
-        });
+                .setName(symbols.internName(traitPaths.get(0).getText())) //TODO: "name" doesn't really make sense here. For now, just doing it because the others have it
+                .setOffsetRange(traitImpl.getOffsetRange());
+        RustImplBody.Builder traitImplBodyBuilder = RustImplBody.builder()
+                .setOffsetRange(traitImpl.getBodyOffsetRange());
+        for (RustAstImplMethod method : traitImpl.getMethods()) {
+            traitImplBodyBuilder.addMethod(implMethod(method));
+        }
         traitImplBuilder.setBody(traitImplBodyBuilder.build());
         index.addTraitImpl(traitImplBuilder.build());
-        return visitChildren(traitImplContext);
-    }
-
-    @Override
-    public RustSourceIndex visitTerminal(TerminalNode node) {
-        if (node.getSymbol().getType() == RustParser.OUTER_DOC_COMMENT) {
-            index.addDocComment(new RustDocComment(node.getText(), offsetRangeFor(node)));
-        }
-        return index;
-    }
-}
-
-class RustDocCollectingVisitor extends RustBaseVisitor<RustDocComment> {
-
-    @Override
-    public RustDocComment visitTerminal(TerminalNode node) {
-        if (node.getSymbol().getType() == RustParser.OUTER_DOC_COMMENT) {
-            return new RustDocComment(node.getText(), offsetRangeFor(node));
-        }
-        return null;
-    }
-
-    @Override
-    protected RustDocComment aggregateResult(RustDocComment aggregate, RustDocComment nextResult) {
-        if (aggregate == null) {
-            return nextResult;
-        } else {
-            return aggregate;
-        }
+        return super.visitTraitImpl(traitImpl);
     }
 
-    @Override
-    protected boolean shouldVisitNextChild(RuleNode node, RustDocComment currentResult) {
-        return currentResult == null;
-    }
-}
-
-class FunctionNameFinder extends RustBaseVisitor<String> {
-
-    @Override
-    public String visitIdent(RustParser.IdentContext ctx) {
-        return ctx.getText();
+    private RustImplMethod implMethod(RustAstImplMethod method) {
+        return RustImplMethod.builder(symbols)
+                .setName(nameOf(method.getName()))
+                .setOffsetRange(method.getOffsetRange())
+                .setBody(new RustImplMethodBody(method.getBodyOffsetRange()))
+                .build();
     }
 
-    @Override
-    protected String aggregateResult(String aggregate, String nextResult) {
-        if (aggregate == null) {
-            return nextResult;
-        } else {
-            return aggregate;
-        }
+    private String nameOf(RustAstIdent ident) {
+        return ident == null ? null : symbols.internName(ident.getName());
     }
 
-    @Override
-    protected boolean shouldVisitNextChild(RuleNode node, String currentResult) {
-        return currentResult == null;
+    private static RustDocComment docComment(RustAstDocComment docComment) {
+        return docComment == null ? null : new RustDocComment(docComment.getText(), docComment.getOffsetRange());
     }
 }
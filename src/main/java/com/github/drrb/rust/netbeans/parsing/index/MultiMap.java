@@ -1,50 +0,0 @@
-/**
- * Copyright (C) 2013 drrb
- *
- * This program is free software: you can redistribute it and/or modify it under
- * the terms of the GNU General Public License as published by the Free Software
- * Foundation, either version 3 of the License, or (at your option) any later
- * version.
- *
- * This program is distributed in the hope that it will be useful, but WITHOUT
- * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
- * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
- * details.
- *
- * You should have received a copy of the GNU General Public License along with
- * this program. If not, see <http://www.gnu.org/licenses/>.
- */
-package com.github.drrb.rust.netbeans.parsing.index;
-
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-
-/**
- *
- */
-public class MultiMap<K, V> {
-
-    @SuppressWarnings("CollectionWithoutInitialCapacity")
-    private final Map<K, List<V>> map = new HashMap<>();
-
-    public List<V> get(K key) {
-        List<V> values = map.get(key);
-        if (values == null) {
-            return Collections.emptyList();
-        } else {
-            return Collections.unmodifiableList(values);
-        }
-    }
-
-    public void add(K key, V value) {
-        List<V> values = map.get(key);
-        if (values == null) {
-            values = new LinkedList<>();
-            map.put(key, values);
-        }
-        values.add(value);
-    }
-}
@@ -0,0 +1,204 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing.index;
+
+import com.github.drrb.rust.netbeans.util.Option;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.netbeans.modules.csl.api.OffsetRange;
+
+/**
+ * Identifiers (e.g. the local variables in a function body) packed into
+ * parallel int arrays, sorted by offset, with their names kept as ids in a
+ * symbol table. The objects handed out for them are flyweights that read from
+ * these arrays, and are only made when they're asked for.
+ */
+final class PackedIdentifiers {
+
+    static final PackedIdentifiers EMPTY = new PackedIdentifiers(new SymbolTable(), new int[0], new int[0], new int[0]);
+    private final SymbolTable symbols;
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] nameIds;
+    /**
+     * The identifiers' indexes, sorted by name id (and in offset order for
+     * each name), and the name ids in the same order, to search by name.
+     */
+    private final int[] indexesByName;
+    private final int[] sortedNameIds;
+
+    private PackedIdentifiers(SymbolTable symbols, int[] starts, int[] ends, int[] nameIds) {
+        this.symbols = symbols;
+        this.starts = starts;
+        this.ends = ends;
+        this.nameIds = nameIds;
+        long[] nameIdsAndIndexes = new long[nameIds.length];
+        for (int i = 0; i < nameIds.length; i++) {
+            nameIdsAndIndexes[i] = ((long) nameIds[i] << 32) | i;
+        }
+        Arrays.sort(nameIdsAndIndexes);
+        this.indexesByName = new int[nameIds.length];
+        this.sortedNameIds = new int[nameIds.length];
+        for (int i = 0; i < nameIds.length; i++) {
+            indexesByName[i] = (int) nameIdsAndIndexes[i];
+            sortedNameIds[i] = (int) (nameIdsAndIndexes[i] >>> 32);
+        }
+    }
+
+    String getName(int index) {
+        return symbols.getName(nameIds[index]);
+    }
+
+    OffsetRange getOffsetRange(int index) {
+        return new OffsetRange(starts[index], ends[index]);
+    }
+
+    /**
+     * @return the identifier whose range contains the offset (inclusive of
+     * its end)
+     */
+    <T> Option<T> getAt(int offset, Flyweight<T> flyweight) {
+        int found = lastIndexAtOrBefore(starts, offset);
+        if (found == -1 || offset > ends[found]) {
+            return Option.none();
+        }
+        return Option.is(flyweight.get(this, found));
+    }
+
+    /**
+     * @return the identifiers with the name, in offset order
+     */
+    <T> List<T> getNamed(String name, final Flyweight<T> flyweight) {
+        int nameId = symbols.getId(name);
+        if (nameId == -1) {
+            return Collections.emptyList();
+        }
+        final int groupStart = lastIndexAtOrBefore(sortedNameIds, nameId - 1) + 1;
+        final int groupSize = lastIndexAtOrBefore(sortedNameIds, nameId) + 1 - groupStart;
+        if (groupSize == 0) {
+            return Collections.emptyList();
+        }
+        return new AbstractList<T>() {
+            @Override
+            public T get(int i) {
+                if (i < 0 || i >= groupSize) {
+                    throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + groupSize);
+                }
+                return flyweight.get(PackedIdentifiers.this, indexesByName[groupStart + i]);
+            }
+
+            @Override
+            public int size() {
+                return groupSize;
+            }
+        };
+    }
+
+    <T> Option<T> getFirstNamed(String name, Flyweight<T> flyweight) {
+        List<T> named = getNamed(name, flyweight);
+        return named.isEmpty() ? Option.<T>none() : Option.is(named.get(0));
+    }
+
+    /**
+     * @return the index of the last value that's no more than the target, in
+     * sorted values, or -1
+     */
+    private static int lastIndexAtOrBefore(int[] sortedValues, int target) {
+        int low = 0;
+        int high = sortedValues.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (sortedValues[middle] <= target) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Makes the object that stands for one of the identifiers.
+     */
+    interface Flyweight<T> {
+
+        T get(PackedIdentifiers identifiers, int index);
+    }
+
+    static class Builder {
+
+        private final SymbolTable symbols;
+        private int[] starts = new int[8];
+        private int[] ends = new int[8];
+        private int[] nameIds = new int[8];
+        private int size = 0;
+        private boolean sorted = true;
+
+        Builder(SymbolTable symbols) {
+            this.symbols = symbols;
+        }
+
+        Builder add(String name, OffsetRange offsetRange) {
+            return add(name, offsetRange.getStart(), offsetRange.getEnd());
+        }
+
+        Builder add(String name, int start, int end) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+                nameIds = Arrays.copyOf(nameIds, size * 2);
+            }
+            if (size > 0 && start < starts[size - 1]) {
+                sorted = false;
+            }
+            starts[size] = start;
+            ends[size] = end;
+            nameIds[size] = symbols.intern(name);
+            size++;
+            return this;
+        }
+
+        PackedIdentifiers build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            if (sorted) {
+                return new PackedIdentifiers(symbols, Arrays.copyOf(starts, size), Arrays.copyOf(ends, size), Arrays.copyOf(nameIds, size));
+            }
+            //Sort the indexes along with the starts, by packing them together
+            long[] startsAndIndexes = new long[size];
+            for (int i = 0; i < size; i++) {
+                startsAndIndexes[i] = ((long) starts[i] << 32) | i;
+            }
+            Arrays.sort(startsAndIndexes);
+            int[] sortedStarts = new int[size];
+            int[] sortedEnds = new int[size];
+            int[] sortedNameIds = new int[size];
+            for (int i = 0; i < size; i++) {
+                int index = (int) startsAndIndexes[i];
+                sortedStarts[i] = starts[index];
+                sortedEnds[i] = ends[index];
+                sortedNameIds[i] = nameIds[index];
+            }
+            return new PackedIdentifiers(symbols, sortedStarts, sortedEnds, sortedNameIds);
+        }
+    }
+}
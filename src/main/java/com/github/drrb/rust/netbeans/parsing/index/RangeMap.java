@@ -17,30 +17,136 @@
 package com.github.drrb.rust.netbeans.parsing.index;
 
 import com.github.drrb.rust.netbeans.util.Option;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import org.netbeans.modules.csl.api.OffsetRange;
 
 /**
+ * Items found by the offset ranges they cover. When ranges are nested, the
+ * innermost one containing an offset wins (or, for ranges that overlap
+ * without nesting, the one that starts last). Putting an item with the same
+ * range as an earlier one replaces it.
  *
+ * The ranges are sorted by start the first time an item is looked up after
+ * items are put in, and then each lookup is a binary search followed by a
+ * walk out through the enclosing ranges.
  */
 public class RangeMap<T> {
 
-    @SuppressWarnings("CollectionWithoutInitialCapacity")
-    private final Map<OffsetRange, T> items = new HashMap<>();
+    private final List<Entry<T>> entries = new ArrayList<>();
+    private volatile Lookup<T> lookup;
 
-    public void put(OffsetRange offsetRange, T item) {
-        items.put(offsetRange, item);
+    public synchronized void put(OffsetRange offsetRange, T item) {
+        entries.add(new Entry<>(offsetRange.getStart(), offsetRange.getEnd(), item));
+        lookup = null;
     }
 
     public Option<T> get(int offset) {
-        for (Map.Entry<OffsetRange, T> entry : items.entrySet()) {
-            OffsetRange offsetRange = entry.getKey();
-            T item = entry.getValue();
-            if (offsetRange.containsInclusive(offset)) {
-                return Option.is(item);
+        return lookup().get(offset);
+    }
+
+    private Lookup<T> lookup() {
+        Lookup<T> result = lookup;
+        if (result == null) {
+            synchronized (this) {
+                result = lookup;
+                if (result == null) {
+                    lookup = result = new Lookup<>(entries);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static class Entry<T> {
+
+        private final int start;
+        private final int end;
+        private final T item;
+
+        Entry(int start, int end, T item) {
+            this.start = start;
+            this.end = end;
+            this.item = item;
+        }
+    }
+
+    private static class Lookup<T> {
+
+        private static final Comparator<Entry<?>> BY_START_THEN_LONGEST_FIRST = new Comparator<Entry<?>>() {
+            @Override
+            public int compare(Entry<?> a, Entry<?> b) {
+                int byStart = Integer.compare(a.start, b.start);
+                return byStart == 0 ? Integer.compare(b.end, a.end) : byStart;
+            }
+        };
+        private final int[] starts;
+        private final int[] ends;
+        /**
+         * The index of the closest range before each range that could
+         * contain it, or -1.
+         */
+        private final int[] enclosing;
+        private final Object[] items;
+        private final int size;
+
+        Lookup(List<Entry<T>> unsortedEntries) {
+            List<Entry<T>> entries = new ArrayList<>(unsortedEntries);
+            //The sort is stable, so the last of the entries with the same
+            //range is the one that was put in last
+            Collections.sort(entries, BY_START_THEN_LONGEST_FIRST);
+            int count = 0;
+            starts = new int[entries.size()];
+            ends = new int[entries.size()];
+            enclosing = new int[entries.size()];
+            items = new Object[entries.size()];
+            int[] openRanges = new int[entries.size()];
+            int openRangeCount = 0;
+            for (int i = 0; i < entries.size(); i++) {
+                Entry<T> entry = entries.get(i);
+                if (count > 0 && starts[count - 1] == entry.start && ends[count - 1] == entry.end) {
+                    items[count - 1] = entry.item;
+                    continue;
+                }
+                while (openRangeCount > 0 && ends[openRanges[openRangeCount - 1]] < entry.start) {
+                    openRangeCount--;
+                }
+                starts[count] = entry.start;
+                ends[count] = entry.end;
+                enclosing[count] = openRangeCount == 0 ? -1 : openRanges[openRangeCount - 1];
+                items[count] = entry.item;
+                openRanges[openRangeCount++] = count;
+                count++;
+            }
+            this.size = count;
+        }
+
+        @SuppressWarnings("unchecked")
+        Option<T> get(int offset) {
+            for (int i = lastStartingAtOrBefore(offset); i != -1; i = enclosing[i]) {
+                if (offset <= ends[i]) {
+                    return Option.is((T) items[i]);
+                }
+            }
+            return Option.none();
+        }
+
+        private int lastStartingAtOrBefore(int offset) {
+            int low = 0;
+            int high = size - 1;
+            int found = -1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (starts[middle] <= offset) {
+                    found = middle;
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
             }
+            return found;
         }
-        return Option.none();
     }
 }
@@ -17,10 +17,6 @@
 package com.github.drrb.rust.netbeans.parsing.index;
 
 import com.github.drrb.rust.netbeans.util.Option;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
 import org.netbeans.modules.csl.api.OffsetRange;
 
 /**
@@ -32,18 +28,14 @@ public class RustFunction {
     private final OffsetRange offsetRange;
     private final RustDocComment docComment;
     private final RustFunctionBody body;
-    private final Map<String, RustFunctionParameterName> functionParameterNamesByName = new HashMap<>();
-    private final RangeMap<RustFunctionParameterName> functionParameterNameRanges = new RangeMap<>();
+    private final PackedIdentifiers parameterNames;
 
-    RustFunction(String name, OffsetRange offsetRange, RustDocComment docComment, RustFunctionBody body, List<RustFunctionParameterName> parameterNames) {
+    RustFunction(String name, OffsetRange offsetRange, RustDocComment docComment, RustFunctionBody body, PackedIdentifiers parameterNames) {
         this.name = name;
         this.offsetRange = offsetRange;
         this.docComment = docComment;
         this.body = body;
-        for (RustFunctionParameterName parameterName : parameterNames) {
-            functionParameterNameRanges.put(parameterName.getOffsetRange(), parameterName);
-            functionParameterNamesByName.put(parameterName.getText(), parameterName);
-        }
+        this.parameterNames = parameterNames;
     }
 
     public String getName() {
@@ -63,15 +55,18 @@ public class RustFunction {
     }
 
     public Option<RustFunctionParameterName> getParameterNameAt(int offeset) {
-        return functionParameterNameRanges.get(offeset);
+        return parameterNames.getAt(offeset, RustFunctionParameterName.FLYWEIGHT);
     }
 
     public Option<RustFunctionParameterName> getParameterNameMatching(String text) {
-        return Option.isIfNotNull(functionParameterNamesByName.get(text));
+        return parameterNames.getFirstNamed(text, RustFunctionParameterName.FLYWEIGHT);
     }
 
-    public static Builder builder() {
-        return new Builder();
+    /**
+     * @param symbols the table to keep the parameter names in
+     */
+    public static Builder builder(SymbolTable symbols) {
+        return new Builder(symbols);
     }
 
     public static class Builder {
@@ -80,10 +75,14 @@ public class RustFunction {
         private OffsetRange offsetRange;
         private RustFunctionBody body;
         private RustDocComment docComment;
-        private List<RustFunctionParameterName> parameterNames = new LinkedList<>();
+        private final PackedIdentifiers.Builder parameterNames;
+
+        Builder(SymbolTable symbols) {
+            this.parameterNames = new PackedIdentifiers.Builder(symbols);
+        }
 
         RustFunction build() {
-            return new RustFunction(name, offsetRange, docComment, body, parameterNames);
+            return new RustFunction(name, offsetRange, docComment, body, parameterNames.build());
         }
 
         Builder setName(String name) {
@@ -101,8 +100,8 @@ public class RustFunction {
             return this;
         }
 
-        Builder addParameterName(RustFunctionParameterName parameterName) {
-            parameterNames.add(parameterName);
+        Builder addParameterName(String name, OffsetRange offsetRange) {
+            parameterNames.add(name, offsetRange);
             return this;
         }
 
@@ -16,58 +16,103 @@
  */
 package com.github.drrb.rust.netbeans.parsing.index;
 
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstBlock;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstFunction;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstIdent;
 import com.github.drrb.rust.netbeans.util.Option;
-import java.util.LinkedList;
 import java.util.List;
 import org.netbeans.modules.csl.api.OffsetRange;
 
 /**
- *
+ * A function body. If the function was parsed without its body, the body is
+ * parsed the first time its local variables are asked for.
  */
 public class RustFunctionBody {
 
-    private final MultiMap<String, RustLocalVariableIdentifier> localVariableIdentifiersByName = new MultiMap<>();
-    private final RangeMap<RustLocalVariableIdentifier> localVariableIdentifiersByOffset = new RangeMap<>();
-    private final String text;
+    private final SymbolTable symbols;
+    private final CharSequence sourceText;
     private final OffsetRange offsetRange;
+    private final RustAstFunction function;
+    private volatile PackedIdentifiers localVariableIdentifiers;
 
-    RustFunctionBody(String text, OffsetRange offsetRange, List<RustLocalVariableIdentifier> localVariableIdentifiers) {
-        this.text = text;
+    RustFunctionBody(SymbolTable symbols, CharSequence sourceText, OffsetRange offsetRange, PackedIdentifiers localVariableIdentifiers, RustAstFunction function) {
+        this.symbols = symbols;
+        this.sourceText = sourceText;
         this.offsetRange = offsetRange;
-        for (RustLocalVariableIdentifier identifier : localVariableIdentifiers) {
-            localVariableIdentifiersByName.add(identifier.getText(), identifier);
-            localVariableIdentifiersByOffset.put(identifier.getOffsetRange(), identifier);
-        }
+        this.localVariableIdentifiers = localVariableIdentifiers;
+        this.function = function;
     }
 
     public OffsetRange getOffsetRange() {
         return offsetRange;
     }
 
+    /**
+     * @return the text of the body, taken out of the source text when it's
+     * asked for, or null if the source text wasn't set
+     */
+    public CharSequence getText() {
+        return sourceText == null ? null : sourceText.subSequence(offsetRange.getStart(), offsetRange.getEnd());
+    }
+
     public List<RustLocalVariableIdentifier> getLocalVariableIdentifiersNamed(String text) {
-        return localVariableIdentifiersByName.get(text);
+        return localVariableIdentifiers().getNamed(text, RustLocalVariableIdentifier.FLYWEIGHT);
     }
 
     public Option<RustLocalVariableIdentifier> getLocalVariableIdentifierAt(int offset) {
-        return localVariableIdentifiersByOffset.get(offset);
+        return localVariableIdentifiers().getAt(offset, RustLocalVariableIdentifier.FLYWEIGHT);
+    }
+
+    private PackedIdentifiers localVariableIdentifiers() {
+        PackedIdentifiers result = localVariableIdentifiers;
+        if (result == null) {
+            //Working them out twice at once is harmless, so there's no lock
+            localVariableIdentifiers = result = localVariableIdentifiersIn(function.getBody(), symbols);
+        }
+        return result;
+    }
+
+    private static PackedIdentifiers localVariableIdentifiersIn(RustAstBlock body, SymbolTable symbols) {
+        if (body == null) {
+            return PackedIdentifiers.EMPTY;
+        }
+        PackedIdentifiers.Builder identifiers = new PackedIdentifiers.Builder(symbols);
+        for (RustAstIdent ident : body.getIdents()) {
+            identifiers.add(ident.getName(), ident.getStart(), ident.getEnd());
+        }
+        return identifiers.build();
     }
 
-    public static Builder builder() {
-        return new Builder();
+    /**
+     * @param symbols the table to keep the local variables' names in
+     */
+    public static Builder builder(SymbolTable symbols) {
+        return new Builder(symbols);
     }
 
     public static class Builder {
 
-        private final List<RustLocalVariableIdentifier> localVariableIdentifiers = new LinkedList<>();
-        private String text;
+        private final SymbolTable symbols;
+        private final PackedIdentifiers.Builder localVariableIdentifiers;
+        private CharSequence sourceText;
         private OffsetRange offsetRange;
+        private RustAstFunction function;
+
+        Builder(SymbolTable symbols) {
+            this.symbols = symbols;
+            this.localVariableIdentifiers = new PackedIdentifiers.Builder(symbols);
+        }
 
         public RustFunctionBody build() {
-            return new RustFunctionBody(text, offsetRange, localVariableIdentifiers);
+            return new RustFunctionBody(symbols, sourceText, offsetRange, function == null ? localVariableIdentifiers.build() : null, function);
         }
 
-        public Builder setText(String text) {
-            this.text = text;
+        /**
+         * @param sourceText the text of the whole file, which the body's text
+         * is taken from (using the offset range) when it's needed
+         */
+        public Builder setSourceText(CharSequence sourceText) {
+            this.sourceText = sourceText;
             return this;
         }
 
@@ -76,8 +121,17 @@ public class RustFunctionBody {
             return this;
         }
 
-        public Builder addLocalVariableIdentifier(RustLocalVariableIdentifier localVariableIdentifier) {
-            this.localVariableIdentifiers.add(localVariableIdentifier);
+        public Builder addLocalVariableIdentifier(String text, OffsetRange offsetRange) {
+            this.localVariableIdentifiers.add(text, offsetRange);
+            return this;
+        }
+
+        /**
+         * Find the local variables in the function's body when they're first
+         * asked for, instead of adding them here.
+         */
+        public Builder setFunction(RustAstFunction function) {
+            this.function = function;
             return this;
         }
     }
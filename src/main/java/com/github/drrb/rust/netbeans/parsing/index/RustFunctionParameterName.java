@@ -19,23 +19,29 @@ package com.github.drrb.rust.netbeans.parsing.index;
 import org.netbeans.modules.csl.api.OffsetRange;
 
 /**
- *
+ * A view of one of a function's parameter names.
  */
 public class RustFunctionParameterName {
 
-    private final String text;
-    private final OffsetRange offsetRange;
+    static final PackedIdentifiers.Flyweight<RustFunctionParameterName> FLYWEIGHT = new PackedIdentifiers.Flyweight<RustFunctionParameterName>() {
+        @Override
+        public RustFunctionParameterName get(PackedIdentifiers identifiers, int index) {
+            return new RustFunctionParameterName(identifiers, index);
+        }
+    };
+    private final PackedIdentifiers identifiers;
+    private final int index;
 
-    public RustFunctionParameterName(String text, OffsetRange offsetRange) {
-        this.text = text;
-        this.offsetRange = offsetRange;
+    private RustFunctionParameterName(PackedIdentifiers identifiers, int index) {
+        this.identifiers = identifiers;
+        this.index = index;
     }
 
     public OffsetRange getOffsetRange() {
-        return offsetRange;
+        return identifiers.getOffsetRange(index);
     }
 
     public String getText() {
-        return text;
+        return identifiers.getName(index);
     }
 }
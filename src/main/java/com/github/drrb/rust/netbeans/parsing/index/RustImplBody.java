@@ -16,8 +16,8 @@
  */
 package com.github.drrb.rust.netbeans.parsing.index;
 
-import java.util.Collections;
-import java.util.LinkedList;
+import com.github.drrb.rust.netbeans.util.Lists;
+import java.util.ArrayList;
 import java.util.List;
 import org.netbeans.modules.csl.api.OffsetRange;
 
@@ -39,7 +39,7 @@ public class RustImplBody {
     }
 
     public List<RustImplMethod> getMethods() {
-        return Collections.unmodifiableList(methods);
+        return methods;
     }
 
     public static Builder builder() {
@@ -50,10 +50,10 @@ public class RustImplBody {
 
         private OffsetRange offsetRange;
         private RustImplMethodBody body;
-        private final List<RustImplMethod> methods = new LinkedList<>();
+        private final List<RustImplMethod> methods = new ArrayList<>();
 
         RustImplBody build() {
-            return new RustImplBody(offsetRange, methods);
+            return new RustImplBody(offsetRange, Lists.freeze(methods));
         }
 
         Builder setOffsetRange(OffsetRange offsetRange) {
@@ -17,10 +17,6 @@
 package com.github.drrb.rust.netbeans.parsing.index;
 
 import com.github.drrb.rust.netbeans.util.Option;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
 import org.netbeans.modules.csl.api.OffsetRange;
 
 /**
@@ -31,17 +27,13 @@ public class RustImplMethod {
     private final String name;
     private final OffsetRange offsetRange;
     private final RustImplMethodBody body;
-    private final Map<String, RustImplMethodParameterName> functionParameterNamesByName = new HashMap<>();
-    private final RangeMap<RustImplMethodParameterName> functionParameterNameRanges = new RangeMap<>();
+    private final PackedIdentifiers parameterNames;
 
-    RustImplMethod(String name, OffsetRange offsetRange, RustImplMethodBody body, List<RustImplMethodParameterName> parameterNames) {
+    RustImplMethod(String name, OffsetRange offsetRange, RustImplMethodBody body, PackedIdentifiers parameterNames) {
         this.name = name;
         this.offsetRange = offsetRange;
         this.body = body;
-        for (RustImplMethodParameterName parameterName : parameterNames) {
-            functionParameterNameRanges.put(parameterName.getOffsetRange(), parameterName);
-            functionParameterNamesByName.put(parameterName.getText(), parameterName);
-        }
+        this.parameterNames = parameterNames;
     }
 
     public String getName() {
@@ -57,15 +49,18 @@ public class RustImplMethod {
     }
 
     public Option<RustImplMethodParameterName> getParameterNameAt(int offeset) {
-        return functionParameterNameRanges.get(offeset);
+        return parameterNames.getAt(offeset, RustImplMethodParameterName.FLYWEIGHT);
     }
 
     public Option<RustImplMethodParameterName> getParameterNameMatching(String text) {
-        return Option.isIfNotNull(functionParameterNamesByName.get(text));
+        return parameterNames.getFirstNamed(text, RustImplMethodParameterName.FLYWEIGHT);
     }
 
-    public static Builder builder() {
-        return new Builder();
+    /**
+     * @param symbols the table to keep the parameter names in
+     */
+    public static Builder builder(SymbolTable symbols) {
+        return new Builder(symbols);
     }
 
     public static class Builder {
@@ -73,10 +68,14 @@ public class RustImplMethod {
         private String name;
         private OffsetRange offsetRange;
         private RustImplMethodBody body;
-        private final List<RustImplMethodParameterName> parameterNames = new LinkedList<>();
+        private final PackedIdentifiers.Builder parameterNames;
+
+        Builder(SymbolTable symbols) {
+            this.parameterNames = new PackedIdentifiers.Builder(symbols);
+        }
 
         RustImplMethod build() {
-            return new RustImplMethod(name, offsetRange, body, parameterNames);
+            return new RustImplMethod(name, offsetRange, body, parameterNames.build());
         }
 
         Builder setName(String name) {
@@ -94,8 +93,8 @@ public class RustImplMethod {
             return this;
         }
 
-        Builder addParameterName(RustImplMethodParameterName parameterName) {
-            parameterNames.add(parameterName);
+        Builder addParameterName(String name, OffsetRange offsetRange) {
+            parameterNames.add(name, offsetRange);
             return this;
         }
     }
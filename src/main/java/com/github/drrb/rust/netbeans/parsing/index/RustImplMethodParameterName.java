@@ -19,23 +19,29 @@ package com.github.drrb.rust.netbeans.parsing.index;
 import org.netbeans.modules.csl.api.OffsetRange;
 
 /**
- *
+ * A view of one of a method's parameter names.
  */
 public class RustImplMethodParameterName {
 
-    private final String text;
-    private final OffsetRange offsetRange;
+    static final PackedIdentifiers.Flyweight<RustImplMethodParameterName> FLYWEIGHT = new PackedIdentifiers.Flyweight<RustImplMethodParameterName>() {
+        @Override
+        public RustImplMethodParameterName get(PackedIdentifiers identifiers, int index) {
+            return new RustImplMethodParameterName(identifiers, index);
+        }
+    };
+    private final PackedIdentifiers identifiers;
+    private final int index;
 
-    public RustImplMethodParameterName(String text, OffsetRange offsetRange) {
-        this.text = text;
-        this.offsetRange = offsetRange;
+    private RustImplMethodParameterName(PackedIdentifiers identifiers, int index) {
+        this.identifiers = identifiers;
+        this.index = index;
     }
 
     public OffsetRange getOffsetRange() {
-        return offsetRange;
+        return identifiers.getOffsetRange(index);
     }
 
     public String getText() {
-        return text;
+        return identifiers.getName(index);
     }
 }
@@ -19,22 +19,29 @@ package com.github.drrb.rust.netbeans.parsing.index;
 import org.netbeans.modules.csl.api.OffsetRange;
 
 /**
- *
+ * A view of one of a function body's identifiers.
  */
 public class RustLocalVariableIdentifier {
-    private final String text;
-    private final OffsetRange offsetRange;
 
-    public RustLocalVariableIdentifier(String text, OffsetRange offsetRange) {
-        this.text = text;
-        this.offsetRange = offsetRange;
-    }
+    static final PackedIdentifiers.Flyweight<RustLocalVariableIdentifier> FLYWEIGHT = new PackedIdentifiers.Flyweight<RustLocalVariableIdentifier>() {
+        @Override
+        public RustLocalVariableIdentifier get(PackedIdentifiers identifiers, int index) {
+            return new RustLocalVariableIdentifier(identifiers, index);
+        }
+    };
+    private final PackedIdentifiers identifiers;
+    private final int index;
 
-    public String getText() {
-        return text;
+    private RustLocalVariableIdentifier(PackedIdentifiers identifiers, int index) {
+        this.identifiers = identifiers;
+        this.index = index;
     }
 
     public OffsetRange getOffsetRange() {
-        return offsetRange;
+        return identifiers.getOffsetRange(index);
+    }
+
+    public String getText() {
+        return identifiers.getName(index);
     }
 }
@@ -16,9 +16,9 @@
  */
 package com.github.drrb.rust.netbeans.parsing.index;
 
+import com.github.drrb.rust.netbeans.util.Lists;
 import com.github.drrb.rust.netbeans.util.Option;
-import java.util.Collections;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -26,17 +26,68 @@ import java.util.List;
  */
 public class RustSourceIndex {
 
-    private final List<RustStruct> structs = new LinkedList<>();
-    private final List<RustImpl> impls = new LinkedList<>();
-    private final List<RustTrait> traits = new LinkedList<>();
-    private final List<RustTraitImpl> traitImpls = new LinkedList<>();
-    private final List<RustEnum> enums = new LinkedList<>();
-    private final List<RustFunction> functions = new LinkedList<>();
+    private final SymbolTable symbols;
+    private List<RustStruct> structs = new ArrayList<>();
+    private List<RustImpl> impls = new ArrayList<>();
+    private List<RustTrait> traits = new ArrayList<>();
+    private List<RustTraitImpl> traitImpls = new ArrayList<>();
+    private List<RustEnum> enums = new ArrayList<>();
+    private List<RustFunction> functions = new ArrayList<>();
     private final RangeMap<RustFunction> functionRanges = new RangeMap<>();
-    private final List<RustDocComment> docComments = new LinkedList<>();
+    private List<RustDocComment> docComments = new ArrayList<>();
+
+    public RustSourceIndex() {
+        this(new SymbolTable());
+    }
+
+    public RustSourceIndex(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    /**
+     * Combine the indexes of consecutive parts of a file into one index for
+     * the whole file. The parts' indexes should share a symbol table.
+     */
+    public static RustSourceIndex merge(List<RustSourceIndex> indexes) {
+        RustSourceIndex merged = new RustSourceIndex(indexes.isEmpty() ? new SymbolTable() : indexes.get(0).symbols);
+        for (RustSourceIndex index : indexes) {
+            merged.structs.addAll(index.structs);
+            merged.impls.addAll(index.impls);
+            merged.traits.addAll(index.traits);
+            merged.traitImpls.addAll(index.traitImpls);
+            merged.enums.addAll(index.enums);
+            for (RustFunction function : index.functions) {
+                merged.addFunction(function);
+            }
+            merged.docComments.addAll(index.docComments);
+        }
+        merged.freeze();
+        return merged;
+    }
+
+    /**
+     * @return the table that the names in this index are kept in
+     */
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * Swap the lists for compact immutable ones, once everything's been
+     * added.
+     */
+    void freeze() {
+        structs = Lists.freeze(structs);
+        impls = Lists.freeze(impls);
+        traits = Lists.freeze(traits);
+        traitImpls = Lists.freeze(traitImpls);
+        enums = Lists.freeze(enums);
+        functions = Lists.freeze(functions);
+        docComments = Lists.freeze(docComments);
+    }
 
     public List<RustFunction> getFunctions() {
-        return Collections.unmodifiableList(functions);
+        return functions;
     }
 
     public Option<RustFunction> getFunctionAt(int offset) {
@@ -49,7 +100,7 @@ public class RustSourceIndex {
     }
 
     public List<RustDocComment> getDocComments() {
-        return Collections.unmodifiableList(docComments);
+        return docComments;
     }
 
     void addDocComment(RustDocComment docComment) {
@@ -57,7 +108,7 @@ public class RustSourceIndex {
     }
 
     public List<RustStruct> getStructs() {
-        return Collections.unmodifiableList(structs);
+        return structs;
     }
 
     void addStruct(RustStruct struct) {
@@ -65,7 +116,7 @@ public class RustSourceIndex {
     }
 
     public List<RustEnum> getEnums() {
-        return Collections.unmodifiableList(enums);
+        return enums;
     }
 
     void addEnum(RustEnum rustEnum) {
@@ -73,7 +124,7 @@ public class RustSourceIndex {
     }
 
     public List<RustImpl> getImpls() {
-        return Collections.unmodifiableList(impls);
+        return impls;
     }
 
     void addImpl(RustImpl impl) {
@@ -81,7 +132,7 @@ public class RustSourceIndex {
     }
 
     public List<RustTrait> getTraits() {
-        return Collections.unmodifiableList(traits);
+        return traits;
     }
 
     void addTrait(RustTrait trait) {
@@ -89,7 +140,7 @@ public class RustSourceIndex {
     }
 
     public List<RustTraitImpl> getTraitImpls() {
-        return Collections.unmodifiableList(traitImpls);
+        return traitImpls;
     }
 
     void addTraitImpl(RustTraitImpl traitImpl) {
@@ -16,8 +16,8 @@
  */
 package com.github.drrb.rust.netbeans.parsing.index;
 
-import java.util.Collections;
-import java.util.LinkedList;
+import com.github.drrb.rust.netbeans.util.Lists;
+import java.util.ArrayList;
 import java.util.List;
 import org.netbeans.modules.csl.api.OffsetRange;
 
@@ -39,7 +39,7 @@ public class RustStructBody {
     }
 
     public List<RustStructField> getFields() {
-        return Collections.unmodifiableList(fields);
+        return fields;
     }
 
     public static Builder builder() {
@@ -49,10 +49,10 @@ public class RustStructBody {
     public static class Builder {
 
         private OffsetRange offsetRange;
-        private List<RustStructField> fields = new LinkedList<>();
+        private final List<RustStructField> fields = new ArrayList<>();
 
         RustStructBody build() {
-            return new RustStructBody(offsetRange, fields);
+            return new RustStructBody(offsetRange, Lists.freeze(fields));
         }
 
         Builder setOffsetRange(OffsetRange offsetRange) {
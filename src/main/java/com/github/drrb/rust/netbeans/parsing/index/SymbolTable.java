@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing.index;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Gives each distinct name an int id, and stores the name once, so that
+ * indexes can keep ids instead of their own copies of the same names, and
+ * compare names by id. Indexes can share a table: the parts of a file that
+ * are parsed in parallel do, and so can the indexes of all the files in a
+ * project, to store names once across them all.
+ *
+ * Names can be interned from several threads at once, because function
+ * bodies are indexed lazily.
+ */
+public class SymbolTable {
+
+    private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[64];
+    private int size = 0;
+
+    /**
+     * @return the name's id, giving it one if it doesn't have one yet
+     */
+    public int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(name);
+            if (id == null) {
+                if (size == names.length) {
+                    names = Arrays.copyOf(names, size * 2);
+                }
+                names[size] = name;
+                id = size++;
+                //Only publish the id once its name is stored
+                ids.put(name, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * @return the stored copy of the name, so that other copies of it can be
+     * thrown away
+     */
+    public String internName(String name) {
+        return name == null ? null : getName(intern(name));
+    }
+
+    /**
+     * @return the name's id, or -1 if it doesn't have one (so nothing in an
+     * index that uses this table has the name)
+     */
+    public int getId(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    public String getName(int id) {
+        return names[id];
+    }
+
+    public int size() {
+        return ids.size();
+    }
+}
@@ -16,9 +16,9 @@
  */
 package com.github.drrb.rust.netbeans.structure;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 import javax.swing.ImageIcon;
@@ -38,7 +38,7 @@ public class RustStructureItem implements StructureItem.CollapsedDefault {
     private final OffsetRange offsetRange;
     private final ElementKind kind;
     private final Set<Modifier> modifiers;
-    private final List<RustStructureItem> nestedItems = new LinkedList<>();
+    private final List<RustStructureItem> nestedItems = new ArrayList<>();
 
     public RustStructureItem(String name, OffsetRange offsetRange, ElementKind kind) {
         this.name = name;
@@ -119,7 +119,7 @@ public class RustStructureItem implements StructureItem.CollapsedDefault {
         return "RustStructureItem{" + "name=" + name + ", offsetRange=" + offsetRange + ", kind=" + kind + ", modifiers=" + modifiers + '}';
     }
 
-    void addNestedItem(RustStructureItem nestedItem) {
+    public void addNestedItem(RustStructureItem nestedItem) {
         nestedItems.add(nestedItem);
     }
 }
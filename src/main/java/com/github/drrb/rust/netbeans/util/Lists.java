@@ -17,7 +17,10 @@
 package com.github.drrb.rust.netbeans.util;
 
 import java.lang.reflect.Array;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 /**
  *
@@ -30,6 +33,23 @@ public class Lists {
         return collection.toArray(array);
     }
 
+    /**
+     * @return an immutable copy of the collection, backed by an array of
+     * exactly its size
+     */
+    public static <T> List<T> freeze(Collection<? extends T> collection) {
+        switch (collection.size()) {
+            case 0:
+                return Collections.emptyList();
+            case 1:
+                return Collections.<T>singletonList(collection.iterator().next());
+            default:
+                @SuppressWarnings("unchecked")
+                T[] array = (T[]) collection.toArray();
+                return Collections.unmodifiableList(Arrays.asList(array));
+        }
+    }
+
     private Lists() {
     }
 }
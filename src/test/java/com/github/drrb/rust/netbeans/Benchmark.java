@@ -0,0 +1,166 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+
+/**
+ * Runs the benchmarks' tasks, and measures how long they take and how much
+ * memory they allocate or keep. The benchmarks aren't tests: each one has a
+ * main method, to be run on its own.
+ */
+public class Benchmark {
+
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * Run the task warmUpIterations times without measuring it (so that its
+     * code is loaded and compiled), and then iterations times, measuring each
+     * run separately. Each task's setUp() isn't measured.
+     */
+    public static Measurement measure(Task task, int warmUpIterations, int iterations) throws Exception {
+        for (int i = 0; i < warmUpIterations; i++) {
+            task.setUp();
+            task.run();
+        }
+        boolean measuringAllocation = THREADS.isThreadAllocatedMemorySupported();
+        if (measuringAllocation) {
+            THREADS.setThreadAllocatedMemoryEnabled(true);
+        }
+        long threadId = Thread.currentThread().getId();
+        //Reading the allocation counter can allocate too, so leave that out
+        long counterBytes = 0;
+        if (measuringAllocation) {
+            long counterBefore = THREADS.getThreadAllocatedBytes(threadId);
+            counterBytes = THREADS.getThreadAllocatedBytes(threadId) - counterBefore;
+        }
+        long[] nanos = new long[iterations];
+        long bytes = 0;
+        int checksum = 0;
+        for (int i = 0; i < iterations; i++) {
+            task.setUp();
+            long bytesBefore = measuringAllocation ? THREADS.getThreadAllocatedBytes(threadId) : 0;
+            long start = System.nanoTime();
+            checksum += task.run();
+            nanos[i] = System.nanoTime() - start;
+            if (measuringAllocation) {
+                bytes += THREADS.getThreadAllocatedBytes(threadId) - bytesBefore - counterBytes;
+            }
+        }
+        return new Measurement(nanos, measuringAllocation ? bytes : -1, checksum);
+    }
+
+    /**
+     * Make the given number of objects, and keep them all until they're
+     * measured.
+     *
+     * @return how much of the heap each object takes up (including what it
+     * refers to that nothing else does)
+     */
+    public static long retainedBytes(Callable<?> maker, int copies) throws Exception {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        Object[] kept = new Object[copies];
+        long before = usedHeapAfterGc(memory);
+        for (int i = 0; i < copies; i++) {
+            kept[i] = maker.call();
+        }
+        long after = usedHeapAfterGc(memory);
+        if (kept[copies - 1] == null) {
+            throw new IllegalStateException("Nothing was kept");
+        }
+        return (after - before) / copies;
+    }
+
+    private static long usedHeapAfterGc(MemoryMXBean memory) {
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Something to measure.
+     */
+    public abstract static class Task {
+
+        /**
+         * Get ready for the next run. Not measured.
+         */
+        protected void setUp() throws Exception {
+        }
+
+        /**
+         * @return a number that depends on the work done, so that the JIT
+         * can't leave the work out
+         */
+        protected abstract int run() throws Exception;
+    }
+
+    /**
+     * How long a task's runs took, and how much they allocated.
+     */
+    public static class Measurement {
+
+        private final long[] nanos;
+        private final long bytes;
+        private final int checksum;
+
+        private Measurement(long[] nanos, long bytes, int checksum) {
+            this.nanos = nanos;
+            this.bytes = bytes;
+            this.checksum = checksum;
+        }
+
+        public long getMeanNanos() {
+            long total = 0;
+            for (long runNanos : nanos) {
+                total += runNanos;
+            }
+            return total / nanos.length;
+        }
+
+        public long getMedianNanos() {
+            long[] sorted = nanos.clone();
+            Arrays.sort(sorted);
+            return sorted[sorted.length / 2];
+        }
+
+        public long getMedianMillis() {
+            return getMedianNanos() / 1000000;
+        }
+
+        /**
+         * @return how much memory each run allocated on the thread that
+         * measured it, on average
+         * @throws UnsupportedOperationException if this JVM can't measure
+         * allocated memory
+         */
+        public long getBytesPerRun() {
+            if (bytes < 0) {
+                throw new UnsupportedOperationException("This JVM can't measure allocated memory");
+            }
+            return bytes / nanos.length;
+        }
+
+        public int getChecksum() {
+            return checksum;
+        }
+    }
+}
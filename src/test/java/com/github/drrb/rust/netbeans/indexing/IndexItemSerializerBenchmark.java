@@ -0,0 +1,59 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.indexing;
+
+import com.github.drrb.rust.netbeans.Benchmark;
+
+/**
+ * Measures how long it takes, and how much memory it allocates, to
+ * deserialize a search result into an {@link IndexedRustSymbol}, once the
+ * result's values have been read from the index. Not a test: run it on its
+ * own, e.g. from the IDE, or with
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.github.drrb.rust.netbeans.indexing.IndexItemSerializerBenchmark
+ * </pre>
+ */
+public class IndexItemSerializerBenchmark {
+
+    private static final int RESULTS_PER_RUN = 1000;
+    private static final int WARM_UP_RUNS = 1000;
+    private static final int RUNS = 5000;
+
+    public static void main(String[] args) throws Exception {
+        final IndexItemCodec<IndexedRustSymbol> codec = IndexItemCodec.forType(IndexedRustSymbol.class);
+        final String[] values = {"Point", "point", "STRUCT", "", "10", "20"};
+
+        Benchmark.Measurement measurement = Benchmark.measure(new Benchmark.Task() {
+            @Override
+            protected int run() {
+                return deserialize(codec, values, RESULTS_PER_RUN);
+            }
+        }, WARM_UP_RUNS, RUNS);
+
+        System.out.printf("%s ns per result%n", measurement.getMeanNanos() / RESULTS_PER_RUN);
+        System.out.printf("%s bytes allocated per result%n", measurement.getBytesPerRun() / RESULTS_PER_RUN);
+        System.out.printf("(checksum %s)%n", measurement.getChecksum());
+    }
+
+    private static int deserialize(IndexItemCodec<IndexedRustSymbol> codec, String[] values, int iterations) {
+        int checksum = 0;
+        for (int i = 0; i < iterations; i++) {
+            checksum += codec.read(values, null).getOffsetRange().getEnd();
+        }
+        return checksum;
+    }
+}
@@ -16,6 +16,8 @@
  */
 package com.github.drrb.rust.netbeans.indexing;
 
+import java.util.Arrays;
+import java.util.List;
 import static org.junit.Assert.*;
 import org.junit.Before;
 import org.junit.Test;
@@ -49,6 +51,7 @@ public class IndexItemSerializerTest {
         serializable.name = "Point";
         serializable.start = 1;
         serializable.end = 10;
+        serializable.kind = RustSymbolKind.STRUCT;
 
         IndexDocument document = mock(IndexDocument.class);
 
@@ -57,6 +60,7 @@ public class IndexItemSerializerTest {
         verify(document).addPair("name", "Point", true, true);
         verify(document).addPair("start", "1", true, true);
         verify(document).addPair("end", "10", true, true);
+        verify(document).addPair("kind", "STRUCT", true, true);
     }
 
     @Test
@@ -68,14 +72,58 @@ public class IndexItemSerializerTest {
         when(indexResult.getValue("name")).thenReturn("Point");
         when(indexResult.getValue("start")).thenReturn("1");
         when(indexResult.getValue("end")).thenReturn("10");
+        when(indexResult.getValue("kind")).thenReturn("TRAIT");
 
         TestSerializableRustThing serialized = serializer.deserialize(indexResult, TestSerializableRustThing.class);
         assertThat(serialized.name, is("Point"));
         assertThat(serialized.start, is(1));
         assertThat(serialized.end, is(10));
+        assertThat(serialized.kind, is(RustSymbolKind.TRAIT));
         assertThat(serialized.file, is(file));
     }
 
+    @Test
+    public void shouldReadAllObjectsFromMultiValuedDocument() {
+        IndexResult indexResult = mock(IndexResult.class);
+        FileObject file = mock(FileObject.class);
+
+        when(indexResult.getFile()).thenReturn(file);
+        when(indexResult.getValues("name")).thenReturn(new String[]{"Point", "Line"});
+        when(indexResult.getValues("start")).thenReturn(new String[]{"1", "20"});
+        when(indexResult.getValues("end")).thenReturn(new String[]{"10", "30"});
+        when(indexResult.getValues("kind")).thenReturn(new String[]{"STRUCT", "ENUM"});
+
+        List<TestSerializableRustThing> serialized = serializer.deserializeAll(indexResult, TestSerializableRustThing.class);
+        assertThat(serialized.size(), is(2));
+        assertThat(serialized.get(0).name, is("Point"));
+        assertThat(serialized.get(0).end, is(10));
+        assertThat(serialized.get(1).name, is("Line"));
+        assertThat(serialized.get(1).start, is(20));
+        assertThat(serialized.get(1).kind, is(RustSymbolKind.ENUM));
+        assertThat(serialized.get(1).file, is(file));
+    }
+
+    @Test
+    public void shouldSayWhichFieldCouldntBeRead() {
+        IndexResult indexResult = mock(IndexResult.class);
+        when(indexResult.getValue("name")).thenReturn("Point");
+        when(indexResult.getValue("start")).thenReturn("one");
+
+        try {
+            serializer.deserialize(indexResult, TestSerializableRustThing.class);
+            fail("Expected deserializing to fail");
+        } catch (RuntimeException ex) {
+            assertThat(ex.getMessage(), containsString("field 'start' to 'one'"));
+        }
+    }
+
+    @Test
+    public void shouldListKeysOfIndexedFields() {
+        String[] keys = serializer.getKeys(TestSerializableRustThing.class);
+        assertThat(keys.length, is(4));
+        assertThat(Arrays.asList(keys), hasItems("name", "start", "end", "kind"));
+    }
+
     public static class TestSerializableRustThing {
 
         @IndexedString("name")
@@ -84,6 +132,8 @@ public class IndexItemSerializerTest {
         private int start;
         @IndexedString("end")
         private int end;
+        @IndexedString("kind")
+        private RustSymbolKind kind;
         @IndexedFile
         private FileObject file;
     }
@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.indexing;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+
+/**
+ *
+ */
+public class IndexedFileDigestsTest {
+
+    private FileObject folder;
+
+    @Before
+    public void setUp() throws Exception {
+        folder = FileUtil.createMemoryFileSystem().getRoot();
+    }
+
+    @Test
+    public void shouldMatchDigestOfSameContents() {
+        String digest = IndexedFileDigests.digestOf("fn main() { }");
+
+        assertThat(IndexedFileDigests.digestOf(new StringBuilder("fn main() { }")), is(digest));
+        assertThat(IndexedFileDigests.digestOf("fn main() { 1; }"), is(not(digest)));
+    }
+
+    @Test
+    public void shouldDigestContentsLongerThanBuffer() {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            source.append("fn f").append(i).append("() { }\n");
+        }
+        String digest = IndexedFileDigests.digestOf(source);
+        source.setCharAt(source.length() - 2, ']');
+
+        assertThat(IndexedFileDigests.digestOf(source), is(not(digest)));
+    }
+
+    @Test
+    public void shouldLoadSavedDigests() throws Exception {
+        IndexedFileDigests digests = IndexedFileDigests.load(folder);
+        digests.put("src/main.rs", "abc123");
+        digests.put("src/lib.rs", "def456");
+        digests.save();
+
+        IndexedFileDigests loadedDigests = IndexedFileDigests.load(folder);
+        assertThat(loadedDigests.matches("src/main.rs", "abc123"), is(true));
+        assertThat(loadedDigests.matches("src/lib.rs", "def456"), is(true));
+        assertThat(loadedDigests.matches("src/lib.rs", "abc123"), is(false));
+        assertThat(folder.getFileObject(IndexedFileDigests.FILE_NAME + ".tmp"), is(nullValue()));
+    }
+
+    @Test
+    public void shouldReplacePreviouslySavedDigests() throws Exception {
+        IndexedFileDigests digests = IndexedFileDigests.load(folder);
+        digests.put("src/main.rs", "abc123");
+        digests.put("src/lib.rs", "def456");
+        digests.save();
+        digests.put("src/main.rs", "789abc");
+        digests.remove("src/lib.rs");
+        digests.save();
+
+        IndexedFileDigests loadedDigests = IndexedFileDigests.load(folder);
+        assertThat(loadedDigests.matches("src/main.rs", "789abc"), is(true));
+        assertThat(loadedDigests.matches("src/lib.rs", "def456"), is(false));
+    }
+
+    @Test
+    public void shouldNotMatchAnythingWhenNothingSaved() throws Exception {
+        IndexedFileDigests digests = IndexedFileDigests.load(folder);
+
+        assertThat(digests.matches("src/main.rs", IndexedFileDigests.digestOf("")), is(false));
+    }
+
+    @Test
+    public void shouldForgetDeletedDigests() throws Exception {
+        IndexedFileDigests digests = IndexedFileDigests.load(folder);
+        digests.put("src/main.rs", "abc123");
+        digests.save();
+        digests.delete();
+
+        assertThat(IndexedFileDigests.load(folder).matches("src/main.rs", "abc123"), is(false));
+    }
+
+    @Test
+    public void shouldNotSaveDigestsWithoutFolder() throws Exception {
+        IndexedFileDigests digests = IndexedFileDigests.empty(null);
+        digests.put("src/main.rs", "abc123");
+        digests.save();
+
+        assertThat(digests.matches("src/main.rs", "abc123"), is(true));
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.indexing;
+
+import com.github.drrb.rust.netbeans.Benchmark;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.netbeans.modules.csl.api.OffsetRange;
+import org.netbeans.modules.parsing.spi.indexing.support.QuerySupport;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+
+/**
+ * Compares finding symbols in a {@link MappedSymbolTable} with finding them
+ * the way {@link RustIndexReader} does once the index has been queried:
+ * deserializing every symbol in each document that the query matched, and
+ * leaving out the ones that don't match. The Lucene query itself (and loading
+ * the documents' fields) isn't included, so the index's real cost is higher
+ * than this. Not a test: run it on its own, e.g. from the IDE, or with
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.github.drrb.rust.netbeans.indexing.MappedSymbolTableBenchmark
+ * </pre>
+ */
+public class MappedSymbolTableBenchmark {
+
+    private static final int FILES = 10000;
+    private static final int FUNCTIONS_PER_FILE = 40;
+    private static final int FIELDS_PER_STRUCT = 4;
+    private static final String QUERY = "type12";
+    private static final int WARM_UP_ITERATIONS = 2000;
+    private static final int ITERATIONS = 10000;
+
+    public static void main(String[] args) throws Exception {
+        final FileObject root = FileUtil.createMemoryFileSystem().getRoot();
+        File tableFile = File.createTempFile("benchmark", ".symbols");
+        tableFile.deleteOnExit();
+
+        SymbolTableBuilder builder = new SymbolTableBuilder();
+        final List<List<String[]>> matchingDocuments = new ArrayList<>();
+        final IndexItemCodec<IndexedRustSymbol> codec = IndexItemCodec.forType(IndexedRustSymbol.class);
+        for (int file = 0; file < FILES; file++) {
+            String path = "src/file" + file + ".rs";
+            FileUtil.createData(root, path);
+            List<IndexedRustSymbol> symbols = symbolsInFile(file);
+            builder.add(path, symbols);
+            if (("type" + file).startsWith(QUERY)) {
+                List<String[]> document = new ArrayList<>(symbols.size());
+                for (IndexedRustSymbol symbol : symbols) {
+                    document.add(valuesOf(symbol));
+                }
+                matchingDocuments.add(document);
+            }
+        }
+        long start = System.nanoTime();
+        builder.write(tableFile);
+        System.out.printf("Wrote %s symbols in %s ms (%s KB)%n", FILES * (1 + FIELDS_PER_STRUCT + FUNCTIONS_PER_FILE), (System.nanoTime() - start) / 1000000, tableFile.length() / 1024);
+        final MappedSymbolTable table = MappedSymbolTable.open(tableFile);
+
+        Benchmark.Measurement documentSearch = Benchmark.measure(new Benchmark.Task() {
+            @Override
+            protected int run() {
+                return searchDocuments(codec, matchingDocuments);
+            }
+        }, WARM_UP_ITERATIONS, ITERATIONS);
+        report("Index documents", documentSearch);
+        Benchmark.Measurement tableSearch = Benchmark.measure(new Benchmark.Task() {
+            @Override
+            protected int run() {
+                return searchTable(table, root);
+            }
+        }, WARM_UP_ITERATIONS, ITERATIONS);
+        report("Symbol table", tableSearch);
+        System.out.printf("(checksum %s)%n", documentSearch.getChecksum() + tableSearch.getChecksum());
+    }
+
+    private static List<IndexedRustSymbol> symbolsInFile(int file) {
+        List<IndexedRustSymbol> symbols = new ArrayList<>();
+        String typeName = "Type" + file;
+        symbols.add(new IndexedRustSymbol(typeName, RustSymbolKind.STRUCT, "", new OffsetRange(0, 100)));
+        for (int field = 0; field < FIELDS_PER_STRUCT; field++) {
+            symbols.add(new IndexedRustSymbol("field" + field, RustSymbolKind.STRUCT_FIELD, typeName, new OffsetRange(10 + field, 11 + field)));
+        }
+        for (int function = 0; function < FUNCTIONS_PER_FILE; function++) {
+            symbols.add(new IndexedRustSymbol("function" + file + "_" + function, RustSymbolKind.FUNCTION, "", new OffsetRange(100 + function * 10, 109 + function * 10)));
+        }
+        return symbols;
+    }
+
+    static String[] valuesOf(IndexedRustSymbol symbol) {
+        return new String[]{symbol.getName(), symbol.lowercaseName, symbol.getKind().name(), symbol.container, String.valueOf(symbol.offsetStart), String.valueOf(symbol.offsetEnd)};
+    }
+
+    private static int searchDocuments(IndexItemCodec<IndexedRustSymbol> codec, List<List<String[]>> documents) {
+        SymbolNameMatcher nameMatcher = SymbolNameMatcher.create(QUERY, QuerySupport.Kind.CASE_INSENSITIVE_PREFIX);
+        List<IndexedRustSymbol> symbols = new ArrayList<>();
+        for (List<String[]> document : documents) {
+            for (String[] values : document) {
+                IndexedRustSymbol symbol = codec.read(values, null);
+                if (nameMatcher.matches(symbol.getName())) {
+                    symbols.add(symbol);
+                }
+            }
+        }
+        return symbols.size();
+    }
+
+    private static int searchTable(MappedSymbolTable table, FileObject root) {
+        List<IndexedRustSymbol> symbols = new ArrayList<>();
+        table.find(QUERY, QuerySupport.Kind.CASE_INSENSITIVE_PREFIX, false, root, symbols);
+        return symbols.size();
+    }
+
+    private static void report(String path, Benchmark.Measurement measurement) {
+        System.out.printf("%s: %s us per search, %s KB allocated per search%n", path, measurement.getMeanNanos() / 1000, measurement.getBytesPerRun() / 1024);
+    }
+}
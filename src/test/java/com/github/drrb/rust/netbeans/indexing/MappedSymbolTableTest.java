@@ -0,0 +1,251 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.indexing;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.netbeans.modules.csl.api.OffsetRange;
+import org.netbeans.modules.parsing.spi.indexing.support.QuerySupport;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+
+/**
+ *
+ */
+public class MappedSymbolTableTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    private FileObject root;
+    private File tableFile;
+    private int version;
+
+    @Before
+    public void setUp() throws Exception {
+        root = FileUtil.createMemoryFileSystem().getRoot();
+        FileUtil.createData(root, "src/main.rs");
+        FileUtil.createData(root, "src/point.rs");
+        tableFile = new File(temporaryFolder.getRoot(), "test.0.symbols");
+    }
+
+    @Test
+    public void shouldFindSymbolsByExactName() throws Exception {
+        writeTable();
+
+        List<IndexedRustSymbol> symbols = find("Point", QuerySupport.Kind.EXACT);
+
+        assertThat(names(symbols), is(Arrays.asList("Point")));
+        IndexedRustSymbol point = symbols.get(0);
+        assertThat(point.getKind(), is(RustSymbolKind.STRUCT));
+        assertThat(point.getContainer(), is(nullValue()));
+        assertThat(point.getOffsetRange(), is(new OffsetRange(0, 30)));
+        assertThat(point.getFile(), is(root.getFileObject("src/point.rs")));
+    }
+
+    @Test
+    public void shouldFindSymbolsByPrefix() throws Exception {
+        writeTable();
+
+        assertThat(names(find("po", QuerySupport.Kind.PREFIX)), is(Arrays.asList("point_to_string")));
+        assertThat(names(find("Po", QuerySupport.Kind.PREFIX)), is(Arrays.asList("Point", "PointFactory")));
+        assertThat(names(find("po", QuerySupport.Kind.CASE_INSENSITIVE_PREFIX)), is(Arrays.asList("Point", "PointFactory", "point_to_string")));
+        assertThat(names(find("", QuerySupport.Kind.CASE_INSENSITIVE_PREFIX)).size(), is(5));
+    }
+
+    @Test
+    public void shouldFindSymbolsByCamelCase() throws Exception {
+        writeTable();
+
+        assertThat(names(find("PoFa", QuerySupport.Kind.CAMEL_CASE)), is(Arrays.asList("PointFactory")));
+    }
+
+    @Test
+    public void shouldFindSymbolsByRegex() throws Exception {
+        writeTable();
+
+        assertThat(names(find(".*_to_.*", QuerySupport.Kind.REGEXP)), is(Arrays.asList("point_to_string")));
+        assertThat(names(find("X", QuerySupport.Kind.CASE_INSENSITIVE_REGEXP)), is(Arrays.asList("x")));
+    }
+
+    @Test
+    public void shouldFindOnlyTypesWhenAskedTo() throws Exception {
+        writeTable();
+
+        List<IndexedRustSymbol> types = new ArrayList<>();
+        MappedSymbolTable.open(tableFile).find("", QuerySupport.Kind.CASE_INSENSITIVE_PREFIX, true, root, types);
+
+        assertThat(names(types), is(Arrays.asList("Point", "PointFactory")));
+    }
+
+    @Test
+    public void shouldFindNothingWhenNoNamesMatch() throws Exception {
+        writeTable();
+
+        assertThat(find("Zebra", QuerySupport.Kind.PREFIX).size(), is(0));
+        assertThat(find("Poi", QuerySupport.Kind.EXACT).size(), is(0));
+    }
+
+    @Test
+    public void shouldLeaveOutSymbolsInFilesThatDontExist() throws Exception {
+        root.getFileObject("src/main.rs").delete();
+        writeTable();
+
+        assertThat(names(find("main", QuerySupport.Kind.EXACT)).size(), is(0));
+    }
+
+    @Test
+    public void shouldUpdateTableWithChangedFiles() throws Exception {
+        writeTable();
+
+        SymbolTableUpdate update = startUpdate(false);
+        update.setSymbols("src/main.rs", Arrays.asList(symbol("start", RustSymbolKind.FUNCTION, "")));
+        update.apply();
+
+        assertThat(names(find("", QuerySupport.Kind.CASE_INSENSITIVE_PREFIX)), is(Arrays.asList("Point", "point_to_string", "start", "x")));
+    }
+
+    @Test
+    public void shouldRemoveDeletedFilesFromTable() throws Exception {
+        writeTable();
+
+        SymbolTableUpdate update = startUpdate(false);
+        update.remove("src/point.rs");
+        update.apply();
+
+        assertThat(names(find("", QuerySupport.Kind.CASE_INSENSITIVE_PREFIX)), is(Arrays.asList("PointFactory", "main")));
+    }
+
+    @Test
+    public void shouldNotWriteTableFromSomeFilesOnly() throws Exception {
+        SymbolTableUpdate update = startUpdate(false);
+        update.setSymbols("src/main.rs", Arrays.asList(symbol("main", RustSymbolKind.FUNCTION, "")));
+        update.apply();
+
+        assertThat(tableFile.exists(), is(false));
+    }
+
+    @Test
+    public void shouldNotLeaveTemporaryFileBehind() throws Exception {
+        writeTable();
+
+        assertThat(Arrays.asList(temporaryFolder.getRoot().list()), is(Arrays.asList("test.1.symbols")));
+    }
+
+    @Test
+    public void shouldWriteUpdatedTableToNewFile() throws Exception {
+        writeTable();
+        File oldTableFile = tableFile;
+        MappedSymbolTable oldTable = MappedSymbolTable.open(oldTableFile);
+
+        SymbolTableUpdate update = startUpdate(false);
+        update.remove("src/point.rs");
+        update.apply();
+
+        assertThat(tableFile, is(not(oldTableFile)));
+        assertThat(oldTable.size(), is(5));
+        assertThat(MappedSymbolTable.open(tableFile).size(), is(2));
+    }
+
+    @Test
+    public void shouldReplaceDiscardedTableWithEmptyFile() throws Exception {
+        writeTable();
+
+        SymbolTableUpdate update = startUpdate(false);
+        update.discard();
+
+        assertThat(tableFile.exists(), is(true));
+        assertThat(tableFile.length(), is(0L));
+    }
+
+    @Test
+    public void shouldReadTableWithoutMappingIt() throws Exception {
+        writeTable();
+
+        List<IndexedRustSymbol> symbols = new ArrayList<>();
+        MappedSymbolTable.read(tableFile).find("Point", QuerySupport.Kind.EXACT, false, root, symbols);
+
+        assertThat(names(symbols), is(Arrays.asList("Point")));
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRefuseToOpenFileThatIsntSymbolTable() throws Exception {
+        try (FileOutputStream out = new FileOutputStream(tableFile)) {
+            out.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        }
+        MappedSymbolTable.open(tableFile);
+    }
+
+    @Test
+    public void shouldSortNamesIgnoringCase() {
+        assertThat(SymbolTableBuilder.compareIgnoringCase("Point", "point"), is(0));
+        assertThat(SymbolTableBuilder.compareIgnoringCase("Point", "pointer"), is(lessThan(0)));
+        assertThat(SymbolTableBuilder.compareIgnoringCase("b", "A"), is(greaterThan(0)));
+    }
+
+    private void writeTable() throws IOException {
+        SymbolTableUpdate update = startUpdate(true);
+        update.setSymbols("src/point.rs", Arrays.asList(
+                symbol("Point", RustSymbolKind.STRUCT, ""),
+                symbol("x", RustSymbolKind.STRUCT_FIELD, "Point"),
+                symbol("point_to_string", RustSymbolKind.FUNCTION, "")));
+        update.setSymbols("src/main.rs", Arrays.asList(
+                symbol("main", RustSymbolKind.FUNCTION, ""),
+                symbol("PointFactory", RustSymbolKind.TRAIT, "")));
+        update.apply();
+    }
+
+    /**
+     * Start an update that writes the next version of the table.
+     */
+    private SymbolTableUpdate startUpdate(boolean rebuild) {
+        File newTableFile = new File(temporaryFolder.getRoot(), "test." + ++version + ".symbols");
+        SymbolTableUpdate update = new SymbolTableUpdate(tableFile, newTableFile, rebuild);
+        tableFile = newTableFile;
+        return update;
+    }
+
+    private List<IndexedRustSymbol> find(String query, QuerySupport.Kind searchType) throws IOException {
+        List<IndexedRustSymbol> symbols = new ArrayList<>();
+        MappedSymbolTable.open(tableFile).find(query, searchType, false, root, symbols);
+        return symbols;
+    }
+
+    private static IndexedRustSymbol symbol(String name, RustSymbolKind kind, String container) {
+        return new IndexedRustSymbol(name, kind, container, new OffsetRange(0, 30));
+    }
+
+    private static List<String> names(Collection<IndexedRustSymbol> symbols) {
+        List<String> names = new ArrayList<>();
+        for (IndexedRustSymbol symbol : symbols) {
+            names.add(symbol.getName());
+        }
+        Collections.sort(names);
+        return names;
+    }
+}
@@ -18,6 +18,7 @@ package com.github.drrb.rust.netbeans.indexing;
 
 import static com.github.drrb.rust.netbeans.test.Matchers.*;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import static org.junit.Assert.*;
@@ -54,25 +55,69 @@ public class RustIndexReaderTest {
     }
 
     @Test
-    public void shouldFindStructsFromIndex() throws Exception {
-        IndexResult result = mock(IndexResult.class);
+    public void shouldFindSymbolsFromIndex() throws Exception {
         FileObject file = mock(FileObject.class);
         List<IndexResult> indexResults = new LinkedList<>();
-        indexResults.add(result);
+        indexResults.add(indexResult(file, "Point", "STRUCT", "", 10, 100));
+        when(querySupport.query(eq("symbol-name"), eq("Po"), eq(Kind.PREFIX), Mockito.<String>anyVararg())).thenReturn((List) indexResults);
+
+        Collection<IndexedRustSymbol> indexedSymbols = indexReader.findSymbolsByName("Po", Kind.PREFIX);
+
+        assertThat(indexedSymbols, hasSize(1));
+        IndexedRustSymbol indexedSymbol = indexedSymbols.iterator().next();
+        assertThat(indexedSymbol.getName(), is("Point"));
+        assertThat(indexedSymbol.getKind(), is(RustSymbolKind.STRUCT));
+        assertThat(indexedSymbol.getContainer(), is(nullValue()));
+        assertThat(indexedSymbol.getOffsetRange(), is(new OffsetRange(10, 100)));
+        assertThat(indexedSymbol.getFile(), is(file));
+    }
+
+    @Test
+    public void shouldOnlyFindTypesWhenLookingForTypes() throws Exception {
+        FileObject file = mock(FileObject.class);
+        List<IndexResult> indexResults = new LinkedList<>();
+        indexResults.add(indexResult(file, "Point", "STRUCT", "", 10, 100));
+        indexResults.add(indexResult(file, "point", "IMPL_METHOD", "Shape", 110, 150));
+        when(querySupport.query(eq("symbol-name-lowercase"), eq("po"), eq(Kind.CASE_INSENSITIVE_PREFIX), Mockito.<String>anyVararg())).thenReturn((List) indexResults);
+
+        Collection<IndexedRustSymbol> indexedTypes = indexReader.findTypesByName("po", Kind.CASE_INSENSITIVE_PREFIX);
+
+        assertThat(indexedTypes, hasSize(1));
+        assertThat(indexedTypes.iterator().next().getName(), is("Point"));
+    }
+
+    @Test
+    public void shouldOnlyFindMatchingSymbolsInFile() throws Exception {
+        FileObject file = mock(FileObject.class);
+        IndexResult result = mock(IndexResult.class);
         when(result.getFile()).thenReturn(file);
-        when(result.getValue("struct-name")).thenReturn("Point");
-        when(result.getValue("struct-module")).thenReturn("math.geom");
-        when(result.getValue("struct-offset-start")).thenReturn("10");
-        when(result.getValue("struct-offset-end")).thenReturn("100");
-        when(querySupport.query(eq("struct-name"), eq("Po"), eq(Kind.PREFIX), Mockito.<String>anyVararg())).thenReturn((List) indexResults);
+        when(result.getValues("symbol-name")).thenReturn(new String[]{"Point", "x", "Polygon"});
+        when(result.getValues("symbol-name-lowercase")).thenReturn(new String[]{"point", "x", "polygon"});
+        when(result.getValues("symbol-kind")).thenReturn(new String[]{"STRUCT", "STRUCT_FIELD", "STRUCT"});
+        when(result.getValues("symbol-container")).thenReturn(new String[]{"", "Point", ""});
+        when(result.getValues("symbol-offset-start")).thenReturn(new String[]{"10", "20", "40"});
+        when(result.getValues("symbol-offset-end")).thenReturn(new String[]{"30", "21", "60"});
+        List<IndexResult> indexResults = new LinkedList<>();
+        indexResults.add(result);
+        when(querySupport.query(eq("symbol-name"), eq("Po"), eq(Kind.PREFIX), Mockito.<String>anyVararg())).thenReturn((List) indexResults);
+
+        Collection<IndexedRustSymbol> indexedSymbols = indexReader.findSymbolsByName("Po", Kind.PREFIX);
 
-        Collection<IndexedRustStruct> indexedStructs = indexReader.findStructsByName("Po", Kind.PREFIX);
+        assertThat(indexedSymbols, hasSize(2));
+        Iterator<IndexedRustSymbol> symbols = indexedSymbols.iterator();
+        assertThat(symbols.next().getOffsetRange(), is(new OffsetRange(10, 30)));
+        assertThat(symbols.next().getOffsetRange(), is(new OffsetRange(40, 60)));
+    }
 
-        assertThat(indexedStructs, hasSize(1));
-        IndexedRustStruct indexedStruct = indexedStructs.iterator().next();
-        assertThat(indexedStruct.getName(), is("Point"));
-        assertThat(indexedStruct.getModule(), is("math.geom"));
-        assertThat(indexedStruct.getOffsetRange(), is(new OffsetRange(10, 100)));
-        assertThat(indexedStruct.getFile(), is(file));
+    private IndexResult indexResult(FileObject file, String name, String kind, String container, int start, int end) {
+        IndexResult result = mock(IndexResult.class);
+        when(result.getFile()).thenReturn(file);
+        when(result.getValues("symbol-name")).thenReturn(new String[]{name});
+        when(result.getValues("symbol-name-lowercase")).thenReturn(new String[]{name.toLowerCase()});
+        when(result.getValues("symbol-kind")).thenReturn(new String[]{kind});
+        when(result.getValues("symbol-container")).thenReturn(new String[]{container});
+        when(result.getValues("symbol-offset-start")).thenReturn(new String[]{String.valueOf(start)});
+        when(result.getValues("symbol-offset-end")).thenReturn(new String[]{String.valueOf(end)});
+        return result;
     }
 }
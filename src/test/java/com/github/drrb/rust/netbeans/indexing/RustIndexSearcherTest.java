@@ -53,19 +53,39 @@ public class RustIndexSearcherTest {
     public void shouldReadIndex() throws Exception {
         Project project = mock(Project.class);
         FileObject file = mock(FileObject.class);
-        List<IndexedRustStruct> indexedStructs = new LinkedList<>();
-        IndexedRustStruct indexedRustStruct = new IndexedRustStruct();
-        indexedRustStruct.file = file;
-        indexedRustStruct.name = "Point";
-        indexedRustStruct.module = "math";
-        indexedRustStruct.offsetStart = 10;
-        indexedRustStruct.offsetEnd = 20;
-        indexedStructs.add(indexedRustStruct);
+        List<IndexedRustSymbol> indexedTypes = new LinkedList<>();
+        indexedTypes.add(symbol(file, "Point", RustSymbolKind.STRUCT, ""));
 
         when(index.createIndexReader(project)).thenReturn(indexReader);
-        when(indexReader.findStructsByName("Point", QuerySupport.Kind.PREFIX)).thenReturn(indexedStructs);
+        when(indexReader.findTypesByName("Point", QuerySupport.Kind.PREFIX)).thenReturn(indexedTypes);
 
         Set<? extends IndexSearcher.Descriptor> results = indexSearcher.getTypes(project, "Point", QuerySupport.Kind.PREFIX, null);
         assertThat(results, hasSize(1));
     }
+
+    @Test
+    public void shouldFindSymbolsOfEveryKind() throws Exception {
+        Project project = mock(Project.class);
+        FileObject file = mock(FileObject.class);
+        List<IndexedRustSymbol> indexedSymbols = new LinkedList<>();
+        indexedSymbols.add(symbol(file, "draw", RustSymbolKind.FUNCTION, ""));
+        indexedSymbols.add(symbol(file, "draw", RustSymbolKind.IMPL_METHOD, "Point"));
+
+        when(index.createIndexReader(project)).thenReturn(indexReader);
+        when(indexReader.findSymbolsByName("draw", QuerySupport.Kind.EXACT)).thenReturn(indexedSymbols);
+
+        Set<? extends IndexSearcher.Descriptor> results = indexSearcher.getSymbols(project, "draw", QuerySupport.Kind.EXACT, null);
+        assertThat(results, hasSize(2));
+    }
+
+    private IndexedRustSymbol symbol(FileObject file, String name, RustSymbolKind kind, String container) {
+        IndexedRustSymbol symbol = new IndexedRustSymbol();
+        symbol.file = file;
+        symbol.name = name;
+        symbol.kind = kind;
+        symbol.container = container;
+        symbol.offsetStart = 10;
+        symbol.offsetEnd = 20;
+        return symbol;
+    }
 }
@@ -0,0 +1,251 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.indexing;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import static org.mockito.Mockito.*;
+import org.netbeans.modules.parsing.spi.indexing.Context;
+import org.netbeans.modules.parsing.spi.indexing.Indexable;
+import org.netbeans.modules.csl.api.OffsetRange;
+import org.netbeans.modules.parsing.spi.indexing.support.IndexResult;
+import org.netbeans.modules.parsing.spi.indexing.support.IndexingSupport;
+import org.netbeans.modules.parsing.spi.indexing.support.QuerySupport;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+import static org.powermock.api.mockito.PowerMockito.mock;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.verifyStatic;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+/**
+ *
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({IndexingSupport.class, QuerySupport.class, IndexResult.class, Context.class, Indexable.class})
+public class RustIndexTest {
+
+    private RustIndex index;
+    private Context context;
+    private IndexingSupport indexingSupport;
+    private TemporaryFolder symbolTableFolder;
+    private FileObject indexFolder;
+    private Indexable file;
+    private List<IndexedRustSymbol> symbols;
+
+    @Before
+    public void setUp() throws Exception {
+        symbolTableFolder = new TemporaryFolder();
+        symbolTableFolder.create();
+        index = new RustIndex(new SymbolTables(symbolTableFolder.getRoot()));
+        indexFolder = FileUtil.createMemoryFileSystem().getRoot();
+        context = newContext();
+        indexingSupport = mock(IndexingSupport.class);
+        mockStatic(IndexingSupport.class);
+        when(IndexingSupport.getInstance(any(Context.class))).thenReturn(indexingSupport);
+        file = mock(Indexable.class);
+        when(file.getRelativePath()).thenReturn("src/main.rs");
+        symbols = Collections.singletonList(new IndexedRustSymbol("main", RustSymbolKind.FUNCTION, "", new OffsetRange(0, 10)));
+    }
+
+    @After
+    public void tearDown() {
+        symbolTableFolder.delete();
+    }
+
+    @Test
+    public void shouldReuseIndexWriterForWholeContext() throws Exception {
+        RustIndexWriter firstWriter = index.getIndexWriter(context);
+        RustIndexWriter secondWriter = index.getIndexWriter(context);
+
+        assertThat(secondWriter, is(sameInstance(firstWriter)));
+        verifyStatic(times(1));
+        IndexingSupport.getInstance(context);
+    }
+
+    @Test
+    public void shouldCreateNewIndexWriterAfterScanFinished() throws Exception {
+        RustIndexWriter firstWriter = index.getIndexWriter(context);
+        index.scanFinished(context);
+        RustIndexWriter secondWriter = index.getIndexWriter(context);
+
+        assertThat(secondWriter, is(not(sameInstance(firstWriter))));
+    }
+
+    @Test
+    public void shouldRememberIndexedFilesBetweenScans() throws Exception {
+        index.setIndexed(context, file, "abc123", symbols);
+        index.scanFinished(context);
+
+        Context nextContext = newContext();
+        assertThat(index.isUpToDate(nextContext, file, "abc123"), is(true));
+        assertThat(index.isUpToDate(nextContext, file, "def456"), is(false));
+    }
+
+    @Test
+    public void shouldNotRememberIndexedFilesWhenScanCancelled() throws Exception {
+        index.setIndexed(context, file, "abc123", symbols);
+        index.scanFinished(context);
+        Context cancelledContext = newContext();
+        index.setIndexed(cancelledContext, file, "def456", symbols);
+        when(cancelledContext.isCancelled()).thenReturn(true);
+        index.scanFinished(cancelledContext);
+
+        assertThat(index.isUpToDate(newContext(), file, "abc123"), is(false));
+    }
+
+    @Test
+    public void shouldIndexEveryFileWhenIndexingAllFiles() throws Exception {
+        index.setIndexed(context, file, "abc123", symbols);
+        index.scanFinished(context);
+
+        Context allFilesContext = newContext();
+        when(allFilesContext.isAllFilesIndexing()).thenReturn(true);
+        assertThat(index.isUpToDate(allFilesContext, file, "abc123"), is(false));
+    }
+
+    @Test
+    public void shouldIndexEveryFileChangedInEditor() throws Exception {
+        Context editorContext = newContext();
+        when(editorContext.checkForEditorModifications()).thenReturn(true);
+        index.setIndexed(editorContext, file, "abc123", symbols);
+        index.scanFinished(editorContext);
+
+        assertThat(index.isUpToDate(newContext(), file, "abc123"), is(false));
+    }
+
+    @Test
+    public void shouldRemoveDeletedFilesFromIndex() throws Exception {
+        index.setIndexed(context, file, "abc123", symbols);
+        index.removeFiles(context, Arrays.asList(file));
+
+        verify(indexingSupport).removeDocuments(file);
+        assertThat(index.isUpToDate(context, file, "abc123"), is(false));
+    }
+
+    @Test
+    public void shouldMarkDirtyFilesInIndex() throws Exception {
+        index.setIndexed(context, file, "abc123", symbols);
+        index.markFilesDirty(context, Arrays.asList(file));
+
+        verify(indexingSupport).markDirtyDocuments(file);
+        assertThat(index.isUpToDate(context, file, "abc123"), is(false));
+    }
+
+    @Test
+    public void shouldWriteSymbolTableWhenAllFilesIndexed() throws Exception {
+        Context allFilesContext = newContext();
+        when(allFilesContext.isAllFilesIndexing()).thenReturn(true);
+        index.setIndexed(allFilesContext, file, "abc123", symbols);
+        index.scanFinished(allFilesContext);
+
+        assertThat(symbolTableFiles().length, is(1));
+    }
+
+    @Test
+    public void shouldDeleteOldVersionOfSymbolTableWhenItsReplaced() throws Exception {
+        Context allFilesContext = newContext();
+        when(allFilesContext.isAllFilesIndexing()).thenReturn(true);
+        index.setIndexed(allFilesContext, file, "abc123", symbols);
+        index.scanFinished(allFilesContext);
+        String oldTableFile = symbolTableFiles()[0];
+        index.setIndexed(context, file, "def456", symbols);
+        index.scanFinished(context);
+
+        assertThat(symbolTableFiles().length, is(1));
+        assertThat(symbolTableFiles()[0], is(not(oldTableFile)));
+    }
+
+    @Test
+    public void shouldNotWriteSymbolTableUntilAllFilesIndexed() throws Exception {
+        index.setIndexed(context, file, "abc123", symbols);
+        index.scanFinished(context);
+
+        assertThat(symbolTableFiles().length, is(0));
+    }
+
+    @Test
+    public void shouldDeleteSymbolTableWhenScanCancelled() throws Exception {
+        Context allFilesContext = newContext();
+        when(allFilesContext.isAllFilesIndexing()).thenReturn(true);
+        index.setIndexed(allFilesContext, file, "abc123", symbols);
+        index.scanFinished(allFilesContext);
+        Context cancelledContext = newContext();
+        index.removeFiles(cancelledContext, Arrays.asList(file));
+        when(cancelledContext.isCancelled()).thenReturn(true);
+        index.scanFinished(cancelledContext);
+
+        assertThat(symbolTableFiles().length, is(0));
+    }
+
+    @Test
+    public void shouldFindStoredSymbolsOfFileInIndex() throws Exception {
+        QuerySupport querySupport = mockQuerySupport();
+        IndexResult result = mock(IndexResult.class);
+        when(result.getValues("symbol-name")).thenReturn(new String[]{"main"});
+        when(result.getValues("symbol-name-lowercase")).thenReturn(new String[]{"main"});
+        when(result.getValues("symbol-kind")).thenReturn(new String[]{"FUNCTION"});
+        when(result.getValues("symbol-container")).thenReturn(new String[]{""});
+        when(result.getValues("symbol-offset-start")).thenReturn(new String[]{"0"});
+        when(result.getValues("symbol-offset-end")).thenReturn(new String[]{"10"});
+        doReturn(Arrays.asList(result)).when(querySupport).query(eq("file-path"), eq("src/main.rs"), eq(QuerySupport.Kind.EXACT), anyVararg());
+
+        List<IndexedRustSymbol> storedSymbols = index.getStoredSymbols(context, file);
+
+        assertThat(storedSymbols.size(), is(1));
+        assertThat(storedSymbols.get(0).getName(), is("main"));
+        assertThat(storedSymbols.get(0).getKind(), is(RustSymbolKind.FUNCTION));
+        assertThat(storedSymbols.get(0).getOffsetRange(), is(new OffsetRange(0, 10)));
+    }
+
+    @Test
+    public void shouldNotFindStoredSymbolsOfFileThatIsntInIndex() throws Exception {
+        QuerySupport querySupport = mockQuerySupport();
+        doReturn(Collections.emptyList()).when(querySupport).query(eq("file-path"), eq("src/main.rs"), eq(QuerySupport.Kind.EXACT), anyVararg());
+
+        assertThat(index.getStoredSymbols(context, file), is(nullValue()));
+    }
+
+    private QuerySupport mockQuerySupport() throws Exception {
+        QuerySupport querySupport = mock(QuerySupport.class);
+        mockStatic(QuerySupport.class);
+        when(QuerySupport.forRoots(RustIndexer.NAME, RustIndexer.VERSION, indexFolder)).thenReturn(querySupport);
+        when(context.getRoot()).thenReturn(indexFolder);
+        return querySupport;
+    }
+
+    private String[] symbolTableFiles() {
+        return symbolTableFolder.getRoot().list();
+    }
+
+    private Context newContext() throws Exception {
+        Context newContext = mock(Context.class);
+        when(newContext.getIndexFolder()).thenReturn(indexFolder);
+        when(newContext.getRootURI()).thenReturn(new File("/project/src").toURI().toURL());
+        return newContext;
+    }
+}
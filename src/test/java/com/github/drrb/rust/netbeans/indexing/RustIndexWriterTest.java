@@ -16,7 +16,8 @@
  */
 package com.github.drrb.rust.netbeans.indexing;
 
-import com.github.drrb.rust.netbeans.parsing.index.RustStruct;
+import java.util.Arrays;
+import java.util.Collections;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -50,18 +51,56 @@ public class RustIndexWriterTest {
     }
 
     @Test
-    public void shouldWriteStructToIndex() throws Exception {
-        RustStruct struct = RustStruct.builder()
-                .setName("Point")
-                .setOffsetRange(new OffsetRange(10, 20))
-                .build();
+    public void shouldWriteSymbolToIndex() throws Exception {
+        IndexedRustSymbol symbol = new IndexedRustSymbol("Point", RustSymbolKind.STRUCT, "", new OffsetRange(10, 20));
         when(indexingSupport.createDocument(file)).thenReturn(document);
-        indexWriter.write(file, struct);
+        indexWriter.write(file, Arrays.asList(symbol));
 
-        verify(document).addPair("struct-name", "Point", true, true);
-        verify(document).addPair("struct-name-lowercase", "point", true, true);
-        verify(document).addPair("struct-module", "xxx", true, true);
-        verify(document).addPair("struct-offset-start", "10", true, true);
-        verify(document).addPair("struct-offset-end", "20", true, true);
+        verify(document).addPair("symbol-name", "Point", true, true);
+        verify(document).addPair("symbol-name-lowercase", "point", true, true);
+        verify(document).addPair("symbol-kind", "STRUCT", true, true);
+        verify(document).addPair("symbol-container", "", true, true);
+        verify(document).addPair("symbol-offset-start", "10", true, true);
+        verify(document).addPair("symbol-offset-end", "20", true, true);
+        verify(indexingSupport).addDocument(document);
+    }
+
+    @Test
+    public void shouldWriteAllSymbolsInFileToOneDocument() throws Exception {
+        IndexedRustSymbol struct = new IndexedRustSymbol("Point", RustSymbolKind.STRUCT, "", new OffsetRange(10, 20));
+        IndexedRustSymbol field = new IndexedRustSymbol("x", RustSymbolKind.STRUCT_FIELD, "Point", new OffsetRange(15, 16));
+        when(indexingSupport.createDocument(file)).thenReturn(document);
+        indexWriter.write(file, Arrays.asList(struct, field));
+
+        verify(indexingSupport, times(1)).createDocument(file);
+        verify(document).addPair("symbol-name", "Point", true, true);
+        verify(document).addPair("symbol-name", "x", true, true);
+        verify(document).addPair("symbol-kind", "STRUCT_FIELD", true, true);
+        verify(document).addPair("symbol-container", "Point", true, true);
+        verify(indexingSupport, times(1)).addDocument(document);
+    }
+
+    @Test
+    public void shouldWriteFilePathToDocument() throws Exception {
+        when(file.getRelativePath()).thenReturn("src/main.rs");
+        when(indexingSupport.createDocument(file)).thenReturn(document);
+        indexWriter.write(file, Collections.<IndexedRustSymbol>emptyList());
+
+        verify(document).addPair("file-path", "src/main.rs", true, false);
+        verify(indexingSupport).addDocument(document);
+    }
+
+    @Test
+    public void shouldRemoveFileFromIndex() throws Exception {
+        indexWriter.remove(file);
+
+        verify(indexingSupport).removeDocuments(file);
+    }
+
+    @Test
+    public void shouldMarkFileDirtyInIndex() throws Exception {
+        indexWriter.markDirty(file);
+
+        verify(indexingSupport).markDirtyDocuments(file);
     }
 }
@@ -0,0 +1,204 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.indexing;
+
+import com.github.drrb.rust.netbeans.Benchmark;
+import static com.github.drrb.rust.netbeans.TestParsing.*;
+import com.github.drrb.rust.netbeans.parsing.NetbeansRustParser;
+import com.github.drrb.rust.netbeans.parsing.NetbeansRustParser.NetbeansRustParserResult;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.netbeans.modules.parsing.api.Snapshot;
+import org.netbeans.modules.parsing.spi.ParseException;
+import org.netbeans.modules.parsing.spi.indexing.Context;
+import org.netbeans.modules.parsing.spi.indexing.Indexable;
+
+/**
+ * Measures how many files per second go through the indexer's side of
+ * indexing (parsing, analyzing, collecting the symbols and writing them to
+ * the index writer) on a synthetic corpus, and how many index documents that
+ * takes. The writer just counts what it's given, so the time that Lucene
+ * takes to store the documents isn't included.
+ *
+ * Then, for a file that's already been parsed (as the infrastructure gives
+ * it to the indexer), it compares indexing the file again with what the
+ * indexer does when the file hasn't changed since it was indexed: taking
+ * its digest, and deserializing its stored symbols to write them again. The
+ * Lucene query for the stored document isn't included. Not a test: run it on
+ * its own, e.g. from the IDE, or with
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.github.drrb.rust.netbeans.indexing.RustIndexerBenchmark
+ * </pre>
+ */
+public class RustIndexerBenchmark {
+
+    private static final int FILE_COUNT = 10000;
+    private static final int ITEMS_PER_FILE = 5;
+    private static final int WARM_UP_FILES = 2000;
+
+    public static void main(String[] args) throws Exception {
+        final List<Snapshot> files = new ArrayList<>(FILE_COUNT);
+        long chars = 0;
+        for (int i = 0; i < FILE_COUNT; i++) {
+            String source = source(i);
+            chars += source.length();
+            files.add(snapshotOf(source));
+        }
+        final RustIndex index = new CountingIndex();
+        Benchmark.Measurement measurement = Benchmark.measure(new Benchmark.Task() {
+            private int fileNumber;
+
+            @Override
+            protected int run() throws Exception {
+                return indexFile(files.get(fileNumber++ % FILE_COUNT), index);
+            }
+        }, WARM_UP_FILES, FILE_COUNT);
+
+        CountingIndexWriter indexWriter = (CountingIndexWriter) index.getIndexWriter(null);
+        System.out.printf("%s files (%s chars)%n", FILE_COUNT, chars);
+        System.out.printf("%.0f files/sec%n", 1e9 / measurement.getMeanNanos());
+        System.out.printf("%s documents written per file, for %s symbols%n", indexWriter.documents / (WARM_UP_FILES + FILE_COUNT), measurement.getChecksum() / FILE_COUNT);
+        compareWithUnchangedFiles(files, indexWriter);
+    }
+
+    private static void compareWithUnchangedFiles(List<Snapshot> files, final RustIndexWriter indexWriter) throws Exception {
+        final List<List<String[]>> storedDocuments = new ArrayList<>(FILE_COUNT);
+        for (Snapshot file : files) {
+            List<String[]> document = new ArrayList<>();
+            for (IndexedRustSymbol symbol : IndexedRustSymbol.symbolsIn(parse(file).getIndex())) {
+                document.add(MappedSymbolTableBenchmark.valuesOf(symbol));
+            }
+            storedDocuments.add(document);
+        }
+        final IndexItemCodec<IndexedRustSymbol> codec = IndexItemCodec.forType(IndexedRustSymbol.class);
+        Benchmark.Measurement reindexing = Benchmark.measure(new ParsedFileTask(files) {
+            @Override
+            protected int run() throws Exception {
+                IndexedFileDigests.digestOf(getSnapshot().getText());
+                List<IndexedRustSymbol> symbols = IndexedRustSymbol.symbolsIn(getParseResult().getIndex());
+                indexWriter.write(null, symbols);
+                return symbols.size();
+            }
+        }, WARM_UP_FILES, FILE_COUNT);
+        Benchmark.Measurement reusing = Benchmark.measure(new ParsedFileTask(files) {
+            @Override
+            protected int run() throws Exception {
+                IndexedFileDigests.digestOf(getSnapshot().getText());
+                List<String[]> storedDocument = storedDocuments.get(getFileNumber());
+                List<IndexedRustSymbol> symbols = new ArrayList<>(storedDocument.size());
+                for (String[] values : storedDocument) {
+                    symbols.add(codec.read(values, null));
+                }
+                indexWriter.write(null, symbols);
+                return symbols.size();
+            }
+        }, WARM_UP_FILES, FILE_COUNT);
+        System.out.printf("After the parse, %s us per file to index it again, %s us to reuse its stored symbols%n", reindexing.getMeanNanos() / 1000, reusing.getMeanNanos() / 1000);
+        System.out.printf("(checksum %s)%n", reindexing.getChecksum() + reusing.getChecksum());
+    }
+
+    private static NetbeansRustParserResult parse(Snapshot file) throws ParseException {
+        NetbeansRustParser parser = new NetbeansRustParser();
+        parser.parse(file, null, null);
+        return parser.getResult(null);
+    }
+
+    /**
+     * @return how many symbols were written
+     */
+    private static int indexFile(Snapshot file, RustIndex index) throws Exception {
+        //As RustIndexer.index() does
+        NetbeansRustParserResult parseResult = parse(file);
+        RustIndexWriter indexWriter = index.getIndexWriter(null);
+        List<IndexedRustSymbol> symbols = IndexedRustSymbol.symbolsIn(parseResult.getIndex());
+        indexWriter.write(null, symbols);
+        return symbols.size();
+    }
+
+    private static String source(int fileNumber) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < ITEMS_PER_FILE; i++) {
+            String suffix = fileNumber + "_" + i;
+            source.append("struct Point").append(suffix).append(" { x: int, y: int }\n");
+            source.append("enum Colour").append(suffix).append(" { Red, Green, Blue }\n");
+            source.append("trait Shape").append(suffix).append(" { fn area(&self) -> int; }\n");
+            source.append("impl Point").append(suffix).append(" { fn new(x: int) -> int { x } }\n");
+            source.append("impl Shape").append(suffix).append(" for Point").append(suffix).append(" { fn area(&self) -> int { 1 } }\n");
+            source.append("fn function").append(suffix).append("(a: int, b: int) -> int { a + b }\n\n");
+        }
+        return source.toString();
+    }
+
+    /**
+     * Parses the next file before each run, as the infrastructure does before
+     * it gives a file to the indexer.
+     */
+    private abstract static class ParsedFileTask extends Benchmark.Task {
+
+        private final List<Snapshot> files;
+        private int fileNumber = -1;
+        private NetbeansRustParserResult parseResult;
+
+        ParsedFileTask(List<Snapshot> files) {
+            this.files = files;
+        }
+
+        @Override
+        protected void setUp() throws ParseException {
+            fileNumber = (fileNumber + 1) % files.size();
+            parseResult = parse(files.get(fileNumber));
+        }
+
+        int getFileNumber() {
+            return fileNumber;
+        }
+
+        Snapshot getSnapshot() {
+            return files.get(fileNumber);
+        }
+
+        NetbeansRustParserResult getParseResult() {
+            return parseResult;
+        }
+    }
+
+    private static class CountingIndex extends RustIndex {
+
+        private final CountingIndexWriter indexWriter = new CountingIndexWriter();
+
+        @Override
+        public RustIndexWriter getIndexWriter(Context context) {
+            return indexWriter;
+        }
+    }
+
+    private static class CountingIndexWriter extends RustIndexWriter {
+
+        long documents;
+
+        CountingIndexWriter() {
+            super(null);
+        }
+
+        @Override
+        public void write(Indexable file, Collection<IndexedRustSymbol> symbols) throws IOException {
+            this.documents++;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.indexing;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import junit.framework.Test;
+import org.netbeans.jellytools.JellyTestCase;
+import org.netbeans.junit.NbModuleSuite;
+import org.netbeans.modules.parsing.api.indexing.IndexingManager;
+import org.netbeans.modules.parsing.spi.indexing.support.QuerySupport;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+
+/**
+ *
+ */
+public class RustIndexerIntegrationTest extends JellyTestCase {
+
+    public static Test suite() {
+        return NbModuleSuite.allModules(RustIndexerIntegrationTest.class);
+    }
+
+    public RustIndexerIntegrationTest(String testName) {
+        super(testName);
+    }
+
+    public void testKeepDocumentOfFileReindexedWithoutChanges() throws Exception {
+        openDataProjects("projects/simplerustproject");
+        FileObject root = FileUtil.toFileObject(new File(getDataDir(), "projects/simplerustproject"));
+        FileObject mainFile = root.getFileObject("main.rs");
+        IndexingManager.getDefault().refreshIndexAndWait(root.toURL(), null, true);
+        assertEquals(1, documentsWithSymbol(root, "main"));
+
+        //The file's digest is the same as last time, so its stored document
+        //has to be put back after the infrastructure removes it
+        IndexingManager.getDefault().refreshIndexAndWait(root.toURL(), Collections.singleton(mainFile.toURL()), true);
+
+        assertEquals(1, documentsWithSymbol(root, "main"));
+    }
+
+    private int documentsWithSymbol(FileObject root, String name) throws IOException {
+        QuerySupport querySupport = QuerySupport.forRoots(RustIndexer.NAME, RustIndexer.VERSION, root);
+        return querySupport.query(IndexKey.SYMBOL_NAME.key(), name, QuerySupport.Kind.EXACT).size();
+    }
+}
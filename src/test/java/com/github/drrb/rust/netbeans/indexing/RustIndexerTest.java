@@ -17,21 +17,29 @@
 package com.github.drrb.rust.netbeans.indexing;
 
 import com.github.drrb.rust.netbeans.RustSourceSnapshot;
-import com.github.drrb.rust.netbeans.parsing.index.RustStruct;
 import static com.github.drrb.rust.netbeans.test.Matchers.contains;
 import static com.github.drrb.rust.netbeans.test.Matchers.containsKey;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
 import org.antlr.v4.runtime.misc.MultiMap;
 import org.hamcrest.Description;
 import org.hamcrest.Matcher;
 import org.hamcrest.TypeSafeMatcher;
+import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.powermock.api.mockito.PowerMockito.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import org.netbeans.modules.csl.api.OffsetRange;
 import org.netbeans.modules.parsing.spi.indexing.Context;
 import org.netbeans.modules.parsing.spi.indexing.Indexable;
 import org.powermock.core.classloader.annotations.PrepareForTest;
@@ -52,7 +60,7 @@ public class RustIndexerTest {
     public void setUp() throws Exception {
         indexWriter = new StubIndexWriter();
         index = mock(RustIndex.class);
-        when(index.createIndexWriter(any(Context.class))).thenReturn(indexWriter);
+        when(index.getIndexWriter(any(Context.class))).thenReturn(indexWriter);
         indexer = new RustIndexer(index);
     }
 
@@ -73,36 +81,120 @@ public class RustIndexerTest {
 
         indexer.index(file, source.parse(), context);
 
-        assertThat(indexWriter.structs, containsKey(file).mappedToValueThat(contains(struct("Point"))));
-        assertThat(indexWriter.structs, containsKey(file).mappedToValueThat(contains(struct("Person"))));
+        assertThat(indexWriter.symbols, containsKey(file).mappedToValueThat(contains(symbol("Point", RustSymbolKind.STRUCT))));
+        assertThat(indexWriter.symbols, containsKey(file).mappedToValueThat(contains(symbol("Person", RustSymbolKind.STRUCT))));
     }
 
-    private Matcher<RustStruct> struct(final String name) {
-        return new TypeSafeMatcher<RustStruct>() {
+    @Test
+    public void shouldWriteEveryKindOfItemToIndex() {
+        RustSourceSnapshot source = new RustSourceSnapshot();
+        source.appendln("struct Point {");
+        source.appendln("   x: float");
+        source.appendln("}");
+        source.appendln("enum Colour { Red, Green }");
+        source.appendln("trait Printable {");
+        source.appendln("   fn print(&self);");
+        source.appendln("}");
+        source.appendln("impl Point {");
+        source.appendln("   fn transpose(&self) { }");
+        source.appendln("}");
+        source.appendln("impl Printable for Point {");
+        source.appendln("   fn print(&self) { }");
+        source.appendln("}");
+        source.appendln("fn main() { }");
+
+        Indexable file = mock(Indexable.class);
+        Context context = mock(Context.class);
+
+        indexer.index(file, source.parse(), context);
+
+        assertThat(indexWriter.symbols, containsKey(file).mappedToValueThat(contains(symbol("x", RustSymbolKind.STRUCT_FIELD))));
+        assertThat(indexWriter.symbols, containsKey(file).mappedToValueThat(contains(symbol("Colour", RustSymbolKind.ENUM))));
+        assertThat(indexWriter.symbols, containsKey(file).mappedToValueThat(contains(symbol("Printable", RustSymbolKind.TRAIT))));
+        assertThat(indexWriter.symbols, containsKey(file).mappedToValueThat(contains(symbol("transpose", RustSymbolKind.IMPL_METHOD))));
+        assertThat(indexWriter.symbols, containsKey(file).mappedToValueThat(contains(symbol("Printable", RustSymbolKind.TRAIT_IMPL))));
+        assertThat(indexWriter.symbols, containsKey(file).mappedToValueThat(contains(symbol("print", RustSymbolKind.IMPL_METHOD))));
+        assertThat(indexWriter.symbols, containsKey(file).mappedToValueThat(contains(symbol("main", RustSymbolKind.FUNCTION))));
+        assertThat(indexWriter.documents, is(1));
+    }
+
+    @Test
+    public void shouldRememberDigestOfIndexedFile() {
+        RustSourceSnapshot source = new RustSourceSnapshot();
+        source.appendln("fn main() { }");
+
+        Indexable file = mock(Indexable.class);
+        Context context = mock(Context.class);
+
+        indexer.index(file, source.parse(), context);
+
+        verify(index).setIndexed(eq(context), eq(file), eq(IndexedFileDigests.digestOf(source)), anyCollectionOf(IndexedRustSymbol.class));
+    }
+
+    @Test
+    public void shouldPutBackStoredDocumentOfFileThatHasntChangedSinceItWasIndexed() {
+        RustSourceSnapshot source = new RustSourceSnapshot();
+        source.appendln("fn main() { }");
+
+        Indexable file = mock(Indexable.class);
+        Context context = mock(Context.class);
+        when(index.isUpToDate(context, file, IndexedFileDigests.digestOf(source))).thenReturn(true);
+        IndexedRustSymbol storedSymbol = new IndexedRustSymbol("stored", RustSymbolKind.FUNCTION, "", new OffsetRange(0, 13));
+        when(index.getStoredSymbols(context, file)).thenReturn(Arrays.asList(storedSymbol));
+
+        indexer.index(file, source.parse(), context);
+
+        assertThat(indexWriter.documents, is(1));
+        assertThat(indexWriter.symbols, containsKey(file).mappedToValueThat(contains(symbol("stored", RustSymbolKind.FUNCTION))));
+        verify(index, never()).setIndexed(any(Context.class), any(Indexable.class), anyString(), anyCollectionOf(IndexedRustSymbol.class));
+    }
+
+    @Test
+    public void shouldIndexFileThatHasntChangedIfItsDocumentIsntInIndex() {
+        RustSourceSnapshot source = new RustSourceSnapshot();
+        source.appendln("fn main() { }");
+
+        Indexable file = mock(Indexable.class);
+        Context context = mock(Context.class);
+        when(index.isUpToDate(context, file, IndexedFileDigests.digestOf(source))).thenReturn(true);
+        when(index.getStoredSymbols(context, file)).thenReturn(null);
+
+        indexer.index(file, source.parse(), context);
+
+        assertThat(indexWriter.symbols, containsKey(file).mappedToValueThat(contains(symbol("main", RustSymbolKind.FUNCTION))));
+        verify(index).setIndexed(eq(context), eq(file), eq(IndexedFileDigests.digestOf(source)), anyCollectionOf(IndexedRustSymbol.class));
+    }
+
+    private Matcher<IndexedRustSymbol> symbol(final String name, final RustSymbolKind kind) {
+        return new TypeSafeMatcher<IndexedRustSymbol>() {
 
             @Override
-            public boolean matchesSafely(RustStruct item) {
-                return item.getName().equals(name);
+            public boolean matchesSafely(IndexedRustSymbol item) {
+                return item.getName().equals(name) && item.getKind() == kind;
             }
 
             @Override
             public void describeTo(Description description) {
-                description.appendText("struct with name ").appendValue(name);
+                description.appendText("symbol with name ").appendValue(name).appendText(" and kind ").appendValue(kind);
             }
         };
     }
 
     private static class StubIndexWriter extends RustIndexWriter {
 
-        final MultiMap<Indexable, RustStruct> structs = new MultiMap<>();
+        final MultiMap<Indexable, IndexedRustSymbol> symbols = new MultiMap<>();
+        int documents;
 
         StubIndexWriter() {
             super(null);
         }
 
         @Override
-        public void write(Indexable file, RustStruct struct) throws IOException {
-            structs.map(file, struct);
+        public void write(Indexable file, Collection<IndexedRustSymbol> symbols) throws IOException {
+            documents++;
+            for (IndexedRustSymbol symbol : symbols) {
+                this.symbols.map(file, symbol);
+            }
         }
     }
 }
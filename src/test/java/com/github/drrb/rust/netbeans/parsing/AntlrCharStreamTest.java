@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing;
+
+import org.antlr.v4.runtime.misc.Interval;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import static org.mockito.Matchers.anyInt;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.netbeans.spi.lexer.LexerInput;
+import static org.powermock.api.mockito.PowerMockito.*;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+/**
+ *
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(LexerInput.class)
+public class AntlrCharStreamTest {
+
+    @Test
+    public void shouldGetTextOfCurrentToken() throws Exception {
+        AntlrCharStream stream = new AntlrCharStream(inputOf("fn main() {}"), "AntlrCharStreamTest");
+        consume(stream, 3);
+        stream.backupLookahead();
+        consume(stream, 4);
+
+        assertThat(stream.getText(Interval.of(3, 6)), is("main"));
+    }
+
+    @Test
+    public void shouldGetTextOfCurrentTokenLongerThanWindow() throws Exception {
+        String comment = "/*" + repeat('x', 1000) + "*/";
+        AntlrCharStream stream = new AntlrCharStream(inputOf(comment + "\nfn main() {}"), "AntlrCharStreamTest");
+        consume(stream, comment.length());
+
+        assertThat(stream.getText(Interval.of(0, comment.length() - 1)), is(comment));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRefuseToGetTextThatWasDroppedFromWindow() throws Exception {
+        AntlrCharStream stream = new AntlrCharStream(inputOf(repeat('x', 1000)), "AntlrCharStreamTest");
+        for (int i = 0; i < 1000; i++) {
+            stream.consume();
+            stream.backupLookahead();
+        }
+
+        stream.getText(Interval.of(0, 999));
+    }
+
+    private static void consume(AntlrCharStream stream, int count) {
+        for (int i = 0; i < count; i++) {
+            stream.consume();
+        }
+    }
+
+    private static String repeat(char character, int count) {
+        StringBuilder text = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            text.append(character);
+        }
+        return text.toString();
+    }
+
+    private static LexerInput inputOf(final String text) throws Exception {
+        final int[] position = {0};
+        LexerInput input = mock(LexerInput.class);
+        when(input.read()).thenAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) {
+                return position[0]++ < text.length() ? text.charAt(position[0] - 1) : LexerInput.EOF;
+            }
+        });
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                position[0] -= (Integer) invocation.getArguments()[0];
+                return null;
+            }
+        }).when(input).backup(anyInt());
+        return input;
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing;
+
+import java.util.LinkedList;
+import java.util.List;
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.Interval;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class CharSequenceCharStreamTest {
+
+    private static final String SOURCE = "fn greet(name: str) {\n    io::println(fmt!(\"Hello, %?\", name));\n}\n";
+
+    @Test
+    public void shouldLookAheadAndBehind() {
+        CharStream stream = new CharSequenceCharStream("abc", "test");
+
+        assertThat(stream.LA(1), is((int) 'a'));
+        assertThat(stream.LA(-1), is(CharStream.EOF));
+        stream.consume();
+        assertThat(stream.LA(-1), is((int) 'a'));
+        assertThat(stream.LA(1), is((int) 'b'));
+        assertThat(stream.LA(2), is((int) 'c'));
+        assertThat(stream.LA(3), is(CharStream.EOF));
+    }
+
+    @Test
+    public void shouldSeekWithinText() {
+        CharStream stream = new CharSequenceCharStream("abc", "test");
+
+        stream.seek(2);
+        assertThat(stream.index(), is(2));
+        assertThat(stream.LA(1), is((int) 'c'));
+        stream.seek(10);
+        assertThat(stream.index(), is(3));
+        assertThat(stream.LA(1), is(CharStream.EOF));
+    }
+
+    @Test
+    public void shouldGetTextWithoutCopyingWholeInput() {
+        CharStream stream = new CharSequenceCharStream(new StringBuilder("fn main() {}"), "test");
+
+        assertThat(stream.size(), is(12));
+        assertThat(stream.getText(Interval.of(3, 6)), is("main"));
+        assertThat(stream.getText(Interval.of(10, 20)), is("{}"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotConsumeEof() {
+        CharStream stream = new CharSequenceCharStream("", "test");
+        stream.consume();
+    }
+
+    @Test
+    public void shouldLexSameTokensAsAntlrInputStream() {
+        List<String> expectedTokens = tokenize(new ANTLRInputStream(SOURCE));
+        List<String> actualTokens = tokenize(new CharSequenceCharStream(new StringBuilder(SOURCE), "test"));
+
+        assertThat(actualTokens, is(expectedTokens));
+    }
+
+    private List<String> tokenize(CharStream input) {
+        RustLexer lexer = new RustLexer(input);
+        List<String> tokens = new LinkedList<>();
+        Token token;
+        do {
+            token = lexer.nextToken();
+            tokens.add(token.getType() + ":" + token.getStartIndex() + ":" + token.getText());
+        } while (token.getType() != Token.EOF);
+        return tokens;
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing;
+
+import com.github.drrb.rust.netbeans.parsing.NetbeansRustParser.SyntaxError;
+import java.util.Arrays;
+import java.util.List;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class FunctionBodyParserTest {
+
+    @Test
+    public void shouldParseBodyAtOffset() {
+        String source = "fn add(x: int, y: int) -> int {\n    x + y\n}\n";
+
+        FunctionBodyParser.ParsedBody body = new FunctionBodyParser(source).parse(30);
+
+        assertThat(body.getBlock().getStart(), is(30));
+        assertThat(body.getBlock().getEnd(), is(43));
+        assertThat(body.getBlock().getIdents().toString(), is("[x@36, y@40]"));
+        assertThat(body.getSyntax().getSyntaxErrors().size(), is(0));
+        assertThat(body.getSyntax().getPredictionMode(), is(PredictionMode.SLL));
+    }
+
+    @Test
+    public void shouldReportSyntaxErrorsWhereTheyAreInTheFile() {
+        String source = "fn greet(name: str) {\n    xxx io::println(name);\n}\n";
+
+        FunctionBodyParser bodyParser = new FunctionBodyParser(source);
+        FunctionBodyParser.ParsedBody body = bodyParser.parse(20);
+
+        List<SyntaxError> syntaxErrors = bodyParser.syntaxErrorsIn(20, body.getSyntax());
+        assertThat(syntaxErrors.size(), is(greaterThan(0)));
+        SyntaxError syntaxError = syntaxErrors.get(0);
+        assertThat(syntaxError.getLine(), is(2));
+        assertThat(syntaxError.getCharPositionInLine(), is(8));
+        assertThat(body.getSyntax().getPredictionMode(), is(PredictionMode.LL));
+    }
+
+    @Test
+    public void shouldKeepSyntaxErrorsInBodiesThatAnEditDidntTouch() {
+        String source = "fn first() {\n    let x = 1;\n}\n\nfn greet(name: str) {\n    xxx io::println(name);\n}\n";
+        String editedSource = source.replace("let x = 1", "let xyz = 123");
+        FunctionBodyParser bodyParser = new FunctionBodyParser(source);
+        FunctionBodyParser.BodySyntax syntax = bodyParser.syntaxOf(51);
+
+        FunctionBodyParser editedBodyParser = bodyParser.forNewText(editedSource, TextChange.between(source, editedSource));
+
+        assertThat(editedBodyParser.knownSyntaxOf(11), is(nullValue()));
+        assertThat(editedBodyParser.knownSyntaxOf(55), is(sameInstance(syntax)));
+        SyntaxError syntaxError = editedBodyParser.syntaxErrorsIn(55, syntax).get(0);
+        assertThat(syntaxError.getLine(), is(6));
+        assertThat(syntaxError.getCharPositionInLine(), is(8));
+    }
+
+    @Test
+    public void shouldOnlyParseEachBodyOnce() {
+        FunctionBodyParser bodyParser = new FunctionBodyParser("fn main() {\n    let x = 1;\n}\n");
+
+        assertThat(bodyParser.parse(10), is(sameInstance(bodyParser.parse(10))));
+    }
+
+    @Test
+    public void shouldFindSkippedBodiesInParseTree() {
+        String source = "fn first() {\n    let x = 1;\n}\n\nimpl Point {\n    fn second(&self) { 2 }\n}\n";
+        RustParser parser = RustParserPool.acquireForSignatures(new CharSequenceCharStream(source, "FunctionBodyParserTest"), 0, 1, 0);
+        try {
+            int[] bodyStarts = FunctionBodyParser.bodyStartsIn(parser.prog());
+
+            assertThat(Arrays.toString(bodyStarts), is("[11, 65]"));
+        } finally {
+            RustParserPool.release(parser);
+        }
+    }
+
+    @Test
+    public void shouldFindSkippedBodiesInBodiesWithItemsInThem() {
+        String source = "fn outer() {\n    fn inner() { 1 }\n    inner()\n}\n";
+        RustParser parser = RustParserPool.acquireForSignatures(new CharSequenceCharStream(source, "FunctionBodyParserTest"), 0, 1, 0);
+        try {
+            int[] bodyStarts = FunctionBodyParser.bodyStartsIn(parser.prog());
+
+            assertThat(Arrays.toString(bodyStarts), is("[28]"));
+        } finally {
+            RustParserPool.release(parser);
+        }
+    }
+}
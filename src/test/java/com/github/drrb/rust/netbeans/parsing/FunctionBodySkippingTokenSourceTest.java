@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing;
+
+import org.antlr.v4.runtime.Token;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class FunctionBodySkippingTokenSourceTest {
+
+    @Test
+    public void shouldLeaveOutWhatsInsideFunctionBodies() {
+        assertThat(tokensOf("fn main() {\n    let x = 1;\n}\n"), is("fn main ( ) { } <EOF>"));
+    }
+
+    @Test
+    public void shouldKeepBracesOfBodyWhereTheyAre() {
+        FunctionBodySkippingTokenSource tokens = new FunctionBodySkippingTokenSource(lexer("fn main() {\n    let x = 1;\n}\n"));
+        Token openingBrace = nextTokenOnDefaultChannel(tokens, 5);
+        Token closingBrace = nextTokenOnDefaultChannel(tokens, 1);
+
+        assertThat(openingBrace.getStartIndex(), is(10));
+        assertThat(closingBrace.getStartIndex(), is(27));
+        assertThat(closingBrace.getLine(), is(3));
+    }
+
+    @Test
+    public void shouldSkipBodiesWithNestedBraces() {
+        assertThat(tokensOf("fn main() { if x { y } else { z } }\nfn other() {}\n"), is("fn main ( ) { } fn other ( ) { } <EOF>"));
+    }
+
+    @Test
+    public void shouldNotSkipBodiesOfOtherItems() {
+        assertThat(tokensOf("struct Point { x: int }"), is("struct Point { x : int } <EOF>"));
+        assertThat(tokensOf("impl Point { fn x(p: int) -> int { p } }"), is("impl Point { fn x ( p : int ) -> int { } } <EOF>"));
+        assertThat(tokensOf("trait T { fn f(x: int); fn g() { 1 } }"), is("trait T { fn f ( x : int ) ; fn g ( ) { } } <EOF>"));
+    }
+
+    @Test
+    public void shouldNotMistakeFunctionTypesForFunctions() {
+        assertThat(tokensOf("fn f(g: fn(int) -> int) { g(1) }"), is("fn f ( g : fn ( int ) -> int ) { } <EOF>"));
+        assertThat(tokensOf("struct S { f: fn(int) }"), is("struct S { f : fn ( int ) } <EOF>"));
+    }
+
+    @Test
+    public void shouldSkipBodiesWhenStartingInsideAnotherItem() {
+        assertThat(tokensOf("}\nfn main() { 1 }\n"), is("} fn main ( ) { } <EOF>"));
+    }
+
+    @Test
+    public void shouldNotSkipBodiesWithItemsInThem() {
+        assertThat(tokensOf("fn outer() { fn inner() { 1 } inner() }"), is("fn outer ( ) { fn inner ( ) { } inner ( ) } <EOF>"));
+        assertThat(tokensOf("fn f() { struct P { x: int } 1 }"), is("fn f ( ) { struct P { x : int } 1 } <EOF>"));
+    }
+
+    @Test
+    public void shouldStopAtEndOfFileIfBodyIsNotClosed() {
+        assertThat(tokensOf("fn main() {\n    let x = 1;\n"), is("fn main ( ) { <EOF>"));
+    }
+
+    private static String tokensOf(String source) {
+        FunctionBodySkippingTokenSource tokens = new FunctionBodySkippingTokenSource(lexer(source));
+        StringBuilder tokenTexts = new StringBuilder();
+        while (true) {
+            Token token = nextTokenOnDefaultChannel(tokens, 1);
+            tokenTexts.append(token.getText());
+            if (token.getType() == Token.EOF) {
+                return tokenTexts.toString();
+            }
+            tokenTexts.append(" ");
+        }
+    }
+
+    private static Token nextTokenOnDefaultChannel(FunctionBodySkippingTokenSource tokens, int count) {
+        Token token = null;
+        for (int found = 0; found < count;) {
+            token = tokens.nextToken();
+            if (token.getChannel() == Token.DEFAULT_CHANNEL) {
+                found++;
+            }
+        }
+        return token;
+    }
+
+    private static RustLexer lexer(String source) {
+        return new RustLexer(new CharSequenceCharStream(source, "FunctionBodySkippingTokenSourceTest"));
+    }
+}
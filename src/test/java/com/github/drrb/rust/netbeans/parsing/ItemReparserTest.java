@@ -0,0 +1,157 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing;
+
+import com.github.drrb.rust.netbeans.parsing.ast.RustAst;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstBuilder;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstItem;
+import com.github.drrb.rust.netbeans.parsing.index.IndexingVisitor;
+import com.github.drrb.rust.netbeans.parsing.index.RustFunction;
+import java.util.ArrayList;
+import java.util.List;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class ItemReparserTest {
+
+    private static final String SOURCE = ""
+            + "fn first() {\n"
+            + "    let x = 1;\n"
+            + "}\n"
+            + "\n"
+            + "fn second(a: int) {\n"
+            + "    let y = a;\n"
+            + "}\n"
+            + "\n"
+            + "fn third() {\n"
+            + "    let z = 3;\n"
+            + "}\n";
+
+    @Test
+    public void shouldLeaveThePreviousParseAsItWas() {
+        SignatureParse previousParse = parse(SOURCE);
+        List<RustAstItem> previousItems = new ArrayList<>(previousParse.getAst().getItems());
+        String previousAst = previousParse.getAst().toString();
+        String editedSource = SOURCE.replace("let y = a;", "let y = a;\n    let w = y;");
+
+        SignatureParse splicedParse = reparse(previousParse, editedSource);
+        splicedParse.getAst().toString();
+
+        assertThat(previousParse.getAst().getItems(), is(previousItems));
+        assertThat(previousParse.getAst().toString(), is(previousAst));
+        assertThat(previousParse.getText().toString(), is(SOURCE));
+    }
+
+    @Test
+    public void shouldMoveItemsAfterTheEdit() {
+        SignatureParse previousParse = parse(SOURCE);
+        String editedSource = SOURCE.replace("let y = a;", "let y = a;\n    let w = y;");
+
+        SignatureParse splicedParse = reparse(previousParse, editedSource);
+
+        assertThat(functionsIn(splicedParse.getAst()), is(functionsIn(parse(editedSource).getAst())));
+        assertThat(splicedParse.getAst().toString(), is(parse(editedSource).getAst().toString()));
+        assertThat(splicedParse.getBodyStarts(), is(parse(editedSource).getBodyStarts()));
+    }
+
+    @Test
+    public void shouldSpliceAnAstThatWasAlreadySpliced() {
+        SignatureParse previousParse = parse(SOURCE);
+        String editedSource = SOURCE.replace("let y = a;", "let y = a;\n    let w = y;");
+        String editedAgainSource = editedSource.replace("let x = 1;", "let x = 10;");
+
+        //Don't look at the items in between, so that they're moved twice at once
+        SignatureParse splicedParse = reparse(reparse(previousParse, editedSource), editedAgainSource);
+
+        assertThat(functionsIn(splicedParse.getAst()), is(functionsIn(parse(editedAgainSource).getAst())));
+        assertThat(splicedParse.getAst().toString(), is(parse(editedAgainSource).getAst().toString()));
+    }
+
+    @Test
+    public void shouldReparseNewItemTypedBetweenItems() {
+        SignatureParse previousParse = parse(SOURCE);
+        String editedSource = SOURCE.replace("}\n\nfn third", "}\n\nfn inserted() {}\n\nfn third");
+
+        SignatureParse splicedParse = reparse(previousParse, editedSource);
+
+        assertThat(splicedParse, is(notNullValue()));
+        assertThat(functionsIn(splicedParse.getAst()), is(functionsIn(parse(editedSource).getAst())));
+        assertThat(splicedParse.getItemCount(), is(4));
+    }
+
+    @Test
+    public void shouldReparseDeletedItem() {
+        SignatureParse previousParse = parse(SOURCE);
+        String editedSource = SOURCE.replace("fn second(a: int) {\n    let y = a;\n}\n", "");
+
+        SignatureParse splicedParse = reparse(previousParse, editedSource);
+
+        assertThat(splicedParse, is(notNullValue()));
+        assertThat(functionsIn(splicedParse.getAst()), is(functionsIn(parse(editedSource).getAst())));
+        assertThat(splicedParse.getBodyStarts(), is(parse(editedSource).getBodyStarts()));
+    }
+
+    @Test
+    public void shouldGiveUpWhenEditSpillsIntoNextItem() {
+        SignatureParse previousParse = parse(SOURCE);
+        String editedSource = SOURCE.replace("    let y = a;\n}", "    let y = a;\n");
+
+        assertThat(reparse(previousParse, editedSource), is(nullValue()));
+    }
+
+    @Test
+    public void shouldGiveUpWhenEditIsAtStartOfFile() {
+        SignatureParse previousParse = parse(SOURCE);
+
+        String editedSource = "fn zeroth() {}\n" + SOURCE;
+
+        assertThat(ItemReparser.forEdit(previousParse, editedSource, TextChange.between(SOURCE, editedSource)), is(nullValue()));
+    }
+
+    private static SignatureParse reparse(SignatureParse previousParse, String source) {
+        ItemReparser reparser = ItemReparser.forEdit(previousParse, source, TextChange.between(previousParse.getText(), source));
+        assertThat(reparser, is(notNullValue()));
+        RustParser parser = RustParserPool.acquireForSignatures(new CharSequenceCharStream(source, "ItemReparserTest"), reparser.getStartIndex(), reparser.getStartLine(), reparser.getStartCharPositionInLine());
+        try {
+            return reparser.reparse(parser, new FunctionBodyParser(source));
+        } finally {
+            RustParserPool.release(parser);
+        }
+    }
+
+    private static SignatureParse parse(String source) {
+        RustParser parser = RustParserPool.acquireForSignatures(new CharSequenceCharStream(source, "ItemReparserTest"), 0, 1, 0);
+        try {
+            RustParser.ProgContext parseTree = parser.prog();
+            return SignatureParse.of(parseTree, RustAstBuilder.build(parseTree, new FunctionBodyParser(source)));
+        } finally {
+            RustParserPool.release(parser);
+        }
+    }
+
+    private static List<String> functionsIn(RustAst ast) {
+        List<String> functions = new ArrayList<>();
+        for (RustFunction function : ast.accept(new IndexingVisitor()).getFunctions()) {
+            functions.add(function.getName() + " " + function.getOffsetRange() + " " + function.getBody().getOffsetRange() + " " + function.getBody().getText());
+        }
+        return functions;
+    }
+}
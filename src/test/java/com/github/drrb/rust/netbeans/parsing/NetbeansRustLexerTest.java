@@ -0,0 +1,176 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing;
+
+import com.github.drrb.rust.netbeans.RustDocument;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.text.Document;
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.Token;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.netbeans.api.lexer.Language;
+import org.netbeans.api.lexer.TokenChange;
+import org.netbeans.api.lexer.TokenHierarchy;
+import org.netbeans.api.lexer.TokenHierarchyEvent;
+import org.netbeans.api.lexer.TokenHierarchyListener;
+import org.netbeans.api.lexer.TokenSequence;
+
+/**
+ *
+ */
+public class NetbeansRustLexerTest {
+
+    private static final int FUNCTIONS = 500;
+    private Document document;
+    private TokenHierarchy<Document> tokenHierarchy;
+    private final List<TokenChange<?>> tokenChanges = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < FUNCTIONS; i++) {
+            source.append("/* Function number ").append(i).append(" */\n");
+            source.append("fn function").append(i).append("(name: ~str) {\n");
+            source.append("    let greeting = \"Hello, \" + name;\n");
+            source.append("    println(greeting);\n");
+            source.append("}\n");
+        }
+        document = RustDocument.containing(source);
+        document.putProperty(Language.class, RustTokenId.language());
+        tokenHierarchy = TokenHierarchy.get(document);
+        tokenHierarchy.addTokenHierarchyListener(new TokenHierarchyListener() {
+            @Override
+            public void tokenHierarchyChanged(TokenHierarchyEvent event) {
+                tokenChanges.add(event.tokenChange());
+            }
+        });
+        lexWholeDocument();
+    }
+
+    @Test
+    public void shouldRelexOnlyAroundAnInsertedCharacter() throws Exception {
+        int middleOfDocument = offsetOf("greeting", document.getLength() / 2);
+
+        document.insertString(middleOfDocument, "x", null);
+
+        assertThat(tokenChanges.size(), is(1));
+        TokenChange<?> change = tokenChanges.get(0);
+        assertThat(change.addedTokenCount(), is(lessThan(5)));
+        assertThat(change.removedTokenCount(), is(lessThan(5)));
+    }
+
+    @Test
+    public void shouldRelexOnlyAroundARemovedCharacter() throws Exception {
+        int middleOfDocument = offsetOf("greeting", document.getLength() / 2);
+
+        document.remove(middleOfDocument, 1);
+
+        assertThat(tokenChanges.size(), is(1));
+        TokenChange<?> change = tokenChanges.get(0);
+        assertThat(change.addedTokenCount(), is(lessThan(5)));
+        assertThat(change.removedTokenCount(), is(lessThan(5)));
+    }
+
+    @Test
+    public void shouldProduceSameTokensAfterEditAsFreshLex() throws Exception {
+        int middleOfDocument = offsetOf("println", document.getLength() / 2);
+
+        document.insertString(middleOfDocument, "#![attr]\n", null);
+
+        List<String> relexedTokens = lexWholeDocument();
+        TokenHierarchy<String> freshTokenHierarchy = TokenHierarchy.create(document.getText(0, document.getLength()), RustTokenId.language());
+        List<String> freshTokens = describeTokens(freshTokenHierarchy.tokenSequence(RustTokenId.language()));
+        assertThat(relexedTokens, is(freshTokens));
+    }
+
+    @Test
+    public void shouldLexLongTokensLikeAntlrInputStream() {
+        StringBuilder source = new StringBuilder();
+        source.append("/* ");
+        for (int i = 0; i < 5000; i++) {
+            source.append("* comment ");
+        }
+        source.append("*/\n");
+        source.append("fn main() {\n");
+        source.append("    let text = \"");
+        for (int i = 0; i < 5000; i++) {
+            source.append("long string ");
+        }
+        source.append("\";\n");
+        source.append("}\n");
+
+        List<String> netbeansTokens = describeTokens(TokenHierarchy.create(source, RustTokenId.language()).tokenSequence(RustTokenId.language()));
+
+        assertThat(netbeansTokens, is(antlrTokens(source)));
+    }
+
+    @Test
+    public void shouldLexPastErrorsInLongTokens() {
+        StringBuilder source = new StringBuilder();
+        source.append("fn main() {\n");
+        source.append("    let text = \"");
+        for (int i = 0; i < 5000; i++) {
+            source.append("unterminated string ");
+        }
+
+        TokenSequence<RustTokenId> tokenSequence = TokenHierarchy.create(source, RustTokenId.language()).tokenSequence(RustTokenId.language());
+        StringBuilder lexedText = new StringBuilder();
+        while (tokenSequence.moveNext()) {
+            lexedText.append(tokenSequence.token().text());
+        }
+
+        assertThat(lexedText.toString(), is(source.toString()));
+    }
+
+    @Test
+    public void shouldShareDefaultStateBetweenTokens() {
+        NetbeansRustLexer.State state = NetbeansRustLexer.State.of(new RustLexer(null));
+
+        assertThat(state, is(sameInstance(NetbeansRustLexer.State.DEFAULT)));
+    }
+
+    private List<String> antlrTokens(CharSequence source) {
+        List<String> tokens = new ArrayList<>();
+        RustLexer lexer = new RustLexer(new ANTLRInputStream(source.toString()));
+        lexer.removeErrorListeners();
+        for (Token token = lexer.nextToken(); token.getType() != Token.EOF; token = lexer.nextToken()) {
+            tokens.add(RustLanguageHierarchy.tokenForAntlrTokenType(token.getType()) + ":" + token.getText());
+        }
+        return tokens;
+    }
+
+    private int offsetOf(String text, int from) throws Exception {
+        return document.getText(0, document.getLength()).indexOf(text, from);
+    }
+
+    private List<String> lexWholeDocument() {
+        return describeTokens(tokenHierarchy.tokenSequence(RustTokenId.language()));
+    }
+
+    private List<String> describeTokens(TokenSequence<RustTokenId> tokenSequence) {
+        List<String> tokens = new ArrayList<>();
+        tokenSequence.moveStart();
+        while (tokenSequence.moveNext()) {
+            tokens.add(tokenSequence.token().id() + ":" + tokenSequence.token().text());
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,231 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing;
+
+import com.github.drrb.rust.netbeans.RustSourceSnapshot;
+import static com.github.drrb.rust.netbeans.TestParsing.*;
+import com.github.drrb.rust.netbeans.parsing.NetbeansRustParser.NetbeansRustParserResult;
+import com.github.drrb.rust.netbeans.parsing.index.RustSourceIndex;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class NetbeansRustParserResultTest {
+
+    @Test
+    public void shouldOnlyBuildIndexOnce() throws Exception {
+        CountingParserResult result = parseCounting(source());
+
+        RustSourceIndex firstIndex = result.getIndex();
+        RustSourceIndex secondIndex = result.getIndex();
+
+        assertThat(result.analyses.get(), is(1));
+        assertThat(secondIndex, is(sameInstance(firstIndex)));
+    }
+
+    @Test
+    public void shouldAnalyzeOnceForIndexHighlightsFoldsAndStructure() throws Exception {
+        CountingParserResult result = parseCounting(source());
+
+        RustSourceIndex index = result.getIndex();
+        RustAnalysis analysis = result.getAnalysis();
+
+        assertThat(result.analyses.get(), is(1));
+        assertThat(analysis.getIndex(), is(sameInstance(index)));
+        assertThat(analysis.getHighlights().size(), is(4));
+        assertThat(analysis.getFolds().get("code-block").size(), is(2));
+        assertThat(analysis.getStructureItems().size(), is(2));
+    }
+
+    @Test
+    public void shouldOnlyBuildIndexOnceWhenRequestedConcurrently() throws Exception {
+        final CountingParserResult result = parseCounting(source());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<RustSourceIndex>> indexes = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                indexes.add(executor.submit(new Callable<RustSourceIndex>() {
+                    @Override
+                    public RustSourceIndex call() throws Exception {
+                        return result.getIndex();
+                    }
+                }));
+            }
+            RustSourceIndex firstIndex = indexes.get(0).get();
+            for (Future<RustSourceIndex> index : indexes) {
+                assertThat(index.get(), is(sameInstance(firstIndex)));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(result.analyses.get(), is(1));
+    }
+
+    @Test
+    public void shouldGiveEachTaskItsOwnResultOfTheSameParse() throws Exception {
+        NetbeansRustParser parser = new NetbeansRustParser();
+        parser.parse(snapshotOf("fn main() {}\n"), null, null);
+
+        NetbeansRustParserResult firstResult = parser.getResult(null);
+        NetbeansRustParserResult secondResult = parser.getResult(null);
+        firstResult.invalidate();
+
+        assertThat(secondResult, is(not(sameInstance(firstResult))));
+        assertThat(secondResult.getAst(), is(sameInstance(firstResult.getAst())));
+        assertThat(secondResult.getIndex(), is(sameInstance(firstResult.getIndex())));
+        assertThat(secondResult.getIndex().getFunctions().size(), is(1));
+    }
+
+    @Test
+    public void shouldNotKeepParsersReachableFromResultsOfOpenFiles() throws Exception {
+        List<NetbeansRustParserResult> openFiles = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            //Every tenth file has a syntax error, so that some are reparsed with error recovery
+            NetbeansRustParserResult result = largeSource(i, i % 10 == 0).parse();
+            result.getIndex();
+            openFiles.add(result);
+        }
+
+        for (NetbeansRustParserResult result : openFiles) {
+            assertThat(canReach(result, RustParser.class), is(false));
+        }
+        assertThat(openFiles.get(0).getSyntaxErrors().size(), is(greaterThan(0)));
+    }
+
+    private RustSourceSnapshot largeSource(int fileNumber, boolean withSyntaxError) {
+        RustSourceSnapshot source = new RustSourceSnapshot();
+        for (int i = 0; i < 1000; i++) {
+            source.appendln("fn function" + fileNumber + "_" + i + "(x: int) -> int {");
+            source.appendln(withSyntaxError && i == 500 ? "    let y = x +;" : "    let y = x + " + i + ";");
+            source.appendln("    y * 2");
+            source.appendln("}");
+        }
+        return source;
+    }
+
+    /**
+     * Look for an object of the specified type in the object graph of our
+     * own objects, ANTLR's objects, arrays, and collections, starting from the
+     * root.
+     */
+    private static boolean canReach(Object root, Class<?> type) throws IllegalAccessException {
+        Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        Deque<Object> toVisit = new ArrayDeque<>();
+        toVisit.push(root);
+        while (!toVisit.isEmpty()) {
+            Object object = toVisit.pop();
+            if (type.isInstance(object)) {
+                return true;
+            }
+            if (!seen.add(object)) {
+                continue;
+            }
+            if (object instanceof Object[]) {
+                pushAll(Arrays.asList((Object[]) object), toVisit);
+            } else if (object instanceof Collection) {
+                pushAll((Collection<?>) object, toVisit);
+            } else if (object instanceof Map) {
+                pushAll(((Map<?, ?>) object).keySet(), toVisit);
+                pushAll(((Map<?, ?>) object).values(), toVisit);
+            } else {
+                pushFields(object, toVisit);
+            }
+        }
+        return false;
+    }
+
+    private static void pushAll(Collection<?> objects, Deque<Object> toVisit) {
+        for (Object object : objects) {
+            if (object != null) {
+                toVisit.push(object);
+            }
+        }
+    }
+
+    private static void pushFields(Object object, Deque<Object> toVisit) throws IllegalAccessException {
+        for (Class<?> declaringClass = object.getClass(); isFollowed(declaringClass); declaringClass = declaringClass.getSuperclass()) {
+            for (Field field : declaringClass.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.getType().isPrimitive()) {
+                    continue;
+                }
+                field.setAccessible(true);
+                Object value = field.get(object);
+                if (value != null) {
+                    toVisit.push(value);
+                }
+            }
+        }
+    }
+
+    private static boolean isFollowed(Class<?> objectClass) {
+        return objectClass != null && (objectClass.getName().startsWith("com.github.drrb.") || objectClass.getName().startsWith("org.antlr."));
+    }
+
+    private RustSourceSnapshot source() {
+        RustSourceSnapshot source = new RustSourceSnapshot();
+        source.appendln("struct Point {");
+        source.appendln("   x: float,");
+        source.appendln("   y: float");
+        source.appendln("}");
+        source.appendln("fn main() {");
+        source.appendln("    let name = ~\"john\";");
+        source.appendln("    println(name);");
+        source.appendln("}");
+        return source;
+    }
+
+    private CountingParserResult parseCounting(RustSourceSnapshot source) throws Exception {
+        NetbeansRustParserResult result = source.parse();
+        return new CountingParserResult(result);
+    }
+
+    private static class CountingParserResult extends NetbeansRustParserResult {
+
+        final AtomicInteger analyses = new AtomicInteger();
+
+        CountingParserResult(NetbeansRustParserResult result) throws Exception {
+            super(result.getSnapshot(), result.getAst(), result.getSyntaxErrors(), result.getPredictionMode());
+        }
+
+        @Override
+        protected RustAnalysis analyze() {
+            analyses.incrementAndGet();
+            return super.analyze();
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing;
+
+import static com.github.drrb.rust.netbeans.TestParsing.*;
+import com.github.drrb.rust.netbeans.parsing.NetbeansRustParser.NetbeansRustParserResult;
+import com.github.drrb.rust.netbeans.parsing.NetbeansRustParser.SyntaxError;
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstFunction;
+import com.github.drrb.rust.netbeans.parsing.index.RustFunction;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.netbeans.modules.csl.api.OffsetRange;
+import org.netbeans.modules.parsing.api.Snapshot;
+import org.netbeans.modules.parsing.spi.ParseException;
+import org.netbeans.modules.parsing.spi.SourceModificationEvent;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class NetbeansRustParserTest {
+
+    private static final long MAX_CANCEL_MILLIS = 2000;
+
+    @Test
+    public void shouldStopPromptlyWhenCancelled() throws Exception {
+        final Snapshot snapshot = snapshotOf(hugeSource());
+        final CountDownLatch parseStarted = new CountDownLatch(1);
+        final NetbeansRustParser parser = new NetbeansRustParser() {
+            @Override
+            void checkNotCancelled() {
+                parseStarted.countDown();
+                super.checkNotCancelled();
+            }
+        };
+        Thread parsingThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                parser.parse(snapshot, null, null);
+            }
+        });
+
+        parsingThread.start();
+        assertThat(parseStarted.await(10, TimeUnit.SECONDS), is(true));
+        long cancelledAt = System.nanoTime();
+        parser.cancel();
+        parsingThread.join(MAX_CANCEL_MILLIS);
+
+        assertThat(parsingThread.isAlive(), is(false));
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - cancelledAt), is(lessThan(MAX_CANCEL_MILLIS)));
+        assertThat(parser.getResult(null), is(nullValue()));
+    }
+
+    @Test
+    public void shouldStopWhenThreadIsInterrupted() throws Exception {
+        final Snapshot snapshot = snapshotOf(hugeSource());
+        final NetbeansRustParser parser = new NetbeansRustParser();
+        final AtomicReference<NetbeansRustParserResult> result = new AtomicReference<>();
+        Thread parsingThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Thread.currentThread().interrupt();
+                parser.parse(snapshot, null, null);
+                try {
+                    result.set(parser.getResult(null));
+                } catch (ParseException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        });
+
+        parsingThread.start();
+        parsingThread.join(MAX_CANCEL_MILLIS);
+
+        assertThat(parsingThread.isAlive(), is(false));
+        assertThat(result.get(), is(nullValue()));
+    }
+
+    @Test
+    public void shouldNotDropResultOfParseWhenCancelledBeforeItStarts() throws Exception {
+        NetbeansRustParser parser = new NetbeansRustParser();
+        parser.cancel();
+
+        parser.parse(snapshotOf("fn main() {}\n"), null, null);
+
+        assertThat(parser.getResult(null), is(notNullValue()));
+        assertThat(parser.getResult(null).getIndex().getFunctions().size(), is(1));
+    }
+
+    @Test
+    public void shouldParseNormallyAfterCancelledParse() throws Exception {
+        final Snapshot snapshot = snapshotOf(hugeSource());
+        final CountDownLatch parseStarted = new CountDownLatch(1);
+        final NetbeansRustParser parser = new NetbeansRustParser() {
+            @Override
+            void checkNotCancelled() {
+                parseStarted.countDown();
+                super.checkNotCancelled();
+            }
+        };
+        Thread parsingThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                parser.parse(snapshot, null, null);
+            }
+        });
+        parsingThread.start();
+        assertThat(parseStarted.await(10, TimeUnit.SECONDS), is(true));
+        parser.cancel();
+        parsingThread.join(MAX_CANCEL_MILLIS);
+        assertThat(parser.getResult(null), is(nullValue()));
+
+        parser.parse(snapshotOf("fn main() {}\n"), null, null);
+
+        assertThat(parser.getResult(null), is(notNullValue()));
+        assertThat(parser.getResult(null).getIndex().getFunctions().size(), is(1));
+    }
+
+    @Test
+    public void shouldReparseEditedItemWhenSourceChanges() throws Exception {
+        String source = "fn first() {\n    let x = 1;\n}\n\nfn second() {\n    let y = 2;\n}\n";
+        String editedSource = source.replace("let x = 1;", "let x = 1;\n    let w = x;");
+        NetbeansRustParser parser = new NetbeansRustParser();
+        parser.parse(snapshotOf(source), null, null);
+
+        parser.parse(snapshotOf(editedSource), null, new SourceModificationEvent(this, true) {
+        });
+
+        NetbeansRustParserResult result = parser.getResult(null);
+        NetbeansRustParserResult fullParseResult = parse(editedSource);
+        assertThat(result.getSyntaxErrors().isEmpty(), is(true));
+        assertThat(result.getAst().toString(), is(fullParseResult.getAst().toString()));
+        assertThat(result.getIndex().getFunctions().get(1).getOffsetRange(), is(fullParseResult.getIndex().getFunctions().get(1).getOffsetRange()));
+    }
+
+    @Test
+    public void shouldOnlyParseFunctionBodiesWhenTheyreNeeded() throws Exception {
+        String source = "fn add(x: int, y: int) -> int {\n    x + y\n}\n";
+        NetbeansRustParserResult result = parse(source);
+        RustAstFunction function = (RustAstFunction) result.getAst().getItems().get(0);
+
+        RustFunction indexedFunction = result.getIndex().getFunctions().get(0);
+        assertThat(indexedFunction.getBody().getOffsetRange(), is(new OffsetRange(30, 43)));
+        assertThat(function.isBodyParsed(), is(false));
+
+        assertThat(indexedFunction.getBody().getLocalVariableIdentifiersNamed("x").size(), is(1));
+        assertThat(function.isBodyParsed(), is(true));
+    }
+
+    @Test
+    public void shouldGetFunctionBodyTextFromSourceWithoutParsingIt() throws Exception {
+        String source = "fn add(x: int, y: int) -> int {\n    x + y\n}\n";
+        NetbeansRustParserResult result = parse(source);
+        RustAstFunction function = (RustAstFunction) result.getAst().getItems().get(0);
+
+        RustFunction indexedFunction = result.getIndex().getFunctions().get(0);
+        assertThat(indexedFunction.getBody().getText().toString(), is("{\n    x + y\n}"));
+        assertThat(function.isBodyParsed(), is(false));
+    }
+
+    @Test
+    public void shouldFindSyntaxErrorsInSkippedFunctionBodies() throws Exception {
+        String source = "fn first() {\n    let x = ;\n}\n\nfn second() {\n    let y = ;\n}\n";
+
+        NetbeansRustParserResult result = parse(source);
+
+        List<SyntaxError> syntaxErrors = result.getSyntaxErrors();
+        assertThat(syntaxErrors.size(), is(greaterThan(1)));
+        assertThat(syntaxErrors.get(0).getLine(), is(2));
+        assertThat(syntaxErrors.get(syntaxErrors.size() - 1).getLine(), is(6));
+    }
+
+    @Test
+    public void shouldOnlyParseEditedFunctionBodiesToFindKnownSyntaxErrors() throws Exception {
+        String source = "fn first() {\n    let x = ;\n}\n\nfn second() {\n    let y = ;\n}\n";
+        String editedSource = source.replace("let x = ;", "let xx = ;");
+        NetbeansRustParser parser = new NetbeansRustParser();
+        parser.parse(snapshotOf(source), null, null);
+        assertThat(parser.getResult(null).getKnownSyntaxErrors().isEmpty(), is(true));
+
+        parser.parse(snapshotOf(editedSource), null, new SourceModificationEvent(this, true) {
+        });
+
+        NetbeansRustParserResult result = parser.getResult(null);
+        List<SyntaxError> knownSyntaxErrors = result.getKnownSyntaxErrors();
+        assertThat(knownSyntaxErrors.isEmpty(), is(false));
+        assertThat(knownSyntaxErrors.get(knownSyntaxErrors.size() - 1).getLine(), is(2));
+        RustAstFunction second = (RustAstFunction) result.getAst().getItems().get(1);
+        assertThat(second.isBodyParsed(), is(false));
+    }
+
+    @Test
+    public void shouldKeepSyntaxErrorsOfBodiesThatWerentEdited() throws Exception {
+        String source = "fn first() {\n    let x = ;\n}\n\nfn second() {\n    let y = ;\n}\n";
+        String editedSource = source.replace("let x = ;", "let xx = ;");
+        NetbeansRustParser parser = new NetbeansRustParser();
+        parser.parse(snapshotOf(source), null, null);
+        int allSyntaxErrors = parser.getResult(null).getSyntaxErrors().size();
+
+        parser.parse(snapshotOf(editedSource), null, new SourceModificationEvent(this, true) {
+        });
+
+        List<SyntaxError> knownSyntaxErrors = parser.getResult(null).getKnownSyntaxErrors();
+        assertThat(knownSyntaxErrors.size(), is(allSyntaxErrors));
+        assertThat(knownSyntaxErrors.get(knownSyntaxErrors.size() - 1).getLine(), is(6));
+    }
+
+    @Test
+    public void shouldIndexItemsInsideFunctionBodies() throws Exception {
+        String source = "fn outer() -> int {\n    fn inner() -> int { 1 }\n    inner()\n}\n";
+
+        NetbeansRustParserResult result = parse(source);
+
+        assertThat(result.getSyntaxErrors().isEmpty(), is(true));
+        assertThat(result.getIndex().getFunctions().size(), is(2));
+    }
+
+    private static CharSequence hugeSource() {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            source.append("fn function").append(i).append("(x: int) -> int {\n");
+            source.append("    let y = x + ").append(i).append(";\n");
+            source.append("    y * 2\n");
+            source.append("}\n");
+        }
+        return source;
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing;
+
+import com.github.drrb.rust.netbeans.Benchmark;
+import static com.github.drrb.rust.netbeans.TestParsing.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.netbeans.modules.parsing.api.Snapshot;
+
+/**
+ * Measures how much faster big files parse in parallel than in one thread,
+ * for different file sizes and numbers of cores, to help choose a value for
+ * rust.netbeans.parser.parallelThreshold. Both ways build the AST and the
+ * index. Not a test: run it on its own on a machine with several cores, e.g.
+ * with
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.github.drrb.rust.netbeans.parsing.ParallelParseBenchmark
+ * </pre>
+ */
+public class ParallelParseBenchmark {
+
+    private static final int[] FILE_SIZES = {64 * 1024, 256 * 1024, 1024 * 1024, 4 * 1024 * 1024};
+    private static final int WARM_UP_ITERATIONS = 5;
+    private static final int ITERATIONS = 11;
+
+    public static void main(String[] args) throws Exception {
+        List<Integer> threadCounts = threadCounts(Runtime.getRuntime().availableProcessors());
+        System.out.printf("%10s %12s", "chars", "serial ms");
+        for (int threads : threadCounts) {
+            System.out.printf(" %16s", threads + " threads");
+        }
+        System.out.println();
+        for (int size : FILE_SIZES) {
+            String source = source(size);
+            long serialMillis = serialParseMillis(source);
+            System.out.printf("%10s %12s", source.length(), serialMillis);
+            for (int threads : threadCounts) {
+                long parallelMillis = parallelParseMillis(source, threads);
+                System.out.printf(" %16s", String.format("%sms (%.2fx)", parallelMillis, (double) serialMillis / parallelMillis));
+            }
+            System.out.println();
+        }
+    }
+
+    private static List<Integer> threadCounts(int cores) {
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int threads = 1; threads < cores; threads *= 2) {
+            threadCounts.add(threads);
+        }
+        threadCounts.add(cores);
+        return threadCounts;
+    }
+
+    private static long serialParseMillis(String source) throws Exception {
+        final Snapshot snapshot = snapshotOf(source);
+        return Benchmark.measure(new Benchmark.Task() {
+            @Override
+            protected int run() throws Exception {
+                NetbeansRustParser parser = new NetbeansRustParser();
+                parser.parse(snapshot, null, null);
+                return parser.getResult(null).getIndex().getFunctions().size();
+            }
+        }, WARM_UP_ITERATIONS, ITERATIONS).getMedianMillis();
+    }
+
+    private static long parallelParseMillis(final String source, int threads) throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            final ParallelParser parallelParser = new ParallelParser(pool, 0);
+            return Benchmark.measure(new Benchmark.Task() {
+                @Override
+                protected int run() {
+                    ParallelParser.Parse parse = parallelParser.parse(source, new NoCancellation(), new FunctionBodyParser(source));
+                    if (parse == null) {
+                        throw new IllegalStateException("Couldn't parse the source in parallel");
+                    }
+                    return parse.getIndex().getFunctions().size();
+                }
+            }, WARM_UP_ITERATIONS, ITERATIONS).getMedianMillis();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static String source(int size) {
+        StringBuilder source = new StringBuilder(size + 256);
+        for (int i = 0; source.length() < size; i++) {
+            source.append("/// Point number ").append(i).append("\n");
+            source.append("struct Point").append(i).append(" { x: int, y: int }\n\n");
+            source.append("impl Point").append(i).append(" {\n");
+            source.append("    fn sum(&self) -> int {\n");
+            source.append("        self.x + self.y\n");
+            source.append("    }\n");
+            source.append("}\n\n");
+            source.append("fn function").append(i).append("(x: int) -> int {\n");
+            source.append("    let y").append(i).append(" = x + ").append(i).append(";\n");
+            source.append("    y").append(i).append(" * 2\n");
+            source.append("}\n\n");
+        }
+        return source.toString();
+    }
+
+    private static class NoCancellation implements ParseTreeListener {
+
+        @Override
+        public void enterEveryRule(ParserRuleContext ctx) {
+        }
+
+        @Override
+        public void exitEveryRule(ParserRuleContext ctx) {
+        }
+
+        @Override
+        public void visitTerminal(TerminalNode node) {
+        }
+
+        @Override
+        public void visitErrorNode(ErrorNode node) {
+        }
+    }
+}
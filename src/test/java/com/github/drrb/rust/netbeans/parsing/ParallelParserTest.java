@@ -0,0 +1,166 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing;
+
+import com.github.drrb.rust.netbeans.parsing.ast.RustAstBuilder;
+import com.github.drrb.rust.netbeans.parsing.index.IndexingVisitor;
+import com.github.drrb.rust.netbeans.parsing.index.RustFunction;
+import com.github.drrb.rust.netbeans.parsing.index.RustSourceIndex;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class ParallelParserTest {
+
+    private final ParallelParser parallelParser = new ParallelParser(new ForkJoinPool(2), 0);
+
+    @Test
+    public void shouldSplitBetweenTopLevelItems() {
+        String source = source(100);
+
+        List<ParallelParser.Chunk> chunks = ParallelParser.split(source, 4);
+
+        assertThat(chunks.size(), is(4));
+        for (ParallelParser.Chunk chunk : chunks.subList(1, chunks.size())) {
+            assertThat(chunk.getTokens().get(0).getText(), is("}"));
+            assertThat(chunk.getTokens().get(1).getText(), is("fn"));
+        }
+    }
+
+    @Test
+    public void shouldSplitAfterSeparatorFollowingBrace() {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            source.append("static POINT").append(i).append(": Point = Point { x: ").append(i).append(", y: ").append(i).append(" };\n");
+        }
+
+        List<ParallelParser.Chunk> chunks = ParallelParser.split(source, 4);
+
+        assertThat(chunks.size(), is(4));
+        for (ParallelParser.Chunk chunk : chunks.subList(1, chunks.size())) {
+            assertThat(chunk.getTokens().get(0).getText(), is(";"));
+            assertThat(chunk.getTokens().get(1).getText(), is("static"));
+        }
+    }
+
+    @Test
+    public void shouldCopyLastTokenOfChunkIntoNextChunk() {
+        List<ParallelParser.Chunk> chunks = ParallelParser.split(source(100), 4);
+
+        for (int i = 1; i < chunks.size(); i++) {
+            List<Token> previousTokens = chunks.get(i - 1).getTokens();
+            Token lastToken = previousTokens.get(previousTokens.size() - 1);
+            Token copy = chunks.get(i).getTokens().get(0);
+            assertThat(copy, is(not(sameInstance(lastToken))));
+            assertThat(copy.getStartIndex(), is(lastToken.getStartIndex()));
+        }
+    }
+
+    @Test
+    public void shouldParseSameAstAsSequentialParse() {
+        String source = source(1000);
+
+        ParallelParser.Parse parse = parallelParser.parse(source, new NoOpListener(), new FunctionBodyParser(source));
+
+        RustParser.ProgContext sequentialAst = parse(source);
+        assertThat(parse, is(notNullValue()));
+        assertThat(parse.getParseTree().toStringTree(), is(sequentialAst.toStringTree()));
+        assertThat(parse.getParseTree().start.getStartIndex(), is(sequentialAst.start.getStartIndex()));
+        assertThat(parse.getParseTree().stop.getStartIndex(), is(sequentialAst.stop.getStartIndex()));
+        assertThat(parse.getAst().toString(), is(RustAstBuilder.build(sequentialAst).toString()));
+        assertThat(functionsIn(parse.getIndex()), is(functionsIn(RustAstBuilder.build(sequentialAst).accept(new IndexingVisitor()))));
+    }
+
+    @Test
+    public void shouldGiveUpOnSyntaxErrors() {
+        String source = source(1000).replace("fn function49(a: int)", "fn function49(a: int int)");
+
+        assertThat(parallelParser.parse(source, new NoOpListener(), new FunctionBodyParser(source)), is(nullValue()));
+    }
+
+    @Test
+    public void shouldLeaveSyntaxErrorsInFunctionBodiesForLater() {
+        String source = source(1000).replace("let x49 = 49;", "let x49 = ;");
+
+        assertThat(parallelParser.parse(source, new NoOpListener(), new FunctionBodyParser(source)), is(notNullValue()));
+    }
+
+    @Test
+    public void shouldOnlyParseBigFilesInParallel() {
+        ParallelParser parser = new ParallelParser(new ForkJoinPool(2), 1000);
+
+        assertThat(parser.shouldParse(source(1)), is(false));
+        assertThat(parser.shouldParse(source(100)), is(true));
+    }
+
+    private static String source(int functionCount) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < functionCount; i++) {
+            source.append("fn function").append(i).append("(a: int) {\n");
+            source.append("    let x").append(i).append(" = ").append(i).append(";\n");
+            source.append("}\n\n");
+        }
+        return source.toString();
+    }
+
+    private static RustParser.ProgContext parse(String source) {
+        RustParser parser = RustParserPool.acquireForSignatures(new CharSequenceCharStream(source, "ParallelParserTest"), 0, 1, 0);
+        try {
+            return parser.prog();
+        } finally {
+            RustParserPool.release(parser);
+        }
+    }
+
+    private static List<String> functionsIn(RustSourceIndex index) {
+        List<String> functions = new ArrayList<>();
+        for (RustFunction function : index.getFunctions()) {
+            functions.add(function.getName() + " " + function.getOffsetRange() + " " + function.getBody().getOffsetRange());
+        }
+        return functions;
+    }
+
+    private static class NoOpListener implements ParseTreeListener {
+
+        @Override
+        public void enterEveryRule(ParserRuleContext ctx) {
+        }
+
+        @Override
+        public void exitEveryRule(ParserRuleContext ctx) {
+        }
+
+        @Override
+        public void visitTerminal(TerminalNode node) {
+        }
+
+        @Override
+        public void visitErrorNode(ErrorNode node) {
+        }
+    }
+}
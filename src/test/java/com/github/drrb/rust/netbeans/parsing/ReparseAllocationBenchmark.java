@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing;
+
+import com.github.drrb.rust.netbeans.Benchmark;
+import static com.github.drrb.rust.netbeans.TestParsing.*;
+import com.github.drrb.rust.netbeans.parsing.index.RustFunction;
+import com.github.drrb.rust.netbeans.parsing.index.RustSourceIndex;
+import org.netbeans.modules.parsing.api.Snapshot;
+import org.netbeans.modules.parsing.spi.ParseException;
+import org.netbeans.modules.parsing.spi.SourceModificationEvent;
+
+/**
+ * Measures how much memory the parser allocates to reparse a file after an
+ * edit, and to index it. Not a test: run it on its own, e.g. from the IDE, or
+ * with
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.github.drrb.rust.netbeans.parsing.ReparseAllocationBenchmark
+ * </pre>
+ */
+public class ReparseAllocationBenchmark {
+
+    private static final int FUNCTION_COUNT = 2000;
+    private static final int WARM_UP_ITERATIONS = 20;
+    private static final int ITERATIONS = 50;
+
+    public static void main(String[] args) throws Exception {
+        String source = source();
+        Snapshot snapshot = snapshotOf(source);
+        Snapshot editedSnapshot = snapshotOf(source.replace("let y1000 = x + 1000;", "let y1000 = x + 1001;"));
+
+        System.out.printf("%s functions (%s chars)%n", FUNCTION_COUNT, source.length());
+        System.out.printf("%s KB allocated per reparse%n", bytesPerReparse(snapshot, editedSnapshot, false) / 1024);
+        System.out.printf("%s KB allocated per reparse, finding local variables in every function%n", bytesPerReparse(snapshot, editedSnapshot, true) / 1024);
+    }
+
+    private static long bytesPerReparse(final Snapshot snapshot, final Snapshot editedSnapshot, final boolean findLocalVariables) throws Exception {
+        return Benchmark.measure(new Benchmark.Task() {
+            private NetbeansRustParser parser;
+
+            @Override
+            protected void setUp() throws ParseException {
+                parser = new NetbeansRustParser();
+                parser.parse(snapshot, null, null);
+            }
+
+            @Override
+            protected int run() throws ParseException {
+                return reparseAndIndex(parser, editedSnapshot, findLocalVariables);
+            }
+        }, WARM_UP_ITERATIONS, ITERATIONS).getBytesPerRun();
+    }
+
+    /**
+     * @return how many functions were found
+     */
+    private static int reparseAndIndex(NetbeansRustParser parser, Snapshot editedSnapshot, boolean findLocalVariables) throws ParseException {
+        parser.parse(editedSnapshot, null, new SourceModificationEvent(editedSnapshot, true) {
+        });
+        RustSourceIndex index = parser.getResult(null).getIndex();
+        if (findLocalVariables) {
+            //As the occurrences finder does when the caret is in a body
+            for (RustFunction function : index.getFunctions()) {
+                function.getBody().getLocalVariableIdentifiersNamed("x");
+                function.getBody().getLocalVariableIdentifierAt(function.getBody().getOffsetRange().getStart() + 10);
+            }
+        }
+        return index.getFunctions().size();
+    }
+
+    private static String source() {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < FUNCTION_COUNT; i++) {
+            source.append("fn function").append(i).append("(x: int) -> int {\n");
+            source.append("    let y").append(i).append(" = x + ").append(i).append(";\n");
+            source.append("    y").append(i).append(" * 2\n");
+            source.append("}\n\n");
+        }
+        return source.toString();
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing;
+
+import com.github.drrb.rust.netbeans.Benchmark;
+import static com.github.drrb.rust.netbeans.TestParsing.*;
+import java.util.concurrent.Callable;
+import org.netbeans.modules.parsing.api.Snapshot;
+import org.netbeans.modules.parsing.spi.ParseException;
+
+/**
+ * Measures how much memory an open file's parser keeps between parses (the
+ * AST, the analysis, and whatever it keeps for reparsing the next edit), and
+ * how much the file's ANTLR parse tree would take on top of that if it was
+ * kept too. Not a test: run it on its own, e.g. from the IDE, or with
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.github.drrb.rust.netbeans.parsing.RetainedHeapBenchmark
+ * </pre>
+ */
+public class RetainedHeapBenchmark {
+
+    private static final int FUNCTION_COUNT = 2500;
+    private static final int LINES_PER_FUNCTION = 4;
+    private static final int COPIES = 10;
+
+    public static void main(String[] args) throws Exception {
+        String source = source();
+        Snapshot snapshot = snapshotOf(source);
+        int thousandsOfLines = FUNCTION_COUNT * LINES_PER_FUNCTION / 1000;
+        //Warm up, so that the classes and the parser pool are already loaded
+        parseAndKeepParser(snapshot);
+        parseTreeOf(source);
+
+        System.out.printf("%s lines (%s chars)%n", FUNCTION_COUNT * LINES_PER_FUNCTION, source.length());
+        System.out.printf("%s KB per 1k lines kept by the parser and its result%n", Benchmark.retainedBytes(new ParserKeeper(snapshot), COPIES) / thousandsOfLines / 1024);
+        System.out.printf("%s KB per 1k lines for the parse tree%n", Benchmark.retainedBytes(new ParseTreeKeeper(source), COPIES) / thousandsOfLines / 1024);
+    }
+
+    private static NetbeansRustParser parseAndKeepParser(Snapshot snapshot) throws ParseException {
+        NetbeansRustParser parser = new NetbeansRustParser();
+        parser.parse(snapshot, null, null);
+        //As the editor's tasks do
+        parser.getResult(null).getIndex();
+        return parser;
+    }
+
+    private static RustParser.ProgContext parseTreeOf(CharSequence source) {
+        RustParser parser = RustParserPool.acquireForSignatures(new CharSequenceCharStream(source, "RetainedHeapBenchmark"), 0, 1, 0);
+        try {
+            return parser.prog();
+        } finally {
+            RustParserPool.release(parser);
+        }
+    }
+
+    private static String source() {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < FUNCTION_COUNT; i++) {
+            source.append("fn function").append(i).append("(x: int) -> int {\n");
+            source.append("    let y").append(i).append(" = x + ").append(i).append(";\n");
+            source.append("    y").append(i).append(" * 2\n");
+            source.append("}\n");
+        }
+        return source.toString();
+    }
+
+    private static class ParserKeeper implements Callable<NetbeansRustParser> {
+
+        private final Snapshot snapshot;
+
+        ParserKeeper(Snapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public NetbeansRustParser call() throws ParseException {
+            return parseAndKeepParser(snapshot);
+        }
+    }
+
+    private static class ParseTreeKeeper implements Callable<RustParser.ProgContext> {
+
+        private final String source;
+
+        ParseTreeKeeper(String source) {
+            this.source = source;
+        }
+
+        @Override
+        public RustParser.ProgContext call() {
+            return parseTreeOf(source);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing;
+
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class RustParserPoolTest {
+
+    @Test
+    public void shouldReuseReleasedParser() {
+        RustParser parser = RustParserPool.acquire(input("fn main() {}"));
+        parser.prog();
+        RustParserPool.release(parser);
+
+        RustParser reusedParser = RustParserPool.acquire(input("fn other() {}"));
+        try {
+            assertThat(reusedParser, is(sameInstance(parser)));
+        } finally {
+            RustParserPool.release(reusedParser);
+        }
+    }
+
+    @Test
+    public void shouldParseNewInputWithReusedParser() {
+        RustParser parser = RustParserPool.acquire(input("fn main() {}"));
+        parser.prog();
+        RustParserPool.release(parser);
+
+        RustParser reusedParser = RustParserPool.acquire(input("fn other() {}\nfn another() {}\n"));
+        try {
+            String text = reusedParser.prog().getText();
+            assertThat(text, containsString("another"));
+            assertThat(text, not(containsString("main")));
+        } finally {
+            RustParserPool.release(reusedParser);
+        }
+    }
+
+    @Test
+    public void shouldNotKeepErrorListenersBetweenUses() {
+        RustParser parser = RustParserPool.acquire(input("fn main() { xxx yyy }"));
+        CountingErrorListener errorListener = new CountingErrorListener();
+        parser.addErrorListener(errorListener);
+        parser.prog();
+        RustParserPool.release(parser);
+        int errorsFromFirstParse = errorListener.errors;
+
+        RustParser reusedParser = RustParserPool.acquire(input("fn main() { xxx yyy }"));
+        try {
+            reusedParser.prog();
+            assertThat(errorsFromFirstParse, is(greaterThan(0)));
+            assertThat(errorListener.errors, is(errorsFromFirstParse));
+        } finally {
+            RustParserPool.release(reusedParser);
+        }
+    }
+
+    @Test
+    public void shouldReportErrorsOnlyForCurrentInputWhenParsingRepeatedly() {
+        NetbeansRustParser.NetbeansRustParserResult invalidResult = parse("fn main() { xxx yyy }");
+        NetbeansRustParser.NetbeansRustParserResult validResult = parse("fn main() {}");
+        NetbeansRustParser.NetbeansRustParserResult invalidAgainResult = parse("fn main() { xxx yyy }");
+
+        assertThat(validResult.getSyntaxErrors().isEmpty(), is(true));
+        assertThat(invalidAgainResult.getSyntaxErrors().size(), is(invalidResult.getSyntaxErrors().size()));
+    }
+
+    private static NetbeansRustParser.NetbeansRustParserResult parse(String source) {
+        return com.github.drrb.rust.netbeans.TestParsing.parse(source);
+    }
+
+    private static CharSequenceCharStream input(String source) {
+        return new CharSequenceCharStream(source, "RustParserPoolTest");
+    }
+
+    private static class CountingErrorListener extends BaseErrorListener {
+
+        int errors;
+
+        @Override
+        public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
+            errors++;
+        }
+    }
+}
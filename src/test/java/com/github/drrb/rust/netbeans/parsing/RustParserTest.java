@@ -21,6 +21,7 @@ import com.github.drrb.rust.netbeans.parsing.NetbeansRustParser.NetbeansRustPars
 import com.github.drrb.rust.netbeans.parsing.NetbeansRustParser.SyntaxError;
 import org.junit.Test;
 import java.util.Iterator;
+import org.antlr.v4.runtime.atn.PredictionMode;
 import static org.junit.Assert.*;
 import static org.hamcrest.Matchers.*;
 
@@ -40,5 +41,20 @@ public class RustParserTest {
         assertThat(syntaxError.getLine(), is(2));
         assertThat(syntaxError.getCharPositionInLine(), is(8));
         assertThat(syntaxError.getMessage(), is("no viable alternative at input 'xxx io'"));
+        assertThat(result.getPredictionMode(), is(PredictionMode.LL));
+    }
+
+    @Test
+    public void shouldParseValidCodeWithSllPrediction() throws Exception {
+        StringBuilder function = new StringBuilder();
+        function.append("fn greet(name: str) {\n");
+        function.append("    io::println(fmt!(\"Hello, %?\", name));\n");
+        function.append("}\n");
+
+        NetbeansRustParserResult result = parse(function);
+
+        assertThat(result.getSyntaxErrors().isEmpty(), is(true));
+        assertThat(result.getPredictionMode(), is(PredictionMode.SLL));
+        assertThat(result.getIndex().getFunctions().get(0).getName(), is("greet"));
     }
 }
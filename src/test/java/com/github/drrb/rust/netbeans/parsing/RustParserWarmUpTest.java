@@ -16,22 +16,17 @@
  */
 package com.github.drrb.rust.netbeans.parsing;
 
-import java.util.LinkedList;
-import java.util.List;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
 
 /**
  *
  */
-public class CollectingVisitor<T> extends RustBaseVisitor<List<T>> {
+public class RustParserWarmUpTest {
 
-    @Override
-    protected List<T> defaultResult() {
-        return new LinkedList<>();
-    }
-
-    @Override
-    protected List<T> aggregateResult(List<T> aggregate, List<T> nextResult) {
-        aggregate.addAll(nextResult);
-        return aggregate;
+    @Test
+    public void shouldParseBundledSources() {
+        assertThat(RustParserWarmUp.warmUp(), is(2));
     }
 }
@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.netbeans.modules.parsing.spi.SourceModificationEvent;
+
+/**
+ *
+ */
+public class TextChangeTest {
+
+    private static final String SOURCE = "fn first() {\n    let x = 1;\n}\n\nfn second() {\n    let y = 2;\n}\n";
+    private static final String EDITED_SOURCE = SOURCE.replace("let x = 1", "let xyz = 123");
+
+    @Test
+    public void shouldFindChangeByComparingTexts() {
+        TextChange change = TextChange.between(SOURCE, EDITED_SOURCE);
+
+        assertThat(change.getStart(), is(22));
+        assertThat(change.getOldEnd(), is(26));
+        assertThat(change.getNewEnd(), is(30));
+        assertThat(change.getDelta(), is(4));
+        assertThat(change.isEmpty(), is(false));
+    }
+
+    @Test
+    public void shouldBeEmptyWhenTextsAreTheSame() {
+        assertThat(TextChange.between(SOURCE, SOURCE).isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldTakeChangeFromEventWhenItHasOffsets() {
+        TextChange change = TextChange.between(SOURCE, EDITED_SOURCE, eventWithOffsets(20, 31));
+
+        assertThat(change.getStart(), is(20));
+        assertThat(change.getOldEnd(), is(27));
+        assertThat(change.getNewEnd(), is(31));
+    }
+
+    @Test
+    public void shouldCompareTextsWhenEventHasNoOffsets() {
+        TextChange change = TextChange.between(SOURCE, EDITED_SOURCE, eventWithOffsets(-1, -1));
+
+        assertThat(change.getStart(), is(22));
+        assertThat(change.getOldEnd(), is(26));
+        assertThat(change.getNewEnd(), is(30));
+    }
+
+    @Test
+    public void shouldCompareTextsWhenEventOffsetsDontFitTexts() {
+        TextChange change = TextChange.between(SOURCE, EDITED_SOURCE, eventWithOffsets(22, 2));
+
+        assertThat(change.getStart(), is(22));
+        assertThat(change.getOldEnd(), is(26));
+        assertThat(change.getNewEnd(), is(30));
+    }
+
+    private SourceModificationEvent eventWithOffsets(int start, int end) {
+        return new SourceModificationEvent(this, true, start, end) {
+        };
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing.ast;
+
+import com.github.drrb.rust.netbeans.TestParsing;
+import java.util.Arrays;
+import static org.hamcrest.Matchers.*;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.netbeans.modules.csl.api.OffsetRange;
+
+/**
+ *
+ */
+public class RustAstBuilderTest {
+
+    @Test
+    public void shouldBuildFunctionWithParametersAndBody() {
+        StringBuilder source = new StringBuilder();
+        source.append("fn add(x: int, y: int) -> int {\n");
+        source.append("    x + y\n");
+        source.append("}\n");
+        RustAst ast = parse(source);
+
+        assertThat(ast.getItems().size(), is(1));
+        RustAstFunction function = (RustAstFunction) ast.getItems().get(0);
+        assertThat(function.getName().getName(), is("add"));
+        assertThat(function.getName().getOffsetRange(), is(new OffsetRange(3, 6)));
+        assertThat(function.getParameterNames().toString(), is("[x@7, y@15]"));
+        assertThat(function.getBody().getOffsetRange(), is(new OffsetRange(30, 43)));
+        assertThat(function.getBody().getIdents().toString(), is("[x@36, y@40]"));
+    }
+
+    @Test
+    public void shouldBuildStructWithFields() {
+        StringBuilder source = new StringBuilder();
+        source.append("struct Point {\n");
+        source.append("    x: float,\n");
+        source.append("    y: float\n");
+        source.append("}\n");
+        RustAst ast = parse(source);
+
+        RustAstStruct struct = (RustAstStruct) ast.getItems().get(0);
+        assertThat(struct.getName().getName(), is("Point"));
+        assertThat(struct.getFieldNames().toString(), is("[x@19, y@33]"));
+        assertThat(struct.getBodyOffsetRange(), is(new OffsetRange(13, 43)));
+    }
+
+    @Test
+    public void shouldBuildImplWithMethods() {
+        StringBuilder source = new StringBuilder();
+        source.append("impl Point {\n");
+        source.append("    fn x(&self) -> float { self.x }\n");
+        source.append("    fn y(&self) -> float { self.y }\n");
+        source.append("}\n");
+        RustAst ast = parse(source);
+
+        RustAstImpl impl = (RustAstImpl) ast.getItems().get(0);
+        assertThat(impl.getTypePaths().toString(), is("[Point@5]"));
+        assertThat(impl.getMethods().size(), is(2));
+        assertThat(impl.getMethods().get(0).getName().getName(), is("x"));
+        assertThat(impl.getMethods().get(1).getName().getName(), is("y"));
+    }
+
+    @Test
+    public void shouldCollectDocComments() {
+        StringBuilder source = new StringBuilder();
+        source.append("/// Does nothing\n");
+        source.append("fn nothing() {\n");
+        source.append("}\n");
+        RustAst ast = parse(source);
+
+        RustAstFunction function = (RustAstFunction) ast.getItems().get(0);
+        assertThat(ast.getDocComments().size(), is(1));
+        assertThat(function.getDocComment().getText(), containsString("Does nothing"));
+        assertThat(function.getDocComment().getStart(), is(0));
+    }
+
+    @Test
+    public void shouldMergeAstsOfConsecutiveParts() {
+        RustAst first = parse("fn first() {}\n");
+        RustAst second = parse("fn second() {}\n");
+
+        RustAst merged = RustAst.merge(Arrays.asList(first, second));
+
+        assertThat(merged.getItems().size(), is(2));
+        assertThat(merged.toString(), is("ast[fn first@3[][], fn second@3[][]]"));
+    }
+
+    private static RustAst parse(CharSequence source) {
+        return TestParsing.parse(source).getAst();
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing.index;
+
+import java.util.List;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.netbeans.modules.csl.api.OffsetRange;
+
+/**
+ *
+ */
+public class PackedIdentifiersTest {
+
+    @Test
+    public void shouldFindIdentifierAtOffset() {
+        PackedIdentifiers identifiers = new PackedIdentifiers.Builder(new SymbolTable())
+                .add("x", 10, 11)
+                .add("y", 14, 15)
+                .add("x", 18, 19)
+                .build();
+
+        RustLocalVariableIdentifier identifier = identifiers.getAt(14, RustLocalVariableIdentifier.FLYWEIGHT).value();
+        assertThat(identifier.getText(), is("y"));
+        assertThat(identifier.getOffsetRange(), is(new OffsetRange(14, 15)));
+        assertThat(identifiers.getAt(19, RustLocalVariableIdentifier.FLYWEIGHT).value().getText(), is("x"));
+        assertThat(identifiers.getAt(12, RustLocalVariableIdentifier.FLYWEIGHT).is(), is(false));
+        assertThat(identifiers.getAt(5, RustLocalVariableIdentifier.FLYWEIGHT).is(), is(false));
+    }
+
+    @Test
+    public void shouldFindIdentifiersByNameInOffsetOrder() {
+        PackedIdentifiers identifiers = new PackedIdentifiers.Builder(new SymbolTable())
+                .add("x", 18, 19)
+                .add("y", 14, 15)
+                .add("x", 10, 11)
+                .build();
+
+        List<RustLocalVariableIdentifier> xs = identifiers.getNamed("x", RustLocalVariableIdentifier.FLYWEIGHT);
+        assertThat(xs.size(), is(2));
+        assertThat(xs.get(0).getOffsetRange(), is(new OffsetRange(10, 11)));
+        assertThat(xs.get(1).getOffsetRange(), is(new OffsetRange(18, 19)));
+        assertThat(identifiers.getNamed("z", RustLocalVariableIdentifier.FLYWEIGHT).size(), is(0));
+        assertThat(identifiers.getAt(15, RustLocalVariableIdentifier.FLYWEIGHT).value().getText(), is("y"));
+    }
+
+    @Test
+    public void shouldFindFirstIdentifierWithName() {
+        PackedIdentifiers identifiers = new PackedIdentifiers.Builder(new SymbolTable())
+                .add("a", 7, 8)
+                .add("b", 15, 16)
+                .build();
+
+        assertThat(identifiers.getFirstNamed("b", RustFunctionParameterName.FLYWEIGHT).value().getOffsetRange(), is(new OffsetRange(15, 16)));
+        assertThat(identifiers.getFirstNamed("c", RustFunctionParameterName.FLYWEIGHT).is(), is(false));
+    }
+
+    @Test
+    public void shouldShareEmptyIdentifiers() {
+        assertThat(new PackedIdentifiers.Builder(new SymbolTable()).build(), is(sameInstance(PackedIdentifiers.EMPTY)));
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing.index;
+
+import com.github.drrb.rust.netbeans.Benchmark;
+import java.util.Random;
+import org.netbeans.modules.csl.api.OffsetRange;
+
+/**
+ * Measures how long a RangeMap takes to find the identifier at an offset, in
+ * a file with thousands of identifiers (as the occurrences finder does on
+ * every caret move). Not a test: run it on its own, e.g. from the IDE, or with
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.github.drrb.rust.netbeans.parsing.index.RangeMapBenchmark
+ * </pre>
+ */
+public class RangeMapBenchmark {
+
+    private static final int[] IDENTIFIER_COUNTS = {1000, 10000, 100000};
+    private static final int LOOKUPS_PER_RUN = 1000;
+    private static final int RUNS = 1000;
+
+    public static void main(String[] args) throws Exception {
+        for (final int identifierCount : IDENTIFIER_COUNTS) {
+            final RangeMap<String> identifiers = identifiers(identifierCount);
+            final Random random = new Random(0);
+            //Warming up sorts the ranges too
+            Benchmark.Measurement measurement = Benchmark.measure(new Benchmark.Task() {
+                @Override
+                protected int run() {
+                    return lookUp(identifiers, identifierCount, random);
+                }
+            }, RUNS, RUNS);
+            System.out.printf("%s identifiers: %s ns per lookup (%s of %s lookups found one)%n", identifierCount, measurement.getMeanNanos() / LOOKUPS_PER_RUN, measurement.getChecksum(), LOOKUPS_PER_RUN * RUNS);
+        }
+    }
+
+    /**
+     * Identifiers like "x123" followed by a space, in a function body that
+     * covers all of them.
+     */
+    private static RangeMap<String> identifiers(int count) {
+        RangeMap<String> identifiers = new RangeMap<>();
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            String name = "x" + i;
+            identifiers.put(new OffsetRange(offset, offset + name.length()), name);
+            offset += name.length() + 1;
+        }
+        identifiers.put(new OffsetRange(0, offset), "body");
+        return identifiers;
+    }
+
+    private static int lookUp(RangeMap<String> identifiers, int identifierCount, Random random) {
+        int maxOffset = identifierCount * 7;
+        int found = 0;
+        for (int i = 0; i < LOOKUPS_PER_RUN; i++) {
+            if (identifiers.get(random.nextInt(maxOffset)).is()) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing.index;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.netbeans.modules.csl.api.OffsetRange;
+
+/**
+ *
+ */
+public class RangeMapTest {
+
+    @Test
+    public void shouldFindItemWhoseRangeContainsOffset() {
+        RangeMap<String> map = new RangeMap<>();
+        map.put(new OffsetRange(20, 30), "second");
+        map.put(new OffsetRange(0, 10), "first");
+
+        assertThat(map.get(0).value(), is("first"));
+        assertThat(map.get(10).value(), is("first"));
+        assertThat(map.get(25).value(), is("second"));
+        assertThat(map.get(15).is(), is(false));
+        assertThat(map.get(31).is(), is(false));
+    }
+
+    @Test
+    public void shouldFindInnermostOfNestedRanges() {
+        RangeMap<String> map = new RangeMap<>();
+        map.put(new OffsetRange(0, 100), "outer");
+        map.put(new OffsetRange(10, 50), "middle");
+        map.put(new OffsetRange(20, 30), "inner");
+
+        assertThat(map.get(25).value(), is("inner"));
+        assertThat(map.get(40).value(), is("middle"));
+        assertThat(map.get(60).value(), is("outer"));
+        assertThat(map.get(5).value(), is("outer"));
+    }
+
+    @Test
+    public void shouldLookOutsideRangesThatEndBeforeOffset() {
+        RangeMap<String> map = new RangeMap<>();
+        map.put(new OffsetRange(0, 100), "outer");
+        map.put(new OffsetRange(10, 20), "first");
+        map.put(new OffsetRange(30, 40), "second");
+        map.put(new OffsetRange(32, 35), "second inner");
+
+        assertThat(map.get(38).value(), is("second"));
+        assertThat(map.get(50).value(), is("outer"));
+    }
+
+    @Test
+    public void shouldReplaceItemWithSameRange() {
+        RangeMap<String> map = new RangeMap<>();
+        map.put(new OffsetRange(0, 10), "old");
+        map.put(new OffsetRange(0, 10), "new");
+
+        assertThat(map.get(5).value(), is("new"));
+    }
+
+    @Test
+    public void shouldFindItemsPutInAfterLookup() {
+        RangeMap<String> map = new RangeMap<>();
+        map.put(new OffsetRange(0, 10), "first");
+        assertThat(map.get(15).is(), is(false));
+
+        map.put(new OffsetRange(10, 20), "second");
+
+        assertThat(map.get(15).value(), is("second"));
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.parsing.index;
+
+import static com.github.drrb.rust.netbeans.TestParsing.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class SymbolTableTest {
+
+    @Test
+    public void shouldGiveSameNameSameId() {
+        SymbolTable symbols = new SymbolTable();
+
+        int x = symbols.intern("x");
+        int y = symbols.intern("y");
+
+        assertThat(symbols.intern(new String("x")), is(x));
+        assertThat(y, is(not(x)));
+        assertThat(symbols.getName(y), is("y"));
+        assertThat(symbols.size(), is(2));
+    }
+
+    @Test
+    public void shouldOnlyGiveIdsToInternedNames() {
+        SymbolTable symbols = new SymbolTable();
+        symbols.intern("x");
+
+        assertThat(symbols.getId("x"), is(0));
+        assertThat(symbols.getId("y"), is(-1));
+    }
+
+    @Test
+    public void shouldKeepOneCopyOfEachName() {
+        SymbolTable symbols = new SymbolTable();
+        String name = symbols.internName("self");
+
+        assertThat(symbols.internName(new String("self")), is(sameInstance(name)));
+    }
+
+    @Test
+    public void shouldGrowPastInitialCapacity() {
+        SymbolTable symbols = new SymbolTable();
+        for (int i = 0; i < 1000; i++) {
+            symbols.intern("name" + i);
+        }
+
+        assertThat(symbols.getName(symbols.getId("name999")), is("name999"));
+    }
+
+    @Test
+    public void shouldStoreNamesOnceInIndex() {
+        RustSourceIndex index = parse("fn first(x: int) -> int { x }\nfn second(x: int) -> int { x }\n").getIndex();
+
+        String firstParameterName = index.getFunctions().get(0).getParameterNameMatching("x").value().getText();
+        String secondParameterName = index.getFunctions().get(1).getParameterNameMatching("x").value().getText();
+        String localVariableName = index.getFunctions().get(1).getBody().getLocalVariableIdentifiersNamed("x").get(0).getText();
+        assertThat(secondParameterName, is(sameInstance(firstParameterName)));
+        assertThat(localVariableName, is(sameInstance(firstParameterName)));
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2013 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.drrb.rust.netbeans.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class ListsTest {
+
+    @Test
+    public void shouldFreezeCollectionIntoCopy() {
+        List<String> list = new ArrayList<>(Arrays.asList("a", "b", "c"));
+        List<String> frozen = Lists.freeze(list);
+        list.add("d");
+
+        assertThat(frozen, contains("a", "b", "c"));
+    }
+
+    @Test
+    public void shouldFreezeEmptyAndSingletonCollections() {
+        assertThat(Lists.freeze(new ArrayList<String>()).size(), is(0));
+        assertThat(Lists.freeze(Arrays.asList("a")), contains("a"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldNotAllowChangesToFrozenList() {
+        Lists.freeze(Arrays.asList("a", "b")).add("c");
+    }
+}